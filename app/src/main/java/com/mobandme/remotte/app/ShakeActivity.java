@@ -2,49 +2,31 @@ package com.mobandme.remotte.app;
 
 import android.app.Activity;
 import android.os.Bundle;
-import android.util.FloatMath;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import com.mobandme.remotte.Remotte;
+import com.mobandme.remotte.RemotteGestureDetector;
 import com.mobandme.remotte.app.bus.DeviceBus;
-import com.mobandme.remotte.listener.AccelerometerSensorCallback;
+import com.mobandme.remotte.listener.GestureCallback;
 
 
 public class ShakeActivity extends Activity {
 
-    private static double SHAKE_THRESHOLD = 0.8;
-    private static double SHAKE_TIME      = 500;
-
     private Remotte     mRemotte;
-    private long        mLastShakeTime = 0;
 
     private TextView    mAccelerometerView;
     private TextView    mSpeedView;
     private TextView    mForceView;
 
-    private AccelerometerSensorCallback accelerometerCallback = new AccelerometerSensorCallback() {
+    private GestureCallback gestureCallback = new GestureCallback() {
         @Override
-        public void onAccelerometerChange(Remotte remotte, double x, double y, double z) {
-
-            mAccelerometerView.setText(String.format("X: %f Y: %f Z: %f", x, y, z));
-
-            float gX = (float)x;
-            float gY = (float)y;
-            float gZ = (float)z;
-
-            double gForce = FloatMath.sqrt(gX * gX + gY * gY + gZ * gZ);
-            mForceView.setText(String.format("Force: %s", gForce));
-
-            if (gForce > SHAKE_THRESHOLD) {
-                final long now = System.currentTimeMillis();
-                if (mLastShakeTime + SHAKE_TIME > now)
-                    return;
-
+        public void onGesture(Remotte remotte, int gesture, int direction, double magnitude) {
+            if (gesture == RemotteGestureDetector.GESTURE_SHAKE) {
+                mForceView.setText(String.format("Force: %s", magnitude));
                 Toast.makeText(ShakeActivity.this, "Shake!!!", Toast.LENGTH_SHORT).show();
-                mLastShakeTime = now;
             }
         }
     };
@@ -67,7 +49,9 @@ public class ShakeActivity extends Activity {
             mRemotte = new Remotte.Builder()
                     .setDeviceAddress(DeviceBus.deviceAddress)
                     .setConfiguration(new Remotte.Configuration()
-                        .enableAccelerometerSensor(true, accelerometerCallback)
+                        .enableAccelerometerSensor(true)
+                        .addGestureDetector(new RemotteGestureDetector.Shake())
+                        .enableGestureCallback(gestureCallback)
                     )
                     .build(this);
         }
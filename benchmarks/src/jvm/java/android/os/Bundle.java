@@ -0,0 +1,98 @@
+package android.os;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class it's the JVM version of the Android bundle, a map of values by key. The values are never parceled,
+ * like the bundles sent to a local service. A value read with the wrong type returns the default value.
+ */
+public final class Bundle {
+
+    private final Map<String, Object> mMap;
+
+    public Bundle() { mMap = new HashMap<String, Object>(); }
+
+    public Bundle(ClassLoader loader) { this(); }
+
+    public Bundle(int capacity) { mMap = new HashMap<String, Object>(capacity); }
+
+    public Bundle(Bundle bundle) { mMap = new HashMap<String, Object>(bundle.mMap); }
+
+    public void setClassLoader(ClassLoader loader) { }
+
+    public int size() { return mMap.size(); }
+
+    public boolean isEmpty() { return mMap.isEmpty(); }
+
+    public void clear() { mMap.clear(); }
+
+    public boolean containsKey(String key) { return mMap.containsKey(key); }
+
+    public Object get(String key) { return mMap.get(key); }
+
+    public void remove(String key) { mMap.remove(key); }
+
+    public void putAll(Bundle bundle) { mMap.putAll(bundle.mMap); }
+
+    public Set<String> keySet() { return mMap.keySet(); }
+
+    public void putBoolean(String key, boolean value) { mMap.put(key, value); }
+    public void putByte(String key, byte value) { mMap.put(key, value); }
+    public void putInt(String key, int value) { mMap.put(key, value); }
+    public void putLong(String key, long value) { mMap.put(key, value); }
+    public void putDouble(String key, double value) { mMap.put(key, value); }
+    public void putString(String key, String value) { mMap.put(key, value); }
+    public void putByteArray(String key, byte[] value) { mMap.put(key, value); }
+    public void putIntArray(String key, int[] value) { mMap.put(key, value); }
+    public void putLongArray(String key, long[] value) { mMap.put(key, value); }
+    public void putDoubleArray(String key, double[] value) { mMap.put(key, value); }
+    public void putParcelable(String key, Parcelable value) { mMap.put(key, value); }
+
+    public boolean getBoolean(String key) { return getBoolean(key, false); }
+    public boolean getBoolean(String key, boolean defaultValue) { Object value = mMap.get(key); return (value instanceof Boolean ? (Boolean)value : defaultValue); }
+
+    public byte getByte(String key) { return getByte(key, (byte)0); }
+    public Byte getByte(String key, byte defaultValue) { Object value = mMap.get(key); return (value instanceof Byte ? (Byte)value : defaultValue); }
+
+    public int getInt(String key) { return getInt(key, 0); }
+    public int getInt(String key, int defaultValue) { Object value = mMap.get(key); return (value instanceof Integer ? (Integer)value : defaultValue); }
+
+    public long getLong(String key) { return getLong(key, 0L); }
+    public long getLong(String key, long defaultValue) { Object value = mMap.get(key); return (value instanceof Long ? (Long)value : defaultValue); }
+
+    public double getDouble(String key) { return getDouble(key, 0.0d); }
+    public double getDouble(String key, double defaultValue) { Object value = mMap.get(key); return (value instanceof Double ? (Double)value : defaultValue); }
+
+    public String getString(String key) { Object value = mMap.get(key); return (value instanceof String ? (String)value : null); }
+    public byte[] getByteArray(String key) { Object value = mMap.get(key); return (value instanceof byte[] ? (byte[])value : null); }
+    public int[] getIntArray(String key) { Object value = mMap.get(key); return (value instanceof int[] ? (int[])value : null); }
+    public long[] getLongArray(String key) { Object value = mMap.get(key); return (value instanceof long[] ? (long[])value : null); }
+    public double[] getDoubleArray(String key) { Object value = mMap.get(key); return (value instanceof double[] ? (double[])value : null); }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Parcelable> T getParcelable(String key) { Object value = mMap.get(key); return (value instanceof Parcelable ? (T)value : null); }
+
+    @Override
+    public String toString() { return "Bundle" + mMap; }
+}
@@ -0,0 +1,109 @@
+package android.os;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class it's the JVM version of the Android handler, it sends messages and runnables to the thread of a
+ * {@link android.os.Looper}.
+ */
+public class Handler {
+
+    /**
+     * Implement this interface to handle the messages without extend the handler.
+     */
+    public interface Callback {
+        boolean handleMessage(Message message);
+    }
+
+    private final Looper   mLooper;
+    private final Callback mCallback;
+
+    public Handler() { this((Callback)null); }
+
+    public Handler(Callback callback) {
+        mLooper = Looper.myLooper();
+        if (mLooper == null)
+            throw new RuntimeException("Can't create handler inside thread that has not called Looper.prepare()");
+        mCallback = callback;
+    }
+
+    public Handler(Looper looper) { this(looper, null); }
+
+    public Handler(Looper looper, Callback callback) {
+        if (looper == null)
+            throw new NullPointerException("The looper can't be null.");
+        mLooper = looper;
+        mCallback = callback;
+    }
+
+    public final Looper getLooper() { return mLooper; }
+
+    /**
+     * Override this method to receive the messages.
+     */
+    public void handleMessage(Message message) { }
+
+    public void dispatchMessage(Message message) {
+        if (message.callback != null) {
+            message.callback.run();
+        } else {
+            if (mCallback != null && mCallback.handleMessage(message))
+                return;
+            handleMessage(message);
+        }
+    }
+
+    public final Message obtainMessage() { return Message.obtain(this); }
+    public final Message obtainMessage(int what) { return Message.obtain(this, what); }
+    public final Message obtainMessage(int what, Object obj) { return Message.obtain(this, what, obj); }
+    public final Message obtainMessage(int what, int arg1, int arg2) { return Message.obtain(this, what, arg1, arg2); }
+    public final Message obtainMessage(int what, int arg1, int arg2, Object obj) { return Message.obtain(this, what, arg1, arg2, obj); }
+
+    public final boolean post(Runnable runnable) { return postDelayed(runnable, 0); }
+
+    public final boolean postDelayed(Runnable runnable, long delayMillis) {
+        return sendMessageDelayed(Message.obtain(this, runnable), delayMillis);
+    }
+
+    public final boolean postAtTime(Runnable runnable, long uptimeMillis) {
+        return sendMessageAtTime(Message.obtain(this, runnable), uptimeMillis);
+    }
+
+    public final void removeCallbacks(Runnable runnable) { mLooper.mQueue.removeCallbacks(this, runnable); }
+
+    public final boolean sendMessage(Message message) { return sendMessageDelayed(message, 0); }
+
+    public final boolean sendEmptyMessage(int what) { return sendMessageDelayed(Message.obtain(this, what), 0); }
+
+    public final boolean sendEmptyMessageDelayed(int what, long delayMillis) { return sendMessageDelayed(Message.obtain(this, what), delayMillis); }
+
+    public final boolean sendMessageDelayed(Message message, long delayMillis) {
+        return sendMessageAtTime(message, SystemClock.uptimeMillis() + Math.max(0, delayMillis));
+    }
+
+    public boolean sendMessageAtTime(Message message, long uptimeMillis) {
+        message.target = this;
+        return mLooper.mQueue.enqueueMessage(message, uptimeMillis);
+    }
+
+    public final void removeMessages(int what) { mLooper.mQueue.removeMessages(this, what); }
+
+    public final boolean hasMessages(int what) { return mLooper.mQueue.hasMessages(this, what); }
+}
@@ -0,0 +1,94 @@
+package android.os;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class it's the JVM version of the Android handler thread, a thread with its own {@link android.os.Looper}.
+ * The thread it's a daemon, so a benchmark that fails before quit it does not keep the JVM alive. The priority
+ * it's a Linux nice value on Android, it's ignored on the JVM.
+ */
+public class HandlerThread extends Thread {
+
+    private Looper mLooper;
+
+    public HandlerThread(String name) {
+        super(name);
+        setDaemon(true);
+    }
+
+    public HandlerThread(String name, int priority) { this(name); }
+
+    /**
+     * Override this method to do something on the thread before the loop starts.
+     */
+    protected void onLooperPrepared() { }
+
+    @Override
+    public void run() {
+        Looper.prepare();
+        synchronized (this) {
+            mLooper = Looper.myLooper();
+            notifyAll();
+        }
+        onLooperPrepared();
+        Looper.loop();
+    }
+
+    /**
+     * @return Returns the looper of the thread, waiting for it if the thread has just started. Returns null if the
+     * thread has not been started.
+     */
+    public Looper getLooper() {
+        if (!isAlive() && mLooper == null)
+            return null;
+
+        synchronized (this) {
+            boolean interrupted = false;
+            while (mLooper == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+            return mLooper;
+        }
+    }
+
+    public boolean quit() {
+        Looper looper = getLooper();
+        if (looper == null)
+            return false;
+
+        looper.quit();
+        return true;
+    }
+
+    public boolean quitSafely() {
+        Looper looper = getLooper();
+        if (looper == null)
+            return false;
+
+        looper.quitSafely();
+        return true;
+    }
+}
@@ -0,0 +1,42 @@
+package android.os;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This interface it's the part of the Android binder used by the SDK, on the JVM the only binders are the ones of
+ * the {@link android.os.Messenger} instances of the same process.
+ */
+public interface IBinder {
+
+    /**
+     * Implement this interface to know when the process of a binder dies.
+     */
+    interface DeathRecipient {
+        void binderDied();
+    }
+
+    void linkToDeath(DeathRecipient recipient, int flags) throws RemoteException;
+
+    boolean unlinkToDeath(DeathRecipient recipient, int flags);
+
+    boolean isBinderAlive();
+
+    boolean pingBinder();
+}
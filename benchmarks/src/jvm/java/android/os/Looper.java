@@ -0,0 +1,83 @@
+package android.os;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class it's the JVM version of the Android looper, it runs the messages of its thread one by one. There is
+ * not an application thread on the JVM, so the main looper runs on its own daemon thread, started the first time
+ * it's requested.
+ */
+public final class Looper {
+
+    private static final ThreadLocal<Looper> sThreadLooper = new ThreadLocal<Looper>();
+    private static       Looper              sMainLooper;
+
+    final MessageQueue   mQueue = new MessageQueue();
+    private final Thread mThread = Thread.currentThread();
+
+    private Looper() { }
+
+    /**
+     * Use this method to create the looper of the current thread, call {@link #loop()} after it.
+     */
+    public static void prepare() {
+        if (sThreadLooper.get() != null)
+            throw new RuntimeException("Only one Looper may be created per thread");
+        sThreadLooper.set(new Looper());
+    }
+
+    public static Looper myLooper() { return sThreadLooper.get(); }
+
+    public static synchronized Looper getMainLooper() {
+        if (sMainLooper == null) {
+            HandlerThread mainThread = new HandlerThread("main");
+            mainThread.start();
+            sMainLooper = mainThread.getLooper();
+        }
+        return sMainLooper;
+    }
+
+    /**
+     * Use this method to run the messages of the current thread until its looper quits.
+     */
+    public static void loop() {
+        Looper looper = myLooper();
+        if (looper == null)
+            throw new RuntimeException("No Looper; Looper.prepare() wasn't called on this thread.");
+
+        Message message;
+        while ((message = looper.mQueue.next()) != null)
+            message.target.dispatchMessage(message);
+    }
+
+    public Thread getThread() { return mThread; }
+
+    public boolean isCurrentThread() { return (Thread.currentThread() == mThread); }
+
+    /**
+     * Use this method to stop the looper, the pending messages are discarded.
+     */
+    public void quit() { mQueue.quit(false); }
+
+    /**
+     * Use this method to stop the looper once the messages already due have been delivered.
+     */
+    public void quitSafely() { mQueue.quit(true); }
+}
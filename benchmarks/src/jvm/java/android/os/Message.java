@@ -0,0 +1,116 @@
+package android.os;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class it's the JVM version of the Android message. The messages are not pooled, the garbage collector of
+ * the JVM it's cheaper than a synchronized pool, so {@link #recycle()} does nothing.
+ */
+public final class Message {
+
+    public int       what;
+    public int       arg1;
+    public int       arg2;
+    public Object    obj;
+    public Messenger replyTo;
+
+    //Owned by the handler and the queue.
+    long             when;
+    long             sequence;
+    Handler          target;
+    Runnable         callback;
+
+    private Bundle   mData;
+
+    public Message() { }
+
+    public static Message obtain() { return new Message(); }
+
+    public static Message obtain(Handler target) {
+        Message message = new Message();
+        message.target = target;
+        return message;
+    }
+
+    public static Message obtain(Handler target, Runnable callback) {
+        Message message = obtain(target);
+        message.callback = callback;
+        return message;
+    }
+
+    public static Message obtain(Handler target, int what) {
+        Message message = obtain(target);
+        message.what = what;
+        return message;
+    }
+
+    public static Message obtain(Handler target, int what, Object obj) {
+        Message message = obtain(target, what);
+        message.obj = obj;
+        return message;
+    }
+
+    public static Message obtain(Handler target, int what, int arg1, int arg2) {
+        Message message = obtain(target, what);
+        message.arg1 = arg1;
+        message.arg2 = arg2;
+        return message;
+    }
+
+    public static Message obtain(Handler target, int what, int arg1, int arg2, Object obj) {
+        Message message = obtain(target, what, arg1, arg2);
+        message.obj = obj;
+        return message;
+    }
+
+    /**
+     * Use this method to copy a message, the data it's copied too like on Android.
+     */
+    public static Message obtain(Message original) {
+        Message message = obtain(original.target, original.what, original.arg1, original.arg2, original.obj);
+        message.replyTo = original.replyTo;
+        message.callback = original.callback;
+        if (original.mData != null)
+            message.mData = new Bundle(original.mData);
+        return message;
+    }
+
+    public Bundle getData() {
+        if (mData == null)
+            mData = new Bundle();
+        return mData;
+    }
+
+    public Bundle peekData() { return mData; }
+
+    public void setData(Bundle data) { mData = data; }
+
+    public Handler getTarget() { return target; }
+
+    public void setTarget(Handler target) { this.target = target; }
+
+    public Runnable getCallback() { return callback; }
+
+    public long getWhen() { return when; }
+
+    public void sendToTarget() { target.sendMessage(this); }
+
+    public void recycle() { }
+}
@@ -0,0 +1,114 @@
+package android.os;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * This class keep the pending messages of a {@link android.os.Looper} ordered by its delivery time, the messages
+ * with the same time are delivered in the order they were sent.
+ */
+final class MessageQueue {
+
+    private final PriorityQueue<Message> mMessages = new PriorityQueue<Message>(16, new Comparator<Message>() {
+        @Override
+        public int compare(Message lhs, Message rhs) {
+            if (lhs.when != rhs.when)
+                return (lhs.when < rhs.when ? -1 : 1);
+            return (lhs.sequence < rhs.sequence ? -1 : (lhs.sequence == rhs.sequence ? 0 : 1));
+        }
+    });
+
+    private long    mSequence = 0;
+    private boolean mQuitting = false;
+    private boolean mQuitSafely = false;
+
+    synchronized boolean enqueueMessage(Message message, long when) {
+        if (mQuitting)
+            return false;
+
+        message.when = when;
+        message.sequence = mSequence++;
+        mMessages.add(message);
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * @return Returns the next message when its time arrives, or null when the queue has quit.
+     */
+    synchronized Message next() {
+        while (true) {
+            Message head = mMessages.peek();
+            if (mQuitting && (!mQuitSafely || head == null || head.when > SystemClock.uptimeMillis()))
+                return null;
+
+            try {
+                if (head == null) {
+                    wait();
+                } else {
+                    long delay = head.when - SystemClock.uptimeMillis();
+                    if (delay <= 0)
+                        return mMessages.poll();
+                    wait(delay);
+                }
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+    }
+
+    synchronized void quit(boolean safe) {
+        mQuitting = true;
+        mQuitSafely = safe;
+        if (!safe)
+            mMessages.clear();
+        notifyAll();
+    }
+
+    synchronized boolean isQuitting() { return mQuitting; }
+
+    synchronized void removeMessages(Handler handler, int what) {
+        Iterator<Message> messages = mMessages.iterator();
+        while (messages.hasNext()) {
+            Message message = messages.next();
+            if (message.target == handler && message.callback == null && message.what == what)
+                messages.remove();
+        }
+    }
+
+    synchronized void removeCallbacks(Handler handler, Runnable callback) {
+        Iterator<Message> messages = mMessages.iterator();
+        while (messages.hasNext()) {
+            Message message = messages.next();
+            if (message.target == handler && message.callback == callback)
+                messages.remove();
+        }
+    }
+
+    synchronized boolean hasMessages(Handler handler, int what) {
+        for (Message message : mMessages)
+            if (message.target == handler && message.callback == null && message.what == what)
+                return true;
+        return false;
+    }
+}
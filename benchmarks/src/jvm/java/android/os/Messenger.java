@@ -0,0 +1,74 @@
+package android.os;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class it's the JVM version of the Android messenger. The messages are sent to the handler of the same
+ * process without be parceled, like a messenger of a local service.
+ */
+public final class Messenger {
+
+    private final MessengerBinder mTarget;
+
+    public Messenger(Handler target) { mTarget = new MessengerBinder(target); }
+
+    public Messenger(IBinder target) {
+        if (!(target instanceof MessengerBinder))
+            throw new IllegalArgumentException("The binder it's not a messenger of this process.");
+        mTarget = (MessengerBinder)target;
+    }
+
+    /**
+     * Use this method to send a message to the handler of the messenger. Like a local messenger, a message sent
+     * after the looper has quit it's dropped without error.
+     */
+    public void send(Message message) throws RemoteException { mTarget.mHandler.sendMessage(message); }
+
+    public IBinder getBinder() { return mTarget; }
+
+    @Override
+    public boolean equals(Object other) {
+        return (other instanceof Messenger && ((Messenger)other).mTarget == mTarget);
+    }
+
+    @Override
+    public int hashCode() { return mTarget.hashCode(); }
+
+    /**
+     * The clients live on the same process, so they never die alone and the death recipients are never called.
+     */
+    private static final class MessengerBinder implements IBinder {
+        private final Handler mHandler;
+
+        public MessengerBinder(Handler handler) { mHandler = handler; }
+
+        @Override
+        public void linkToDeath(DeathRecipient recipient, int flags) { }
+
+        @Override
+        public boolean unlinkToDeath(DeathRecipient recipient, int flags) { return true; }
+
+        @Override
+        public boolean isBinderAlive() { return !mHandler.getLooper().mQueue.isQuitting(); }
+
+        @Override
+        public boolean pingBinder() { return isBinderAlive(); }
+    }
+}
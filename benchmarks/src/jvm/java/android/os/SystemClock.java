@@ -0,0 +1,58 @@
+package android.os;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class it's the JVM version of the Android clock, so the SDK can run on the benchmarks and the tests. The
+ * clocks are monotonic like on the device, they start one hour after the JVM so no timestamp it's ever 0.
+ */
+public final class SystemClock {
+
+    private static final long BOOT_TIME = System.nanoTime() - 3600000000000L;
+
+    private SystemClock() { }
+
+    public static long elapsedRealtimeNanos() { return System.nanoTime() - BOOT_TIME; }
+
+    public static long elapsedRealtime() { return elapsedRealtimeNanos() / 1000000L; }
+
+    public static long uptimeMillis() { return elapsedRealtime(); }
+
+    /**
+     * Use this method to wait without being interrupted, like the Android one the interruption it's kept.
+     * @param ms The time to wait in milliseconds.
+     */
+    public static void sleep(long ms) {
+        long end = uptimeMillis() + ms;
+        boolean interrupted = false;
+        long remaining = ms;
+        while (remaining > 0) {
+            try {
+                Thread.sleep(remaining);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+            remaining = end - uptimeMillis();
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+}
@@ -0,0 +1,50 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class contains the fixed GATT values replayed by the benchmarks, so every run decode exactly the same bytes.
+ * The values are the layouts notified by Remotte and Sensor Tag devices at rest on a table.
+ */
+final class BenchmarkPayloads {
+
+    static final byte[] TEMPERATURE   = { (byte)0xF0, (byte)0xFE, (byte)0x80, (byte)0x0C };             //Object and ambient, about 25 degrees.
+    static final byte[] ACCELEROMETER = { (byte)0x02, (byte)0xFE, (byte)0x40 };                        //X, Y and Z, about 1g on Z.
+    static final byte[] GYROSCOPE     = { (byte)0x1A, (byte)0x00, (byte)0xF3, (byte)0xFF, (byte)0x05, (byte)0x00 };
+    static final byte[] ALTIMETER     = { (byte)0x80, (byte)0x5E, (byte)0x3C, (byte)0x9C };             //Raw temperature and pressure.
+    static final byte[] KEYS          = { (byte)0x01 };                                                 //Center key pressed.
+    static final byte[] CALIBRATION   = { (byte)0xD6, (byte)0xB6, (byte)0x7B, (byte)0xBC, (byte)0xD8, (byte)0xC4, (byte)0xDB, (byte)0x0B,
+                                          (byte)0x4C, (byte)0x19, (byte)0x00, (byte)0x00, (byte)0x70, (byte)0xE4, (byte)0x1B, (byte)0x09 };
+
+    private BenchmarkPayloads() { }
+
+    /**
+     * Use this method to translate the name of a benchmark parameter to a device type.
+     * @param device REMOTTE or SENSOR_TAG.
+     * @return Returns the value of the Remotte.Devices constant.
+     */
+    static int getDeviceType(String device) {
+        if ("REMOTTE".equals(device))
+            return Remotte.Devices.REMOTTE;
+        if ("SENSOR_TAG".equals(device))
+            return Remotte.Devices.SENSOR_TAG;
+        throw new RuntimeException("Invalid device type, use REMOTTE or SENSOR_TAG.");
+    }
+}
@@ -0,0 +1,124 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measure the route of a GATT notification to its sensor, and the packing of the sample into the
+ * message arguments. The UUID chain it's the routing used before the dispatch table, kept as the baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CharacteristicDispatchBenchmark {
+
+    private static final long TIMESTAMP = 123456789000000L; //Nanoseconds.
+
+    /**
+     * The sensor notified, the keys are the last entry of the old chain.
+     */
+    @Param({ "TEMPERATURE", "GYROSCOPE", "KEYS" })
+    public String sensor;
+
+    private RemotteCharacteristicDispatcher mDispatcher;
+    private UUID                            mCharacteristic;
+    private byte[]                          mValue;
+    private int                             mLow;
+    private int                             mHigh;
+    private final byte[]                    mUnpacked = new byte[RemotteSampleCodec.MAX_PAYLOAD];
+
+    private final RemotteCharacteristicDispatcher.CharacteristicHandler mHandler = new RemotteCharacteristicDispatcher.CharacteristicHandler() {
+        @Override
+        public void onCharacteristicChanged(byte[] value, long timestamp) { pack(value, timestamp); }
+    };
+
+    @Setup
+    public void setUp() {
+        mDispatcher = new RemotteCharacteristicDispatcher()
+                .register(GattDeviceRemotte.TEMPERATURE_DATA_CHARACTERISTIC, "Temperature", mHandler)
+                .register(GattDeviceRemotte.ACCELEROMETER_DATA_CHARACTERISTIC, "Accelerometer", mHandler)
+                .register(GattDeviceRemotte.GYROSCOPE_DATA_CHARACTERISTIC, "Gyroscope", mHandler)
+                .register(GattDeviceRemotte.ALTIMETER_DATA_CHARACTERISTIC, "Altimeter", mHandler)
+                .register(GattDeviceRemotte.KEY_DATA_CHARACTERISTIC, "Keys", mHandler);
+
+        if ("TEMPERATURE".equals(sensor)) {
+            mCharacteristic = GattDeviceRemotte.TEMPERATURE_DATA_CHARACTERISTIC;
+            mValue = BenchmarkPayloads.TEMPERATURE;
+        } else if ("GYROSCOPE".equals(sensor)) {
+            mCharacteristic = GattDeviceRemotte.GYROSCOPE_DATA_CHARACTERISTIC;
+            mValue = BenchmarkPayloads.GYROSCOPE;
+        } else {
+            mCharacteristic = GattDeviceRemotte.KEY_DATA_CHARACTERISTIC;
+            mValue = BenchmarkPayloads.KEYS;
+        }
+
+        //A different instance with the same value, like the UUIDs built by the Bluetooth stack.
+        mCharacteristic = new UUID(mCharacteristic.getMostSignificantBits(), mCharacteristic.getLeastSignificantBits());
+    }
+
+    @Benchmark
+    public int dispatchTable() {
+        mDispatcher.dispatch(mCharacteristic, mValue, TIMESTAMP);
+        return mLow ^ mHigh;
+    }
+
+    @Benchmark
+    public int uuidChain() {
+        if (mCharacteristic.equals(GattDeviceRemotte.TEMPERATURE_DATA_CHARACTERISTIC))
+            pack(mValue, TIMESTAMP);
+        else if (mCharacteristic.equals(GattDeviceRemotte.ACCELEROMETER_DATA_CHARACTERISTIC))
+            pack(mValue, TIMESTAMP);
+        else if (mCharacteristic.equals(GattDeviceRemotte.GYROSCOPE_DATA_CHARACTERISTIC))
+            pack(mValue, TIMESTAMP);
+        else if (mCharacteristic.equals(GattDeviceRemotte.ALTIMETER_DATA_CHARACTERISTIC))
+            pack(mValue, TIMESTAMP);
+        else if (mCharacteristic.equals(GattDeviceRemotte.KEY_DATA_CHARACTERISTIC))
+            pack(mValue, TIMESTAMP);
+        return mLow ^ mHigh;
+    }
+
+    @Benchmark
+    public byte[] codecRoundTrip() {
+        byte[] payload = mValue;
+        RemotteSampleCodec.unpack(RemotteSampleCodec.packLow(payload), RemotteSampleCodec.packHigh(payload, TIMESTAMP / 1000000), mUnpacked);
+        return mUnpacked;
+    }
+
+    private void pack(byte[] value, long timestamp) {
+        mLow = RemotteSampleCodec.packLow(value);
+        mHigh = RemotteSampleCodec.packHigh(value, timestamp / 1000000);
+    }
+}
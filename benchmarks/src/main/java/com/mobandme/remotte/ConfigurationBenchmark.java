@@ -0,0 +1,154 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.mobandme.remotte.listener.AccelerometerSensorCallback;
+import com.mobandme.remotte.listener.AltimeterSensorCallback;
+import com.mobandme.remotte.listener.GyroscopeSensorCallback;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measure the work done by the service every time a client send its configuration. The Parcel it's
+ * native on Android, so the parcel round-trip it's measured with the encoding that fills it: the int array of the
+ * {@link com.mobandme.remotte.RemotteConfigurationCodec} against the strings and ints of the old writeToParcel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationBenchmark {
+
+    private Remotte.Configuration mFirst;
+    private Remotte.Configuration mSecond;
+    private int[]                 mEncoded;
+    private final String[]        mLegacyStrings = new String[12];
+    private final int[]           mLegacyInts = new int[12];
+
+    @Setup
+    public void setUp() {
+        AccelerometerSensorCallback accelerometerCallback = new AccelerometerSensorCallback() {
+            @Override
+            public void onAccelerometerChange(Remotte remotte, double x, double y, double z) { }
+        };
+        GyroscopeSensorCallback gyroscopeCallback = new GyroscopeSensorCallback() {
+            @Override
+            public void onGyroscopeChange(Remotte remotte, double x, double y, double z) { }
+        };
+        AltimeterSensorCallback altimeterCallback = new AltimeterSensorCallback() {
+            @Override
+            public void onAltimeterChange(Remotte remotte, double pressure, double altitude) { }
+        };
+
+        //Two clients of the same device with overlapped sensors and different periods.
+        mFirst = new Remotte.Configuration()
+                .setDevice(Remotte.Devices.REMOTTE)
+                .enableAccelerometerSensor(true, 100, accelerometerCallback)
+                .enableGyroscopeSensor(true, 200, gyroscopeCallback);
+
+        mSecond = new Remotte.Configuration()
+                .setDevice(Remotte.Devices.REMOTTE)
+                .enableGyroscopeSensor(true, 100, gyroscopeCallback)
+                .enableAltimeterSensor(true, 1000, altimeterCallback);
+
+        mEncoded = RemotteConfigurationCodec.encode(mFirst);
+    }
+
+    @Benchmark
+    public Remotte.Configuration merge() {
+        return mFirst.merge(mSecond);
+    }
+
+    @Benchmark
+    public Remotte.Configuration subtract() {
+        return mFirst.subtract(mSecond);
+    }
+
+    @Benchmark
+    public int[] encode() {
+        return RemotteConfigurationCodec.encode(mFirst);
+    }
+
+    @Benchmark
+    public Remotte.Configuration decode() {
+        Remotte.Configuration configuration = new Remotte.Configuration();
+        RemotteConfigurationCodec.decode(mEncoded, configuration);
+        return configuration;
+    }
+
+    @Benchmark
+    public Remotte.Configuration roundTrip() {
+        Remotte.Configuration configuration = new Remotte.Configuration();
+        RemotteConfigurationCodec.decode(RemotteConfigurationCodec.encode(mFirst), configuration);
+        return configuration;
+    }
+
+    /**
+     * The old format: 12 booleans written as strings and parsed back, plus 12 ints and bytes.
+     */
+    @Benchmark
+    public boolean legacyRoundTrip() {
+        Remotte.Configuration configuration = mFirst;
+        String[] strings = mLegacyStrings;
+        int[] ints = mLegacyInts;
+
+        strings[0] = Boolean.toString(configuration.getTemperatureNotificationEnabled());
+        strings[1] = Boolean.toString(configuration.getAccelerometerNotificationEnabled());
+        strings[2] = Boolean.toString(configuration.getGyroscopeNotificationEnabled());
+        strings[3] = Boolean.toString(configuration.getAltimeterNotificationEnabled());
+        strings[4] = Boolean.toString(configuration.getConnectionStateCallbackEnabled());
+        strings[5] = Boolean.toString(configuration.getTemperatureCallbackEnabled());
+        strings[6] = Boolean.toString(configuration.getAccelerometerCallbackEnabled());
+        strings[7] = Boolean.toString(configuration.getGyroscopeCallbackEnabled());
+        strings[8] = Boolean.toString(configuration.getAltimeterCallbackEnabled());
+        strings[9] = Boolean.toString(configuration.getKeysPressedCallbackEnabled());
+        strings[10] = Boolean.toString(configuration.getLatencyMetricsEnabled());
+        strings[11] = Boolean.toString(configuration.getAutoReconnectEnabled());
+        ints[0] = configuration.getDevice();
+        ints[1] = configuration.getAltimeterPeriod()[0];
+        ints[2] = configuration.getAccelerometerPeriod()[0];
+        ints[3] = configuration.getGyroscopePeriod()[0];
+        ints[4] = configuration.getTemperaturePeriod()[0];
+        ints[5] = configuration.getBatchSize();
+        ints[6] = configuration.getBatchLatency();
+        ints[7] = configuration.getSampleRingCapacity();
+        ints[8] = configuration.getSampleRingPolicy();
+        ints[9] = configuration.getMaxReconnectAttempts();
+        ints[10] = configuration.getReconnectDelay();
+        ints[11] = configuration.getReconnectMaxDelay();
+
+        //The reader copies every string out of the Parcel before parse it.
+        boolean flags = false;
+        for (String string : strings)
+            flags ^= Boolean.valueOf(new String(string.toCharArray()));
+        return flags;
+    }
+}
@@ -0,0 +1,187 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import android.os.HandlerThread;
+
+import com.mobandme.remotte.listener.AccelerometerSensorCallback;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measure the GATT queue against the simulated device, with the latency of the link. It runs on the
+ * JVM with the android.os classes of src/jvm, so it can run on CI.
+ *
+ * The write and the burst drive the {@link RemotteGattScheduler} alone: the latency of a haptic write on an idle
+ * queue, and the time by command to drain a burst of period and haptic writes. The read drives the whole
+ * connection: from the request on the service thread to the reply on the client thread, through the queue, while
+ * the device streams the accelerometer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GattQueueBenchmark {
+
+    private static final long     TIMEOUT = 5000; //Milliseconds.
+    private static final byte[][] PERIODS = { { 0x0A }, { 0x14 } };
+    private static final byte[][] HAPTIC  = { { 0x01 }, { 0x02 } };
+
+    private static final UUID[][] PERIOD_TARGETS = {
+        { GattDeviceRemotte.TEMPERATURE_SERVICE, GattDeviceRemotte.TEMPERATURE_PERIOD_CHARACTERISTIC },
+        { GattDeviceRemotte.ACCELEROMETER_SERVICE, GattDeviceRemotte.ACCELEROMETER_PERIOD_CHARACTERISTIC },
+        { GattDeviceRemotte.GYROSCOPE_SERVICE, GattDeviceRemotte.GYROSCOPE_PERIOD_CHARACTERISTIC },
+        { GattDeviceRemotte.ALTIMETER_SERVICE, GattDeviceRemotte.ALTIMETER_PERIOD_CHARACTERISTIC }
+    };
+
+    /**
+     * The latency of every read and write of the simulated device, in milliseconds. 7 it's about the minimum
+     * connection interval of Bluetooth LE.
+     */
+    @Param({ "0", "7" })
+    public long writeLatency;
+
+    private RemotteSimulatedGattTransport mTransport;
+    private RemotteGattScheduler          mScheduler;
+    private HandlerThread                 mServiceThread;
+    private SimulatedDevice               mDevice;
+    private long                          mReads;
+    private int                           mBurst;
+    private final RemotteGattCommand[]    mCommands = new RemotteGattCommand[8];
+
+    @Setup
+    public void setUp() throws Exception {
+        mTransport = new RemotteSimulatedGattTransport(Remotte.Devices.REMOTTE, 1).setConnectionLatency(0).setWriteLatency(writeLatency, writeLatency);
+        mScheduler = new RemotteGattScheduler(new RemotteGattScheduler.CommandExecutor() {
+            @Override
+            public boolean execute(RemotteGattCommand command) {
+                return mTransport.writeCharacteristic(command.service, command.characteristic, command.value);
+            }
+        });
+
+        final CountDownLatch discovered = new CountDownLatch(1);
+        mTransport.connect(new SchedulerCallback() {
+            @Override
+            public void onConnectionStateChange(int status, int newState) {
+                if (newState == RemotteGattTransport.STATE_CONNECTED)
+                    mTransport.discoverServices();
+            }
+
+            @Override
+            public void onServicesDiscovered(boolean success) { discovered.countDown(); }
+        });
+        if (!discovered.await(TIMEOUT, TimeUnit.MILLISECONDS))
+            throw new RuntimeException("The simulated device has not been discovered.");
+
+        mServiceThread = new HandlerThread("RemotteService");
+        mServiceThread.start();
+        mDevice = new SimulatedDevice("00:00:00:00:00:01", 1, mServiceThread, new RemotteGattLayoutCache(null));
+        mDevice.getTransport().setWriteLatency(writeLatency, writeLatency).setNotificationRate(100);
+        mDevice.connect(new Remotte.Configuration().enableAccelerometerSensor(true, 100, new AccelerometerSensorCallback() {
+            @Override
+            public void onAccelerometerChange(Remotte remotte, double x, double y, double z) { }
+        }), true);
+        if (!mDevice.awaitSamples(1, TIMEOUT))
+            throw new RuntimeException("The simulated device has not sent any sample.");
+    }
+
+    @TearDown
+    public void tearDown() {
+        mDevice.close(TIMEOUT);
+        mServiceThread.quit();
+        mScheduler.shutdown();
+        mTransport.shutdown();
+    }
+
+    @Benchmark
+    public Integer hapticWrite() throws Exception {
+        return mScheduler.submit(newHapticWrite(HAPTIC[0])).get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The period values alternate between invocations, so the state cache never drops the writes.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OperationsPerInvocation(8)
+    public int burst() throws Exception {
+        byte[] period = PERIODS[mBurst++ & 1];
+        for (int i = 0; i < PERIOD_TARGETS.length; i++) {
+            mCommands[i * 2] = mScheduler.submit(new RemotteGattCommand(PERIOD_TARGETS[i][0], PERIOD_TARGETS[i][1], null,
+                    RemotteGattCommand.TYPE_WRITE, period, RemotteGattCommand.PRIORITY_NORMAL));
+            mCommands[i * 2 + 1] = mScheduler.submit(newHapticWrite(HAPTIC[i & 1]));
+        }
+
+        int status = 0;
+        for (RemotteGattCommand command : mCommands)
+            status |= command.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        return status;
+    }
+
+    @Benchmark
+    public long connectionRead() {
+        mDevice.readBatteryLevel();
+        if (!mDevice.awaitReads(++mReads, TIMEOUT))
+            throw new RuntimeException("The battery level has not been read.");
+        return mReads;
+    }
+
+    private static RemotteGattCommand newHapticWrite(byte[] value) {
+        return new RemotteGattCommand(GattDeviceRemotte.HAPTIC_SERVICE, GattDeviceRemotte.HAPTIC_DATA_CHARACTERISTIC, null,
+                RemotteGattCommand.TYPE_WRITE, value, RemotteGattCommand.PRIORITY_HIGH, false);
+    }
+
+    /**
+     * This callback complete the commands of the scheduler, the connection events are left to the benchmark.
+     */
+    private abstract class SchedulerCallback implements RemotteGattTransport.Callback {
+        @Override
+        public void onCharacteristicChanged(UUID characteristic, byte[] value) { }
+
+        @Override
+        public void onCharacteristicRead(UUID characteristic, byte[] value, int status) { mScheduler.onCommandCompleted(characteristic, null, status); }
+
+        @Override
+        public void onCharacteristicWrite(UUID characteristic, int status) { mScheduler.onCommandCompleted(characteristic, null, status); }
+
+        @Override
+        public void onDescriptorRead(UUID characteristic, UUID descriptor, byte[] value, int status) { mScheduler.onCommandCompleted(characteristic, descriptor, status); }
+
+        @Override
+        public void onDescriptorWrite(UUID characteristic, UUID descriptor, int status) { mScheduler.onCommandCompleted(characteristic, descriptor, status); }
+    }
+}
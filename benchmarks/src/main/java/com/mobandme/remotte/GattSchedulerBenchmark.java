@@ -0,0 +1,93 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measure the overhead of the GATT queue: submit, dispatch on the owner thread and completion. The
+ * device answer at once, so the result it's the cost of the scheduler and not the Bluetooth latency.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GattSchedulerBenchmark {
+
+    private static final byte[] PERIOD_FAST = { 0x0A };
+    private static final byte[] PERIOD_SLOW = { 0x64 };
+
+    private RemotteGattScheduler mScheduler;
+    private boolean              mToggle;
+
+    @Setup
+    public void setUp() {
+        mScheduler = new RemotteGattScheduler(new RemotteGattScheduler.CommandExecutor() {
+            @Override
+            public boolean execute(RemotteGattCommand command) {
+                mScheduler.onCommandCompleted(command.characteristic, command.descriptor, RemotteGattCommand.STATUS_SUCCESS);
+                return true;
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        mScheduler.shutdown();
+    }
+
+    /**
+     * The written value alternate, so the state cache never drop the write.
+     */
+    @Benchmark
+    public Integer writeRoundTrip() throws Exception {
+        mToggle = !mToggle;
+        return mScheduler.submit(new RemotteGattCommand(GattDeviceRemotte.GYROSCOPE_SERVICE, GattDeviceRemotte.GYROSCOPE_PERIOD_CHARACTERISTIC, null,
+                RemotteGattCommand.TYPE_WRITE, (mToggle ? PERIOD_FAST : PERIOD_SLOW), RemotteGattCommand.PRIORITY_NORMAL)).get();
+    }
+
+    /**
+     * The value it's the same every time, the state cache answer without go on air.
+     */
+    @Benchmark
+    public Integer redundantWrite() throws Exception {
+        return mScheduler.submit(new RemotteGattCommand(GattDeviceRemotte.GYROSCOPE_SERVICE, GattDeviceRemotte.GYROSCOPE_PERIOD_CHARACTERISTIC, null,
+                RemotteGattCommand.TYPE_WRITE, PERIOD_FAST, RemotteGattCommand.PRIORITY_NORMAL)).get();
+    }
+
+    @Benchmark
+    public Integer readRoundTrip() throws Exception {
+        return mScheduler.submit(new RemotteGattCommand(GattDeviceRemotte.BATTERY_SERVICE, GattDeviceRemotte.BATTERY_LEVEL_CHARACTERISTIC, null,
+                RemotteGattCommand.TYPE_READ, RemotteGattCommand.PRIORITY_HIGH)).get();
+    }
+}
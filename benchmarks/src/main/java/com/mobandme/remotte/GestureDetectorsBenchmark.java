@@ -0,0 +1,81 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measure one sample of the built in gesture detectors, the cost must not grow with the size of their
+ * windows and they should report 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GestureDetectorsBenchmark {
+
+    @Param({ "SHAKE", "TILT", "FLICK", "DOUBLE_TAP" })
+    public String gesture;
+
+    @Param({ "500", "5000" })
+    public long window;
+
+    private RemotteGestureDetector mDetector;
+    private boolean                mGyroscope;
+    private long                   mTimestamp;
+
+    @Setup
+    public void setUp() {
+        if ("SHAKE".equals(gesture))
+            mDetector = new RemotteGestureDetector.Shake(RemotteGestureDetector.Shake.DEFAULT_THRESHOLD, window, window);
+        else if ("TILT".equals(gesture))
+            mDetector = new RemotteGestureDetector.Tilt(RemotteGestureDetector.Tilt.DEFAULT_ANGLE, window);
+        else if ("FLICK".equals(gesture))
+            mDetector = new RemotteGestureDetector.Flick(RemotteGestureDetector.Flick.DEFAULT_THRESHOLD, window, window);
+        else
+            mDetector = new RemotteGestureDetector.DoubleTap(RemotteGestureDetector.DoubleTap.DEFAULT_THRESHOLD, 80, window);
+
+        mGyroscope = (mDetector.getSensors() == RemotteGestureDetector.SENSOR_GYROSCOPE);
+    }
+
+    @Benchmark
+    public long sample() {
+        mTimestamp += 10; //100 Hz.
+        double value = ((mTimestamp / 10) % 50) * 0.05; //A slow saw, so the detectors don't stay idle.
+        if (mGyroscope)
+            mDetector.onGyroscopeSample(mTimestamp, value * 100, 0, 0);
+        else
+            mDetector.onAccelerometerSample(mTimestamp, value, 0, 1);
+        return mTimestamp;
+    }
+}
@@ -0,0 +1,142 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import android.os.HandlerThread;
+
+import com.mobandme.remotte.listener.AccelerometerSensorCallback;
+import com.mobandme.remotte.listener.GyroscopeSensorCallback;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark drives several simulated devices at once through the connections of the service, all of them on
+ * the same service thread like on {@link RemotteService}. Every device streams the accelerometer and the gyroscope,
+ * every operation waits until each client has received {@link #ROUND} more samples.
+ *
+ * The samples counter reports the samples by second received by all the clients, compare it with the offered load
+ * (devices * 2 sensors * rate): while the service keeps up they are the same and the rounds take ROUND / (2 * rate)
+ * seconds. A round that times out fails the benchmark, so a device that stops receiving samples it's detected.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiDeviceThroughputBenchmark {
+
+    static final int          ROUND = 50;
+    private static final long TIMEOUT = 10000; //Milliseconds.
+
+    @Param({ "1", "4", "8" })
+    public int devices;
+
+    /**
+     * The notifications by second of every sensor of every device.
+     */
+    @Param({ "100", "500" })
+    public int rate;
+
+    private HandlerThread     mServiceThread;
+    private SimulatedDevice[] mDevices;
+    private long[]            mTargets;
+
+    /**
+     * The samples received by all the clients, reported by second.
+     */
+    @AuxCounters
+    @State(Scope.Thread)
+    public static class Counters {
+        public long samples;
+
+        @Setup(Level.Iteration)
+        public void reset() { samples = 0; }
+    }
+
+    @Setup
+    public void setUp() {
+        mServiceThread = new HandlerThread("RemotteService");
+        mServiceThread.start();
+
+        Remotte.Configuration configuration = new Remotte.Configuration()
+                .enableAccelerometerSensor(true, 100, new AccelerometerSensorCallback() {
+                    @Override
+                    public void onAccelerometerChange(Remotte remotte, double x, double y, double z) { }
+                })
+                .enableGyroscopeSensor(true, 100, new GyroscopeSensorCallback() {
+                    @Override
+                    public void onGyroscopeChange(Remotte remotte, double x, double y, double z) { }
+                });
+
+        RemotteGattLayoutCache layoutCache = new RemotteGattLayoutCache(null);
+        mDevices = new SimulatedDevice[devices];
+        mTargets = new long[devices];
+        for (int i = 0; i < devices; i++) {
+            mDevices[i] = new SimulatedDevice(String.format("00:00:00:00:00:%02X", i + 1), i + 1, mServiceThread, layoutCache);
+            mDevices[i].getTransport().setNotificationRate(rate);
+            mDevices[i].connect(configuration, true);
+        }
+
+        for (SimulatedDevice device : mDevices)
+            if (!device.awaitSamples(1, TIMEOUT))
+                throw new RuntimeException("A simulated device has not sent any sample.");
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (SimulatedDevice device : mDevices)
+            device.close(TIMEOUT);
+        mServiceThread.quit();
+    }
+
+    @Benchmark
+    public long round(Counters counters) {
+        long received = 0;
+        for (int i = 0; i < mDevices.length; i++) {
+            long samples = mDevices[i].getSamples();
+            mTargets[i] = samples + ROUND;
+            received -= samples;
+        }
+
+        for (int i = 0; i < mDevices.length; i++) {
+            if (!mDevices[i].awaitSamples(mTargets[i], TIMEOUT))
+                throw new RuntimeException("The simulated device " + i + " has stopped sending samples.");
+            received += mDevices[i].getSamples();
+        }
+
+        counters.samples += received;
+        return received;
+    }
+}
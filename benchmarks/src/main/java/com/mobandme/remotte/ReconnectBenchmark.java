@@ -0,0 +1,105 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import android.os.HandlerThread;
+
+import com.mobandme.remotte.listener.AccelerometerSensorCallback;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measure the automatic reconnection of a simulated device: every iteration drops the connection
+ * and waits until it's recovered, or until the client receives the first sample after the recovery.
+ *
+ * The device takes 100 ms to connect and 100 ms to discover its services, 8 to 15 ms by GATT operation and notifies
+ * at 100 Hz. The first attempt waits between 100 and 200 ms, half of the 200 ms initial delay it's random.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ReconnectBenchmark {
+
+    private static final long TIMEOUT = 10000; //Milliseconds.
+
+    private HandlerThread   mServiceThread;
+    private SimulatedDevice mDevice;
+    private int             mRecoveries;
+
+    @Setup
+    public void setUp() {
+        mServiceThread = new HandlerThread("RemotteService");
+        mServiceThread.start();
+
+        mDevice = new SimulatedDevice("00:00:00:00:00:01", 1, mServiceThread, new RemotteGattLayoutCache(null));
+        mDevice.getTransport().setConnectionLatency(100).setWriteLatency(8, 15).setNotificationRate(100);
+        mDevice.connect(new Remotte.Configuration()
+                .enableAutoReconnect(5, 200, 2000)
+                .enableAccelerometerSensor(true, 100, new AccelerometerSensorCallback() {
+                    @Override
+                    public void onAccelerometerChange(Remotte remotte, double x, double y, double z) { }
+                }), true);
+        if (!mDevice.awaitSamples(1, TIMEOUT))
+            throw new RuntimeException("The simulated device has not sent any sample.");
+    }
+
+    @TearDown
+    public void tearDown() {
+        mDevice.close(TIMEOUT);
+        mServiceThread.quit();
+    }
+
+    /**
+     * @return Returns the time to recover reported by the service, in milliseconds.
+     */
+    @Benchmark
+    public long timeToRecover() {
+        recover();
+        return mDevice.getLastTimeToRecover();
+    }
+
+    @Benchmark
+    public long timeToFirstSampleAfterRecovery() {
+        recover();
+        if (!mDevice.awaitSamples(mDevice.getSamplesAtRecovery() + 1, TIMEOUT))
+            throw new RuntimeException("The simulated device has not sent any sample after the recovery.");
+        return mDevice.getSamples();
+    }
+
+    private void recover() {
+        mDevice.getTransport().injectDisconnect();
+        if (!mDevice.awaitRecoveries(++mRecoveries, TIMEOUT))
+            throw new RuntimeException("The connection has not been recovered.");
+    }
+}
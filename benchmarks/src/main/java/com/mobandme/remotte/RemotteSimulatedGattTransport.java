@@ -0,0 +1,591 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class it's a simulated Remotte or Sensor Tag device behind the GATT transport interface. It does not need
+ * Android nor Bluetooth, so it can run on any JVM to test and benchmark the GATT queue and the samples pipeline.
+ * It lives in the benchmarks module, it's not shipped with the SDK.
+ *
+ * The simulated device honours the configuration, period and client configuration writes like the real one, and
+ * emits the notifications of the enabled sensors with an optional jitter. It can also inject write latency,
+ * dropped callbacks and disconnections. All the device events are delivered from a single simulator thread.
+ */
+final class RemotteSimulatedGattTransport implements RemotteGattTransport {
+
+    static final int GATT_CONNECTION_TIMEOUT = 8; //Status reported by Android when the link it's lost.
+
+    private static final byte[] CALIBRATION = { (byte)0xD6, (byte)0xB6, (byte)0x7B, (byte)0xBC, (byte)0xD8, (byte)0xC4, (byte)0xDB, (byte)0x0B,
+                                                (byte)0x4C, (byte)0x19, (byte)0x00, (byte)0x00, (byte)0x70, (byte)0xE4, (byte)0x1B, (byte)0x09 };
+
+    private final int                        mDeviceType;
+    private final Random                     mRandom;
+    private final ScheduledExecutorService   mDevice;
+    private final Map<UUID, SimulatedSensor> mSensors = new HashMap<UUID, SimulatedSensor>();
+    private final Set<UUID>                  mCharacteristics = new HashSet<UUID>();
+    private final Map<String, byte[]>        mValues = new HashMap<String, byte[]>();
+    private final AtomicBoolean              mBusy = new AtomicBoolean(false);
+    private final Statistics                 mStatistics = new Statistics();
+    private final SimulatedSensor            mKeys;
+
+    private volatile Callback                mCallback;
+    private volatile int                     mState = STATE_DISCONNECTED;
+    private volatile boolean                 mDiscovered = false; //Like Android, the characteristics are unknown until the discovery.
+    private          ScheduledFuture<?>      mDisconnection;
+
+    private volatile long                    mConnectionLatency = 50;  //Milliseconds.
+    private volatile long                    mMinWriteLatency = 5;     //Milliseconds.
+    private volatile long                    mMaxWriteLatency = 15;    //Milliseconds.
+    private volatile long                    mJitter = 0;              //Microseconds.
+    private volatile int                     mNotificationRate = 0;    //Hertz, 0 to honour the period characteristics.
+    private volatile double                  mDropRate = 0;
+    private volatile long                    mDisconnectInterval = 0;  //Milliseconds, 0 to never disconnect.
+
+    /**
+     * @param deviceType Use Remotte.Devices.REMOTTE or Remotte.Devices.SENSOR_TAG.
+     * @param seed The seed of the simulated values and faults, the same seed repeats the same sequence.
+     */
+    public RemotteSimulatedGattTransport(int deviceType, long seed) {
+        mDeviceType = deviceType;
+        mRandom = new Random(seed);
+        mDevice = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "RemotteGattSimulator");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        addSensor(new SimulatedSensor(GattDeviceRemotte.TEMPERATURE_SERVICE, GattDeviceRemotte.TEMPERATURE_DATA_CHARACTERISTIC, GattDeviceRemotte.TEMPERATURE_CONFIG_CHARACTERISTIC, GattDeviceRemotte.TEMPERATURE_PERIOD_CHARACTERISTIC, 4));
+        addSensor(new SimulatedSensor(GattDeviceRemotte.ACCELEROMETER_SERVICE, GattDeviceRemotte.ACCELEROMETER_DATA_CHARACTERISTIC, GattDeviceRemotte.ACCELEROMETER_CONFIG_CHARACTERISTIC, GattDeviceRemotte.ACCELEROMETER_PERIOD_CHARACTERISTIC, 3));
+        addSensor(new SimulatedSensor(GattDeviceRemotte.GYROSCOPE_SERVICE, GattDeviceRemotte.GYROSCOPE_DATA_CHARACTERISTIC, GattDeviceRemotte.GYROSCOPE_CONFIG_CHARACTERISTIC, GattDeviceRemotte.GYROSCOPE_PERIOD_CHARACTERISTIC, 6));
+        addSensor(new SimulatedSensor(GattDeviceRemotte.ALTIMETER_SERVICE, GattDeviceRemotte.ALTIMETER_DATA_CHARACTERISTIC, GattDeviceRemotte.ALTIMETER_CONFIG_CHARACTERISTIC, GattDeviceRemotte.ALTIMETER_PERIOD_CHARACTERISTIC, 4));
+        mKeys = addSensor(new SimulatedSensor(GattDeviceRemotte.KEY_SERVICE, GattDeviceRemotte.KEY_DATA_CHARACTERISTIC, null, null, 1));
+
+        mCharacteristics.add(GattDeviceRemotte.ALTIMETER_CALIBRATION_CHARACTERITIC);
+        mCharacteristics.add(GattDeviceRemotte.BATTERY_LEVEL_CHARACTERISTIC);
+        mCharacteristics.add(GattDeviceRemotte.DEVICE_INFO_MANUFACTURER_NAME_CHARACTERISTIC);
+        mCharacteristics.add(GattDeviceRemotte.DEVICE_INFO_FIRMWARE_REVISION_CHARACTERISTIC);
+        if (deviceType == Remotte.Devices.REMOTTE)
+            mCharacteristics.add(GattDeviceRemotte.HAPTIC_DATA_CHARACTERISTIC);
+
+        mValues.put(RemotteGattCommand.getTarget(GattDeviceRemotte.ALTIMETER_CALIBRATION_CHARACTERITIC, null), CALIBRATION);
+        mValues.put(RemotteGattCommand.getTarget(GattDeviceRemotte.BATTERY_LEVEL_CHARACTERISTIC, null), new byte[] { 0x64 });
+        mValues.put(RemotteGattCommand.getTarget(GattDeviceRemotte.DEVICE_INFO_MANUFACTURER_NAME_CHARACTERISTIC, null), "Mob&Me".getBytes());
+        mValues.put(RemotteGattCommand.getTarget(GattDeviceRemotte.DEVICE_INFO_FIRMWARE_REVISION_CHARACTERISTIC, null), "1.0 (Simulated)".getBytes());
+    }
+
+    private SimulatedSensor addSensor(SimulatedSensor sensor) {
+        mSensors.put(sensor.mData, sensor);
+        mCharacteristics.add(sensor.mData);
+        if (sensor.mConfig != null) {
+            mSensors.put(sensor.mConfig, sensor);
+            mCharacteristics.add(sensor.mConfig);
+        }
+        if (sensor.mPeriod != null) {
+            mSensors.put(sensor.mPeriod, sensor);
+            mCharacteristics.add(sensor.mPeriod);
+        }
+        return sensor;
+    }
+
+    /**
+     * Use this method to set the time between the connection request and the connected state, it's also the
+     * time of the services discovery.
+     * @param latency The latency in milliseconds.
+     */
+    public RemotteSimulatedGattTransport setConnectionLatency(long latency) { mConnectionLatency = latency; return this; }
+
+    /**
+     * Use this method to set the time that the device takes to answer the reads and writes.
+     * @param minLatency The minimum latency in milliseconds.
+     * @param maxLatency The maximum latency in milliseconds.
+     */
+    public RemotteSimulatedGattTransport setWriteLatency(long minLatency, long maxLatency) {
+        if (minLatency < 0 || maxLatency < minLatency)
+            throw new RuntimeException("Invalid write latency.");
+
+        mMinWriteLatency = minLatency;
+        mMaxWriteLatency = maxLatency;
+        return this;
+    }
+
+    /**
+     * Use this method to emit the notifications at a fixed rate, instead of the period written by the client.
+     * @param rate The notifications per second of every sensor, pass 0 to honour the period characteristics.
+     */
+    public RemotteSimulatedGattTransport setNotificationRate(int rate) {
+        if (rate < 0)
+            throw new RuntimeException("Invalid notification rate.");
+
+        mNotificationRate = rate;
+        return this;
+    }
+
+    /**
+     * Use this method to move every notification a random time around its period.
+     * @param jitter The maximum deviation in microseconds.
+     */
+    public RemotteSimulatedGattTransport setNotificationJitter(long jitter) { mJitter = Math.max(0, jitter); return this; }
+
+    /**
+     * Use this method to lose the callback of some reads and writes, like a device that does not answer.
+     * @param dropRate The probability, from 0 to 1, of lose a callback.
+     */
+    public RemotteSimulatedGattTransport setCallbackDropRate(double dropRate) {
+        if (dropRate < 0 || dropRate > 1)
+            throw new RuntimeException("Invalid drop rate, it must be between 0 and 1.");
+
+        mDropRate = dropRate;
+        return this;
+    }
+
+    /**
+     * Use this method to lose the connection randomly.
+     * @param meanInterval The mean time in milliseconds between disconnections, pass 0 to never disconnect.
+     */
+    public RemotteSimulatedGattTransport setDisconnectInterval(long meanInterval) { mDisconnectInterval = Math.max(0, meanInterval); return this; }
+
+    /**
+     * Use this method to lose the connection now.
+     */
+    public void injectDisconnect() {
+        post(new Runnable() {
+            @Override
+            public void run() { onDisconnected(GATT_CONNECTION_TIMEOUT); }
+        });
+    }
+
+    /**
+     * Use this method to press a key of the device.
+     * @param key The raw value of the keys characteristic, 1 for the center key or 2 for the power key.
+     */
+    public void pressKey(final int key) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (mKeys.isNotifying())
+                    emit(mKeys.mData, new byte[] { (byte)key });
+            }
+        });
+    }
+
+    /**
+     * Use this method to release the simulator thread. The transport can't be used after that.
+     */
+    public void shutdown() {
+        mDevice.shutdownNow();
+    }
+
+    /**
+     * Use this method to retrieve a snapshot of the simulator statistics.
+     * @return Returns a copy of the current statistics.
+     */
+    public Statistics getStatistics() {
+        synchronized (mStatistics) {
+            return mStatistics.copy();
+        }
+    }
+
+    @Override
+    public void connect(final Callback callback) {
+        mCallback = callback;
+        mState = STATE_CONNECTING;
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (mState != STATE_CONNECTING)
+                    return;
+
+                mState = STATE_CONNECTED;
+                scheduleDisconnection();
+                if (mCallback != null)
+                    mCallback.onConnectionStateChange(GATT_SUCCESS, STATE_CONNECTED);
+            }
+        }, mConnectionLatency * 1000);
+    }
+
+    @Override
+    public void disconnect() {
+        post(new Runnable() {
+            @Override
+            public void run() { onDisconnected(GATT_SUCCESS); }
+        });
+    }
+
+    @Override
+    public boolean isConnected() { return (mState == STATE_CONNECTED); }
+
+    @Override
+    public boolean discoverServices() {
+        if (!isConnected())
+            return false;
+
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (isConnected() && mCallback != null) {
+                    mDiscovered = true;
+                    mCallback.onServicesDiscovered(true);
+                }
+            }
+        }, mConnectionLatency * 1000);
+        return true;
+    }
+
+    @Override
+    public Set<UUID> getCharacteristics() { return (mDiscovered ? Collections.unmodifiableSet(mCharacteristics) : Collections.<UUID>emptySet()); }
+
+    @Override
+    public boolean hasCharacteristic(UUID service, UUID characteristic) { return (mDiscovered && mCharacteristics.contains(characteristic)); }
+
+    @Override
+    public boolean setCharacteristicNotification(UUID service, final UUID characteristic, final boolean enabled) {
+        final SimulatedSensor sensor = mSensors.get(characteristic);
+        if (!mDiscovered || sensor == null || !characteristic.equals(sensor.mData))
+            return false;
+
+        post(new Runnable() {
+            @Override
+            public void run() {
+                sensor.mLocalNotification = enabled;
+                sensor.update();
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean readCharacteristic(UUID service, final UUID characteristic) {
+        if (!hasCharacteristic(service, characteristic) || !startOperation())
+            return false;
+
+        scheduleOperation(new Runnable() {
+            @Override
+            public void run() {
+                byte[] value = mValues.get(RemotteGattCommand.getTarget(characteristic, null));
+                mCallback.onCharacteristicRead(characteristic, (value != null ? value.clone() : new byte[0]), GATT_SUCCESS);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean writeCharacteristic(UUID service, final UUID characteristic, byte[] value) {
+        if (!hasCharacteristic(service, characteristic) || value == null || !startOperation())
+            return false;
+
+        final byte[] written = value.clone();
+        scheduleOperation(new Runnable() {
+            @Override
+            public void run() {
+                mValues.put(RemotteGattCommand.getTarget(characteristic, null), written);
+
+                SimulatedSensor sensor = mSensors.get(characteristic);
+                if (sensor != null) {
+                    if (characteristic.equals(sensor.mConfig))
+                        sensor.mEnabled = (written.length > 0 && written[0] != 0);
+                    else if (characteristic.equals(sensor.mPeriod) && written.length > 0)
+                        sensor.mPeriodTime = (written[0] & 0xFF) * 10000L;
+                    sensor.update();
+                }
+
+                mCallback.onCharacteristicWrite(characteristic, GATT_SUCCESS);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean readDescriptor(UUID service, final UUID characteristic, final UUID descriptor) {
+        if (!mDiscovered || !mSensors.containsKey(characteristic) || !startOperation())
+            return false;
+
+        scheduleOperation(new Runnable() {
+            @Override
+            public void run() {
+                byte[] value = mValues.get(RemotteGattCommand.getTarget(characteristic, descriptor));
+                mCallback.onDescriptorRead(characteristic, descriptor, (value != null ? value.clone() : GattDevice.DISABLE_NOTIFICATION.clone()), GATT_SUCCESS);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean writeDescriptor(UUID service, final UUID characteristic, final UUID descriptor, byte[] value) {
+        final SimulatedSensor sensor = mSensors.get(characteristic);
+        if (!mDiscovered || sensor == null || !characteristic.equals(sensor.mData) || value == null || !startOperation())
+            return false;
+
+        final byte[] written = value.clone();
+        scheduleOperation(new Runnable() {
+            @Override
+            public void run() {
+                mValues.put(RemotteGattCommand.getTarget(characteristic, descriptor), written);
+                if (GattDevice.CLIENT_CHARACTERISTIC_CONFIG.equals(descriptor)) {
+                    sensor.mRemoteNotification = Arrays.equals(written, GattDevice.ENABLE_NOTIFICATION);
+                    sensor.update();
+                }
+
+                mCallback.onDescriptorWrite(characteristic, descriptor, GATT_SUCCESS);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Like the Android GATT stack, only one operation can be on air.
+     */
+    private boolean startOperation() {
+        if (!isConnected())
+            return false;
+
+        if (!mBusy.compareAndSet(false, true)) {
+            synchronized (mStatistics) {
+                mStatistics.rejectedOperations++;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private void scheduleOperation(final Runnable operation) {
+        long latency = mMinWriteLatency * 1000 + (long)(mRandom.nextDouble() * (mMaxWriteLatency - mMinWriteLatency) * 1000);
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                mBusy.set(false);
+                if (!isConnected() || mCallback == null)
+                    return;
+
+                synchronized (mStatistics) {
+                    mStatistics.operations++;
+                }
+
+                if (mDropRate > 0 && mRandom.nextDouble() < mDropRate) {
+                    synchronized (mStatistics) {
+                        mStatistics.droppedCallbacks++;
+                    }
+                    return;
+                }
+                operation.run();
+            }
+        }, latency);
+    }
+
+    private void scheduleDisconnection() {
+        if (mDisconnection != null)
+            mDisconnection.cancel(false);
+        mDisconnection = null;
+
+        if (mDisconnectInterval > 0) {
+            //Exponential distribution, the disconnections are independent between them.
+            long delay = (long)(-Math.log(1 - mRandom.nextDouble()) * mDisconnectInterval * 1000);
+            mDisconnection = schedule(new Runnable() {
+                @Override
+                public void run() { onDisconnected(GATT_CONNECTION_TIMEOUT); }
+            }, delay);
+        }
+    }
+
+    private void onDisconnected(int status) {
+        if (mState == STATE_DISCONNECTED)
+            return;
+
+        mState = STATE_DISCONNECTED;
+        mDiscovered = false;
+        mBusy.set(false);
+        if (mDisconnection != null)
+            mDisconnection.cancel(false);
+        mDisconnection = null;
+
+        //The device forgets its configuration.
+        for (SimulatedSensor sensor : mSensors.values())
+            sensor.reset();
+
+        if (status != GATT_SUCCESS) {
+            synchronized (mStatistics) {
+                mStatistics.disconnections++;
+            }
+        }
+
+        if (mCallback != null)
+            mCallback.onConnectionStateChange(status, STATE_DISCONNECTED);
+    }
+
+    private void emit(UUID characteristic, byte[] value) {
+        synchronized (mStatistics) {
+            mStatistics.notifications++;
+        }
+
+        Callback callback = mCallback;
+        if (callback != null)
+            callback.onCharacteristicChanged(characteristic, value);
+    }
+
+    private void post(Runnable task) {
+        if (!mDevice.isShutdown())
+            mDevice.execute(task);
+    }
+
+    private ScheduledFuture<?> schedule(Runnable task, long delay) {
+        if (mDevice.isShutdown())
+            return null;
+        return mDevice.schedule(task, delay, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * This class simulate one sensor of the device, it's owned by the simulator thread.
+     */
+    private final class SimulatedSensor implements Runnable {
+        private final UUID               mService;
+        private final UUID               mData;
+        private final UUID               mConfig;
+        private final UUID               mPeriod;
+        private final int                mSize;
+        private       boolean            mEnabled;
+        private       boolean            mLocalNotification;
+        private       boolean            mRemoteNotification;
+        private       long               mPeriodTime;  //Microseconds.
+        private       ScheduledFuture<?> mNext;
+        private       int                mSequence;
+
+        public SimulatedSensor(UUID service, UUID data, UUID config, UUID period, int size) {
+            mService = service;
+            mData = data;
+            mConfig = config;
+            mPeriod = period;
+            mSize = size;
+            reset();
+        }
+
+        public boolean isNotifying() { return (isConnected() && mLocalNotification && mRemoteNotification); }
+
+        public void reset() {
+            stop();
+            mEnabled = (mConfig == null);
+            mLocalNotification = false;
+            mRemoteNotification = false;
+            mPeriodTime = 1000000; //Same default as the real device.
+        }
+
+        /**
+         * Use this method to start or stop the notifications after a change of the sensor state.
+         */
+        public void update() {
+            stop();
+            if (mConfig != null && mEnabled && isNotifying())
+                scheduleNext();
+        }
+
+        private void stop() {
+            if (mNext != null)
+                mNext.cancel(false);
+            mNext = null;
+        }
+
+        private void scheduleNext() {
+            long period = (mNotificationRate > 0 ? 1000000L / mNotificationRate : mPeriodTime);
+            long jitter = mJitter;
+            if (jitter > 0)
+                period += (long)((mRandom.nextDouble() * 2 - 1) * jitter);
+            mNext = schedule(this, Math.max(0, period));
+        }
+
+        @Override
+        public void run() {
+            if (!mEnabled || !isNotifying())
+                return;
+
+            emit(mData, nextSample());
+            scheduleNext();
+        }
+
+        /**
+         * Use this method to build a new sample, every notification has its own array like on Android.
+         */
+        private byte[] nextSample() {
+            byte[] sample = new byte[mSize];
+            mRandom.nextBytes(sample);
+            mSequence++;
+
+            if (mData.equals(GattDeviceRemotte.TEMPERATURE_DATA_CHARACTERISTIC)) {
+                //About 25 degrees, the ambient temperature it's the unsigned short at offset 2 divided by 128.
+                int ambient = 3200 + (sample[2] & 0x0F);
+                sample[2] = (byte)ambient;
+                sample[3] = (byte)(ambient >> 8);
+            } else if (mData.equals(GattDeviceRemotte.ALTIMETER_DATA_CHARACTERISTIC)) {
+                //Stable temperature and pressure raw values with a little noise.
+                sample[0] = (byte)0x80;
+                sample[1] = (byte)0x5E;
+                sample[3] = (byte)0x9C;
+            } else if (mData.equals(GattDeviceRemotte.ACCELEROMETER_DATA_CHARACTERISTIC)) {
+                //Around 1g on the Z axis.
+                sample[0] = (byte)(sample[0] >> 4);
+                sample[1] = (byte)(sample[1] >> 4);
+                sample[2] = (byte)(64 + (sample[2] >> 4));
+            }
+            return sample;
+        }
+    }
+
+    /**
+     * This class contains the counters of the simulator.
+     */
+    static final class Statistics {
+        public long notifications;
+        public long operations;
+        public long rejectedOperations; //Reads and writes requested while other operation was on air.
+        public long droppedCallbacks;
+        public long disconnections;
+
+        private Statistics copy() {
+            Statistics statistics = new Statistics();
+            statistics.notifications = notifications;
+            statistics.operations = operations;
+            statistics.rejectedOperations = rejectedOperations;
+            statistics.droppedCallbacks = droppedCallbacks;
+            statistics.disconnections = disconnections;
+            return statistics;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Simulated notifications %d, operations %d, rejected %d, dropped callbacks %d, disconnections %d.",
+                    notifications, operations, rejectedOperations, droppedCallbacks, disconnections);
+        }
+    }
+}
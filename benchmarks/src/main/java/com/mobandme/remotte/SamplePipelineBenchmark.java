@@ -0,0 +1,72 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measure one sample of the sample pipelines of the service, with a moving average and decimation and
+ * with the window statistics. The cost must not grow with the window and they should report 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SamplePipelineBenchmark {
+
+    @Param({ "MOVING_AVERAGE", "VALUES", "MAGNITUDE" })
+    public String stage;
+
+    @Param({ "1000", "30000" })
+    public int window;
+
+    private RemotteSamplePipeline mPipeline;
+    private long                  mTimestamp;
+
+    @Setup
+    public void setUp() {
+        if ("MOVING_AVERAGE".equals(stage))
+            mPipeline = new RemotteSamplePipeline(4, window / 100, RemotteSampleAggregate.INPUT_VALUES, 0, 0);
+        else if ("VALUES".equals(stage))
+            mPipeline = new RemotteSamplePipeline(0, 1, RemotteSampleAggregate.INPUT_VALUES, window, window / 4);
+        else
+            mPipeline = new RemotteSamplePipeline(0, 1, RemotteSampleAggregate.INPUT_MAGNITUDE, window, window / 4);
+    }
+
+    @Benchmark
+    public int sample() {
+        mTimestamp += 10; //100 Hz.
+        double value = ((mTimestamp / 10) % 50) * 0.05; //A slow saw, so the minimum and the maximum change.
+        return mPipeline.add(mTimestamp, value, -value, 1);
+    }
+}
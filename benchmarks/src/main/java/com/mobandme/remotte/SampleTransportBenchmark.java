@@ -0,0 +1,100 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measure the allocations of an accelerometer sample on its way from the service to the client, run
+ * it with -Pinclude=SampleTransport and compare the gc.alloc.rate.norm of both paths.
+ *
+ * The legacy path it's the one the packed samples replaced: the service converted the value into a new value object,
+ * wrote every axis as a boxed double under a string key of a Bundle and the client read them back. The Bundle can't
+ * run on the JVM, so it's modelled by a HashMap, the ArrayMap inside the Bundle allocates at least the same. The
+ * packed path encode the raw value into arg1 and arg2 with {@link RemotteSampleCodec} and the client decode it into
+ * reused arrays, it should report 0 B/op. The Message it's left out of both paths, Android recycles it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleTransportBenchmark {
+
+    private static final String EXTRA_VALUE_X = "EXTRA_ACCELEROMETER_VALUE_X";
+    private static final String EXTRA_VALUE_Y = "EXTRA_ACCELEROMETER_VALUE_Y";
+    private static final String EXTRA_VALUE_Z = "EXTRA_ACCELEROMETER_VALUE_Z";
+
+    @Param({ "REMOTTE", "SENSOR_TAG" })
+    public String device;
+
+    private int            mDeviceType;
+    private long           mTimestamp;
+    private final byte[]   mPayload = new byte[RemotteSampleCodec.MAX_PAYLOAD];
+    private final double[] mValues = new double[3];
+
+    @Setup
+    public void setUp() {
+        mDeviceType = BenchmarkPayloads.getDeviceType(device);
+    }
+
+    @Benchmark
+    public double legacy() {
+        //Service side.
+        double[] value = new double[3];
+        RemotteSensorAccelerometer.convert(mDeviceType, BenchmarkPayloads.ACCELEROMETER, value);
+
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put(EXTRA_VALUE_X, value[0]);
+        data.put(EXTRA_VALUE_Y, value[1]);
+        data.put(EXTRA_VALUE_Z, value[2]);
+
+        //Client side.
+        return ((Double)data.get(EXTRA_VALUE_X)) + ((Double)data.get(EXTRA_VALUE_Y)) + ((Double)data.get(EXTRA_VALUE_Z));
+    }
+
+    @Benchmark
+    public double packed() {
+        //Service side.
+        long timestamp = ++mTimestamp;
+        int low = RemotteSampleCodec.packLow(BenchmarkPayloads.ACCELEROMETER);
+        int high = RemotteSampleCodec.packHigh(BenchmarkPayloads.ACCELEROMETER, timestamp);
+
+        //Client side.
+        RemotteSampleCodec.unpack(low, high, mPayload);
+        long sampleTimestamp = RemotteSampleCodec.unpackTimestamp(high, timestamp);
+        RemotteSensorAccelerometer.convert(mDeviceType, mPayload, mValues);
+        return mValues[0] + mValues[1] + mValues[2] + sampleTimestamp;
+    }
+}
@@ -0,0 +1,99 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measure the sensor adapters that convert the raw GATT values, the decoders write into reused arrays
+ * so they should report 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensorDecodersBenchmark {
+
+    @Param({ "REMOTTE", "SENSOR_TAG" })
+    public String device;
+
+    private int                    mDeviceType;
+    private RemotteSensorAltimeter mAltimeter;
+    private final double[]         mValues = new double[3];
+    private final int[]            mKeys = new int[2];
+
+    @Setup
+    public void setUp() {
+        mDeviceType = BenchmarkPayloads.getDeviceType(device);
+        mAltimeter = new RemotteSensorAltimeter();
+        mAltimeter.setCalibration(BenchmarkPayloads.CALIBRATION);
+        mAltimeter.convert(mDeviceType, BenchmarkPayloads.ALTIMETER, mValues); //The first sample it's the height reference.
+    }
+
+    @Benchmark
+    public double temperature() {
+        return RemotteSensorTemperature.convert(mDeviceType, BenchmarkPayloads.TEMPERATURE);
+    }
+
+    @Benchmark
+    public double[] accelerometer() {
+        RemotteSensorAccelerometer.convert(mDeviceType, BenchmarkPayloads.ACCELEROMETER, mValues);
+        return mValues;
+    }
+
+    @Benchmark
+    public double[] gyroscope() {
+        RemotteSensorGyroscope.convert(mDeviceType, BenchmarkPayloads.GYROSCOPE, mValues);
+        return mValues;
+    }
+
+    @Benchmark
+    public double[] altimeter() {
+        mAltimeter.convert(mDeviceType, BenchmarkPayloads.ALTIMETER, mValues);
+        return mValues;
+    }
+
+    @Benchmark
+    public int[] keys() {
+        RemotteSensorKeys.convert(mDeviceType, BenchmarkPayloads.KEYS, mKeys);
+        return mKeys;
+    }
+
+    /**
+     * The hex dump it's only used by the logs, it's here to keep an eye on the cost of the debug builds.
+     */
+    @Benchmark
+    public String bytesToHex() {
+        return RemotteSensor.bytesToHex(BenchmarkPayloads.GYROSCOPE);
+    }
+}
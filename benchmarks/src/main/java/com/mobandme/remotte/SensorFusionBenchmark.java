@@ -0,0 +1,71 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measure one step of the orientation filter, a Gyroscope sample integrated plus an Accelerometer
+ * correction. The filter keeps its state in fields so it should report 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensorFusionBenchmark {
+
+    @Param({ "MADGWICK", "MAHONY" })
+    public String algorithm;
+
+    private RemotteSensorFusion mFusion;
+    private long                mTimestamp;
+
+    @Setup
+    public void setUp() {
+        if ("MAHONY".equals(algorithm))
+            mFusion = new RemotteSensorFusion(RemotteSensorFusion.ALGORITHM_MAHONY, RemotteSensorFusion.DEFAULT_MAHONY_GAIN);
+        else
+            mFusion = new RemotteSensorFusion(RemotteSensorFusion.ALGORITHM_MADGWICK, RemotteSensorFusion.DEFAULT_MADGWICK_GAIN);
+
+        mFusion.updateAccelerometer(0.1, -0.2, 0.97);
+        mFusion.updateGyroscope(0, 0, 0, mTimestamp);
+    }
+
+    @Benchmark
+    public double update() {
+        mTimestamp += 10; //100 Hz.
+        mFusion.updateGyroscope(1.5, -0.5, 0.25, mTimestamp);
+        mFusion.updateAccelerometer(0.1, -0.2, 0.97);
+        return mFusion.getQuaternionW();
+    }
+}
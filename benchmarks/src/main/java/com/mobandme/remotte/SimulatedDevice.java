@@ -0,0 +1,274 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.SystemClock;
+
+/**
+ * This class connect a simulated device with the service side of the SDK, the way a client app would do it. The
+ * connection runs on the service thread, shared by all the devices like on {@link RemotteService}, and the client
+ * receives the messages on its own thread like the delivery thread of {@link Remotte}. The client counts the samples
+ * and keeps the time of the connection events, so the benchmarks can wait for them.
+ *
+ * It runs on the JVM with the android.os classes of src/jvm, so it's only used by the benchmarks.
+ */
+final class SimulatedDevice {
+
+    private final RemotteSimulatedGattTransport mTransport;
+    private final RemotteDeviceConnection       mConnection;
+    private final Handler                       mService;
+    private final HandlerThread                 mClientThread;
+    private final Messenger                     mClient;
+
+    //Written by the client thread, guarded by this.
+    private int                                 mState = -1;
+    private long                                mSamples = 0;
+    private long                                mReads = 0;
+    private long                                mConnectedAt = 0;
+    private long                                mFirstSampleAt = 0;
+    private int                                 mRecoveries = 0;
+    private long                                mSamplesAtRecovery = 0;
+    private long                                mLastTimeToRecover = -1;
+
+    private volatile Remotte.Configuration      mDeferredConfiguration;
+    private volatile long                       mConnectRequestedAt = 0;
+    private volatile long                       mClientLatency = 0;
+
+    /**
+     * @param address The address of the device, every device of a benchmark needs its own.
+     * @param seed The seed of the simulator.
+     * @param serviceThread The thread of the service.
+     * @param layoutCache The GATT layouts of the known devices, share it between devices to measure a cached layout.
+     */
+    public SimulatedDevice(String address, long seed, HandlerThread serviceThread, RemotteGattLayoutCache layoutCache) {
+        mTransport = new RemotteSimulatedGattTransport(Remotte.Devices.REMOTTE, seed);
+        mService = new Handler(serviceThread.getLooper());
+        mConnection = new RemotteDeviceConnection(mTransport, mService, address, null, layoutCache);
+
+        mClientThread = new HandlerThread("SimulatedDevice " + address);
+        mClientThread.start();
+        mClient = new Messenger(new Handler(mClientThread.getLooper()) {
+            @Override
+            public void handleMessage(Message message) { onClientMessage(message); }
+        });
+    }
+
+    public RemotteSimulatedGattTransport getTransport() { return mTransport; }
+
+    /**
+     * Use this method to delay the configuration sent by the client when it receives the connected state, like a
+     * message from the client process to the service process.
+     * @param latency The latency in milliseconds.
+     */
+    public SimulatedDevice setClientLatency(long latency) { mClientLatency = latency; return this; }
+
+    /**
+     * Use this method to register the client and connect the device, from the service thread.
+     * @param configuration The configuration of the client.
+     * @param withConnect Pass true to send the configuration with the connect request, or false to send it when
+     *                    the client receives the connected state, like the SDK did before.
+     */
+    public void connect(final Remotte.Configuration configuration, final boolean withConnect) {
+        mDeferredConfiguration = (withConnect ? null : configuration);
+        mConnectRequestedAt = SystemClock.elapsedRealtimeNanos();
+        mService.post(new Runnable() {
+            @Override
+            public void run() {
+                mConnection.addClient(mClient);
+                if (withConnect)
+                    mConnection.configure(mClient, configuration);
+                mConnection.connect(mClient);
+            }
+        });
+    }
+
+    /**
+     * Use this method to read the battery level, the reply arrives to the client through the GATT queue.
+     */
+    public void readBatteryLevel() {
+        mService.post(new Runnable() {
+            @Override
+            public void run() { mConnection.readCharacteristic(Remotte.Characteristics.BATTERY_LEVEL); }
+        });
+    }
+
+    /**
+     * Use this method to disconnect the device and release the connection, like the service does when its last
+     * client leaves. It waits for the disconnected state and releases the threads of the device.
+     * @param timeout The maximum time to wait in milliseconds.
+     */
+    public void close(long timeout) {
+        mService.post(new Runnable() {
+            @Override
+            public void run() {
+                mConnection.disconnect();
+                mConnection.release();
+            }
+        });
+
+        awaitState(RemotteGattTransport.STATE_DISCONNECTED, timeout);
+        mTransport.shutdown();
+        mClientThread.quit();
+    }
+
+    public synchronized int getState() { return mState; }
+
+    public synchronized long getSamples() { return mSamples; }
+
+    /**
+     * @return Returns the time in nanoseconds between the connect request and the first sample received by the
+     * client, or -1 if there has not been any sample yet.
+     */
+    public synchronized long getTimeToFirstSample() {
+        return (mFirstSampleAt > 0 ? mFirstSampleAt - mConnectRequestedAt : -1);
+    }
+
+    /**
+     * @return Returns the time in nanoseconds of the last connected state received by the client.
+     */
+    public synchronized long getConnectedAt() { return mConnectedAt; }
+
+    /**
+     * @return Returns the samples received before the last recovered connection.
+     */
+    public synchronized long getSamplesAtRecovery() { return mSamplesAtRecovery; }
+
+    /**
+     * @return Returns the time to recover in milliseconds reported by the service for the last recovered connection.
+     */
+    public synchronized long getLastTimeToRecover() { return mLastTimeToRecover; }
+
+    public synchronized boolean awaitState(int state, long timeout) {
+        long deadline = SystemClock.elapsedRealtime() + timeout;
+        while (mState != state)
+            if (!waitUntil(deadline))
+                return false;
+        return true;
+    }
+
+    /**
+     * Use this method to wait until the client has received a number of samples since the device was created.
+     */
+    public synchronized boolean awaitSamples(long samples, long timeout) {
+        long deadline = SystemClock.elapsedRealtime() + timeout;
+        while (mSamples < samples)
+            if (!waitUntil(deadline))
+                return false;
+        return true;
+    }
+
+    /**
+     * Use this method to wait until the connection has been recovered a number of times since the device was
+     * created.
+     */
+    public synchronized boolean awaitRecoveries(int recoveries, long timeout) {
+        long deadline = SystemClock.elapsedRealtime() + timeout;
+        while (mRecoveries < recoveries)
+            if (!waitUntil(deadline))
+                return false;
+        return true;
+    }
+
+    /**
+     * Use this method to wait until the client has received a number of characteristic reads since the device
+     * was created.
+     */
+    public synchronized boolean awaitReads(long reads, long timeout) {
+        long deadline = SystemClock.elapsedRealtime() + timeout;
+        while (mReads < reads)
+            if (!waitUntil(deadline))
+                return false;
+        return true;
+    }
+
+    private boolean waitUntil(long deadline) {
+        long remaining = deadline - SystemClock.elapsedRealtime();
+        if (remaining <= 0)
+            return false;
+
+        try {
+            wait(remaining);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void onClientMessage(Message message) {
+        long now = SystemClock.elapsedRealtimeNanos();
+        switch (message.what) {
+            case Remotte.MSG_STATE_CHANGED:
+                int state = message.getData().getInt(Remotte.EXTRA_CONNECTION_STATE);
+                if (state == RemotteGattTransport.STATE_CONNECTED && mDeferredConfiguration != null)
+                    sendConfiguration(mDeferredConfiguration);
+                synchronized (this) {
+                    mState = state;
+                    if (state == RemotteGattTransport.STATE_CONNECTED)
+                        mConnectedAt = now;
+                    if (state == RemotteGattTransport.STATE_CONNECTED && message.getData().containsKey(Remotte.EXTRA_RECONNECT_ATTEMPTS)) {
+                        mRecoveries++;
+                        mSamplesAtRecovery = mSamples;
+                        mLastTimeToRecover = message.getData().getLong(Remotte.EXTRA_TIME_TO_RECOVER);
+                    }
+                    notifyAll();
+                }
+                break;
+            case Remotte.MSG_TEMPERATURE_CHANGED:
+            case Remotte.MSG_ACCELEROMETER_CHANGED:
+            case Remotte.MSG_GYROSCOPE_CHANGED:
+            case Remotte.MSG_BAROMETER_CHANGED:
+            case Remotte.MSG_KEY_PRESSED:
+                onSamples(1, now);
+                break;
+            case Remotte.MSG_SAMPLES_BATCH:
+                onSamples(message.arg2, now);
+                break;
+            case Remotte.MSG_CHARACTERISTIC_READED:
+                synchronized (this) {
+                    mReads++;
+                    notifyAll();
+                }
+                break;
+            default:
+                if ((message.what & Remotte.MSG_SAMPLE_VALUES) != 0)
+                    onSamples(1, now);
+                break;
+        }
+    }
+
+    private synchronized void onSamples(int count, long now) {
+        if (mFirstSampleAt == 0)
+            mFirstSampleAt = now;
+        mSamples += count;
+        notifyAll();
+    }
+
+    private void sendConfiguration(final Remotte.Configuration configuration) {
+        mService.postDelayed(new Runnable() {
+            @Override
+            public void run() { mConnection.configure(mClient, configuration); }
+        }, mClientLatency);
+    }
+}
@@ -0,0 +1,125 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import android.os.HandlerThread;
+
+import com.mobandme.remotte.listener.AccelerometerSensorCallback;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measure the time to first sample (TTFS) of a simulated device: from the connect request of the
+ * client until it receives the first sample. Every iteration connects a new device with the same address, so the
+ * iterations are independent connections.
+ *
+ * The device takes 100 ms to connect and 100 ms to discover its services, 8 to 15 ms by GATT operation and notifies
+ * at 1 kHz. With an UNKNOWN layout the configuration is sent after the discovery, with a CACHED layout (the device
+ * was connected before) it's queued while the discovery runs.
+ *
+ * The client sends its configuration WITH_CONNECT, in the connect request, or ON_CONNECTED, when it receives the
+ * connected state like the SDK did before. Then it reaches the service after a client round trip of 5 ms.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+public class TimeToFirstSampleBenchmark {
+
+    static final String         ADDRESS = "00:00:00:00:00:01";
+    private static final long   TIMEOUT = 5000; //Milliseconds.
+
+    private static final long   CLIENT_LATENCY = 5; //Milliseconds.
+
+    @Param({ "UNKNOWN", "CACHED" })
+    public String layout;
+
+    @Param({ "WITH_CONNECT", "ON_CONNECTED" })
+    public String configuration;
+
+    private HandlerThread          mServiceThread;
+    private RemotteGattLayoutCache mLayoutCache;
+    private Remotte.Configuration  mConfiguration;
+    private SimulatedDevice        mDevice;
+    private int                    mSeed;
+
+    @Setup
+    public void setUp() {
+        mServiceThread = new HandlerThread("RemotteService");
+        mServiceThread.start();
+        mConfiguration = new Remotte.Configuration().enableAccelerometerSensor(true, 100, new AccelerometerSensorCallback() {
+            @Override
+            public void onAccelerometerChange(Remotte remotte, double x, double y, double z) { }
+        });
+
+        mLayoutCache = new RemotteGattLayoutCache(null);
+        if (layout.equals("CACHED")) {
+            SimulatedDevice device = newDevice();
+            device.connect(mConfiguration, true);
+            if (!device.awaitSamples(1, TIMEOUT))
+                throw new RuntimeException("The layout of the simulated device has not been discovered.");
+            device.close(TIMEOUT);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mServiceThread.quit();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpDevice() {
+        mDevice = newDevice();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownDevice() {
+        mDevice.close(TIMEOUT);
+    }
+
+    @Benchmark
+    public long timeToFirstSample() {
+        mDevice.connect(mConfiguration, configuration.equals("WITH_CONNECT"));
+        if (!mDevice.awaitSamples(1, TIMEOUT))
+            throw new RuntimeException("The simulated device has not sent any sample.");
+        return mDevice.getTimeToFirstSample();
+    }
+
+    private SimulatedDevice newDevice() {
+        SimulatedDevice device = new SimulatedDevice(ADDRESS, ++mSeed, mServiceThread, (layout.equals("CACHED") ? mLayoutCache : new RemotteGattLayoutCache(null)));
+        device.getTransport().setConnectionLatency(100).setWriteLatency(8, 15).setNotificationRate(1000);
+        return device.setClientLatency(CLIENT_LATENCY);
+    }
+}
@@ -0,0 +1,122 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import org.junit.Test;
+
+import static java.lang.Math.pow;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This test checks that the precomputed coefficients of {@link RemotteSensorAltimeter} give the same pressure, bit
+ * by bit, than the original formula of the sensor datasheet. The samples are the payload of the benchmarks, some
+ * samples around it and the limits of the raw values, the extreme calibration uses the limits of every coefficient
+ * and the sweep covers every raw temperature.
+ */
+public class RemotteSensorAltimeterTest {
+
+    private static final byte[] EXTREME_CALIBRATION = { (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF,
+                                                        (byte)0x00, (byte)0x80, (byte)0xFF, (byte)0x7F, (byte)0x00, (byte)0x80, (byte)0xFF, (byte)0x7F };
+
+    private static final byte[][] SAMPLES = {
+        BenchmarkPayloads.ALTIMETER,
+        { (byte)0x7E, (byte)0x5E, (byte)0x3A, (byte)0x9C },
+        { (byte)0x12, (byte)0x61, (byte)0x51, (byte)0x9B },
+        { (byte)0xF4, (byte)0x66, (byte)0xC8, (byte)0x9D },
+        { (byte)0x00, (byte)0x00, (byte)0x00, (byte)0x00 },
+        { (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF }
+    };
+
+    @Test
+    public void samplesMatchLegacyFormula() {
+        RemotteSensorAltimeter altimeter = newAltimeter(BenchmarkPayloads.CALIBRATION);
+        for (byte[] sample : SAMPLES)
+            assertSamePressure(altimeter, BenchmarkPayloads.CALIBRATION, sample);
+    }
+
+    @Test
+    public void convertMatchesLegacyFormula() {
+        RemotteSensorAltimeter altimeter = newAltimeter(BenchmarkPayloads.CALIBRATION);
+        double[] values = new double[2];
+        altimeter.convert(Remotte.Devices.SENSOR_TAG, SAMPLES[0], values); //The first sample it's the height reference.
+
+        for (byte[] sample : SAMPLES) {
+            altimeter.convert(Remotte.Devices.SENSOR_TAG, sample, values);
+            double expected = legacyPressure(BenchmarkPayloads.CALIBRATION, sample) / 100.0;
+            assertEquals("Pressure of " + toHex(sample), Double.doubleToLongBits(expected), Double.doubleToLongBits(values[RemotteSensorAltimeter.PRESSURE]));
+        }
+    }
+
+    @Test
+    public void temperatureSweepMatchesLegacyFormula() {
+        byte[][] calibrations = { BenchmarkPayloads.CALIBRATION, EXTREME_CALIBRATION };
+        byte[] sample = new byte[4];
+
+        for (byte[] calibration : calibrations) {
+            RemotteSensorAltimeter altimeter = newAltimeter(calibration);
+            for (int temperature = 0; temperature <= 0xFFFF; temperature++)
+                for (int pressure = 0; pressure <= 0xFFFF; pressure += 0x0FFF) {
+                    sample[0] = (byte)temperature;
+                    sample[1] = (byte)(temperature >> 8);
+                    sample[2] = (byte)pressure;
+                    sample[3] = (byte)(pressure >> 8);
+                    assertSamePressure(altimeter, calibration, sample);
+                }
+        }
+    }
+
+    private static RemotteSensorAltimeter newAltimeter(byte[] calibration) {
+        RemotteSensorAltimeter altimeter = new RemotteSensorAltimeter();
+        altimeter.setCalibration(calibration);
+        return altimeter;
+    }
+
+    private static void assertSamePressure(RemotteSensorAltimeter altimeter, byte[] calibration, byte[] sample) {
+        long expected = Double.doubleToLongBits(legacyPressure(calibration, sample));
+        long actual = Double.doubleToLongBits(altimeter.calculatePressure(sample));
+        if (expected != actual)
+            assertEquals("Pressure of " + toHex(sample), expected, actual);
+    }
+
+    /**
+     * The formula of the sensor datasheet, as the SDK computed it before the coefficients were precomputed.
+     */
+    private static double legacyPressure(byte[] calibration, byte[] value) {
+        int[] coefficients = new int[8];
+        for (int offset = 0; offset < 8; offset += 2)
+            coefficients[offset / 2] = RemotteSensor.shortUnsignedAtOffset(calibration, offset);
+        for (int offset = 8; offset < 16; offset += 2)
+            coefficients[offset / 2] = RemotteSensor.shortSignedAtOffset(calibration, offset);
+
+        final int t_r = RemotteSensor.shortSignedAtOffset(value, 0);
+        final int p_r = RemotteSensor.shortUnsignedAtOffset(value, 2);
+
+        final double S = coefficients[2] + coefficients[3] * t_r / pow(2, 17) + ((coefficients[4] * t_r / pow(2, 15)) * t_r) / pow(2, 19);
+        final double O = coefficients[5] * pow(2, 14) + coefficients[6] * t_r / pow(2, 3) + ((coefficients[7] * t_r / pow(2, 15)) * t_r) / pow(2, 4);
+        return (S * p_r + O) / pow(2, 14);
+    }
+
+    private static String toHex(byte[] value) {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : value)
+            builder.append(String.format("%02X", b));
+        return builder.toString();
+    }
+}
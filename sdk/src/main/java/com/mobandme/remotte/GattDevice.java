@@ -26,6 +26,8 @@ class GattDevice {
     static final byte[] DISABLE_SENSOR                 = { 0x00 };
     static final byte[] ENABLE_GYROSCOPE_3_AXIS_SENSOR = { 0x07 };
     static final byte[] SENSOR_CALIBRATION             = { 0x02 };
+    static final byte[] ENABLE_NOTIFICATION            = { 0x01, 0x00 }; //Same value as BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE.
+    static final byte[] DISABLE_NOTIFICATION           = { 0x00, 0x00 }; //Same value as BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE.
 
     static UUID CLIENT_CHARACTERISTIC_CONFIG      = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb"); //Client Configuration
 }
@@ -19,28 +19,46 @@ package com.mobandme.remotte;
  * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
  */
 
+import android.app.ActivityManager;
 import android.app.Service;
 import android.bluetooth.BluetoothGatt;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
+import android.content.pm.ServiceInfo;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.Message;
 import android.os.Messenger;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.Process;
+import android.os.SystemClock;
 import com.mobandme.remotte.helper.LogsHelper;
+import com.mobandme.remotte.listener.AccelerometerBatchCallback;
 import com.mobandme.remotte.listener.AccelerometerSensorCallback;
+import com.mobandme.remotte.listener.AltimeterBatchCallback;
 import com.mobandme.remotte.listener.AltimeterSensorCallback;
 import com.mobandme.remotte.listener.CharacteristicReadCallback;
 import com.mobandme.remotte.listener.ConnectionStateChangeCallback;
+import com.mobandme.remotte.listener.GestureCallback;
+import com.mobandme.remotte.listener.GyroscopeBatchCallback;
 import com.mobandme.remotte.listener.GyroscopeSensorCallback;
 import com.mobandme.remotte.listener.KeysPressedCallback;
+import com.mobandme.remotte.listener.OrientationCallback;
+import com.mobandme.remotte.listener.SampleAggregateCallback;
+import com.mobandme.remotte.listener.TemperatureBatchCallback;
 import com.mobandme.remotte.listener.TemperatureSensorCallback;
+import java.io.File;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -60,22 +78,24 @@ public final class Remotte {
     static final int MSG_BAROMETER_CHANGED     = 6;
     static final int MSG_KEY_PRESSED           = 7;
     static final int MSG_CHARACTERISTIC_READED = 8;
+    static final int MSG_ALTIMETER_CALIBRATION = 9;
+    static final int MSG_SAMPLES_BATCH         = 10;
+    static final int MSG_SAMPLE_VALUES         = 0x100; //Added to the message type of the sensor, see RemotteSampleCodec.packValues().
+    static final int MSG_SAMPLE_AGGREGATE      = 13;
 
     static final String EXTRA_CONNECTION_STATE            = "CONNECTION_STATE";
-    static final String EXTRA_TEMPERATURE_VALUE           = "TEMPERATURE_VALUE";
-    static final String EXTRA_ACCELEROMETER_VALUE_X       = "ACCELEROMETER_VALUE_X";
-    static final String EXTRA_ACCELEROMETER_VALUE_Y       = "ACCELEROMETER_VALUE_Y";
-    static final String EXTRA_ACCELEROMETER_VALUE_Z       = "ACCELEROMETER_VALUE_Z";
-    static final String EXTRA_GYROSCOPE_VALUE_X           = "GYROSCOPE_VALUE_X";
-    static final String EXTRA_GYROSCOPE_VALUE_Y           = "GYROSCOPE_VALUE_Y";
-    static final String EXTRA_GYROSCOPE_VALUE_Z           = "GYROSCOPE_VALUE_Z";
-    static final String EXTRA_ALTIMETER_PRESSURE_VALUE    = "ALTIMETER_PRESSURE_VALUE";
-    static final String EXTRA_ALTIMETER_ALTITUDE_VALUE    = "ALTIMETER_ALTITUDE_VALUE";
-    static final String EXTRA_KEY_POWER_STATE             = "KEY_POWER_STATE";
-    static final String EXTRA_KEY_CENTER_STATE            = "KEY_CENTER_STATE";
+    static final String EXTRA_ALTIMETER_CALIBRATION       = "ALTIMETER_CALIBRATION";
+    static final String EXTRA_SAMPLES                     = "SAMPLES";
+    static final String EXTRA_SAMPLE_AGGREGATE            = "SAMPLE_AGGREGATE";
     static final String EXTRA_CHARACTERISTIC              = "GATT_CHARACTERISTIC";
     static final String EXTRA_CHARACTERISTIC_VALUE        = "CHARACTERISTIC_VALUE";
     static final String EXTRA_DEVICE_ADDRESS              = "BT_DEVICE_ADDRESS";
+    static final String EXTRA_SAMPLE_STAGES               = "SAMPLE_STAGES";
+    static final String EXTRA_DROPPED_SAMPLES             = "DROPPED_SAMPLES";
+    static final String EXTRA_SUPPRESSED_SAMPLES          = "SUPPRESSED_SAMPLES";
+    static final String EXTRA_RECONNECT_ATTEMPTS          = "RECONNECT_ATTEMPTS";
+    static final String EXTRA_TIME_TO_RECOVER             = "TIME_TO_RECOVER";
+    static final String EXTRA_CONNECTION_STAGES           = "CONNECTION_STAGES";
 
     /**
      * Use this class to set the device type to the you want connect.
@@ -94,8 +114,19 @@ public final class Remotte {
     }
 
     private Builder                       mBuilder;
-    private Messenger                     mRemotteService;
+    private volatile Messenger            mRemotteService;
     private Messenger                     mMessenger;
+    private final RemotteMetrics          mMetrics;
+    private final RemotteConnectionTimings mTimings = new RemotteConnectionTimings();
+    private final HandlerThread           mDeliveryThread;
+    private final RemotteSampleRing       mSampleRing;
+    private volatile int                  mReconnections = 0;
+    private volatile int                  mReconnectAttempts = 0;
+    private volatile long                 mLastTimeToRecover = -1;
+    private volatile RemotteSampleRecorder mRecorder;
+    private volatile RemotteSampleReplay  mReplay;
+    private final Handler                 mHandler;
+    private int[]                         mSentConfiguration; //The last configuration sent to the service, encoded.
 
     private void                          setBuilder(Builder builder) { this.mBuilder = builder; }
     private Builder                       getBuilder() { return this.mBuilder; }
@@ -108,7 +139,182 @@ public final class Remotte {
     private Remotte(Builder builder) {
         setBuilder(builder);
         LogsHelper.setContext(getContext());
-        mMessenger = new Messenger(new IncomingHandler(this));
+        mMetrics = (builder.getConfiguration().getLatencyMetricsEnabled() ? new RemotteMetrics() : null);
+        mSampleRing = (builder.getConfiguration().getSampleRingEnabled() ? obtainSampleRing(builder) : null);
+        mDeliveryThread = (builder.isDeliveryThreadEnabled() ? startDeliveryThread() : null);
+        mHandler = new IncomingHandler(this, getDeliveryLooper());
+        mMessenger = new Messenger(mHandler);
+    }
+
+    private static HandlerThread startDeliveryThread() {
+        //Same priority as the UI, the samples should not wait for the background work of the app.
+        HandlerThread thread = new HandlerThread("RemotteDelivery", Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        return thread;
+    }
+
+    private static RemotteSampleRing obtainSampleRing(Builder builder) {
+        if (!isServiceInProcess(builder.getContext()))
+            throw new RuntimeException("The sample ring needs the RemotteService running on the process of your app, please remove its android:process attribute.");
+
+        Configuration configuration = builder.getConfiguration();
+        return RemotteSampleRing.obtain(builder.getDeviceAddress(), configuration.getSampleRingCapacity(), configuration.getSampleRingPolicy());
+    }
+
+    /**
+     * @return Returns true if the RemotteService it's declared to run on the current process.
+     */
+    private static boolean isServiceInProcess(Context context) {
+        try {
+            ServiceInfo service = context.getPackageManager().getServiceInfo(new ComponentName(context, RemotteService.class), 0);
+
+            ActivityManager activityManager = (ActivityManager)context.getSystemService(Context.ACTIVITY_SERVICE);
+            List<ActivityManager.RunningAppProcessInfo> processes = activityManager.getRunningAppProcesses();
+            if (processes != null)
+                for (ActivityManager.RunningAppProcessInfo process : processes)
+                    if (process.pid == Process.myPid())
+                        return process.processName.equals(service.processName);
+        } catch (Exception e) {
+            LogsHelper.log(LogsHelper.ERROR, "Error resolving the process of the Remotte service.", e);
+        }
+        return false;
+    }
+
+    /**
+     * Use this method to retrieve the ring where the service writes the samples of the device. Every reader needs
+     * its own {@link com.mobandme.remotte.RemotteSampleRing.Consumer}, and all of them receive all the samples.
+     * Remember to enable the sample ring on your {@link com.mobandme.remotte.Remotte.Configuration}.
+     * @return Returns the sample ring of the device, or null if the sample ring it's not enabled.
+     */
+    public RemotteSampleRing getSampleRing() { return mSampleRing; }
+
+    /**
+     * Use this method to record the samples delivered to your callbacks into a file, see
+     * {@link com.mobandme.remotte.RemotteSampleRecorder}. The current recording, if any, it's finished.
+     * @param file The file of the recording, it's overwritten.
+     * @throws {@link java.lang.RuntimeException} when the file can't be created.
+     * @return Returns the recorder, to check its progress.
+     */
+    public RemotteSampleRecorder startRecording(File file) {
+        stopRecording();
+        try {
+            mRecorder = new RemotteSampleRecorder(file);
+            return mRecorder;
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating the recording file.", e);
+        }
+    }
+
+    /**
+     * Use this method to finish the current recording, it waits until the samples in memory are written.
+     */
+    public void stopRecording() {
+        RemotteSampleRecorder recorder = mRecorder;
+        mRecorder = null;
+        if (recorder != null)
+            recorder.close();
+    }
+
+    /**
+     * @return Returns the recorder of the current recording, or null if the samples are not being recorded.
+     */
+    public RemotteSampleRecorder getRecorder() { return mRecorder; }
+
+    /**
+     * Use this method to replay a recording through your sample callbacks, without a device. The samples are
+     * delivered by the same handler and on the same thread as the samples of the device, see
+     * {@link com.mobandme.remotte.RemotteSampleReplay}. The current replay, if any, it's stopped.
+     * @param file A file written by {@link #startRecording(java.io.File)}.
+     * @param speed The multiplier of the recorded pace, or {@link com.mobandme.remotte.RemotteSampleReplay#SPEED_UNLIMITED}.
+     * @throws {@link java.lang.RuntimeException} when the file can't be read or it's not a recording.
+     * @return Returns the replay, to wait for it and check its callbacks per second.
+     */
+    public RemotteSampleReplay startReplay(File file, double speed) {
+        stopReplay();
+        try {
+            RemotteSampleReplay replay = new RemotteSampleReplay(file, speed, mHandler, getBuilder().getConfiguration().getDevice());
+            mReplay = replay;
+            replay.start();
+            return replay;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading the recording file.", e);
+        }
+    }
+
+    /**
+     * Use this method to stop the current replay.
+     */
+    public void stopReplay() {
+        RemotteSampleReplay replay = mReplay;
+        mReplay = null;
+        if (replay != null)
+            replay.stop();
+    }
+
+    /**
+     * Use this method to retrieve the looper where the messages of the service are handled and the callbacks called.
+     */
+    private Looper getDeliveryLooper() {
+        if (getBuilder().getDeliveryLooper() != null)
+            return getBuilder().getDeliveryLooper();
+        if (mDeliveryThread != null)
+            return mDeliveryThread.getLooper();
+        if (Looper.myLooper() != null)
+            return Looper.myLooper();
+        return Looper.getMainLooper();
+    }
+
+    /**
+     * Use this method to release the delivery thread, call it when you don't need this instance anymore. Remember
+     * to disconnect from the device before.
+     */
+    public void release() {
+        if (mDeliveryThread != null)
+            mDeliveryThread.quit();
+    }
+
+    /**
+     * Use this method to retrieve the latency of the samples delivered to your callbacks and the samples dropped
+     * by the service. Remember to enable the latency metrics on your {@link com.mobandme.remotte.Remotte.Configuration}.
+     * @return Returns a snapshot of the metrics, or null if the latency metrics are not enabled.
+     */
+    public RemotteMetrics getMetrics() { return (mMetrics != null ? mMetrics.copy() : null); }
+
+    /**
+     * Use this method to clear the latency histograms, for example to measure a new session.
+     */
+    public void resetMetrics() {
+        if (mMetrics != null)
+            mMetrics.reset();
+    }
+
+    /**
+     * Use this method to retrieve the time to first sample of your connections split by stages, it's always measured.
+     * @return Returns a snapshot of the connection timings.
+     */
+    public RemotteConnectionTimings getConnectionTimings() { return mTimings.copy(); }
+
+    /**
+     * @return Returns the number of times that the connection has been recovered automatically.
+     */
+    public int getReconnections() { return mReconnections; }
+
+    /**
+     * @return Returns the number of attempts done to recover the connection, including the failed ones.
+     */
+    public int getReconnectAttempts() { return mReconnectAttempts; }
+
+    /**
+     * @return Returns the time in milliseconds from the last connection lost to its recovery, or -1 if the
+     * connection has not been recovered yet.
+     */
+    public long getLastTimeToRecover() { return mLastTimeToRecover; }
+
+    private void onConnectionRecovered(Bundle data) {
+        mReconnections++;
+        mReconnectAttempts += data.getInt(EXTRA_RECONNECT_ATTEMPTS);
+        mLastTimeToRecover = data.getLong(EXTRA_TIME_TO_RECOVER);
+        LogsHelper.log(LogsHelper.DEBUG, "Connection recovered after %d attempts, in %d ms.", data.getInt(EXTRA_RECONNECT_ATTEMPTS), mLastTimeToRecover);
     }
 
     /**
@@ -127,6 +333,7 @@ public final class Remotte {
             Message message = Message.obtain(null, RemotteService.MSG_READ_CHARACTERISTC);
             if (message != null) {
                 Bundle parameters = new Bundle();
+                parameters.putString(EXTRA_DEVICE_ADDRESS, getBuilder().getDeviceAddress());
                 parameters.putInt(RemotteService.EXTRA_CHARACTERISTIC, remotteCharacteristic);
                 message.setData(parameters);
                 mRemotteService.send(message);
@@ -142,23 +349,31 @@ public final class Remotte {
      */
     public void connect() {
         LogsHelper.log(LogsHelper.DEBUG, "Sending Connect command to Remotte.");
+        mTimings.onConnectRequested(SystemClock.elapsedRealtimeNanos());
         bindToRemotteService(getContext());
     }
 
     /**
-     * Use this method to start the connection with the Remotte device.
+     * Use this method to start the connection with the Remotte device. The configuration travels with the request,
+     * so the service can configure the device as soon as it's discovered.
      */
     private void connectoToDevice() {
 
         try {
 
             LogsHelper.log(LogsHelper.DEBUG, "Starting connection process to Remotte Device.");
+            if (mSampleRing != null && !RemotteSampleRing.attach(getBuilder().getDeviceAddress(), mSampleRing))
+                LogsHelper.log(LogsHelper.ERROR, "Other sample ring has been created for the Remotte {%s}, this client will not receive its samples.", getBuilder().getDeviceAddress());
+
             Message message = Message.obtain(null, RemotteService.MSG_COMMAND_CONNECT);
             if (message != null) {
                 Bundle parameters = new Bundle();
                 parameters.putString(EXTRA_DEVICE_ADDRESS, getBuilder().getDeviceAddress());
+                parameters.putParcelable(RemotteService.EXTRA_GATT_CONFIGURATION, getBuilder().getConfiguration());
                 message.setData(parameters);
+                message.replyTo = mMessenger;
                 mRemotteService.send(message);
+                mSentConfiguration = RemotteConfigurationCodec.encode(getBuilder().getConfiguration());
             }
 
         } catch (Exception e) {
@@ -178,6 +393,7 @@ public final class Remotte {
                 Bundle parameters = new Bundle();
                 parameters.putString(EXTRA_DEVICE_ADDRESS, getBuilder().getDeviceAddress());
                 message.setData(parameters);
+                message.replyTo = mMessenger;
                 mRemotteService.send(message);
             } else {
                 LogsHelper.log(LogsHelper.ERROR, "Error sending disconnect command to Remotte Service.");
@@ -210,6 +426,7 @@ public final class Remotte {
                 Message message = Message.obtain(null, RemotteService.MSG_ENABLE_HAPTIC);
                 if (message != null) {
                     Bundle parameters = new Bundle();
+                    parameters.putString(EXTRA_DEVICE_ADDRESS, getBuilder().getDeviceAddress());
                     parameters.putByte(RemotteService.EXTRA_HAPTIC_CONFIGURATION, configuration);
                     message.setData(parameters);
 
@@ -235,6 +452,15 @@ public final class Remotte {
         getContext().unbindService(mRemotteServiceConnection);
     }
 
+    /**
+     * Use this method to send the configuration again, only if it has changed since the last time it was sent. The
+     * service already has the configuration sent with the connect request.
+     */
+    private void configureGattIfChanged() {
+        if (!Arrays.equals(mSentConfiguration, RemotteConfigurationCodec.encode(getBuilder().getConfiguration())))
+            configureGatt();
+    }
+
     private void configureGatt() {
         try {
             LogsHelper.log(LogsHelper.DEBUG, "Sending GATT Configuration.");
@@ -245,8 +471,10 @@ public final class Remotte {
                     parameters.putString(Remotte.EXTRA_DEVICE_ADDRESS, getBuilder().getDeviceAddress());
                     parameters.putParcelable(RemotteService.EXTRA_GATT_CONFIGURATION, getBuilder().getConfiguration());
                     message.setData(parameters);
+                    message.replyTo = mMessenger;
 
                     mRemotteService.send(message);
+                    mSentConfiguration = RemotteConfigurationCodec.encode(getBuilder().getConfiguration());
                 }
             }
 
@@ -262,12 +490,16 @@ public final class Remotte {
         @Override
         public void onServiceConnected(ComponentName name, IBinder service) {
             LogsHelper.log(LogsHelper.DEBUG, "Connected to Remotte Service.");
+            mTimings.onServiceBound(SystemClock.elapsedRealtimeNanos());
             mRemotteService = new Messenger(service);
 
             try {
                 if (mRemotteService != null) {
                     Message message = Message.obtain(null, RemotteService.MSG_REGISTER_CLIENT);
                     if (message != null) {
+                        Bundle parameters = new Bundle();
+                        parameters.putString(EXTRA_DEVICE_ADDRESS, getBuilder().getDeviceAddress());
+                        message.setData(parameters);
                         message.replyTo = mMessenger;
                         mRemotteService.send(message);
                     }
@@ -289,94 +521,447 @@ public final class Remotte {
      */
     private final class IncomingHandler extends Handler {
         private final WeakReference<Remotte> mRemotte;
-
-        public IncomingHandler(Remotte remotte) {
+        private final byte[]                 mSample = new byte[RemotteSampleCodec.MAX_PAYLOAD];
+        private final double[]               mValues = new double[3];
+        private final int[]                  mKeys = new int[2];
+        private final RemotteSampleAggregate[] mAggregates = new RemotteSampleAggregate[RemotteMetrics.SENSOR_KEYS + 1]; //Reused, by sensor.
+        private final RemotteSensorAltimeter mAltimeter = new RemotteSensorAltimeter();
+        private       long[]                 mBatchTimestamps = new long[0];
+        private       double[]               mBatchX = new double[0];
+        private       double[]               mBatchY = new double[0];
+        private       double[]               mBatchZ = new double[0];
+        private       long                   mReceived = 0; //Timestamps of the current sample, 0 if the latency it's not measured.
+        private       long                   mDecoded = 0;
+        private       boolean                mCalled = false; //True when the current sample has reached a callback.
+        private       long                   mSampleClock = 0; //The clock of the sample timestamps, see getSampleClock().
+        private final RemotteCallbackDelivery mDelivery = new RemotteCallbackDelivery();
+        private final RemotteSensorFusion    mFusion; //Null if there is not an orientation callback.
+        private final RemotteGestureEngine   mGestures; //Null if there is not a gesture callback.
+        private final boolean                mAccelerometerFed; //True when the samples feed the fusion or the gestures.
+        private final boolean                mGyroscopeFed;
+
+        public IncomingHandler(Remotte remotte, Looper looper) {
+            super(looper);
             mRemotte = new WeakReference<Remotte>(remotte);
+
+            Configuration configuration = getBuilder().getConfiguration();
+            mFusion = (configuration.getOrientationCallback() != null ? new RemotteSensorFusion(configuration.getOrientationAlgorithm(), configuration.getOrientationGain()) : null);
+            mGestures = (configuration.getGestureCallback() != null && !configuration.getGestureDetectors().isEmpty() ? new RemotteGestureEngine(configuration.getGestureDetectors(), configuration.getGestureCallback(), mDelivery) : null);
+            mAccelerometerFed = (mFusion != null || (mGestures != null && mGestures.hasAccelerometerDetectors()));
+            mGyroscopeFed = (mFusion != null || (mGestures != null && mGestures.hasGyroscopeDetectors()));
         }
 
         @Override
         public void handleMessage(Message message) {
             Remotte remotte = mRemotte.get();
             if (remotte != null) {
+                RemotteMetrics metrics = remotte.mMetrics;
+                mReceived = (metrics != null ? SystemClock.elapsedRealtimeNanos() : 0);
+                mDecoded = 0;
+                mCalled = false;
+                RemotteSampleReplay replay = (message.obj instanceof RemotteSampleReplay ? (RemotteSampleReplay)message.obj : null);
+                mSampleClock = (replay != null ? replay.getSampleTimestamp() : 0);
+
                 switch (message.what) {
                     case MSG_CLIENT_REGISTERED:
+                        remotte.mTimings.onClientRegistered(SystemClock.elapsedRealtimeNanos());
                         remotte.connectoToDevice();
                         break;
                     case MSG_STATE_CHANGED:
                         int gattConnectionState = message.getData().getInt(EXTRA_CONNECTION_STATE);
-                        if (gattConnectionState == BluetoothGatt.STATE_CONNECTED)
-                            configureGatt();
+                        if (gattConnectionState == BluetoothGatt.STATE_CONNECTED) {
+                            if (message.getData().containsKey(EXTRA_RECONNECT_ATTEMPTS))
+                                remotte.onConnectionRecovered(message.getData());
+                            remotte.mTimings.onDeviceConnected(message.getData().getLongArray(EXTRA_CONNECTION_STAGES));
+                            configureGattIfChanged();
+                        }
 
                         if (gattConnectionState == BluetoothGatt.STATE_DISCONNECTED)
                             remotte.unbindFromRemotteService();
 
                         if (getBuilder().getConfiguration().getConnectionStateChangeCallback() != null) {
-                            getBuilder().getConfiguration().getConnectionStateChangeCallback().onConnectionStateChange(
+                            mDelivery.onConnectionStateChange(
                                     remotte,
+                                    getBuilder().getConfiguration().getConnectionStateChangeCallback(),
                                     gattConnectionState);
                         }
                         break;
                     case MSG_TEMPERATURE_CHANGED:
                         if (getBuilder().getConfiguration().getTemperatureSensorCallback() != null) {
-                            getBuilder().getConfiguration().getTemperatureSensorCallback().onTemperatureChange(
+                            RemotteSampleCodec.unpack(message.arg1, message.arg2, mSample);
+                            double temperature = RemotteSensorTemperature.convert(getDevice(), mSample);
+                            onSampleDecoded();
+                            record(remotte, RemotteMetrics.SENSOR_TEMPERATURE, message.arg2, temperature, 0, 0);
+                            mDelivery.onTemperatureChange(
                                     remotte,
-                                    message.getData().getDouble(EXTRA_TEMPERATURE_VALUE));
+                                    getBuilder().getConfiguration().getTemperatureSensorCallback(),
+                                    temperature);
                         }
                         break;
                     case MSG_ACCELEROMETER_CHANGED:
-                        if (getBuilder().getConfiguration().getAccelerometerSensorCallback() != null) {
-                            getBuilder().getConfiguration().getAccelerometerSensorCallback().onAccelerometerChange(
-                                remotte,
-                                message.getData().getDouble(EXTRA_ACCELEROMETER_VALUE_X),
-                                message.getData().getDouble(EXTRA_ACCELEROMETER_VALUE_Y),
-                                message.getData().getDouble(EXTRA_ACCELEROMETER_VALUE_Z)
-                            );
+                        if (getBuilder().getConfiguration().getAccelerometerSensorCallback() != null || mAccelerometerFed) {
+                            RemotteSampleCodec.unpack(message.arg1, message.arg2, mSample);
+                            RemotteSensorAccelerometer.convert(getDevice(), mSample, mValues);
+                            onSampleDecoded();
+                            record(remotte, RemotteMetrics.SENSOR_ACCELEROMETER, message.arg2, mValues[RemotteSensor.X], mValues[RemotteSensor.Y], mValues[RemotteSensor.Z]);
+                            if (mAccelerometerFed)
+                                onAccelerometerSample(remotte, mValues[RemotteSensor.X], mValues[RemotteSensor.Y], mValues[RemotteSensor.Z],
+                                        RemotteSampleCodec.unpackTimestamp(message.arg2, getSampleClock()));
+                            if (getBuilder().getConfiguration().getAccelerometerSensorCallback() != null) {
+                                mDelivery.onAccelerometerChange(
+                                    remotte,
+                                    getBuilder().getConfiguration().getAccelerometerSensorCallback(),
+                                    mValues[RemotteSensor.X],
+                                    mValues[RemotteSensor.Y],
+                                    mValues[RemotteSensor.Z]
+                                );
+                            }
                         }
                         break;
                     case MSG_GYROSCOPE_CHANGED:
-                        if (getBuilder().getConfiguration().getGyroscopeSensorCallback() != null) {
-                            getBuilder().getConfiguration().getGyroscopeSensorCallback().onGyroscopeChange(
-                                    remotte,
-                                    message.getData().getDouble(EXTRA_GYROSCOPE_VALUE_X),
-                                    message.getData().getDouble(EXTRA_GYROSCOPE_VALUE_Y),
-                                    message.getData().getDouble(EXTRA_GYROSCOPE_VALUE_Z)
-                            );
+                        if (getBuilder().getConfiguration().getGyroscopeSensorCallback() != null || mGyroscopeFed) {
+                            RemotteSampleCodec.unpack(message.arg1, message.arg2, mSample);
+                            RemotteSensorGyroscope.convert(getDevice(), mSample, mValues);
+                            onSampleDecoded();
+                            record(remotte, RemotteMetrics.SENSOR_GYROSCOPE, message.arg2, mValues[RemotteSensor.X], mValues[RemotteSensor.Y], mValues[RemotteSensor.Z]);
+                            if (getBuilder().getConfiguration().getGyroscopeSensorCallback() != null) {
+                                mDelivery.onGyroscopeChange(
+                                        remotte,
+                                        getBuilder().getConfiguration().getGyroscopeSensorCallback(),
+                                        mValues[RemotteSensor.X],
+                                        mValues[RemotteSensor.Y],
+                                        mValues[RemotteSensor.Z]
+                                );
+                            }
+                            if (mGyroscopeFed)
+                                onGyroscopeSample(remotte, mValues[RemotteSensor.X], mValues[RemotteSensor.Y], mValues[RemotteSensor.Z],
+                                        RemotteSampleCodec.unpackTimestamp(message.arg2, getSampleClock()));
                         }
                         break;
                     case MSG_BAROMETER_CHANGED:
                         if (getBuilder().getConfiguration().getAltimeterSensorCallback() != null) {
-                            getBuilder().getConfiguration().getAltimeterSensorCallback().onAltimeterChange(
+                            RemotteSampleCodec.unpack(message.arg1, message.arg2, mSample);
+                            mAltimeter.convert(getDevice(), mSample, mValues);
+                            onSampleDecoded();
+                            record(remotte, RemotteMetrics.SENSOR_ALTIMETER, message.arg2, mValues[RemotteSensorAltimeter.PRESSURE], mValues[RemotteSensorAltimeter.ALTITUDE], 0);
+                            mDelivery.onAltimeterChange(
                                     remotte,
-                                    message.getData().getDouble(EXTRA_ALTIMETER_PRESSURE_VALUE),
-                                    message.getData().getDouble(EXTRA_ALTIMETER_ALTITUDE_VALUE)
+                                    getBuilder().getConfiguration().getAltimeterSensorCallback(),
+                                    mValues[RemotteSensorAltimeter.PRESSURE],
+                                    mValues[RemotteSensorAltimeter.ALTITUDE]
                             );
                         }
                         break;
+                    case MSG_SAMPLES_BATCH:
+                        deliverBatch(remotte, message.arg1, message.arg2, message.getData().getIntArray(EXTRA_SAMPLES));
+                        break;
+                    case MSG_SAMPLE_AGGREGATE:
+                        double[] statistics = message.getData().getDoubleArray(EXTRA_SAMPLE_AGGREGATE);
+                        RemotteSampleAggregate aggregate = obtainAggregate(RemotteMetrics.getSensor(message.arg1));
+                        if (getBuilder().getConfiguration().getSampleAggregateCallback() != null && aggregate != null && statistics != null) {
+                            aggregate.set(message.arg2, statistics);
+                            mDelivery.onSampleAggregate(
+                                    remotte,
+                                    getBuilder().getConfiguration().getSampleAggregateCallback(),
+                                    aggregate);
+                        }
+                        break;
+                    case MSG_ALTIMETER_CALIBRATION:
+                        mAltimeter.setCalibration(message.getData().getByteArray(EXTRA_ALTIMETER_CALIBRATION));
+                        break;
                     case MSG_KEY_PRESSED:
                         if (getBuilder().getConfiguration().getKeysPressedCallback() != null) {
-                            getBuilder().getConfiguration().getKeysPressedCallback().onKeyPress(
+                            RemotteSampleCodec.unpack(message.arg1, message.arg2, mSample);
+                            RemotteSensorKeys.convert(getDevice(), mSample, mKeys);
+                            onSampleDecoded();
+                            record(remotte, RemotteMetrics.SENSOR_KEYS, message.arg2, mKeys[RemotteSensorKeys.POWER_KEY], mKeys[RemotteSensorKeys.CENTER_KEY], 0);
+                            mDelivery.onKeyPress(
                                     remotte,
-                                    message.getData().getInt(EXTRA_KEY_POWER_STATE),
-                                    message.getData().getInt(EXTRA_KEY_CENTER_STATE)
+                                    getBuilder().getConfiguration().getKeysPressedCallback(),
+                                    mKeys[RemotteSensorKeys.POWER_KEY],
+                                    mKeys[RemotteSensorKeys.CENTER_KEY]
                             );
                         }
                         break;
                     case MSG_CHARACTERISTIC_READED:
                         if (getBuilder().getOnCharacteristicReadCallback() != null) {
-                            getBuilder().getOnCharacteristicReadCallback().onCharacteristicRead(
+                            mDelivery.onCharacteristicRead(
                                     remotte,
+                                    getBuilder().getOnCharacteristicReadCallback(),
                                     message.getData().getInt(EXTRA_CHARACTERISTIC),
                                     message.getData().getByteArray(EXTRA_CHARACTERISTIC_VALUE));
                         }
                         break;
                     default:
-                        super.handleMessage(message);
+                        if ((message.what & MSG_SAMPLE_VALUES) != 0)
+                            deliverSampleValues(remotte, message.what & ~MSG_SAMPLE_VALUES, message.arg1, message.arg2);
+                        else
+                            super.handleMessage(message);
                         break;
                 }
+
+                //The replayed samples don't come from the device, they don't count on its latencies.
+                if (replay != null)
+                    replay.onDelivered(mCalled);
+                else if (metrics != null)
+                    recordLatency(metrics, message);
+                if (replay == null && remotte.mTimings.isWaitingFirstSample() && RemotteMetrics.getSensor(getSampleType(message)) >= 0)
+                    remotte.mTimings.onFirstSample(SystemClock.elapsedRealtimeNanos());
             } else {
                 super.handleMessage(message);
             }
         }
+
+        private int getDevice() { return getBuilder().getConfiguration().getDevice(); }
+
+        /**
+         * @return Returns the message type of the sensor of the samples of the message.
+         */
+        private int getSampleType(Message message) {
+            return (message.what == MSG_SAMPLES_BATCH ? message.arg1 : message.what & ~MSG_SAMPLE_VALUES);
+        }
+
+        /**
+         * @return Returns the clock to restore the timestamp of the current sample, the elapsed realtime in
+         *         milliseconds, or the recorded timestamp of a replayed sample.
+         */
+        private long getSampleClock() { return (mSampleClock != 0 ? mSampleClock : SystemClock.elapsedRealtime()); }
+
+        /**
+         * This method is called once a sample has been decoded for its callbacks.
+         */
+        private void onSampleDecoded() {
+            mCalled = true;
+            if (mReceived != 0)
+                mDecoded = SystemClock.elapsedRealtimeNanos();
+        }
+
+        /**
+         * This method record a decoded sample if there is a recording in progress.
+         * @param high The arg2 of the message, it contains the sample timestamp.
+         */
+        private void record(Remotte remotte, int sensor, int high, double v0, double v1, double v2) {
+            RemotteSampleRecorder recorder = remotte.mRecorder;
+            if (recorder != null)
+                recorder.record(sensor, RemotteSampleCodec.unpackTimestamp(high, getSampleClock()), v0, v1, v2);
+        }
+
+        /**
+         * This method record the stages of the sample delivered, the service stages are sent with the sample.
+         */
+        private void recordLatency(RemotteMetrics metrics, Message message) {
+            int sensor = RemotteMetrics.getSensor(getSampleType(message));
+            if (sensor < 0)
+                return;
+
+            long returned = SystemClock.elapsedRealtimeNanos();
+            Bundle data = message.peekData();
+            long[] stages = (data != null ? data.getLongArray(EXTRA_SAMPLE_STAGES) : null);
+            if (stages != null && stages.length == 3) {
+                metrics.record(sensor, stages[0], stages[1], stages[2], mReceived, mDecoded, returned);
+                metrics.setDroppedSamples(sensor, data.getLong(EXTRA_DROPPED_SAMPLES));
+                metrics.setSuppressedSamples(sensor, data.getLong(EXTRA_SUPPRESSED_SAMPLES));
+            } else {
+                metrics.record(sensor, 0, 0, 0, mReceived, mDecoded, returned);
+            }
+        }
+
+        /**
+         * This method feed an Accelerometer sample to the orientation filter and the gesture detectors.
+         * @param timestamp The elapsed realtime in milliseconds when the sample was notified.
+         */
+        private void onAccelerometerSample(Remotte remotte, double x, double y, double z, long timestamp) {
+            if (mFusion != null)
+                mFusion.updateAccelerometer(x, y, z);
+            if (mGestures != null)
+                mGestures.onAccelerometerSample(remotte, timestamp, x, y, z);
+        }
+
+        /**
+         * This method integrate a Gyroscope sample, deliver the new orientation to the orientation callback and feed
+         * the sample to the gesture detectors.
+         * @param timestamp The elapsed realtime in milliseconds when the sample was notified.
+         */
+        private void onGyroscopeSample(Remotte remotte, double x, double y, double z, long timestamp) {
+            if (mFusion != null && mFusion.updateGyroscope(x, y, z, timestamp))
+                mDelivery.onOrientationChange(remotte, getBuilder().getConfiguration().getOrientationCallback(), mFusion);
+            if (mGestures != null)
+                mGestures.onGyroscopeSample(remotte, timestamp, x, y, z);
+        }
+
+        /**
+         * This method deliver a sample smoothed by the service, the sample travels with its converted values.
+         * @param what The message type of the sensor, without the {@link #MSG_SAMPLE_VALUES} flag.
+         * @param low The arg1 of the message.
+         * @param high The arg2 of the message.
+         */
+        private void deliverSampleValues(Remotte remotte, int what, int low, int high) {
+            int sensor = RemotteMetrics.getSensor(what);
+            if (sensor < 0)
+                return;
+
+            RemotteSampleCodec.unpackValues(RemotteSampleCodec.getValuesCount(what), low, high, mValues);
+            long timestamp = RemotteSampleCodec.unpackTimestamp(high, getSampleClock());
+            onSampleDecoded();
+            RemotteSampleRecorder recorder = remotte.mRecorder;
+            if (recorder != null)
+                recorder.record(sensor, timestamp, mValues[0], mValues[1], mValues[2]);
+            mCalled = deliverSample(remotte, sensor, timestamp, mValues[0], mValues[1], mValues[2]);
+        }
+
+        /**
+         * @return Returns the aggregate of the sensor, it's created once and reused for every window.
+         */
+        private RemotteSampleAggregate obtainAggregate(int sensor) {
+            if (sensor < 0 || sensor >= mAggregates.length)
+                return null;
+            if (mAggregates[sensor] == null)
+                mAggregates[sensor] = new RemotteSampleAggregate(sensor);
+            return mAggregates[sensor];
+        }
+
+        /**
+         * This method deliver a converted sample to the sample callback of its sensor, to the orientation filter and
+         * to the gesture detectors.
+         * @param sensor Anyone of the RemotteMetrics.SENSOR constants.
+         * @param timestamp The elapsed realtime in milliseconds when the sample was notified.
+         * @return Returns true if the sample was delivered to anyone.
+         */
+        private boolean deliverSample(Remotte remotte, int sensor, long timestamp, double v0, double v1, double v2) {
+            Configuration configuration = getBuilder().getConfiguration();
+            boolean called = false;
+            switch (sensor) {
+                case RemotteMetrics.SENSOR_TEMPERATURE:
+                    if (configuration.getTemperatureSensorCallback() != null) {
+                        mDelivery.onTemperatureChange(remotte, configuration.getTemperatureSensorCallback(), v0);
+                        called = true;
+                    }
+                    break;
+                case RemotteMetrics.SENSOR_ACCELEROMETER:
+                    if (mAccelerometerFed) {
+                        onAccelerometerSample(remotte, v0, v1, v2, timestamp);
+                        called = true;
+                    }
+                    if (configuration.getAccelerometerSensorCallback() != null) {
+                        mDelivery.onAccelerometerChange(remotte, configuration.getAccelerometerSensorCallback(), v0, v1, v2);
+                        called = true;
+                    }
+                    break;
+                case RemotteMetrics.SENSOR_GYROSCOPE:
+                    if (configuration.getGyroscopeSensorCallback() != null) {
+                        mDelivery.onGyroscopeChange(remotte, configuration.getGyroscopeSensorCallback(), v0, v1, v2);
+                        called = true;
+                    }
+                    if (mGyroscopeFed) {
+                        onGyroscopeSample(remotte, v0, v1, v2, timestamp);
+                        called = true;
+                    }
+                    break;
+                case RemotteMetrics.SENSOR_ALTIMETER:
+                    if (configuration.getAltimeterSensorCallback() != null) {
+                        mDelivery.onAltimeterChange(remotte, configuration.getAltimeterSensorCallback(), v0, v1);
+                        called = true;
+                    }
+                    break;
+                case RemotteMetrics.SENSOR_KEYS:
+                    if (configuration.getKeysPressedCallback() != null) {
+                        mDelivery.onKeyPress(remotte, configuration.getKeysPressedCallback(), (int)v0, (int)v1);
+                        called = true;
+                    }
+                    break;
+            }
+            return called;
+        }
+
+        /**
+         * This method convert a batch of packed samples and deliver it to the batch callback of the sensor, and to
+         * its sample callback one by one.
+         */
+        private void deliverBatch(Remotte remotte, int sensor, int count, int[] samples) {
+            if (samples == null)
+                return;
+
+            count = Math.min(count, samples.length / 2);
+            if (mBatchTimestamps.length < count) {
+                mBatchTimestamps = new long[count];
+                mBatchX = new double[count];
+                mBatchY = new double[count];
+                mBatchZ = new double[count];
+            }
+
+            Configuration configuration = getBuilder().getConfiguration();
+            RemotteSampleRecorder recorder = remotte.mRecorder;
+            long now = SystemClock.elapsedRealtime();
+            for (int index = 0; index < count; index++) {
+                int low = samples[index * 2];
+                int high = samples[index * 2 + 1];
+
+                RemotteSampleCodec.unpack(low, high, mSample);
+                mBatchTimestamps[index] = RemotteSampleCodec.unpackTimestamp(high, now);
+
+                switch (sensor) {
+                    case MSG_TEMPERATURE_CHANGED:
+                        mBatchX[index] = RemotteSensorTemperature.convert(getDevice(), mSample);
+                        if (recorder != null)
+                            recorder.record(RemotteMetrics.SENSOR_TEMPERATURE, mBatchTimestamps[index], mBatchX[index], 0, 0);
+                        if (configuration.getTemperatureSensorCallback() != null)
+                            mDelivery.onTemperatureChange(remotte, configuration.getTemperatureSensorCallback(), mBatchX[index]);
+                        break;
+                    case MSG_ACCELEROMETER_CHANGED:
+                        RemotteSensorAccelerometer.convert(getDevice(), mSample, mValues);
+                        mBatchX[index] = mValues[RemotteSensor.X];
+                        mBatchY[index] = mValues[RemotteSensor.Y];
+                        mBatchZ[index] = mValues[RemotteSensor.Z];
+                        if (recorder != null)
+                            recorder.record(RemotteMetrics.SENSOR_ACCELEROMETER, mBatchTimestamps[index], mBatchX[index], mBatchY[index], mBatchZ[index]);
+                        if (mAccelerometerFed)
+                            onAccelerometerSample(remotte, mBatchX[index], mBatchY[index], mBatchZ[index], mBatchTimestamps[index]);
+                        if (configuration.getAccelerometerSensorCallback() != null)
+                            mDelivery.onAccelerometerChange(remotte, configuration.getAccelerometerSensorCallback(), mBatchX[index], mBatchY[index], mBatchZ[index]);
+                        break;
+                    case MSG_GYROSCOPE_CHANGED:
+                        RemotteSensorGyroscope.convert(getDevice(), mSample, mValues);
+                        mBatchX[index] = mValues[RemotteSensor.X];
+                        mBatchY[index] = mValues[RemotteSensor.Y];
+                        mBatchZ[index] = mValues[RemotteSensor.Z];
+                        if (recorder != null)
+                            recorder.record(RemotteMetrics.SENSOR_GYROSCOPE, mBatchTimestamps[index], mBatchX[index], mBatchY[index], mBatchZ[index]);
+                        if (configuration.getGyroscopeSensorCallback() != null)
+                            mDelivery.onGyroscopeChange(remotte, configuration.getGyroscopeSensorCallback(), mBatchX[index], mBatchY[index], mBatchZ[index]);
+                        if (mGyroscopeFed)
+                            onGyroscopeSample(remotte, mBatchX[index], mBatchY[index], mBatchZ[index], mBatchTimestamps[index]);
+                        break;
+                    case MSG_BAROMETER_CHANGED:
+                        mAltimeter.convert(getDevice(), mSample, mValues);
+                        mBatchX[index] = mValues[RemotteSensorAltimeter.PRESSURE];
+                        mBatchY[index] = mValues[RemotteSensorAltimeter.ALTITUDE];
+                        if (recorder != null)
+                            recorder.record(RemotteMetrics.SENSOR_ALTIMETER, mBatchTimestamps[index], mBatchX[index], mBatchY[index], 0);
+                        if (configuration.getAltimeterSensorCallback() != null)
+                            mDelivery.onAltimeterChange(remotte, configuration.getAltimeterSensorCallback(), mBatchX[index], mBatchY[index]);
+                        break;
+                }
+            }
+
+            switch (sensor) {
+                case MSG_TEMPERATURE_CHANGED:
+                    if (configuration.getTemperatureBatchCallback() != null)
+                        mDelivery.onTemperatureBatch(remotte, configuration.getTemperatureBatchCallback(), count, mBatchTimestamps, mBatchX);
+                    break;
+                case MSG_ACCELEROMETER_CHANGED:
+                    if (configuration.getAccelerometerBatchCallback() != null)
+                        mDelivery.onAccelerometerBatch(remotte, configuration.getAccelerometerBatchCallback(), count, mBatchTimestamps, mBatchX, mBatchY, mBatchZ);
+                    break;
+                case MSG_GYROSCOPE_CHANGED:
+                    if (configuration.getGyroscopeBatchCallback() != null)
+                        mDelivery.onGyroscopeBatch(remotte, configuration.getGyroscopeBatchCallback(), count, mBatchTimestamps, mBatchX, mBatchY, mBatchZ);
+                    break;
+                case MSG_BAROMETER_CHANGED:
+                    if (configuration.getAltimeterBatchCallback() != null)
+                        mDelivery.onAltimeterBatch(remotte, configuration.getAltimeterBatchCallback(), count, mBatchTimestamps, mBatchX, mBatchY);
+                    break;
+            }
+        }
     }
 
     /**
@@ -388,6 +973,8 @@ public final class Remotte {
         private String                        mDeviceAddress;
         private Configuration                 mConfiguration;
         private CharacteristicReadCallback    mCharacteristicReadCallback;
+        private Looper                        mDeliveryLooper;
+        private boolean                       mDeliveryThreadEnabled = false;
 
         /**
          * Use this method to get your {@link com.mobandme.remotte.Remotte.Configuration} instance.
@@ -424,17 +1011,45 @@ public final class Remotte {
         }
         private String  getDeviceAddress() { return this.mDeviceAddress; }
 
+        /**
+         * Use this method to receive the callbacks on your own thread instead of the thread that builds the
+         * {@link com.mobandme.remotte.Remotte} instance, usually the main thread.
+         * @param looper Pass the {@link android.os.Looper} of your thread.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Builder} instance.
+         */
+        public  Builder setDeliveryLooper(Looper looper) {
+            this.mDeliveryLooper = looper;
+            return this;
+        }
+        private Looper  getDeliveryLooper() { return this.mDeliveryLooper; }
+
+        /**
+         * Use this method to receive the callbacks on a thread owned by the {@link com.mobandme.remotte.Remotte}
+         * instance, so the sensor streams don't compete with the layout and drawing of your app. The callbacks that
+         * implement {@link com.mobandme.remotte.listener.MainThreadCallback} are still called on the main thread.
+         * Remember to call {@link com.mobandme.remotte.Remotte#release()} when you don't need the instance anymore.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Builder} instance.
+         */
+        public  Builder enableDeliveryThread() {
+            this.mDeliveryThreadEnabled = true;
+            return this;
+        }
+        private boolean isDeliveryThreadEnabled() { return this.mDeliveryThreadEnabled; }
+
         private Context getContext() { return this.mContext.getApplicationContext(); }
         private void    setContext(Context context) { this.mContext = context; }
 
         /**
          * Use this method to build and obtain your {@link com.mobandme.remotte.Remotte} instance.
          * @param context Pass a {@link android.content.Context}
+         * @throws {@link java.lang.RuntimeException} when the configuration can't be used, for example when its sample ring differs from the ring of other client.
          * @return Returns a {@link com.mobandme.remotte.Remotte} instance.
          */
         public Remotte build(Context context) {
             if (mConfiguration == null)
                 throw new RuntimeException("Not configuration set, please use setConfiguration method to set it.");
+            if (mDeliveryLooper != null && mDeliveryThreadEnabled)
+                throw new RuntimeException("Invalid delivery, please use a delivery looper or the delivery thread, but not both.");
 
             setContext(context);
             return new Remotte(this);
@@ -452,6 +1067,14 @@ public final class Remotte {
         private TemperatureSensorCallback       mTemperatureSensorCallback;
         private ConnectionStateChangeCallback   mConnectionStateChangeCallback;
         private KeysPressedCallback             mKeysPressedCallback;
+        private AltimeterBatchCallback          mAltimeterBatchCallback;
+        private GyroscopeBatchCallback          mGyroscopeBatchCallback;
+        private AccelerometerBatchCallback      mAccelerometerBatchCallback;
+        private TemperatureBatchCallback        mTemperatureBatchCallback;
+        private OrientationCallback             mOrientationCallback;
+        private GestureCallback                 mGestureCallback;
+        private SampleAggregateCallback         mSampleAggregateCallback;
+        private final List<RemotteGestureDetector> mGestureDetectors = new ArrayList<RemotteGestureDetector>();
 
         private boolean mConnectionStateCallbackEnabled     = false;
         private boolean mTemperatureSensorCallbackEnabled   = false;
@@ -463,6 +1086,7 @@ public final class Remotte {
         private boolean mAccelerometerSensorEnabled         = false;
         private boolean mGyroscopeSensorEnabled             = false;
         private boolean mAltimeterSensorEnabled             = false;
+        private boolean mKeysSensorEnabled                  = false;
 
         private byte    mAccelerometerPeriod = 0x64; //This value is equivalent to 1 second period.
         private byte    mGyroscopePeriod     = 0x64; //This value is equivalent to 1 second period.
@@ -471,9 +1095,49 @@ public final class Remotte {
 
         private int     mDevice = Remotte.Devices.REMOTTE;
 
+        private int     mBatchSize    = 0; //Batching disabled.
+        private int     mBatchLatency = 0; //Milliseconds.
+
+        private boolean mLatencyMetricsEnabled = false;
+
+        private int     mSampleRingCapacity = 0; //Sample ring disabled.
+        private int     mSampleRingPolicy   = RemotteSampleRing.POLICY_OVERWRITE_OLDEST;
+
+        private boolean mAutoReconnectEnabled = false;
+        private int     mMaxReconnectAttempts = 10;
+        private int     mReconnectDelay       = 500;   //Milliseconds, doubled on every attempt.
+        private int     mReconnectMaxDelay    = 30000; //Milliseconds.
+
+        private int     mOrientationAlgorithm = RemotteSensorFusion.ALGORITHM_MADGWICK;
+        private double  mOrientationGain      = RemotteSensorFusion.DEFAULT_MADGWICK_GAIN;
+
+        //The sample filters, by RemotteMetrics.SENSOR constant. The filters with mode 0 are disabled.
+        private final int[]   mFilterModes        = new int[RemotteConfigurationCodec.SAMPLE_SENSORS];
+        private final float[] mFilterDeadbands    = new float[RemotteConfigurationCodec.SAMPLE_SENSORS];
+        private final int[]   mFilterMinIntervals = new int[RemotteConfigurationCodec.SAMPLE_SENSORS];
+        private final int[]   mFilterHeartbeats   = new int[RemotteConfigurationCodec.SAMPLE_SENSORS];
+
+        //The sample pipelines, by RemotteMetrics.SENSOR constant. The aggregates with window 0 are disabled.
+        private final int[]   mDecimations        = newSampleOptions(1);
+        private final int[]   mMovingAverages     = newSampleOptions(1);
+        private final int[]   mAggregateInputs    = newSampleOptions(RemotteSampleAggregate.INPUT_VALUES);
+        private final int[]   mAggregateWindows   = newSampleOptions(0);
+        private final int[]   mAggregateSteps     = newSampleOptions(0);
+
         public  Configuration() { }
         private Configuration(Parcel in) { readFromParcel(in); }
 
+        private static int[] newSampleOptions(int value) {
+            int[] options = new int[RemotteConfigurationCodec.SAMPLE_SENSORS];
+            Arrays.fill(options, value);
+            return options;
+        }
+
+        private static void checkSampleSensor(int sensor) {
+            if (sensor < RemotteMetrics.SENSOR_TEMPERATURE || sensor > RemotteMetrics.SENSOR_ALTIMETER)
+                throw new RuntimeException("Invalid sensor, please use the RemotteMetrics constants from SENSOR_TEMPERATURE to SENSOR_ALTIMETER.");
+        }
+
         /**
          * Use this method to set the device type, remember use anyone of this constants, Remotte.Devices.REMOTTE or Remotte.Devices.SENSOR_TAG
          * @param deviceType Use to set the device type.
@@ -516,6 +1180,15 @@ public final class Remotte {
          */
         public Configuration enableAltimeterSensor(boolean enabled) { mAltimeterSensorEnabled = enabled; return this; }
 
+        /**
+         * Use this method to write the keys events into the sample ring. The keys pressed callback receives the
+         * events without this, enable it only when you read the keys from the ring.
+         * @param enabled If you want the keys events into the ring, pass true or otherwise pass false.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         * @see #enableSampleRing(int, int)
+         */
+        public Configuration enableKeysSensor(boolean enabled) { mKeysSensorEnabled = enabled; return this; }
+
         /**
          * Use this method to enable the Altimeter built in sensor and subscribe to their notifications of changes.
          * @param enabled If you want enable the sensor, pass true or otherwise pass false.
@@ -645,75 +1318,671 @@ public final class Remotte {
             return enableTemperatureSensor(enabled, sensorChangeListener);
         }
 
+        /**
+         * Use this method to receive the sensor samples in batches, instead of one by one. The service will keep the
+         * samples of every sensor until it has maxSamples or the first of them has waited maxLatency milliseconds.
+         * Batching reduce the number of messages between the service and your app, use it when you don't need the
+         * samples with the minimum latency.
+         * @param maxSamples The maximum number of samples of every batch, pass 1 to disable the batching.
+         * @param maxLatency The maximum time in milliseconds that a sample can wait into the batch, it must be less
+         *                   than 65535 because the samples carry their timestamp in 16 bits.
+         * @throws {@link java.lang.RuntimeException} when the parameters are not valid.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         */
+        public Configuration setBatching(int maxSamples, int maxLatency) {
+            if (maxSamples < 1)
+                throw new RuntimeException("Invalid batch size, the minimum value is 1 sample.");
+            if (maxLatency < 0)
+                throw new RuntimeException("Invalid batch latency, the minimum value is 0 milliseconds.");
+            if (maxLatency >= RemotteSampleCodec.MAX_SAMPLE_AGE)
+                throw new RuntimeException("Invalid batch latency, the maximum value is 65534 milliseconds.");
+
+            this.mBatchSize = maxSamples;
+            this.mBatchLatency = maxLatency;
+            return this;
+        }
+        public int getBatchSize() { return this.mBatchSize; }
+        public int getBatchLatency() { return this.mBatchLatency; }
+
+        /**
+         * Use this method to measure the latency of every sample, from the GATT notification to the return of your
+         * callback. The measure has a little cost on every sample, so enable it only when you need it.
+         * @param enabled If you want measure the latency, pass true or otherwise pass false.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         * @see com.mobandme.remotte.Remotte#getMetrics()
+         */
+        public Configuration enableLatencyMetrics(boolean enabled) { mLatencyMetricsEnabled = enabled; return this; }
+        public boolean getLatencyMetricsEnabled() { return this.mLatencyMetricsEnabled; }
+
+        /**
+         * Use this method to read the samples from a {@link com.mobandme.remotte.RemotteSampleRing}, without messages
+         * between the service and your app. The samples of every enabled sensor are written into the ring, even if
+         * the sensor has not callback. The keys are written only if you enable them with {@link #enableKeysSensor(boolean)}. The ring only works when the {@link com.mobandme.remotte.RemotteService} runs
+         * on the process of your app, so don't declare it with its own android:process. The ring of a device it's
+         * shared by all its clients, so all of them must use the same policy and at most the capacity of the first.
+         * A client with other configuration can't be built while the ring exists.
+         * @param capacity The number of samples of the ring, it's rounded up to the next power of two.
+         * @param policy Use {@link com.mobandme.remotte.RemotteSampleRing#POLICY_OVERWRITE_OLDEST} or {@link com.mobandme.remotte.RemotteSampleRing#POLICY_BLOCK}.
+         * @throws {@link java.lang.RuntimeException} when the parameters are not valid.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         * @see com.mobandme.remotte.Remotte#getSampleRing()
+         */
+        public Configuration enableSampleRing(int capacity, int policy) {
+            if (capacity < 2)
+                throw new RuntimeException("Invalid sample ring capacity, the minimum value is 2 samples.");
+            if (policy != RemotteSampleRing.POLICY_OVERWRITE_OLDEST && policy != RemotteSampleRing.POLICY_BLOCK)
+                throw new RuntimeException("Invalid sample ring policy, please use the RemotteSampleRing constants.");
+
+            this.mSampleRingCapacity = capacity;
+            this.mSampleRingPolicy = policy;
+            return this;
+        }
+        public boolean getSampleRingEnabled() { return this.mSampleRingCapacity > 0; }
+        public int getSampleRingCapacity() { return this.mSampleRingCapacity; }
+        public int getSampleRingPolicy() { return this.mSampleRingPolicy; }
+
+        /**
+         * Use this method to drop in the service the samples of a sensor that don't change, so they don't cost a
+         * message nor a callback. A sample it's sent when any of its values moves more than the deadband from the
+         * last sent sample, or when the heartbeat time passes without sent samples. The filter applies to the
+         * callbacks and the batches of your app, not to the sample ring.
+         * @param sensor Use {@link com.mobandme.remotte.RemotteMetrics#SENSOR_TEMPERATURE}, SENSOR_ACCELEROMETER, SENSOR_GYROSCOPE or SENSOR_ALTIMETER.
+         * @param deadbandMode Use {@link com.mobandme.remotte.RemotteSampleFilter#DEADBAND_ABSOLUTE} or {@link com.mobandme.remotte.RemotteSampleFilter#DEADBAND_RELATIVE}.
+         * @param deadband The minimum change, in the units of the sensor or as a fraction of the last sent value. Pass 0 to drop only the repeated samples.
+         * @param minInterval The minimum time between two sent samples in milliseconds, 0 to not limit it.
+         * @param heartbeat The maximum time without sent samples in milliseconds, 0 to disable it.
+         * @throws {@link java.lang.RuntimeException} when the parameters are not valid.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         * @see com.mobandme.remotte.RemotteMetrics#getSuppressedSamples(int)
+         */
+        public Configuration enableSampleFilter(int sensor, int deadbandMode, double deadband, int minInterval, int heartbeat) {
+            checkSampleSensor(sensor);
+            if (deadbandMode != RemotteSampleFilter.DEADBAND_ABSOLUTE && deadbandMode != RemotteSampleFilter.DEADBAND_RELATIVE)
+                throw new RuntimeException("Invalid filter deadband mode, please use the RemotteSampleFilter constants.");
+            if (deadband < 0 || minInterval < 0 || heartbeat < 0)
+                throw new RuntimeException("Invalid filter parameters, the deadband and the times can't be negative.");
+            if (heartbeat > 0 && heartbeat < minInterval)
+                throw new RuntimeException("Invalid filter heartbeat, it can't be shorter than the minimum interval.");
+
+            this.mFilterModes[sensor] = deadbandMode;
+            this.mFilterDeadbands[sensor] = (float)deadband;
+            this.mFilterMinIntervals[sensor] = minInterval;
+            this.mFilterHeartbeats[sensor] = heartbeat;
+            return this;
+        }
+
+        /**
+         * Use this method to send every sample of a sensor again.
+         * @param sensor Anyone of the RemotteMetrics.SENSOR constants.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         */
+        public Configuration disableSampleFilter(int sensor) {
+            if (sensor >= 0 && sensor < this.mFilterModes.length) {
+                this.mFilterModes[sensor] = 0;
+                this.mFilterDeadbands[sensor] = 0;
+                this.mFilterMinIntervals[sensor] = 0;
+                this.mFilterHeartbeats[sensor] = 0;
+            }
+            return this;
+        }
+        public boolean getSampleFilterEnabled(int sensor) { return sensor >= 0 && sensor < this.mFilterModes.length && this.mFilterModes[sensor] != 0; }
+
+        /**
+         * @return Returns a new filter for the sensor, or null if its samples are not filtered.
+         */
+        RemotteSampleFilter buildSampleFilter(int sensor) {
+            if (!getSampleFilterEnabled(sensor))
+                return null;
+            return new RemotteSampleFilter(this.mFilterModes[sensor], this.mFilterDeadbands[sensor], this.mFilterMinIntervals[sensor], this.mFilterHeartbeats[sensor]);
+        }
+
+        /**
+         * Use this method to receive in your sample callbacks only one of every N samples of a sensor, the others are
+         * dropped in the service. With a moving average the samples are smoothed before, so the sent ones summarize
+         * the dropped ones. The aggregates of the sensor still see every sample.
+         * @param sensor Use {@link com.mobandme.remotte.RemotteMetrics#SENSOR_TEMPERATURE}, SENSOR_ACCELEROMETER, SENSOR_GYROSCOPE or SENSOR_ALTIMETER.
+         * @param factor Pass N to keep one of every N samples, 1 to keep all of them or 0 to keep none of them and receive only the aggregates.
+         * @throws {@link java.lang.RuntimeException} when the parameters are not valid.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         */
+        public Configuration setSampleDecimation(int sensor, int factor) {
+            checkSampleSensor(sensor);
+            if (factor < 0)
+                throw new RuntimeException("Invalid decimation factor, it can't be negative.");
+
+            this.mDecimations[sensor] = factor;
+            return this;
+        }
+        public int getSampleDecimation(int sensor) { checkSampleSensor(sensor); return this.mDecimations[sensor]; }
+
+        /**
+         * Use this method to smooth in the service the samples of a sensor, every sent sample it's the mean of the
+         * last samples. The smoothed samples are sent one by one, even if the batching it's enabled.
+         * @param sensor Use {@link com.mobandme.remotte.RemotteMetrics#SENSOR_TEMPERATURE}, SENSOR_ACCELEROMETER, SENSOR_GYROSCOPE or SENSOR_ALTIMETER.
+         * @param samples The number of samples of the mean, 1 to disable the moving average. Remember that the maximum it's 1024.
+         * @throws {@link java.lang.RuntimeException} when the parameters are not valid.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         */
+        public Configuration enableMovingAverage(int sensor, int samples) {
+            checkSampleSensor(sensor);
+            if (samples < 1 || samples > 1024)
+                throw new RuntimeException("Invalid moving average, the value must be between 1 and 1024 samples.");
+
+            this.mMovingAverages[sensor] = samples;
+            return this;
+        }
+        public int getMovingAverage(int sensor) { checkSampleSensor(sensor); return this.mMovingAverages[sensor]; }
+
+        /**
+         * Use this method to receive the statistics of the samples of a sensor over windows of time, computed in the
+         * service. A window ends every step, the windows tumble when the step and the window are equal and slide
+         * when the step it's shorter. Remember to set your callback with {@link #enableSampleAggregateCallback(com.mobandme.remotte.listener.SampleAggregateCallback)},
+         * and use {@link #setSampleDecimation(int, int)} with 0 if you don't need the samples.
+         * @param sensor Use {@link com.mobandme.remotte.RemotteMetrics#SENSOR_TEMPERATURE}, SENSOR_ACCELEROMETER, SENSOR_GYROSCOPE or SENSOR_ALTIMETER.
+         * @param input Use {@link com.mobandme.remotte.RemotteSampleAggregate#INPUT_VALUES} or {@link com.mobandme.remotte.RemotteSampleAggregate#INPUT_MAGNITUDE}.
+         * @param window The duration of the windows in milliseconds, 0 to disable the aggregates. Remember that the maximum it's 60000.
+         * @param step The time between the end of two windows in milliseconds, it can't be longer than the window.
+         * @throws {@link java.lang.RuntimeException} when the parameters are not valid.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         */
+        public Configuration enableSampleAggregate(int sensor, int input, int window, int step) {
+            checkSampleSensor(sensor);
+            if (input != RemotteSampleAggregate.INPUT_VALUES && input != RemotteSampleAggregate.INPUT_MAGNITUDE)
+                throw new RuntimeException("Invalid aggregate input, please use the RemotteSampleAggregate constants.");
+            if (window < 0 || window > 60000)
+                throw new RuntimeException("Invalid aggregate window, the value must be between 0 and 60000 milliseconds.");
+            if (window > 0 && (step < 1 || step > window))
+                throw new RuntimeException("Invalid aggregate step, the value must be between 1 millisecond and the window.");
+
+            this.mAggregateInputs[sensor] = input;
+            this.mAggregateWindows[sensor] = window;
+            this.mAggregateSteps[sensor] = (window > 0 ? step : 0);
+            return this;
+        }
+        public boolean getSampleAggregateEnabled(int sensor) { return sensor >= 0 && sensor < this.mAggregateWindows.length && this.mAggregateWindows[sensor] > 0; }
+        public int getSampleAggregateInput(int sensor) { checkSampleSensor(sensor); return this.mAggregateInputs[sensor]; }
+
+        /**
+         * Use this method to receive the statistics of the sensors with aggregates.
+         * @param aggregateCallback Pass your {@link com.mobandme.remotte.listener.SampleAggregateCallback} implementation.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         */
+        public Configuration enableSampleAggregateCallback(SampleAggregateCallback aggregateCallback) {
+            this.mSampleAggregateCallback = aggregateCallback;
+            return this;
+        }
+
+        /**
+         * Use this method to send the samples of a sensor as they arrive again, without decimation, moving average
+         * nor aggregates.
+         * @param sensor Anyone of the RemotteMetrics.SENSOR constants.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         */
+        public Configuration disableSamplePipeline(int sensor) {
+            if (sensor >= 0 && sensor < this.mDecimations.length) {
+                this.mDecimations[sensor] = 1;
+                this.mMovingAverages[sensor] = 1;
+                this.mAggregateInputs[sensor] = RemotteSampleAggregate.INPUT_VALUES;
+                this.mAggregateWindows[sensor] = 0;
+                this.mAggregateSteps[sensor] = 0;
+            }
+            return this;
+        }
+
+        /**
+         * @return Returns a new pipeline for the sensor, or null if its samples are sent as they arrive.
+         */
+        RemotteSamplePipeline buildSamplePipeline(int sensor) {
+            if (sensor < 0 || sensor >= this.mDecimations.length)
+                return null;
+            if (this.mDecimations[sensor] == 1 && this.mMovingAverages[sensor] <= 1 && this.mAggregateWindows[sensor] <= 0)
+                return null;
+            return new RemotteSamplePipeline(this.mDecimations[sensor], this.mMovingAverages[sensor], this.mAggregateInputs[sensor], this.mAggregateWindows[sensor], this.mAggregateSteps[sensor]);
+        }
+
+        /**
+         * Use this method to reconnect automatically when the connection with the device it's lost. While the
+         * service retries, your connection state callback receives STATE_CONNECTING instead of STATE_DISCONNECTED,
+         * and once connected the device it's configured again without your intervention. Up to 10 attempts are
+         * done, waiting from 500 milliseconds to 30 seconds between them.
+         * @param enabled If you want reconnect automatically, pass true or otherwise pass false.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         * @see com.mobandme.remotte.Remotte#getReconnectAttempts()
+         */
+        public Configuration enableAutoReconnect(boolean enabled) { mAutoReconnectEnabled = enabled; return this; }
+
+        /**
+         * Use this method to reconnect automatically when the connection with the device it's lost. The time between
+         * attempts it's doubled on every attempt, with a random jitter, so many devices don't retry at the same time.
+         * @param maxAttempts The maximum number of attempts, pass 0 to retry forever.
+         * @param initialDelay The time in milliseconds before the first attempt.
+         * @param maxDelay The maximum time in milliseconds between two attempts.
+         * @throws {@link java.lang.RuntimeException} when the parameters are not valid.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         */
+        public Configuration enableAutoReconnect(int maxAttempts, int initialDelay, int maxDelay) {
+            if (maxAttempts < 0)
+                throw new RuntimeException("Invalid reconnect attempts, the minimum value is 0 attempts.");
+            if (initialDelay < 1 || maxDelay < initialDelay)
+                throw new RuntimeException("Invalid reconnect delays, the initial delay must be between 1 and the maximum delay.");
+
+            this.mMaxReconnectAttempts = maxAttempts;
+            this.mReconnectDelay = initialDelay;
+            this.mReconnectMaxDelay = maxDelay;
+            return enableAutoReconnect(true);
+        }
+        public boolean getAutoReconnectEnabled() { return this.mAutoReconnectEnabled; }
+        public int getMaxReconnectAttempts() { return this.mMaxReconnectAttempts; }
+        public int getReconnectDelay() { return this.mReconnectDelay; }
+        public int getReconnectMaxDelay() { return this.mReconnectMaxDelay; }
+
+        /**
+         * Use this method to receive the orientation of the device, fused from the Accelerometer and Gyroscope samples
+         * with the Madgwick filter. Remember to enable both sensors, the orientation it's updated on every Gyroscope sample.
+         * @param orientationCallback Pass your {@link com.mobandme.remotte.listener.OrientationCallback} implementation.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         * @see com.mobandme.remotte.RemotteSensorFusion
+         */
+        public Configuration enableOrientationCallback(OrientationCallback orientationCallback) {
+            return enableOrientationCallback(RemotteSensorFusion.ALGORITHM_MADGWICK, RemotteSensorFusion.DEFAULT_MADGWICK_GAIN, orientationCallback);
+        }
+
+        /**
+         * Use this method to receive the orientation of the device, fused from the Accelerometer and Gyroscope samples.
+         * Remember to enable both sensors, the orientation it's updated on every Gyroscope sample.
+         * @param algorithm Use {@link com.mobandme.remotte.RemotteSensorFusion#ALGORITHM_MADGWICK} or {@link com.mobandme.remotte.RemotteSensorFusion#ALGORITHM_MAHONY}.
+         * @param gain The gain of the filter, see the DEFAULT constants of {@link com.mobandme.remotte.RemotteSensorFusion}.
+         * @param orientationCallback Pass your {@link com.mobandme.remotte.listener.OrientationCallback} implementation.
+         * @throws {@link java.lang.RuntimeException} when the parameters are not valid.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         */
+        public Configuration enableOrientationCallback(int algorithm, double gain, OrientationCallback orientationCallback) {
+            if (algorithm != RemotteSensorFusion.ALGORITHM_MADGWICK && algorithm != RemotteSensorFusion.ALGORITHM_MAHONY)
+                throw new RuntimeException("Invalid fusion algorithm, please use the RemotteSensorFusion constants.");
+            if (gain < 0)
+                throw new RuntimeException("Invalid fusion gain, the minimum value is 0.");
+
+            this.mOrientationAlgorithm = algorithm;
+            this.mOrientationGain = gain;
+            this.mOrientationCallback = orientationCallback;
+            return this;
+        }
+        public int getOrientationAlgorithm() { return this.mOrientationAlgorithm; }
+        public double getOrientationGain() { return this.mOrientationGain; }
+
+        /**
+         * Use this method to register a gesture detector, its gestures are delivered to the gesture callback.
+         * Remember to enable the sensors used by the detector, see {@link com.mobandme.remotte.RemotteGestureDetector#getSensors()}.
+         * @param detector Pass a new instance of anyone of the {@link com.mobandme.remotte.RemotteGestureDetector} implementations.
+         * @throws {@link java.lang.RuntimeException} when the detector is null or it's already registered.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         */
+        public Configuration addGestureDetector(RemotteGestureDetector detector) {
+            if (detector == null || this.mGestureDetectors.contains(detector))
+                throw new RuntimeException("Invalid gesture detector, it's null or it's already registered.");
+
+            this.mGestureDetectors.add(detector);
+            return this;
+        }
+
+        /**
+         * Use this method to receive the gestures recognized by the gesture detectors. The detectors run on the delivery
+         * thread, so your callback only receives the gestures and not the raw samples.
+         * @param gestureCallback Pass your {@link com.mobandme.remotte.listener.GestureCallback} implementation.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         */
+        public Configuration enableGestureCallback(GestureCallback gestureCallback) {
+            this.mGestureCallback = gestureCallback;
+            return this;
+        }
+
+        List<RemotteGestureDetector> getGestureDetectors() { return this.mGestureDetectors; }
+
+        private boolean getGestureSensorEnabled(int sensor) {
+            if (this.mGestureCallback == null)
+                return false;
+
+            for (RemotteGestureDetector detector : this.mGestureDetectors) {
+                if ((detector.getSensors() & sensor) != 0)
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * Use this method to subscribe to the Altimeter samples in batches. Remember to enable the sensor and the batching.
+         * @param batchCallback Pass your {@link com.mobandme.remotte.listener.AltimeterBatchCallback} implementation.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         */
+        public Configuration enableAltimeterBatchCallback(AltimeterBatchCallback batchCallback) {
+            this.mAltimeterBatchCallback = batchCallback;
+            return this;
+        }
+
+        /**
+         * Use this method to subscribe to the Gyroscope samples in batches. Remember to enable the sensor and the batching.
+         * @param batchCallback Pass your {@link com.mobandme.remotte.listener.GyroscopeBatchCallback} implementation.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         */
+        public Configuration enableGyroscopeBatchCallback(GyroscopeBatchCallback batchCallback) {
+            this.mGyroscopeBatchCallback = batchCallback;
+            return this;
+        }
+
+        /**
+         * Use this method to subscribe to the Accelerometer samples in batches. Remember to enable the sensor and the batching.
+         * @param batchCallback Pass your {@link com.mobandme.remotte.listener.AccelerometerBatchCallback} implementation.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         */
+        public Configuration enableAccelerometerBatchCallback(AccelerometerBatchCallback batchCallback) {
+            this.mAccelerometerBatchCallback = batchCallback;
+            return this;
+        }
+
+        /**
+         * Use this method to subscribe to the Temperature samples in batches. Remember to enable the sensor and the batching.
+         * @param batchCallback Pass your {@link com.mobandme.remotte.listener.TemperatureBatchCallback} implementation.
+         * @return Returns your {@link com.mobandme.remotte.Remotte.Configuration} instance.
+         */
+        public Configuration enableTemperatureBatchCallback(TemperatureBatchCallback batchCallback) {
+            this.mTemperatureBatchCallback = batchCallback;
+            return this;
+        }
+
         public boolean  getTemperatureSensorEnabled()       { return this.mTemperatureSensorEnabled; }
         public boolean  getAccelerometerSensorEnabled()     { return this.mAccelerometerSensorEnabled; }
         public boolean  getGyroscopeSensorEnabled()         { return this.mGyroscopeSensorEnabled; }
         public boolean  getAltimeterSensorEnabled()         { return this.mAltimeterSensorEnabled; }
+        public boolean  getKeysSensorEnabled()              { return this.mKeysSensorEnabled; }
 
         public boolean  getConnectionStateCallbackEnabled(){ return this.mConnectionStateCallbackEnabled; }
-        public boolean  getTemperatureCallbackEnabled()    { return this.mTemperatureSensorCallbackEnabled; }
-        public boolean  getAltimeterCallbackEnabled()      { return this.mAltimeterSensorCallbackEnabled; }
-        public boolean  getAccelerometerCallbackEnabled()  { return this.mAccelerometerSensorCallbackEnabled; }
-        public boolean  getGyroscopeCallbackEnabled()      { return this.mGyroscopeSensorCallbackEnabled; }
+        public boolean  getTemperatureCallbackEnabled()    { return this.mTemperatureSensorCallbackEnabled || this.mTemperatureBatchCallback != null || getSampleAggregateEnabled(RemotteMetrics.SENSOR_TEMPERATURE); }
+        public boolean  getAltimeterCallbackEnabled()      { return this.mAltimeterSensorCallbackEnabled || this.mAltimeterBatchCallback != null || getSampleAggregateEnabled(RemotteMetrics.SENSOR_ALTIMETER); }
+        public boolean  getAccelerometerCallbackEnabled()  { return this.mAccelerometerSensorCallbackEnabled || this.mAccelerometerBatchCallback != null || this.mOrientationCallback != null || getGestureSensorEnabled(RemotteGestureDetector.SENSOR_ACCELEROMETER) || getSampleAggregateEnabled(RemotteMetrics.SENSOR_ACCELEROMETER); }
+        public boolean  getGyroscopeCallbackEnabled()      { return this.mGyroscopeSensorCallbackEnabled || this.mGyroscopeBatchCallback != null || this.mOrientationCallback != null || getGestureSensorEnabled(RemotteGestureDetector.SENSOR_GYROSCOPE) || getSampleAggregateEnabled(RemotteMetrics.SENSOR_GYROSCOPE); }
         public boolean  getKeysPressedCallbackEnabled()      { return this.mKeysPressedCallbackEnabled; }
 
+        //The device notifies the sensors with callback, and every enabled sensor when the samples go to the ring.
+        boolean getTemperatureNotificationEnabled()   { return getTemperatureCallbackEnabled() || (getSampleRingEnabled() && this.mTemperatureSensorEnabled); }
+        boolean getAccelerometerNotificationEnabled() { return getAccelerometerCallbackEnabled() || (getSampleRingEnabled() && this.mAccelerometerSensorEnabled); }
+        boolean getGyroscopeNotificationEnabled()     { return getGyroscopeCallbackEnabled() || (getSampleRingEnabled() && this.mGyroscopeSensorEnabled); }
+        boolean getAltimeterNotificationEnabled()     { return getAltimeterCallbackEnabled() || (getSampleRingEnabled() && this.mAltimeterSensorEnabled); }
+        boolean getKeysNotificationEnabled()          { return getKeysPressedCallbackEnabled() || (getSampleRingEnabled() && this.mKeysSensorEnabled); }
+
         protected AltimeterSensorCallback       getAltimeterSensorCallback() { return this.mAltimeterSensorCallback; }
         protected GyroscopeSensorCallback       getGyroscopeSensorCallback() { return this.mGyroscopeSensorCallback; }
         protected AccelerometerSensorCallback   getAccelerometerSensorCallback() { return this.mAccelerometerSensorCallback; }
         protected TemperatureSensorCallback     getTemperatureSensorCallback() { return this.mTemperatureSensorCallback; }
         protected ConnectionStateChangeCallback getConnectionStateChangeCallback() { return this.mConnectionStateChangeCallback; }
         protected KeysPressedCallback           getKeysPressedCallback() { return this.mKeysPressedCallback; }
+        protected AltimeterBatchCallback        getAltimeterBatchCallback() { return this.mAltimeterBatchCallback; }
+        protected GyroscopeBatchCallback        getGyroscopeBatchCallback() { return this.mGyroscopeBatchCallback; }
+        protected AccelerometerBatchCallback    getAccelerometerBatchCallback() { return this.mAccelerometerBatchCallback; }
+        protected TemperatureBatchCallback      getTemperatureBatchCallback() { return this.mTemperatureBatchCallback; }
+        protected OrientationCallback           getOrientationCallback() { return this.mOrientationCallback; }
+        protected GestureCallback               getGestureCallback() { return this.mGestureCallback; }
+        protected SampleAggregateCallback       getSampleAggregateCallback() { return this.mSampleAggregateCallback; }
 
         public byte[] getAltimeterPeriod() { return new byte[] { this.mAltimeterPeriod }; }
         public byte[] getAccelerometerPeriod() { return new byte[] { this.mAccelerometerPeriod }; }
         public byte[] getGyroscopePeriod() { return new byte[] { this.mGyroscopePeriod }; }
         public byte[] getTemperaturePeriod() { return new byte[] { this.mTemperaturePeriod }; }
 
+        /**
+         * Use this method to join the configurations of two clients of the same device. The sensors and the
+         * notifications enabled by anyone of them are enabled, with the shortest period requested. The callback flags
+         * of the merged configuration mean that the device notifies the sensor, for a callback or for the ring.
+         * @param other The configuration of the other client.
+         * @return Returns a new configuration, without callbacks.
+         */
+        Configuration merge(Configuration other) {
+            Configuration merged = new Configuration();
+            merged.mDevice = this.mDevice;
+
+            merged.mTemperatureSensorEnabled   = this.mTemperatureSensorEnabled || other.mTemperatureSensorEnabled;
+            merged.mAccelerometerSensorEnabled = this.mAccelerometerSensorEnabled || other.mAccelerometerSensorEnabled;
+            merged.mGyroscopeSensorEnabled     = this.mGyroscopeSensorEnabled || other.mGyroscopeSensorEnabled;
+            merged.mAltimeterSensorEnabled     = this.mAltimeterSensorEnabled || other.mAltimeterSensorEnabled;
+            merged.mKeysSensorEnabled          = this.mKeysSensorEnabled || other.mKeysSensorEnabled;
+
+            merged.mConnectionStateCallbackEnabled     = this.getConnectionStateCallbackEnabled() || other.getConnectionStateCallbackEnabled();
+            merged.mTemperatureSensorCallbackEnabled   = this.getTemperatureNotificationEnabled() || other.getTemperatureNotificationEnabled();
+            merged.mAccelerometerSensorCallbackEnabled = this.getAccelerometerNotificationEnabled() || other.getAccelerometerNotificationEnabled();
+            merged.mGyroscopeSensorCallbackEnabled     = this.getGyroscopeNotificationEnabled() || other.getGyroscopeNotificationEnabled();
+            merged.mAltimeterSensorCallbackEnabled     = this.getAltimeterNotificationEnabled() || other.getAltimeterNotificationEnabled();
+            merged.mKeysPressedCallbackEnabled         = this.getKeysNotificationEnabled() || other.getKeysNotificationEnabled();
+
+            merged.mTemperaturePeriod   = mergePeriod(this.mTemperaturePeriod, this.getTemperatureNotificationEnabled(), other.mTemperaturePeriod, other.getTemperatureNotificationEnabled());
+            merged.mAccelerometerPeriod = mergePeriod(this.mAccelerometerPeriod, this.getAccelerometerNotificationEnabled(), other.mAccelerometerPeriod, other.getAccelerometerNotificationEnabled());
+            merged.mGyroscopePeriod     = mergePeriod(this.mGyroscopePeriod, this.getGyroscopeNotificationEnabled(), other.mGyroscopePeriod, other.getGyroscopeNotificationEnabled());
+            merged.mAltimeterPeriod     = mergePeriod(this.mAltimeterPeriod, this.getAltimeterNotificationEnabled(), other.mAltimeterPeriod, other.getAltimeterNotificationEnabled());
+
+            //The ring it's shared by the clients of the device, they can't use other policy nor more capacity, see RemotteSampleRing.obtain().
+            merged.mSampleRingCapacity = Math.max(this.mSampleRingCapacity, other.mSampleRingCapacity);
+            merged.mSampleRingPolicy   = mergeSampleRingPolicy(this, other);
+
+            Configuration reconnect = (this.mAutoReconnectEnabled || !other.mAutoReconnectEnabled ? this : other);
+            merged.mAutoReconnectEnabled = reconnect.mAutoReconnectEnabled;
+            merged.mMaxReconnectAttempts = reconnect.mMaxReconnectAttempts;
+            merged.mReconnectDelay = reconnect.mReconnectDelay;
+            merged.mReconnectMaxDelay = reconnect.mReconnectMaxDelay;
+            return merged;
+        }
+
+        /**
+         * Use this method to know what this configuration enables that the other does not.
+         * @param other The configuration that will be applied.
+         * @return Returns a new configuration, without callbacks, with the sensors and notifications to disable.
+         */
+        Configuration subtract(Configuration other) {
+            Configuration difference = new Configuration();
+            difference.mDevice = this.mDevice;
+
+            difference.mTemperatureSensorEnabled   = this.mTemperatureSensorEnabled && !other.mTemperatureSensorEnabled;
+            difference.mAccelerometerSensorEnabled = this.mAccelerometerSensorEnabled && !other.mAccelerometerSensorEnabled;
+            difference.mGyroscopeSensorEnabled     = this.mGyroscopeSensorEnabled && !other.mGyroscopeSensorEnabled;
+            difference.mAltimeterSensorEnabled     = this.mAltimeterSensorEnabled && !other.mAltimeterSensorEnabled;
+            difference.mKeysSensorEnabled          = this.mKeysSensorEnabled && !other.mKeysSensorEnabled;
+
+            difference.mTemperatureSensorCallbackEnabled   = this.getTemperatureNotificationEnabled() && !other.getTemperatureNotificationEnabled();
+            difference.mAccelerometerSensorCallbackEnabled = this.getAccelerometerNotificationEnabled() && !other.getAccelerometerNotificationEnabled();
+            difference.mGyroscopeSensorCallbackEnabled     = this.getGyroscopeNotificationEnabled() && !other.getGyroscopeNotificationEnabled();
+            difference.mAltimeterSensorCallbackEnabled     = this.getAltimeterNotificationEnabled() && !other.getAltimeterNotificationEnabled();
+            difference.mKeysPressedCallbackEnabled         = this.getKeysNotificationEnabled() && !other.getKeysNotificationEnabled();
+
+            if (this.getSampleRingEnabled() && (!other.getSampleRingEnabled() || this.mSampleRingPolicy != other.mSampleRingPolicy)) {
+                difference.mSampleRingCapacity = this.mSampleRingCapacity;
+                difference.mSampleRingPolicy   = this.mSampleRingPolicy;
+            }
+            return difference;
+        }
+
+        /**
+         * Use this method to know if two configurations request the same to the service, without look at the callbacks.
+         * @param other The other configuration.
+         * @return Returns true if applying the other configuration would not change anything.
+         */
+        boolean isEquivalent(Configuration other) {
+            return other != null
+                    && this.mDevice == other.mDevice
+                    && this.mTemperatureSensorEnabled == other.mTemperatureSensorEnabled
+                    && this.mAccelerometerSensorEnabled == other.mAccelerometerSensorEnabled
+                    && this.mGyroscopeSensorEnabled == other.mGyroscopeSensorEnabled
+                    && this.mAltimeterSensorEnabled == other.mAltimeterSensorEnabled
+                    && this.mKeysSensorEnabled == other.mKeysSensorEnabled
+                    && this.getConnectionStateCallbackEnabled() == other.getConnectionStateCallbackEnabled()
+                    && this.getTemperatureCallbackEnabled() == other.getTemperatureCallbackEnabled()
+                    && this.getAccelerometerCallbackEnabled() == other.getAccelerometerCallbackEnabled()
+                    && this.getGyroscopeCallbackEnabled() == other.getGyroscopeCallbackEnabled()
+                    && this.getAltimeterCallbackEnabled() == other.getAltimeterCallbackEnabled()
+                    && this.getKeysPressedCallbackEnabled() == other.getKeysPressedCallbackEnabled()
+                    && this.mTemperaturePeriod == other.mTemperaturePeriod
+                    && this.mAccelerometerPeriod == other.mAccelerometerPeriod
+                    && this.mGyroscopePeriod == other.mGyroscopePeriod
+                    && this.mAltimeterPeriod == other.mAltimeterPeriod
+                    && this.mBatchSize == other.mBatchSize
+                    && this.mBatchLatency == other.mBatchLatency
+                    && this.mLatencyMetricsEnabled == other.mLatencyMetricsEnabled
+                    && this.mSampleRingCapacity == other.mSampleRingCapacity
+                    && this.mSampleRingPolicy == other.mSampleRingPolicy
+                    && this.mAutoReconnectEnabled == other.mAutoReconnectEnabled
+                    && this.mMaxReconnectAttempts == other.mMaxReconnectAttempts
+                    && this.mReconnectDelay == other.mReconnectDelay
+                    && this.mReconnectMaxDelay == other.mReconnectMaxDelay
+                    && Arrays.equals(this.mFilterModes, other.mFilterModes)
+                    && Arrays.equals(this.mFilterDeadbands, other.mFilterDeadbands)
+                    && Arrays.equals(this.mFilterMinIntervals, other.mFilterMinIntervals)
+                    && Arrays.equals(this.mFilterHeartbeats, other.mFilterHeartbeats)
+                    && Arrays.equals(this.mDecimations, other.mDecimations)
+                    && Arrays.equals(this.mMovingAverages, other.mMovingAverages)
+                    && Arrays.equals(this.mAggregateInputs, other.mAggregateInputs)
+                    && Arrays.equals(this.mAggregateWindows, other.mAggregateWindows)
+                    && Arrays.equals(this.mAggregateSteps, other.mAggregateSteps);
+        }
+
+        private static int mergeSampleRingPolicy(Configuration configuration, Configuration other) {
+            if (!other.getSampleRingEnabled())
+                return configuration.mSampleRingPolicy;
+            if (!configuration.getSampleRingEnabled())
+                return other.mSampleRingPolicy;
+            if (configuration.mSampleRingPolicy == RemotteSampleRing.POLICY_BLOCK || other.mSampleRingPolicy == RemotteSampleRing.POLICY_BLOCK)
+                return RemotteSampleRing.POLICY_BLOCK;
+            return configuration.mSampleRingPolicy;
+        }
+
+        private static byte mergePeriod(byte period, boolean enabled, byte otherPeriod, boolean otherEnabled) {
+            if (!otherEnabled)
+                return period;
+            if (!enabled)
+                return otherPeriod;
+            return ((period & 0xFF) <= (otherPeriod & 0xFF) ? period : otherPeriod);
+        }
+
+        /**
+         * @return Returns the flags of the configuration, see {@link com.mobandme.remotte.RemotteConfigurationCodec}.
+         */
+        int getFlags() {
+            int flags = 0;
+            if (getConnectionStateCallbackEnabled()) flags |= RemotteConfigurationCodec.FLAG_CONNECTION_STATE_CALLBACK;
+            if (getTemperatureCallbackEnabled())     flags |= RemotteConfigurationCodec.FLAG_TEMPERATURE_CALLBACK;
+            if (getAccelerometerCallbackEnabled())   flags |= RemotteConfigurationCodec.FLAG_ACCELEROMETER_CALLBACK;
+            if (getGyroscopeCallbackEnabled())       flags |= RemotteConfigurationCodec.FLAG_GYROSCOPE_CALLBACK;
+            if (getAltimeterCallbackEnabled())       flags |= RemotteConfigurationCodec.FLAG_ALTIMETER_CALLBACK;
+            if (getKeysPressedCallbackEnabled())     flags |= RemotteConfigurationCodec.FLAG_KEYS_CALLBACK;
+            if (this.mTemperatureSensorEnabled)      flags |= RemotteConfigurationCodec.FLAG_TEMPERATURE_SENSOR;
+            if (this.mAccelerometerSensorEnabled)    flags |= RemotteConfigurationCodec.FLAG_ACCELEROMETER_SENSOR;
+            if (this.mGyroscopeSensorEnabled)        flags |= RemotteConfigurationCodec.FLAG_GYROSCOPE_SENSOR;
+            if (this.mAltimeterSensorEnabled)        flags |= RemotteConfigurationCodec.FLAG_ALTIMETER_SENSOR;
+            if (this.mKeysSensorEnabled)             flags |= RemotteConfigurationCodec.FLAG_KEYS_SENSOR;
+            if (this.mLatencyMetricsEnabled)         flags |= RemotteConfigurationCodec.FLAG_LATENCY_METRICS;
+            if (this.mAutoReconnectEnabled)          flags |= RemotteConfigurationCodec.FLAG_AUTO_RECONNECT;
+            return flags;
+        }
+
+        void setFlags(int flags) {
+            this.mConnectionStateCallbackEnabled     = (flags & RemotteConfigurationCodec.FLAG_CONNECTION_STATE_CALLBACK) != 0;
+            this.mTemperatureSensorCallbackEnabled   = (flags & RemotteConfigurationCodec.FLAG_TEMPERATURE_CALLBACK) != 0;
+            this.mAccelerometerSensorCallbackEnabled = (flags & RemotteConfigurationCodec.FLAG_ACCELEROMETER_CALLBACK) != 0;
+            this.mGyroscopeSensorCallbackEnabled     = (flags & RemotteConfigurationCodec.FLAG_GYROSCOPE_CALLBACK) != 0;
+            this.mAltimeterSensorCallbackEnabled     = (flags & RemotteConfigurationCodec.FLAG_ALTIMETER_CALLBACK) != 0;
+            this.mKeysPressedCallbackEnabled         = (flags & RemotteConfigurationCodec.FLAG_KEYS_CALLBACK) != 0;
+            this.mTemperatureSensorEnabled           = (flags & RemotteConfigurationCodec.FLAG_TEMPERATURE_SENSOR) != 0;
+            this.mAccelerometerSensorEnabled         = (flags & RemotteConfigurationCodec.FLAG_ACCELEROMETER_SENSOR) != 0;
+            this.mGyroscopeSensorEnabled             = (flags & RemotteConfigurationCodec.FLAG_GYROSCOPE_SENSOR) != 0;
+            this.mAltimeterSensorEnabled             = (flags & RemotteConfigurationCodec.FLAG_ALTIMETER_SENSOR) != 0;
+            this.mKeysSensorEnabled                  = (flags & RemotteConfigurationCodec.FLAG_KEYS_SENSOR) != 0;
+            this.mLatencyMetricsEnabled              = (flags & RemotteConfigurationCodec.FLAG_LATENCY_METRICS) != 0;
+            this.mAutoReconnectEnabled               = (flags & RemotteConfigurationCodec.FLAG_AUTO_RECONNECT) != 0;
+        }
+
+        /**
+         * @param tag The sensor and the option, see the TAG constants of {@link com.mobandme.remotte.RemotteConfigurationCodec}.
+         * @return Returns the value of the option, or 0 if the option it's unknown.
+         */
+        int getOption(int tag) {
+            switch (tag) {
+                case RemotteConfigurationCodec.TAG_DEVICE:               return this.mDevice;
+                case RemotteConfigurationCodec.TAG_BATCH_SIZE:           return this.mBatchSize;
+                case RemotteConfigurationCodec.TAG_BATCH_LATENCY:        return this.mBatchLatency;
+                case RemotteConfigurationCodec.TAG_SAMPLE_RING_CAPACITY: return this.mSampleRingCapacity;
+                case RemotteConfigurationCodec.TAG_SAMPLE_RING_POLICY:   return this.mSampleRingPolicy;
+                case RemotteConfigurationCodec.TAG_RECONNECT_ATTEMPTS:   return this.mMaxReconnectAttempts;
+                case RemotteConfigurationCodec.TAG_RECONNECT_DELAY:      return this.mReconnectDelay;
+                case RemotteConfigurationCodec.TAG_RECONNECT_MAX_DELAY:  return this.mReconnectMaxDelay;
+                case RemotteConfigurationCodec.TAG_TEMPERATURE_PERIOD:   return this.mTemperaturePeriod & 0xFF;
+                case RemotteConfigurationCodec.TAG_ACCELEROMETER_PERIOD: return this.mAccelerometerPeriod & 0xFF;
+                case RemotteConfigurationCodec.TAG_GYROSCOPE_PERIOD:     return this.mGyroscopePeriod & 0xFF;
+                case RemotteConfigurationCodec.TAG_ALTIMETER_PERIOD:     return this.mAltimeterPeriod & 0xFF;
+                default:                                                 return getSampleOption(tag);
+            }
+        }
+
+        private int getSampleOption(int tag) {
+            int sensor = RemotteConfigurationCodec.getSampleSensor(tag);
+            if (sensor < 0)
+                return 0;
+
+            switch (tag & 0xFFFF) {
+                case RemotteConfigurationCodec.OPTION_FILTER_MODE:         return this.mFilterModes[sensor];
+                case RemotteConfigurationCodec.OPTION_FILTER_DEADBAND:     return Float.floatToIntBits(this.mFilterDeadbands[sensor]);
+                case RemotteConfigurationCodec.OPTION_FILTER_MIN_INTERVAL: return this.mFilterMinIntervals[sensor];
+                case RemotteConfigurationCodec.OPTION_FILTER_HEARTBEAT:    return this.mFilterHeartbeats[sensor];
+                case RemotteConfigurationCodec.OPTION_DECIMATION:          return this.mDecimations[sensor];
+                case RemotteConfigurationCodec.OPTION_MOVING_AVERAGE:      return this.mMovingAverages[sensor];
+                case RemotteConfigurationCodec.OPTION_AGGREGATE_INPUT:     return this.mAggregateInputs[sensor];
+                case RemotteConfigurationCodec.OPTION_AGGREGATE_WINDOW:    return this.mAggregateWindows[sensor];
+                case RemotteConfigurationCodec.OPTION_AGGREGATE_STEP:      return this.mAggregateSteps[sensor];
+                default:                                                   return 0;
+            }
+        }
+
+        /**
+         * Use this method to restore an option, the unknown options are ignored.
+         */
+        void setOption(int tag, int value) {
+            switch (tag) {
+                case RemotteConfigurationCodec.TAG_DEVICE:               this.mDevice = value; break;
+                case RemotteConfigurationCodec.TAG_BATCH_SIZE:           this.mBatchSize = value; break;
+                case RemotteConfigurationCodec.TAG_BATCH_LATENCY:        this.mBatchLatency = value; break;
+                case RemotteConfigurationCodec.TAG_SAMPLE_RING_CAPACITY: this.mSampleRingCapacity = value; break;
+                case RemotteConfigurationCodec.TAG_SAMPLE_RING_POLICY:   this.mSampleRingPolicy = value; break;
+                case RemotteConfigurationCodec.TAG_RECONNECT_ATTEMPTS:   this.mMaxReconnectAttempts = value; break;
+                case RemotteConfigurationCodec.TAG_RECONNECT_DELAY:      this.mReconnectDelay = value; break;
+                case RemotteConfigurationCodec.TAG_RECONNECT_MAX_DELAY:  this.mReconnectMaxDelay = value; break;
+                case RemotteConfigurationCodec.TAG_TEMPERATURE_PERIOD:   this.mTemperaturePeriod = (byte)value; break;
+                case RemotteConfigurationCodec.TAG_ACCELEROMETER_PERIOD: this.mAccelerometerPeriod = (byte)value; break;
+                case RemotteConfigurationCodec.TAG_GYROSCOPE_PERIOD:     this.mGyroscopePeriod = (byte)value; break;
+                case RemotteConfigurationCodec.TAG_ALTIMETER_PERIOD:     this.mAltimeterPeriod = (byte)value; break;
+                default:                                                 setSampleOption(tag, value); break;
+            }
+        }
+
+        private void setSampleOption(int tag, int value) {
+            int sensor = RemotteConfigurationCodec.getSampleSensor(tag);
+            if (sensor < 0)
+                return;
+
+            switch (tag & 0xFFFF) {
+                case RemotteConfigurationCodec.OPTION_FILTER_MODE:         this.mFilterModes[sensor] = value; break;
+                case RemotteConfigurationCodec.OPTION_FILTER_DEADBAND:     this.mFilterDeadbands[sensor] = Float.intBitsToFloat(value); break;
+                case RemotteConfigurationCodec.OPTION_FILTER_MIN_INTERVAL: this.mFilterMinIntervals[sensor] = value; break;
+                case RemotteConfigurationCodec.OPTION_FILTER_HEARTBEAT:    this.mFilterHeartbeats[sensor] = value; break;
+                case RemotteConfigurationCodec.OPTION_DECIMATION:          this.mDecimations[sensor] = value; break;
+                case RemotteConfigurationCodec.OPTION_MOVING_AVERAGE:      this.mMovingAverages[sensor] = value; break;
+                case RemotteConfigurationCodec.OPTION_AGGREGATE_INPUT:     this.mAggregateInputs[sensor] = value; break;
+                case RemotteConfigurationCodec.OPTION_AGGREGATE_WINDOW:    this.mAggregateWindows[sensor] = value; break;
+                case RemotteConfigurationCodec.OPTION_AGGREGATE_STEP:      this.mAggregateSteps[sensor] = value; break;
+                default:                                                   break;
+            }
+        }
+
         @Override
         public int describeContents() { return 0; }
 
         @Override
-        public void writeToParcel(Parcel out, int flags) {
-            out.writeString(Boolean.toString(this.mTemperatureSensorEnabled));
-            out.writeString(Boolean.toString(this.mAccelerometerSensorEnabled));
-            out.writeString(Boolean.toString(this.mGyroscopeSensorEnabled));
-            out.writeString(Boolean.toString(this.mAltimeterSensorEnabled));
-
-            out.writeString(Boolean.toString(getConnectionStateCallbackEnabled()));
-            out.writeString(Boolean.toString(getTemperatureCallbackEnabled()));
-            out.writeString(Boolean.toString(getAccelerometerCallbackEnabled()));
-            out.writeString(Boolean.toString(getGyroscopeCallbackEnabled()));
-            out.writeString(Boolean.toString(getAltimeterCallbackEnabled()));
-            out.writeString(Boolean.toString(getKeysPressedCallbackEnabled()));
-
-            out.writeInt(getDevice());
-
-            out.writeByte(this.mAltimeterPeriod);
-            out.writeByte(this.mAccelerometerPeriod);
-            out.writeByte(this.mGyroscopePeriod);
-            out.writeByte(this.mTemperaturePeriod);
-        }
-
-        private void readFromParcel(Parcel in) {
-            this.mTemperatureSensorEnabled = Boolean.valueOf(in.readString());
-            this.mAccelerometerSensorEnabled = Boolean.valueOf(in.readString());
-            this.mGyroscopeSensorEnabled = Boolean.valueOf(in.readString());
-            this.mAltimeterSensorEnabled = Boolean.valueOf(in.readString());
-
-            this.mConnectionStateCallbackEnabled = Boolean.valueOf(in.readString());
-            this.mTemperatureSensorCallbackEnabled = Boolean.valueOf(in.readString());
-            this.mAccelerometerSensorCallbackEnabled = Boolean.valueOf(in.readString());
-            this.mGyroscopeSensorCallbackEnabled = Boolean.valueOf(in.readString());
-            this.mAltimeterSensorCallbackEnabled = Boolean.valueOf(in.readString());
-            this.mKeysPressedCallbackEnabled = Boolean.valueOf(in.readString());
-
-            this.mDevice = in.readInt();
-
-            this.mAltimeterPeriod = in.readByte();
-            this.mAccelerometerPeriod = in.readByte();
-            this.mGyroscopePeriod = in.readByte();
-            this.mTemperaturePeriod = in.readByte();
-        }
+        public void writeToParcel(Parcel out, int flags) { out.writeIntArray(RemotteConfigurationCodec.encode(this)); }
+
+        private void readFromParcel(Parcel in) { RemotteConfigurationCodec.decode(in.createIntArray(), this); }
 
         public static final Parcelable.Creator<Configuration> CREATOR = new Parcelable.Creator<Configuration>() {
             public Configuration createFromParcel(Parcel in) {
@@ -0,0 +1,309 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothManager;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.content.pm.PackageManager;
+
+import com.mobandme.remotte.helper.LogsHelper;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * This class it's the GATT transport of the real Bluetooth LE devices, over the Android GATT stack. The
+ * characteristics are resolved once, when the services are discovered, so every command only needs a lookup
+ * on a prebuilt table.
+ */
+final class RemotteBluetoothGattTransport implements RemotteGattTransport {
+
+    private final Context                   mContext;
+    private final String                    mAddress;
+    private       BluetoothManager          mBluetoothManager;
+    private       BluetoothAdapter          mBluetoothAdapter;
+    private       BluetoothDevice           mBluetoothDevice;
+    private volatile BluetoothGatt          mBluetoothGatt;
+    private volatile Callback               mCallback;
+    private volatile Map<UUID, BluetoothGattCharacteristic> mCharacteristics = Collections.emptyMap();
+
+    /**
+     * @param context The context used to open the GATT connection.
+     * @param address The Bluetooth device address.
+     */
+    public RemotteBluetoothGattTransport(Context context, String address) {
+        mContext = context;
+        mAddress = address;
+    }
+
+    @Override
+    public void connect(Callback callback) {
+        if (!mContext.getPackageManager().hasSystemFeature(PackageManager.FEATURE_BLUETOOTH_LE)) {
+            LogsHelper.log(LogsHelper.ERROR, "This device does not support Bluetooth 4.0.");
+            throw new RuntimeException("This device does not support Bluetooth 4.0.");
+        }
+
+        mBluetoothManager = (BluetoothManager)mContext.getSystemService(Context.BLUETOOTH_SERVICE);
+        mBluetoothAdapter = mBluetoothManager.getAdapter();
+
+        //Check if the Bluetooth adapter it's enabled into device.
+        if (mBluetoothAdapter == null || !mBluetoothAdapter.isEnabled()) {
+            LogsHelper.log(LogsHelper.ERROR, "The device have the bluetooth connection disabled.");
+            throw new RuntimeException("The device have the bluetooth connection disabled.");
+        }
+
+        mBluetoothDevice = mBluetoothAdapter.getRemoteDevice(mAddress);
+        if (mBluetoothDevice == null) {
+            LogsHelper.log(LogsHelper.ERROR, "Unable access to Remotte device.");
+            throw new RuntimeException("Unable access to Remotte device.");
+        }
+
+
+        if (mBluetoothGatt != null)
+            mBluetoothGatt.disconnect();
+
+        mCallback = callback;
+        mCharacteristics = Collections.emptyMap();
+        mBluetoothGatt = mBluetoothDevice.connectGatt(mContext, false, mBluetoothGattCallback);
+        if (mBluetoothGatt == null) {
+            LogsHelper.log(LogsHelper.ERROR, "Unable access to Remotte device.");
+            throw new RuntimeException("Unable access to Remotte device.");
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        if (mBluetoothGatt != null)
+            mBluetoothGatt.disconnect();
+
+        mBluetoothGatt    = null;
+        mCharacteristics  = Collections.emptyMap();
+        mBluetoothDevice  = null;
+        mBluetoothManager = null;
+        mBluetoothAdapter = null;
+    }
+
+    /**
+     * This method check the connectio state with the Renotte device.
+     * @return true if conection state it's connected.
+     */
+    @Override
+    public boolean isConnected() {
+        if (!isGattReady())
+            return false;
+
+        int connectionState = mBluetoothManager.getConnectionState(mBluetoothDevice, BluetoothProfile.GATT);
+        if (connectionState == BluetoothProfile.STATE_CONNECTED)
+            return true;
+        else
+            return false;
+    }
+
+    /**
+     * This method check all basic bluetooth elemets needed to manage GATT services.
+     * @return true if all it's ok.
+     */
+    private boolean isGattReady() {
+        if (mBluetoothManager == null)
+            return false;
+
+        if (mBluetoothAdapter == null)
+            return false;
+
+        if (mBluetoothGatt == null)
+            return false;
+
+        return true;
+    }
+
+    @Override
+    public boolean discoverServices() {
+        BluetoothGatt gatt = mBluetoothGatt;
+        return (gatt != null && gatt.discoverServices());
+    }
+
+    @Override
+    public Set<UUID> getCharacteristics() { return Collections.unmodifiableSet(mCharacteristics.keySet()); }
+
+    @Override
+    public boolean hasCharacteristic(UUID service, UUID characteristic) {
+        return (findGattCharacteristic(service, characteristic) != null);
+    }
+
+    @Override
+    public boolean setCharacteristicNotification(UUID service, UUID characteristic, boolean enabled) {
+        BluetoothGatt               gatt = mBluetoothGatt;
+        BluetoothGattCharacteristic gattCharacteristic = getGattCharacteristic(service, characteristic);
+        return (gatt != null && gattCharacteristic != null && gatt.setCharacteristicNotification(gattCharacteristic, enabled));
+    }
+
+    @Override
+    public boolean readCharacteristic(UUID service, UUID characteristic) {
+        BluetoothGatt               gatt = mBluetoothGatt;
+        BluetoothGattCharacteristic gattCharacteristic = getGattCharacteristic(service, characteristic);
+        return (gatt != null && gattCharacteristic != null && gatt.readCharacteristic(gattCharacteristic));
+    }
+
+    @Override
+    public boolean writeCharacteristic(UUID service, UUID characteristic, byte[] value) {
+        BluetoothGatt               gatt = mBluetoothGatt;
+        BluetoothGattCharacteristic gattCharacteristic = getGattCharacteristic(service, characteristic);
+        if (gatt == null || gattCharacteristic == null)
+            return false;
+
+        gattCharacteristic.setValue(value);
+        return gatt.writeCharacteristic(gattCharacteristic);
+    }
+
+    @Override
+    public boolean readDescriptor(UUID service, UUID characteristic, UUID descriptor) {
+        BluetoothGatt           gatt = mBluetoothGatt;
+        BluetoothGattDescriptor gattDescriptor = getGattDescriptor(service, characteristic, descriptor);
+        return (gatt != null && gattDescriptor != null && gatt.readDescriptor(gattDescriptor));
+    }
+
+    @Override
+    public boolean writeDescriptor(UUID service, UUID characteristic, UUID descriptor, byte[] value) {
+        BluetoothGatt           gatt = mBluetoothGatt;
+        BluetoothGattDescriptor gattDescriptor = getGattDescriptor(service, characteristic, descriptor);
+        if (gatt == null || gattDescriptor == null)
+            return false;
+
+        gattDescriptor.setValue(value);
+        return gatt.writeDescriptor(gattDescriptor);
+    }
+
+    /**
+     * Use this method to build the characteristics table from the discovered services.
+     * @param services The services discovered on the device.
+     * @return Returns the table of characteristics by UUID.
+     */
+    private static Map<UUID, BluetoothGattCharacteristic> buildCharacteristicsTable(List<BluetoothGattService> services) {
+        Map<UUID, BluetoothGattCharacteristic> characteristics = new HashMap<UUID, BluetoothGattCharacteristic>();
+        if (services != null)
+            for (BluetoothGattService service : services)
+                if (service.getCharacteristics() != null)
+                    for (BluetoothGattCharacteristic characteristic : service.getCharacteristics())
+                        if (!characteristics.containsKey(characteristic.getUuid()))
+                            characteristics.put(characteristic.getUuid(), characteristic);
+        return characteristics;
+    }
+
+    /**
+     * Use this method to access a characteristic that the device must expose, its absence it's logged as an error.
+     */
+    private BluetoothGattCharacteristic getGattCharacteristic(UUID serviceId, UUID id) {
+        BluetoothGattCharacteristic characteristic = findGattCharacteristic(serviceId, id);
+        if (characteristic == null)
+            LogsHelper.log(LogsHelper.ERROR, "Impossible to get GATT Characteristic {%s} of the GATT Service {%s} from Remotte device.", id, serviceId);
+        return characteristic;
+    }
+
+    /**
+     * Use this method to look for a characteristic without log anything, the optional characteristics are probed with it.
+     * @return Returns the characteristic, or null if the device does not expose it.
+     */
+    private BluetoothGattCharacteristic findGattCharacteristic(UUID serviceId, UUID id) {
+        BluetoothGattCharacteristic characteristic = mCharacteristics.get(id);
+        if (characteristic == null || !serviceId.equals(characteristic.getService().getUuid()))
+            return null;
+        return characteristic;
+    }
+
+    private BluetoothGattDescriptor getGattDescriptor(UUID serviceId, UUID characteristicId, UUID id) {
+        BluetoothGattCharacteristic characteristic = getGattCharacteristic(serviceId, characteristicId);
+        return (characteristic != null ? characteristic.getDescriptor(id) : null);
+    }
+
+    /**
+     * This callback translate the Android GATT callbacks to the transport callback.
+     */
+    private BluetoothGattCallback mBluetoothGattCallback = new BluetoothGattCallback() {
+        @Override
+        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+            if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                mBluetoothGatt = null;
+                mCharacteristics = Collections.emptyMap();
+
+                //Every connection opens a new GATT client, and Android only has a few of them.
+                gatt.close();
+            }
+
+            Callback callback = mCallback;
+            if (callback != null)
+                callback.onConnectionStateChange(status, newState);
+        }
+
+        @Override
+        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
+            mCharacteristics = buildCharacteristicsTable(gatt.getServices());
+
+            Callback callback = mCallback;
+            if (callback != null)
+                callback.onServicesDiscovered(!mCharacteristics.isEmpty());
+        }
+
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+            Callback callback = mCallback;
+            if (callback != null)
+                callback.onCharacteristicChanged(characteristic.getUuid(), characteristic.getValue());
+        }
+
+        @Override
+        public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            Callback callback = mCallback;
+            if (callback != null)
+                callback.onCharacteristicRead(characteristic.getUuid(), characteristic.getValue(), status);
+        }
+
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            Callback callback = mCallback;
+            if (callback != null)
+                callback.onCharacteristicWrite(characteristic.getUuid(), status);
+        }
+
+        @Override
+        public void onDescriptorRead(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+            Callback callback = mCallback;
+            if (callback != null)
+                callback.onDescriptorRead(descriptor.getCharacteristic().getUuid(), descriptor.getUuid(), descriptor.getValue(), status);
+        }
+
+        @Override
+        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+            Callback callback = mCallback;
+            if (callback != null)
+                callback.onDescriptorWrite(descriptor.getCharacteristic().getUuid(), descriptor.getUuid(), status);
+        }
+    };
+}
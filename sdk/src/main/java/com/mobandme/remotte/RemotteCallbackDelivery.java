@@ -0,0 +1,237 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import android.os.Handler;
+import android.os.Looper;
+import com.mobandme.remotte.listener.AccelerometerBatchCallback;
+import com.mobandme.remotte.listener.AccelerometerSensorCallback;
+import com.mobandme.remotte.listener.AltimeterBatchCallback;
+import com.mobandme.remotte.listener.AltimeterSensorCallback;
+import com.mobandme.remotte.listener.CharacteristicReadCallback;
+import com.mobandme.remotte.listener.ConnectionStateChangeCallback;
+import com.mobandme.remotte.listener.GestureCallback;
+import com.mobandme.remotte.listener.GyroscopeBatchCallback;
+import com.mobandme.remotte.listener.GyroscopeSensorCallback;
+import com.mobandme.remotte.listener.KeysPressedCallback;
+import com.mobandme.remotte.listener.MainThreadCallback;
+import com.mobandme.remotte.listener.OrientationCallback;
+import com.mobandme.remotte.listener.SampleAggregateCallback;
+import com.mobandme.remotte.listener.TemperatureBatchCallback;
+import com.mobandme.remotte.listener.TemperatureSensorCallback;
+import java.util.Arrays;
+
+/**
+ * This class call the user callbacks. The callbacks are called on the delivery thread, except the ones that
+ * implement {@link com.mobandme.remotte.listener.MainThreadCallback}, whose events are posted to the main thread.
+ * The batch arrays and the aggregates are reused by the delivery thread, so they are copied before post them.
+ */
+final class RemotteCallbackDelivery {
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private static boolean isPosted(Object callback) {
+        return (callback instanceof MainThreadCallback && Looper.myLooper() != Looper.getMainLooper());
+    }
+
+    void onConnectionStateChange(final Remotte remotte, final ConnectionStateChangeCallback callback, final int newState) {
+        if (!isPosted(callback)) {
+            callback.onConnectionStateChange(remotte, newState);
+            return;
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() { callback.onConnectionStateChange(remotte, newState); }
+        });
+    }
+
+    void onCharacteristicRead(final Remotte remotte, final CharacteristicReadCallback callback, final int characteristic, final byte[] value) {
+        if (!isPosted(callback)) {
+            callback.onCharacteristicRead(remotte, characteristic, value);
+            return;
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() { callback.onCharacteristicRead(remotte, characteristic, value); }
+        });
+    }
+
+    void onTemperatureChange(final Remotte remotte, final TemperatureSensorCallback callback, final double temperature) {
+        if (!isPosted(callback)) {
+            callback.onTemperatureChange(remotte, temperature);
+            return;
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() { callback.onTemperatureChange(remotte, temperature); }
+        });
+    }
+
+    void onAccelerometerChange(final Remotte remotte, final AccelerometerSensorCallback callback, final double x, final double y, final double z) {
+        if (!isPosted(callback)) {
+            callback.onAccelerometerChange(remotte, x, y, z);
+            return;
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() { callback.onAccelerometerChange(remotte, x, y, z); }
+        });
+    }
+
+    void onGyroscopeChange(final Remotte remotte, final GyroscopeSensorCallback callback, final double x, final double y, final double z) {
+        if (!isPosted(callback)) {
+            callback.onGyroscopeChange(remotte, x, y, z);
+            return;
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() { callback.onGyroscopeChange(remotte, x, y, z); }
+        });
+    }
+
+    void onAltimeterChange(final Remotte remotte, final AltimeterSensorCallback callback, final double pressure, final double altitude) {
+        if (!isPosted(callback)) {
+            callback.onAltimeterChange(remotte, pressure, altitude);
+            return;
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() { callback.onAltimeterChange(remotte, pressure, altitude); }
+        });
+    }
+
+    void onKeyPress(final Remotte remotte, final KeysPressedCallback callback, final int powerKeyPressed, final int centerKeyPressed) {
+        if (!isPosted(callback)) {
+            callback.onKeyPress(remotte, powerKeyPressed, centerKeyPressed);
+            return;
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() { callback.onKeyPress(remotte, powerKeyPressed, centerKeyPressed); }
+        });
+    }
+
+    void onOrientationChange(final Remotte remotte, final OrientationCallback callback, RemotteSensorFusion fusion) {
+        final double w = fusion.getQuaternionW(), x = fusion.getQuaternionX(), y = fusion.getQuaternionY(), z = fusion.getQuaternionZ();
+        final double roll = fusion.getRoll(), pitch = fusion.getPitch(), yaw = fusion.getYaw();
+        if (!isPosted(callback)) {
+            callback.onOrientationChange(remotte, w, x, y, z, roll, pitch, yaw);
+            return;
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() { callback.onOrientationChange(remotte, w, x, y, z, roll, pitch, yaw); }
+        });
+    }
+
+    void onGesture(final Remotte remotte, final GestureCallback callback, final int gesture, final int direction, final double magnitude) {
+        if (!isPosted(callback)) {
+            callback.onGesture(remotte, gesture, direction, magnitude);
+            return;
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() { callback.onGesture(remotte, gesture, direction, magnitude); }
+        });
+    }
+
+    void onSampleAggregate(final Remotte remotte, final SampleAggregateCallback callback, RemotteSampleAggregate aggregate) {
+        if (!isPosted(callback)) {
+            callback.onSampleAggregate(remotte, aggregate.getSensor(), aggregate);
+            return;
+        }
+
+        final RemotteSampleAggregate postedAggregate = aggregate.copy();
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() { callback.onSampleAggregate(remotte, postedAggregate.getSensor(), postedAggregate); }
+        });
+    }
+
+    void onTemperatureBatch(final Remotte remotte, final TemperatureBatchCallback callback, final int count, long[] timestamps, double[] temperature) {
+        if (!isPosted(callback)) {
+            callback.onTemperatureBatch(remotte, count, timestamps, temperature);
+            return;
+        }
+
+        final long[]   postedTimestamps = Arrays.copyOf(timestamps, count);
+        final double[] postedTemperature = Arrays.copyOf(temperature, count);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() { callback.onTemperatureBatch(remotte, count, postedTimestamps, postedTemperature); }
+        });
+    }
+
+    void onAccelerometerBatch(final Remotte remotte, final AccelerometerBatchCallback callback, final int count, long[] timestamps, double[] x, double[] y, double[] z) {
+        if (!isPosted(callback)) {
+            callback.onAccelerometerBatch(remotte, count, timestamps, x, y, z);
+            return;
+        }
+
+        final long[]   postedTimestamps = Arrays.copyOf(timestamps, count);
+        final double[] postedX = Arrays.copyOf(x, count);
+        final double[] postedY = Arrays.copyOf(y, count);
+        final double[] postedZ = Arrays.copyOf(z, count);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() { callback.onAccelerometerBatch(remotte, count, postedTimestamps, postedX, postedY, postedZ); }
+        });
+    }
+
+    void onGyroscopeBatch(final Remotte remotte, final GyroscopeBatchCallback callback, final int count, long[] timestamps, double[] x, double[] y, double[] z) {
+        if (!isPosted(callback)) {
+            callback.onGyroscopeBatch(remotte, count, timestamps, x, y, z);
+            return;
+        }
+
+        final long[]   postedTimestamps = Arrays.copyOf(timestamps, count);
+        final double[] postedX = Arrays.copyOf(x, count);
+        final double[] postedY = Arrays.copyOf(y, count);
+        final double[] postedZ = Arrays.copyOf(z, count);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() { callback.onGyroscopeBatch(remotte, count, postedTimestamps, postedX, postedY, postedZ); }
+        });
+    }
+
+    void onAltimeterBatch(final Remotte remotte, final AltimeterBatchCallback callback, final int count, long[] timestamps, double[] pressure, double[] altitude) {
+        if (!isPosted(callback)) {
+            callback.onAltimeterBatch(remotte, count, timestamps, pressure, altitude);
+            return;
+        }
+
+        final long[]   postedTimestamps = Arrays.copyOf(timestamps, count);
+        final double[] postedPressure = Arrays.copyOf(pressure, count);
+        final double[] postedAltitude = Arrays.copyOf(altitude, count);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() { callback.onAltimeterBatch(remotte, count, postedTimestamps, postedPressure, postedAltitude); }
+        });
+    }
+}
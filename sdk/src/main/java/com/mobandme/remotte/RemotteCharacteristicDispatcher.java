@@ -0,0 +1,99 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class route the GATT notifications to their handlers. The table it's built once per connection with the
+ * characteristics of the connected device profile, so the cost of every dispatch it's one hash lookup, no matter
+ * how many sensors or device profiles are supported.
+ */
+final class RemotteCharacteristicDispatcher {
+
+    /**
+     * Implement this interface to decode and notify the values of a characteristic.
+     */
+    interface CharacteristicHandler {
+
+        /**
+         * @param value The value of the characteristic.
+         * @param timestamp The SystemClock.elapsedRealtimeNanos() when the notification was received.
+         */
+        void onCharacteristicChanged(byte[] value, long timestamp);
+    }
+
+    private final Map<UUID, Entry> mEntries = new HashMap<UUID, Entry>();
+
+    /**
+     * Use this method to register the handler of a characteristic.
+     * @param characteristic The UUID of the GATT characteristic.
+     * @param name The name of the handler, used to report the dispatch counts.
+     * @param handler The handler of the characteristic notifications.
+     * @return Returns your {@link com.mobandme.remotte.RemotteCharacteristicDispatcher} instance.
+     */
+    RemotteCharacteristicDispatcher register(UUID characteristic, String name, CharacteristicHandler handler) {
+        mEntries.put(characteristic, new Entry(name, handler));
+        return this;
+    }
+
+    /**
+     * Use this method to route a notification to its handler.
+     * @param characteristic The UUID of the GATT characteristic.
+     * @param value The value of the characteristic.
+     * @param timestamp The SystemClock.elapsedRealtimeNanos() when the notification was received.
+     * @return Returns false if the characteristic has not handler.
+     */
+    boolean dispatch(UUID characteristic, byte[] value, long timestamp) {
+        Entry entry = mEntries.get(characteristic);
+        if (entry == null)
+            return false;
+
+        entry.count.incrementAndGet();
+        entry.handler.onCharacteristicChanged(value, timestamp);
+        return true;
+    }
+
+    /**
+     * Use this method to retrieve the number of notifications routed to every handler.
+     * @return Returns a map with the handler names and their dispatch counts.
+     */
+    Map<String, Long> getDispatchCounts() {
+        Map<String, Long> counts = new LinkedHashMap<String, Long>();
+        for (Entry entry : mEntries.values())
+            counts.put(entry.name, entry.count.get());
+        return counts;
+    }
+
+    private static final class Entry {
+        final String                name;
+        final CharacteristicHandler handler;
+        final AtomicLong            count = new AtomicLong();
+
+        Entry(String name, CharacteristicHandler handler) {
+            this.name = name;
+            this.handler = handler;
+        }
+    }
+}
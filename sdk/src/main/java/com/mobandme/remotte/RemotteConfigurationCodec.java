@@ -0,0 +1,179 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import java.util.Arrays;
+
+/**
+ * This class encode a {@link com.mobandme.remotte.Remotte.Configuration} into an int array, so the configuration
+ * travels inside its Parcel with a single writeIntArray call.
+ *
+ * The word 0 contains the version of the encoding and the word 1 the flags of the configuration, one bit per flag.
+ * They are followed by the options that differ from its default value as pairs of tag and value, the tag contains
+ * the sensor on the upper half and the option on the lower half. The flags and the tags that a reader doesn't know
+ * are ignored, so the new sensors and options can be added without a new version.
+ */
+final class RemotteConfigurationCodec {
+
+    static final int VERSION = 1;
+
+    static final int FLAG_CONNECTION_STATE_CALLBACK = 1;
+    static final int FLAG_TEMPERATURE_CALLBACK      = 1 << 1;
+    static final int FLAG_ACCELEROMETER_CALLBACK    = 1 << 2;
+    static final int FLAG_GYROSCOPE_CALLBACK        = 1 << 3;
+    static final int FLAG_ALTIMETER_CALLBACK        = 1 << 4;
+    static final int FLAG_KEYS_CALLBACK             = 1 << 5;
+    static final int FLAG_TEMPERATURE_SENSOR        = 1 << 6;
+    static final int FLAG_ACCELEROMETER_SENSOR      = 1 << 7;
+    static final int FLAG_GYROSCOPE_SENSOR          = 1 << 8;
+    static final int FLAG_ALTIMETER_SENSOR          = 1 << 9;
+    static final int FLAG_LATENCY_METRICS           = 1 << 10;
+    static final int FLAG_AUTO_RECONNECT            = 1 << 11;
+    static final int FLAG_KEYS_SENSOR               = 1 << 12;
+
+    //The options of the device are the sensor 0.
+    static final int SENSOR_DEVICE        = 0;
+    static final int SENSOR_TEMPERATURE   = 1;
+    static final int SENSOR_ACCELEROMETER = 2;
+    static final int SENSOR_GYROSCOPE     = 3;
+    static final int SENSOR_ALTIMETER     = 4;
+    static final int SENSOR_KEYS          = 5;
+
+    static final int OPTION_DEVICE               = 1;
+    static final int OPTION_BATCH_SIZE           = 2;
+    static final int OPTION_BATCH_LATENCY        = 3;
+    static final int OPTION_SAMPLE_RING_CAPACITY = 4;
+    static final int OPTION_SAMPLE_RING_POLICY   = 5;
+    static final int OPTION_RECONNECT_ATTEMPTS   = 6;
+    static final int OPTION_RECONNECT_DELAY      = 7;
+    static final int OPTION_RECONNECT_MAX_DELAY  = 8;
+
+    //The options of every sensor.
+    static final int OPTION_PERIOD              = 1;
+    static final int OPTION_FILTER_MODE         = 2;
+    static final int OPTION_FILTER_DEADBAND     = 3; //The bits of the float value.
+    static final int OPTION_FILTER_MIN_INTERVAL = 4;
+    static final int OPTION_FILTER_HEARTBEAT    = 5;
+    static final int OPTION_DECIMATION          = 6;
+    static final int OPTION_MOVING_AVERAGE      = 7;
+    static final int OPTION_AGGREGATE_INPUT     = 8;
+    static final int OPTION_AGGREGATE_WINDOW    = 9;
+    static final int OPTION_AGGREGATE_STEP      = 10;
+
+    static final int TAG_DEVICE               = (SENSOR_DEVICE << 16) | OPTION_DEVICE;
+    static final int TAG_BATCH_SIZE           = (SENSOR_DEVICE << 16) | OPTION_BATCH_SIZE;
+    static final int TAG_BATCH_LATENCY        = (SENSOR_DEVICE << 16) | OPTION_BATCH_LATENCY;
+    static final int TAG_SAMPLE_RING_CAPACITY = (SENSOR_DEVICE << 16) | OPTION_SAMPLE_RING_CAPACITY;
+    static final int TAG_SAMPLE_RING_POLICY   = (SENSOR_DEVICE << 16) | OPTION_SAMPLE_RING_POLICY;
+    static final int TAG_RECONNECT_ATTEMPTS   = (SENSOR_DEVICE << 16) | OPTION_RECONNECT_ATTEMPTS;
+    static final int TAG_RECONNECT_DELAY      = (SENSOR_DEVICE << 16) | OPTION_RECONNECT_DELAY;
+    static final int TAG_RECONNECT_MAX_DELAY  = (SENSOR_DEVICE << 16) | OPTION_RECONNECT_MAX_DELAY;
+    static final int TAG_TEMPERATURE_PERIOD   = (SENSOR_TEMPERATURE << 16) | OPTION_PERIOD;
+    static final int TAG_ACCELEROMETER_PERIOD = (SENSOR_ACCELEROMETER << 16) | OPTION_PERIOD;
+    static final int TAG_GYROSCOPE_PERIOD     = (SENSOR_GYROSCOPE << 16) | OPTION_PERIOD;
+    static final int TAG_ALTIMETER_PERIOD     = (SENSOR_ALTIMETER << 16) | OPTION_PERIOD;
+
+    private static final int HEADER = 2;
+
+    //The sensors with sample filter and pipeline, from SENSOR_TEMPERATURE to SENSOR_ALTIMETER.
+    static final int SAMPLE_SENSORS = 4;
+
+    /**
+     * The tags written by this version, in order. Every sensor with samples adds the tags of its filter and pipeline.
+     */
+    private static final int[] TAGS = buildTags(
+            TAG_DEVICE, TAG_BATCH_SIZE, TAG_BATCH_LATENCY, TAG_SAMPLE_RING_CAPACITY, TAG_SAMPLE_RING_POLICY,
+            TAG_RECONNECT_ATTEMPTS, TAG_RECONNECT_DELAY, TAG_RECONNECT_MAX_DELAY,
+            TAG_TEMPERATURE_PERIOD, TAG_ACCELEROMETER_PERIOD, TAG_GYROSCOPE_PERIOD, TAG_ALTIMETER_PERIOD
+    );
+
+    private static final Remotte.Configuration DEFAULTS = new Remotte.Configuration();
+
+    private RemotteConfigurationCodec() { }
+
+    private static int[] buildTags(int... tags) {
+        int options = OPTION_AGGREGATE_STEP - OPTION_FILTER_MODE + 1;
+        int[] all = Arrays.copyOf(tags, tags.length + SAMPLE_SENSORS * options);
+
+        int index = tags.length;
+        for (int sensor = 0; sensor < SAMPLE_SENSORS; sensor++)
+            for (int option = OPTION_FILTER_MODE; option <= OPTION_AGGREGATE_STEP; option++)
+                all[index++] = getSampleTag(sensor, option);
+        return all;
+    }
+
+    /**
+     * @param sensor Anyone of the RemotteMetrics.SENSOR constants with samples.
+     * @param option Anyone of the OPTION_FILTER, OPTION_DECIMATION, OPTION_MOVING_AVERAGE or OPTION_AGGREGATE constants.
+     * @return Returns the tag of the sample option of the sensor.
+     */
+    static int getSampleTag(int sensor, int option) {
+        return ((SENSOR_TEMPERATURE + sensor) << 16) | option;
+    }
+
+    /**
+     * @return Returns the RemotteMetrics.SENSOR constant of a sample option tag, or -1 if the tag it's not a sample option.
+     */
+    static int getSampleSensor(int tag) {
+        int sensor = (tag >>> 16) - SENSOR_TEMPERATURE;
+        int option = tag & 0xFFFF;
+        if (sensor < 0 || sensor >= SAMPLE_SENSORS || option < OPTION_FILTER_MODE || option > OPTION_AGGREGATE_STEP)
+            return -1;
+        return sensor;
+    }
+
+    /**
+     * @return Returns the encoded configuration, only the options that differ from its default value are written.
+     */
+    static int[] encode(Remotte.Configuration configuration) {
+        int options = 0;
+        for (int tag : TAGS)
+            if (configuration.getOption(tag) != DEFAULTS.getOption(tag))
+                options++;
+
+        int[] words = new int[HEADER + options * 2];
+        words[0] = VERSION;
+        words[1] = configuration.getFlags();
+
+        int index = HEADER;
+        for (int tag : TAGS) {
+            int value = configuration.getOption(tag);
+            if (value != DEFAULTS.getOption(tag)) {
+                words[index++] = tag;
+                words[index++] = value;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Use this method to restore a configuration, the options that are not present keep its default value.
+     * @param words The encoded configuration.
+     * @param configuration A new configuration.
+     */
+    static void decode(int[] words, Remotte.Configuration configuration) {
+        if (words == null || words.length < HEADER || words[0] < 1)
+            throw new RuntimeException("Invalid configuration encoding.");
+
+        configuration.setFlags(words[1]);
+        for (int index = HEADER; index + 1 < words.length; index += 2)
+            configuration.setOption(words[index], words[index + 1]);
+    }
+}
@@ -0,0 +1,163 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class contains the time to first sample of your connections, from the call to
+ * {@link com.mobandme.remotte.Remotte#connect()} to the first sample delivered to your callbacks, split by the
+ * stages of the connection. Use {@link com.mobandme.remotte.Remotte#getConnectionTimings()} to retrieve a snapshot.
+ *
+ * All the stages are measured with SystemClock.elapsedRealtimeNanos(), that it's shared by the service and the
+ * client processes. When the device was already connected by another client, only the total it's measured.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+public final class RemotteConnectionTimings {
+
+    /**
+     * From the connection request to the app bound to the service.
+     */
+    public static final int STAGE_BIND         = 0;
+
+    /**
+     * From the app bound to the client registered by the service.
+     */
+    public static final int STAGE_REGISTER     = 1;
+
+    /**
+     * From the client registered to the GATT connection established.
+     */
+    public static final int STAGE_CONNECT      = 2;
+
+    /**
+     * From the GATT connection established to the services discovered.
+     */
+    public static final int STAGE_DISCOVERY    = 3;
+
+    /**
+     * From the services discovered to the first sample delivered, it includes the configuration of the device.
+     */
+    public static final int STAGE_FIRST_SAMPLE = 4;
+
+    /**
+     * From the connection request to the first sample delivered.
+     */
+    public static final int STAGE_TOTAL        = 5;
+
+    private static final int STAGES = 6;
+
+    private final RemotteLatencyHistogram[] mLatencies = new RemotteLatencyHistogram[STAGES];
+    private       long                      mLastTimeToFirstSample = -1;
+
+    //Timestamps of the connection in progress.
+    private          long    mRequested;
+    private          long    mBound;
+    private          long    mRegistered;
+    private          long[]  mServiceStages;
+    private volatile boolean mWaitingFirstSample = false;
+
+    RemotteConnectionTimings() {
+        for (int stage = 0; stage < STAGES; stage++)
+            mLatencies[stage] = new RemotteLatencyHistogram();
+    }
+
+    private RemotteConnectionTimings(RemotteConnectionTimings timings) {
+        for (int stage = 0; stage < STAGES; stage++)
+            mLatencies[stage] = timings.mLatencies[stage].copy();
+        mLastTimeToFirstSample = timings.mLastTimeToFirstSample;
+    }
+
+    /**
+     * Use this method to retrieve the time of a stage, one value per connection.
+     * @param stage Use anyone of the STAGE constants.
+     * @return Returns the latency histogram of the stage.
+     */
+    public RemotteLatencyHistogram getLatency(int stage) {
+        if (stage < 0 || stage >= STAGES)
+            throw new RuntimeException("Invalid stage, please use the RemotteConnectionTimings constants.");
+        return mLatencies[stage];
+    }
+
+    /**
+     * @return Returns the time to first sample of the last connection in milliseconds, or -1 if there has not been any sample yet.
+     */
+    public double getLastTimeToFirstSample() { return (mLastTimeToFirstSample < 0 ? -1 : mLastTimeToFirstSample / 1000000.0); }
+
+    synchronized void onConnectRequested(long timestamp) {
+        mRequested = timestamp;
+        mBound = 0;
+        mRegistered = 0;
+        mServiceStages = null;
+        mWaitingFirstSample = true;
+    }
+
+    synchronized void onServiceBound(long timestamp) { mBound = timestamp; }
+
+    synchronized void onClientRegistered(long timestamp) { mRegistered = timestamp; }
+
+    /**
+     * Use this method to register the service stages of the connection.
+     * @param stages The GATT connection requested, established and discovered timestamps.
+     */
+    synchronized void onDeviceConnected(long[] stages) {
+        if (stages != null && stages.length == 3)
+            mServiceStages = stages;
+    }
+
+    boolean isWaitingFirstSample() { return mWaitingFirstSample; }
+
+    synchronized void onFirstSample(long timestamp) {
+        if (!mWaitingFirstSample)
+            return;
+        mWaitingFirstSample = false;
+
+        if (mBound != 0)
+            mLatencies[STAGE_BIND].record(mBound - mRequested);
+        if (mBound != 0 && mRegistered != 0)
+            mLatencies[STAGE_REGISTER].record(mRegistered - mBound);
+        if (mRegistered != 0 && mServiceStages != null) {
+            mLatencies[STAGE_CONNECT].record(mServiceStages[1] - mRegistered);
+            mLatencies[STAGE_DISCOVERY].record(mServiceStages[2] - mServiceStages[1]);
+            mLatencies[STAGE_FIRST_SAMPLE].record(timestamp - mServiceStages[2]);
+        }
+
+        mLastTimeToFirstSample = timestamp - mRequested;
+        mLatencies[STAGE_TOTAL].record(mLastTimeToFirstSample);
+    }
+
+    synchronized void reset() {
+        for (RemotteLatencyHistogram latency : mLatencies)
+            latency.reset();
+        mLastTimeToFirstSample = -1;
+    }
+
+    synchronized RemotteConnectionTimings copy() { return new RemotteConnectionTimings(this); }
+
+    @Override
+    public String toString() {
+        return "Time to first sample {" + mLatencies[STAGE_TOTAL] +
+               "}, bind {" + mLatencies[STAGE_BIND] +
+               "}, register {" + mLatencies[STAGE_REGISTER] +
+               "}, connect {" + mLatencies[STAGE_CONNECT] +
+               "}, discovery {" + mLatencies[STAGE_DISCOVERY] +
+               "}, first sample {" + mLatencies[STAGE_FIRST_SAMPLE] + "}.";
+    }
+}
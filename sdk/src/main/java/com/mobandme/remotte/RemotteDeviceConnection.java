@@ -0,0 +1,1383 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import android.os.Bundle;
+import android.os.DeadObjectException;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import android.os.SystemClock;
+
+import com.mobandme.remotte.helper.LogsHelper;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This class manage the connection with one Remotte device. Every connected device has its own GATT connection,
+ * GATT command queue, configuration and set of clients, so the devices never interfere between them. The GATT
+ * callbacks of every connection are routed directly to its owner instance.
+ *
+ * Every client it's a subscriber with its own configuration. The device it's configured with the union of the
+ * sensors requested by all the subscribers, and every sample it's packed once and sent only to the subscribers
+ * of its sensor. When the clients run on the process of the service, the samples are written into the
+ * {@link com.mobandme.remotte.RemotteSampleRing} of the device too.
+ *
+ * The GATT layout of the device it's remembered by a {@link com.mobandme.remotte.RemotteGattLayoutCache}. When the
+ * layout of a reconnected device it's known, its configuration it's queued while the services are discovered and
+ * sent as soon as the discovery ends.
+ *
+ * When the connection it's lost and the auto reconnect it's enabled, the connection retries with a jittered
+ * exponential backoff. The clients keep its subscriptions meanwhile, and the device it's configured again by the
+ * connection itself, so the clients only see a STATE_CONNECTING period.
+ */
+final class RemotteDeviceConnection {
+
+    /**
+     * Implement this interface to know when the last subscriber of the connection has gone.
+     */
+    interface OnIdleListener {
+        void onIdle(RemotteDeviceConnection connection);
+    }
+
+    private final String                    mAddress;
+    private final RemotteGattTransport      mTransport;
+    private final Handler                   mHandler;
+    private final RemotteGattScheduler      mGattScheduler;
+    private final OnIdleListener            mIdleListener;
+    private final RemotteGattLayoutCache    mLayoutCache;
+    private final List<Subscriber>          mSubscribers = new CopyOnWriteArrayList<Subscriber>();
+    private volatile RemotteCharacteristicDispatcher mDispatcher;
+    private volatile boolean                mLatencyMetrics = false; //True if any subscriber measure the latency.
+    private volatile RemotteSampleRing      mSampleRing;
+    private       Remotte.Configuration     mGattConfiguration;
+    private volatile boolean                mServicesDiscovered = false;
+    private volatile boolean                mConfigurationQueued = false; //True if the configuration waits for the discovery.
+    private volatile boolean                mFirmwareRequested = false;
+    private volatile boolean                mFirstSamplePending = false;
+    private volatile long                   mConnectionStartedAt = 0;
+    private volatile long                   mGattConnectedAt = 0;
+    private volatile long                   mServicesDiscoveredAt = 0;
+    private volatile long                   mTimeToFirstSample = -1;
+    private final Random                    mRandom = new Random();
+    private volatile boolean                mDisconnectRequested = false;
+    private volatile int                    mReconnectAttempt = 0;
+    private volatile long                   mDisconnectedAt = 0;
+    private volatile int                    mNotifiedState = -1; //The last state sent to the subscribers, -1 before the first.
+    private final LogsHelper.RateLimit      mUnexpectedNotificationLog = new LogsHelper.RateLimit(5000); //The notifications arrive on every sample.
+
+    //The samples of the ring and the filters are converted by the service, on the thread of the GATT callbacks.
+    private final RemotteSensorAltimeter    mSampleAltimeter = new RemotteSensorAltimeter();
+    private final double[]                  mSampleValues = new double[3];
+    private final int[]                     mSampleKeys = new int[2];
+
+    /**
+     * @param transport The GATT transport of the device.
+     * @param handler The handler of the service thread, used to flush the batches of samples.
+     * @param address The Bluetooth device address.
+     * @param idleListener The listener notified when the last subscriber dies.
+     * @param layoutCache The GATT layouts of the known devices.
+     */
+    public RemotteDeviceConnection(RemotteGattTransport transport, Handler handler, String address, OnIdleListener idleListener, RemotteGattLayoutCache layoutCache) {
+        if (address == null || address.trim().equals(""))
+            throw new IllegalArgumentException("Invalid arguments exception.");
+
+        mTransport = transport;
+        mHandler = handler;
+        mAddress = address;
+        mIdleListener = idleListener;
+        mLayoutCache = (layoutCache != null ? layoutCache : new RemotteGattLayoutCache(null));
+        mGattScheduler = new RemotteGattScheduler("RemotteGattScheduler " + address, mGattCommandExecutor);
+    }
+
+    public String getAddress() { return mAddress; }
+
+    /**
+     * Use this method to subscribe a client to the device. The client receives the connection messages, and once
+     * it has sent its configuration, the samples of the sensors that it has enabled. The client it's unsubscribed
+     * automatically if its process dies.
+     * @param client The messenger of the client.
+     */
+    public void addClient(Messenger client) {
+        if (client == null || getSubscriber(client) != null)
+            return;
+
+        Subscriber subscriber = new Subscriber(client);
+        try {
+            client.getBinder().linkToDeath(subscriber, 0);
+        } catch (RemoteException e) {
+            LogsHelper.log(LogsHelper.WARN, "The client has died before its registration.", e);
+            return;
+        }
+        mSubscribers.add(subscriber);
+    }
+
+    /**
+     * Use this method to unsubscribe a client from the device, the device it's configured again without the
+     * sensors that only this client was using.
+     * @param client The messenger of the client.
+     * @return Returns true if there are not more clients.
+     */
+    public boolean removeClient(Messenger client) {
+        Subscriber subscriber = getSubscriber(client);
+        if (subscriber != null)
+            removeSubscriber(subscriber);
+        return mSubscribers.isEmpty();
+    }
+
+    public boolean hasClients() { return !mSubscribers.isEmpty(); }
+
+    /**
+     * @param client The messenger of the client.
+     * @return Returns true if the client it's the only one of the connection.
+     */
+    public boolean isOnlyClient(Messenger client) { return (mSubscribers.size() == 1 && getSubscriber(client) != null); }
+
+    private Subscriber getSubscriber(Messenger client) {
+        if (client != null)
+            for (Subscriber subscriber : mSubscribers)
+                if (subscriber.getMessenger().equals(client))
+                    return subscriber;
+        return null;
+    }
+
+    private void removeSubscriber(Subscriber subscriber) {
+        if (mSubscribers.remove(subscriber)) {
+            subscriber.release();
+            if (!mSubscribers.isEmpty())
+                applyGattConfiguration();
+        }
+    }
+
+    private void onSubscriberDied(Subscriber subscriber) {
+        if (!mSubscribers.contains(subscriber))
+            return;
+
+        LogsHelper.log(LogsHelper.WARN, "A client of the Remotte {%s} has died, it will be unsubscribed.", mAddress);
+        if (mSubscribers.size() == 1 && mIdleListener != null)
+            mIdleListener.onIdle(this);
+        else
+            removeSubscriber(subscriber);
+    }
+
+    /**
+     * Use this method to start connection process. If the device it's already connected, only the client that
+     * requests the connection it's notified, the other clients already know it.
+     * @param client The messenger of the client that requests the connection.
+     */
+    public void connect(Messenger client) {
+        LogsHelper.log(LogsHelper.VERBOSE, "Remotte service connect.");
+
+        if (mTransport.isConnected()) {
+            //Until the services are discovered, the client will be notified with the others.
+            Subscriber subscriber = getSubscriber(client);
+            if (subscriber != null && mServicesDiscovered)
+                send(subscriber, obtainConnectionMessage(RemotteGattTransport.STATE_CONNECTED, new Bundle()));
+            return;
+        }
+
+        mDisconnectRequested = false;
+        mHandler.removeCallbacks(mReconnectTask);
+        mConnectionStartedAt = SystemClock.elapsedRealtimeNanos();
+        mFirstSamplePending = true;
+        mTransport.connect(mTransportCallback);
+    }
+
+    /**
+     * Use this method when the connection has been lost, a new attempt it's scheduled if the auto reconnect it's
+     * enabled and there are attempts left.
+     * @return Returns false if the connection will not be recovered.
+     */
+    private boolean scheduleReconnect() {
+        Remotte.Configuration configuration = getGattConfiguration();
+        if (mDisconnectRequested || configuration == null || !configuration.getAutoReconnectEnabled() || mSubscribers.isEmpty())
+            return false;
+
+        int attempt = mReconnectAttempt;
+        if (configuration.getMaxReconnectAttempts() > 0 && attempt >= configuration.getMaxReconnectAttempts()) {
+            LogsHelper.log(LogsHelper.WARN, "The connection with the Remotte {%s} has not been recovered after %d attempts.", mAddress, attempt);
+            mReconnectAttempt = 0;
+            return false;
+        }
+
+        if (attempt == 0) {
+            mDisconnectedAt = SystemClock.elapsedRealtimeNanos();
+            notifyConnectionChange(RemotteGattTransport.STATE_CONNECTING);
+        }
+
+        long delay = getReconnectDelay(configuration, attempt);
+        mReconnectAttempt = attempt + 1;
+        LogsHelper.log(LogsHelper.DEBUG, "Reconnecting to the Remotte {%s} in %d ms, attempt %d.", mAddress, delay, attempt + 1);
+        mHandler.postDelayed(mReconnectTask, delay);
+        return true;
+    }
+
+    /**
+     * Use this method to calculate the time before an attempt. The delay it's doubled on every attempt and half of
+     * it it's random, so the devices lost at the same time don't retry at the same time.
+     */
+    private long getReconnectDelay(Remotte.Configuration configuration, int attempt) {
+        long delay = Math.min((long)configuration.getReconnectMaxDelay(), (long)configuration.getReconnectDelay() << Math.min(attempt, 20));
+        return (delay / 2) + (long)(mRandom.nextDouble() * (delay / 2 + 1));
+    }
+
+    private final Runnable mReconnectTask = new Runnable() {
+        @Override
+        public void run() {
+            if (mDisconnectRequested)
+                return;
+
+            try {
+                mTransport.connect(mTransportCallback);
+            } catch (RuntimeException e) {
+                LogsHelper.log(LogsHelper.WARN, "Error reconnecting with the Remotte device.", e);
+                if (!scheduleReconnect())
+                    notifyConnectionChange(RemotteGattTransport.STATE_DISCONNECTED);
+            }
+        }
+    };
+
+    /**
+     * Use this method when the services of a recovered connection have been discovered.
+     */
+    private void onConnectionRecovered() {
+        int  attempts = mReconnectAttempt;
+        long timeToRecover = (SystemClock.elapsedRealtimeNanos() - mDisconnectedAt) / 1000000;
+        mReconnectAttempt = 0;
+        LogsHelper.log(LogsHelper.DEBUG, "The connection with the Remotte {%s} has been recovered after %d attempts, in %d ms.", mAddress, attempts, timeToRecover);
+
+        Bundle data = new Bundle();
+        data.putInt(Remotte.EXTRA_RECONNECT_ATTEMPTS, attempts);
+        data.putLong(Remotte.EXTRA_TIME_TO_RECOVER, timeToRecover);
+        notifyConnectionChange(RemotteGattTransport.STATE_CONNECTED, data);
+    }
+
+    /**
+     * Use this method when the services of a new connection have been discovered, the clients receive the
+     * timestamps of its stages to measure its time to first sample.
+     */
+    private void onConnectionEstablished() {
+        LogsHelper.log(LogsHelper.DEBUG, "Remotte {%s} connected in %.1f ms, discovered in %.1f ms.", mAddress,
+                (mGattConnectedAt - mConnectionStartedAt) / 1000000.0, (mServicesDiscoveredAt - mGattConnectedAt) / 1000000.0);
+
+        Bundle data = new Bundle();
+        data.putLongArray(Remotte.EXTRA_CONNECTION_STAGES, new long[] { mConnectionStartedAt, mGattConnectedAt, mServicesDiscoveredAt });
+        notifyConnectionChange(RemotteGattTransport.STATE_CONNECTED, data);
+    }
+
+    /**
+     * @return Returns the time in nanoseconds between the last connection request and its first sample, or -1 if
+     * there has not been any sample yet.
+     */
+    public long getTimeToFirstSample() { return mTimeToFirstSample; }
+
+    /**
+     * Use this method to know if the device exposes a characteristic. Until the services are discovered, the
+     * answer comes from the last known layout of the device.
+     */
+    private boolean hasCharacteristic(UUID gattServiceID, UUID gattCharacteristicID) {
+        if (mServicesDiscovered)
+            return mTransport.hasCharacteristic(gattServiceID, gattCharacteristicID);
+
+        RemotteGattLayoutCache.Layout layout = mLayoutCache.get(mAddress);
+        return (layout != null && layout.hasCharacteristic(gattCharacteristicID));
+    }
+
+    /**
+     * Use this method when the device has been connected, before the services discovery. If the layout of the
+     * device it's known, the last configuration it's queued to be sent as soon as the discovery ends.
+     */
+    private void queueConfiguration() {
+        if (getGattConfiguration() == null || mLayoutCache.get(mAddress) == null)
+            return;
+
+        LogsHelper.log(LogsHelper.DEBUG, "The GATT layout of the Remotte {%s} it's known, queuing its configuration.", mAddress);
+        mGattScheduler.pause();
+        mConfigurationQueued = true;
+        enableSensors();
+        enableSensorsNotifications();
+    }
+
+    /**
+     * Use this method when the services of the device have been discovered. The layout it's validated against
+     * the known one, the commands queued for a different layout are discarded and the configuration restored
+     * again.
+     */
+    private void onLayoutDiscovered() {
+        Set<UUID> characteristics = mTransport.getCharacteristics();
+        RemotteGattLayoutCache.Layout layout = mLayoutCache.get(mAddress);
+        boolean restored = mConfigurationQueued;
+
+        if (layout == null || !layout.matches(characteristics)) {
+            if (mConfigurationQueued) {
+                LogsHelper.log(LogsHelper.WARN, "The GATT layout of the Remotte {%s} has changed, its queued configuration will be discarded.", mAddress);
+                mGattScheduler.clear();
+            }
+            mLayoutCache.put(mAddress, characteristics);
+            layout = null;
+            restored = false;
+        }
+
+        //The firmware revision it's read once per layout, a new firmware invalidates the layout.
+        if (layout == null || layout.getFirmware() == null) {
+            if (mTransport.hasCharacteristic(GattDeviceSensorTag.DEVICE_INFO_SERVICE, GattDeviceSensorTag.DEVICE_INFO_FIRMWARE_REVISION_CHARACTERISTIC)) {
+                mFirmwareRequested = true;
+                readCharacteristic(GattDeviceSensorTag.DEVICE_INFO_SERVICE, GattDeviceSensorTag.DEVICE_INFO_FIRMWARE_REVISION_CHARACTERISTIC);
+            }
+        }
+
+        mConfigurationQueued = false;
+        mGattScheduler.resume();
+
+        //The device forgets its configuration with the connection, restore it without wait for the clients.
+        if (!restored && getGattConfiguration() != null) {
+            enableSensors();
+            enableSensorsNotifications();
+        }
+    }
+
+    private void onFirmwareRead(byte[] value) {
+        if (value != null)
+            mLayoutCache.setFirmware(mAddress, new String(value).trim());
+    }
+
+    private void onFirstSample(long timestamp) {
+        mTimeToFirstSample = timestamp - mConnectionStartedAt;
+        LogsHelper.log(LogsHelper.DEBUG, "Time to first sample of the Remotte {%s}: %.1f ms.", mAddress, mTimeToFirstSample / 1000000.0);
+    }
+
+    /**
+     * Use this method to close connection with the Remotte device.
+     */
+    public void disconnect() {
+        LogsHelper.log(LogsHelper.DEBUG, "Disconnecting from Remotte {%s}.", mAddress);
+        mDisconnectRequested = true;
+        mHandler.removeCallbacks(mReconnectTask);
+        if (mReconnectAttempt > 0) {
+            mReconnectAttempt = 0;
+            if (!mTransport.isConnected())
+                notifyConnectionChange(RemotteGattTransport.STATE_DISCONNECTED);
+        }
+
+        flushSampleBatches();
+        if (mTransport.isConnected()) {
+            if (getGattConfiguration() != null) {
+                disableSensorsNotifications(getGattConfiguration());
+                disableSensors(getGattConfiguration());
+            }
+
+            mTransport.disconnect();
+
+            if (LogsHelper.isLoggable(LogsHelper.DEBUG)) {
+                LogsHelper.log(LogsHelper.DEBUG, "%s", mGattScheduler.getStatistics());
+                if (mDispatcher != null)
+                    LogsHelper.log(LogsHelper.DEBUG, "GATT notifications dispatched: %s", mDispatcher.getDispatchCounts());
+            }
+            mGattScheduler.clear();
+        }
+    }
+
+    /**
+     * Use this method to release the resources of the connection, it can't be used after that. The subscribers that
+     * have not been notified as disconnected are notified now, the transport will report the disconnection when
+     * they are already gone.
+     */
+    public void release() {
+        mHandler.removeCallbacks(mReconnectTask);
+        if (mNotifiedState != RemotteGattTransport.STATE_DISCONNECTED)
+            notifyConnectionChange(RemotteGattTransport.STATE_DISCONNECTED);
+
+        for (Subscriber subscriber : mSubscribers)
+            subscriber.release();
+        mSubscribers.clear();
+        mSampleRing = null;
+        RemotteSampleRing.release(mAddress);
+        mGattScheduler.shutdown();
+    }
+
+    /**
+     * Use this method to configure the subscription of a client. The device it's configured with the sensors
+     * requested by all the clients.
+     * @param client The messenger of the client.
+     * @param configuration The configuration sent by the client.
+     */
+    public void configure(Messenger client, Remotte.Configuration configuration) {
+        Subscriber subscriber = getSubscriber(client);
+        if (subscriber == null || configuration == null)
+            return;
+
+        //The clients send its configuration on every connection, the device it's restored by the connection itself.
+        if (configuration.isEquivalent(subscriber.getConfiguration()))
+            return;
+
+        subscriber.configure(configuration);
+        applyGattConfiguration();
+    }
+
+    /**
+     * Use this method to apply the union of the subscribers configurations. The sensors that are not needed
+     * anymore are disabled before enable the new ones.
+     */
+    private void applyGattConfiguration() {
+        Remotte.Configuration configuration = null;
+        boolean latencyMetrics = false;
+        for (Subscriber subscriber : mSubscribers) {
+            if (subscriber.getConfiguration() != null)
+                configuration = (configuration == null ? subscriber.getConfiguration() : configuration.merge(subscriber.getConfiguration()));
+            latencyMetrics |= subscriber.isLatencyMetricsEnabled();
+        }
+        mLatencyMetrics = latencyMetrics;
+
+        if (configuration == null)
+            return;
+
+        //Until the discovery the configuration it's only kept, it will be queued or restored with the layout.
+        if (!mServicesDiscovered) {
+            boolean queued = mConfigurationQueued;
+            if (queued) {
+                mConfigurationQueued = false;
+                mGattScheduler.clear();
+            }
+
+            setGattConfiguration(configuration);
+            mSampleRing = (configuration.getSampleRingEnabled() ? RemotteSampleRing.peek(mAddress) : null);
+            if (queued)
+                queueConfiguration();
+            return;
+        }
+
+        if (getGattConfiguration() != null) {
+            Remotte.Configuration unused = getGattConfiguration().subtract(configuration);
+            disableSensorsNotifications(unused);
+            disableSensors(unused);
+        }
+
+        setGattConfiguration(configuration);
+        mSampleRing = (configuration.getSampleRingEnabled() ? RemotteSampleRing.peek(mAddress) : null);
+        enableSensors();
+        enableSensorsNotifications();
+    }
+
+    private void flushSampleBatches() {
+        for (Subscriber subscriber : mSubscribers)
+            subscriber.flushSampleBatches();
+    }
+
+    /**
+     * Use this method to enable a haptic reaction in the device.
+     * @param configuration The haptic configuration byte.
+     */
+    public void enableHaptic(byte configuration) {
+        //This functionality it's only available on Remotte device.
+        if (getGattConfiguration() != null && getDeviceType() == Remotte.Devices.REMOTTE) {
+            if (hasCharacteristic(GattDeviceRemotte.HAPTIC_SERVICE, GattDeviceRemotte.HAPTIC_DATA_CHARACTERISTIC))
+                executeCommand(new RemotteGattCommand(GattDeviceRemotte.HAPTIC_SERVICE, GattDeviceRemotte.HAPTIC_DATA_CHARACTERISTIC, null,
+                        RemotteGattCommand.TYPE_WRITE, new byte[]{ configuration }, RemotteGattCommand.PRIORITY_HIGH, false));
+        }
+    }
+
+    /**
+     * Use this method to read a characteristic requested by the client.
+     * @param characteristic Anyone of the constants defined by the {@link com.mobandme.remotte.Remotte.Characteristics} class.
+     */
+    public void readCharacteristic(int characteristic) {
+        if (getGattConfiguration() == null)
+            return;
+
+        UUID serviceID = Remotte.Characteristics.getGattServiceUUID(getDeviceType(), characteristic);
+        UUID dataCharacteriticID = Remotte.Characteristics.getGattCharacteristicUUID(getDeviceType(), characteristic);
+
+        if (hasCharacteristic(serviceID, dataCharacteriticID))
+            readCharacteristic(serviceID, dataCharacteriticID, RemotteGattCommand.PRIORITY_HIGH);
+    }
+
+    /**
+     * Use this method to retrieve the device type.
+     * @return Returns the device type.
+     */
+    private int getDeviceType() {
+        return getGattConfiguration().getDevice();
+    }
+
+    private void setGattConfiguration(Remotte.Configuration configuration) {
+        Remotte.Configuration previous = this.mGattConfiguration;
+        this.mGattConfiguration = configuration;
+        if (mDispatcher == null || previous == null || previous.getDevice() != configuration.getDevice())
+            this.mDispatcher = buildDispatcher(configuration.getDevice());
+    }
+
+    /**
+     * Use this method to build the notifications routing table of the device profile.
+     * @param deviceType The device type.
+     * @return Returns the routing table.
+     */
+    private RemotteCharacteristicDispatcher buildDispatcher(int deviceType) {
+        RemotteCharacteristicDispatcher dispatcher = new RemotteCharacteristicDispatcher();
+
+        if (deviceType == Remotte.Devices.REMOTTE) {
+            dispatcher.register(GattDeviceRemotte.TEMPERATURE_DATA_CHARACTERISTIC, "Temperature", new SampleHandler(Remotte.MSG_TEMPERATURE_CHANGED))
+                      .register(GattDeviceRemotte.ACCELEROMETER_DATA_CHARACTERISTIC, "Accelerometer", new SampleHandler(Remotte.MSG_ACCELEROMETER_CHANGED))
+                      .register(GattDeviceRemotte.GYROSCOPE_DATA_CHARACTERISTIC, "Gyroscope", new SampleHandler(Remotte.MSG_GYROSCOPE_CHANGED))
+                      .register(GattDeviceRemotte.ALTIMETER_DATA_CHARACTERISTIC, "Altimeter", new SampleHandler(Remotte.MSG_BAROMETER_CHANGED))
+                      .register(GattDeviceRemotte.KEY_DATA_CHARACTERISTIC, "Keys", new SampleHandler(Remotte.MSG_KEY_PRESSED));
+        } else {
+            dispatcher.register(GattDeviceSensorTag.TEMPERATURE_DATA_CHARACTERISTIC, "Temperature", new SampleHandler(Remotte.MSG_TEMPERATURE_CHANGED))
+                      .register(GattDeviceSensorTag.ACCELEROMETER_DATA_CHARACTERISTIC, "Accelerometer", new SampleHandler(Remotte.MSG_ACCELEROMETER_CHANGED))
+                      .register(GattDeviceSensorTag.GYROSCOPE_DATA_CHARACTERISTIC, "Gyroscope", new SampleHandler(Remotte.MSG_GYROSCOPE_CHANGED))
+                      .register(GattDeviceSensorTag.ALTIMETER_DATA_CHARACTERISTIC, "Altimeter", new SampleHandler(Remotte.MSG_BAROMETER_CHANGED))
+                      .register(GattDeviceSensorTag.KEY_DATA_CHARACTERISTIC, "Keys", new SampleHandler(Remotte.MSG_KEY_PRESSED));
+        }
+
+        return dispatcher;
+    }
+
+    /**
+     * Use this method to retrieve the number of notifications routed to every sensor on the current connection.
+     * @return Returns a map with the sensor names and their dispatch counts.
+     */
+    Map<String, Long> getDispatchCounts() {
+        RemotteCharacteristicDispatcher dispatcher = mDispatcher;
+        return (dispatcher != null ? dispatcher.getDispatchCounts() : Collections.<String, Long>emptyMap());
+    }
+
+    private Remotte.Configuration getGattConfiguration() { return this.mGattConfiguration; }
+
+    private void enableSensors() {
+        LogsHelper.log(LogsHelper.DEBUG, "Enabling Remotte sensors.");
+
+        if (getDeviceType() == Remotte.Devices.REMOTTE) {
+            if (getGattConfiguration().getTemperatureSensorEnabled())
+                configureSensor(GattDeviceRemotte.TEMPERATURE_SERVICE, GattDeviceRemotte.TEMPERATURE_CONFIG_CHARACTERISTIC, true);
+            if (getGattConfiguration().getAccelerometerSensorEnabled())
+                configureSensor(GattDeviceRemotte.ACCELEROMETER_SERVICE, GattDeviceRemotte.ACCELEROMETER_CONFIG_CHARACTERISTIC, true);
+            if (getGattConfiguration().getGyroscopeSensorEnabled())
+                configureSensor(GattDeviceSensorTag.GYROSCOPE_SERVICE, GattDeviceSensorTag.GYROSCOPE_CONFIG_CHARACTERISTIC, GattDevice.ENABLE_GYROSCOPE_3_AXIS_SENSOR); //Enable the 3 axis of the sensor.
+            if (getGattConfiguration().getAltimeterSensorEnabled()) {
+                configureSensor(GattDeviceSensorTag.ALTIMETER_SERVICE, GattDeviceSensorTag.ALTIMETER_CONFIG_CHARACTERISTIC, GattDevice.SENSOR_CALIBRATION);
+                readCharacteristic(GattDeviceRemotte.ALTIMETER_SERVICE, GattDeviceRemotte.ALTIMETER_CALIBRATION_CHARACTERITIC);
+            }
+        } else {
+            if (getGattConfiguration().getTemperatureSensorEnabled())
+                configureSensor(GattDeviceSensorTag.TEMPERATURE_SERVICE, GattDeviceSensorTag.TEMPERATURE_CONFIG_CHARACTERISTIC, true);
+            if (getGattConfiguration().getAccelerometerSensorEnabled())
+                configureSensor(GattDeviceSensorTag.ACCELEROMETER_SERVICE, GattDeviceSensorTag.ACCELEROMETER_CONFIG_CHARACTERISTIC, true);
+            if (getGattConfiguration().getGyroscopeSensorEnabled())
+                configureSensor(GattDeviceSensorTag.GYROSCOPE_SERVICE, GattDeviceSensorTag.GYROSCOPE_CONFIG_CHARACTERISTIC, GattDevice.ENABLE_GYROSCOPE_3_AXIS_SENSOR); //Enable the 3 axis of the sensor.
+            if (getGattConfiguration().getAltimeterSensorEnabled()) {
+                configureSensor(GattDeviceSensorTag.ALTIMETER_SERVICE, GattDeviceSensorTag.ALTIMETER_CONFIG_CHARACTERISTIC, GattDevice.SENSOR_CALIBRATION);
+                readCharacteristic(GattDeviceSensorTag.ALTIMETER_SERVICE, GattDeviceSensorTag.ALTIMETER_CALIBRATION_CHARACTERITIC);
+            }
+        }
+    }
+
+    /**
+     * @param configuration The sensors to be disabled.
+     */
+    private void disableSensors(Remotte.Configuration configuration) {
+        LogsHelper.log(LogsHelper.DEBUG, "Disabling Remotte sensors.");
+
+        if (configuration.getDevice() == Remotte.Devices.REMOTTE) {
+            if (configuration.getTemperatureSensorEnabled())
+                configureSensor(GattDeviceRemotte.TEMPERATURE_SERVICE, GattDeviceRemotte.TEMPERATURE_CONFIG_CHARACTERISTIC, false);
+            if (configuration.getAccelerometerSensorEnabled())
+                configureSensor(GattDeviceRemotte.ACCELEROMETER_SERVICE, GattDeviceRemotte.ACCELEROMETER_CONFIG_CHARACTERISTIC, false);
+            if (configuration.getGyroscopeSensorEnabled())
+                configureSensor(GattDeviceRemotte.GYROSCOPE_SERVICE, GattDeviceRemotte.GYROSCOPE_CONFIG_CHARACTERISTIC, false);
+            if (configuration.getAltimeterSensorEnabled())
+                configureSensor(GattDeviceRemotte.ALTIMETER_SERVICE, GattDeviceRemotte.ALTIMETER_CONFIG_CHARACTERISTIC, false);
+        } else {
+            if (configuration.getTemperatureSensorEnabled())
+                configureSensor(GattDeviceSensorTag.TEMPERATURE_SERVICE, GattDeviceSensorTag.TEMPERATURE_CONFIG_CHARACTERISTIC, false);
+            if (configuration.getAccelerometerSensorEnabled())
+                configureSensor(GattDeviceSensorTag.ACCELEROMETER_SERVICE, GattDeviceSensorTag.ACCELEROMETER_CONFIG_CHARACTERISTIC, false);
+            if (configuration.getGyroscopeSensorEnabled())
+                configureSensor(GattDeviceSensorTag.GYROSCOPE_SERVICE, GattDeviceSensorTag.GYROSCOPE_CONFIG_CHARACTERISTIC, false);
+            if (configuration.getAltimeterSensorEnabled())
+                configureSensor(GattDeviceSensorTag.ALTIMETER_SERVICE, GattDeviceSensorTag.ALTIMETER_CONFIG_CHARACTERISTIC, false);
+        }
+    }
+
+    private void enableSensorsNotifications() {
+        LogsHelper.log(LogsHelper.DEBUG, "Enabling Remotte sensors to on change notifications.");
+        if (getDeviceType() == Remotte.Devices.REMOTTE) {
+            if (getGattConfiguration().getTemperatureNotificationEnabled()) {
+                configureSensorNotification(GattDeviceRemotte.TEMPERATURE_SERVICE, GattDeviceRemotte.TEMPERATURE_DATA_CHARACTERISTIC, true);
+                configureSensor(GattDeviceRemotte.TEMPERATURE_SERVICE, GattDeviceRemotte.TEMPERATURE_PERIOD_CHARACTERISTIC, getGattConfiguration().getTemperaturePeriod());
+            }
+            if (getGattConfiguration().getAccelerometerNotificationEnabled()) {
+                configureSensorNotification(GattDeviceRemotte.ACCELEROMETER_SERVICE, GattDeviceRemotte.ACCELEROMETER_DATA_CHARACTERISTIC, true);
+                configureSensor(GattDeviceRemotte.ACCELEROMETER_SERVICE, GattDeviceRemotte.ACCELEROMETER_PERIOD_CHARACTERISTIC, getGattConfiguration().getAccelerometerPeriod());
+            }
+            if (getGattConfiguration().getGyroscopeNotificationEnabled()) {
+                configureSensorNotification(GattDeviceRemotte.GYROSCOPE_SERVICE, GattDeviceRemotte.GYROSCOPE_DATA_CHARACTERISTIC, true);
+                configureSensor(GattDeviceRemotte.GYROSCOPE_SERVICE, GattDeviceRemotte.GYROSCOPE_PERIOD_CHARACTERISTIC, getGattConfiguration().getGyroscopePeriod());
+            }
+            if (getGattConfiguration().getAltimeterNotificationEnabled()) {
+                configureSensorNotification(GattDeviceRemotte.ALTIMETER_SERVICE, GattDeviceRemotte.ALTIMETER_DATA_CHARACTERISTIC, true);
+                configureSensor(GattDeviceRemotte.ALTIMETER_SERVICE, GattDeviceRemotte.ALTIMETER_PERIOD_CHARACTERISTIC, getGattConfiguration().getAltimeterPeriod());
+            }
+            if (getGattConfiguration().getKeysNotificationEnabled())
+                configureSensorNotification(GattDeviceRemotte.KEY_SERVICE, GattDeviceRemotte.KEY_DATA_CHARACTERISTIC, true);
+        } else {
+            if (getGattConfiguration().getTemperatureNotificationEnabled()) {
+                configureSensorNotification(GattDeviceSensorTag.TEMPERATURE_SERVICE, GattDeviceSensorTag.TEMPERATURE_DATA_CHARACTERISTIC, true);
+                configureSensor(GattDeviceSensorTag.TEMPERATURE_SERVICE, GattDeviceSensorTag.TEMPERATURE_PERIOD_CHARACTERISTIC, getGattConfiguration().getTemperaturePeriod());
+            }
+            if (getGattConfiguration().getAccelerometerNotificationEnabled()) {
+                configureSensorNotification(GattDeviceSensorTag.ACCELEROMETER_SERVICE, GattDeviceSensorTag.ACCELEROMETER_DATA_CHARACTERISTIC, true);
+                configureSensor(GattDeviceSensorTag.ACCELEROMETER_SERVICE, GattDeviceSensorTag.ACCELEROMETER_PERIOD_CHARACTERISTIC, getGattConfiguration().getAccelerometerPeriod());
+            }
+            if (getGattConfiguration().getGyroscopeNotificationEnabled()) {
+                configureSensorNotification(GattDeviceSensorTag.GYROSCOPE_SERVICE, GattDeviceSensorTag.GYROSCOPE_DATA_CHARACTERISTIC, true);
+                configureSensor(GattDeviceSensorTag.GYROSCOPE_SERVICE, GattDeviceSensorTag.GYROSCOPE_PERIOD_CHARACTERISTIC, getGattConfiguration().getGyroscopePeriod());
+            }
+            if (getGattConfiguration().getAltimeterNotificationEnabled()) {
+                configureSensorNotification(GattDeviceSensorTag.ALTIMETER_SERVICE, GattDeviceSensorTag.ALTIMETER_DATA_CHARACTERISTIC, true);
+                configureSensor(GattDeviceSensorTag.ALTIMETER_SERVICE, GattDeviceSensorTag.ALTIMETER_PERIOD_CHARACTERISTIC, getGattConfiguration().getAltimeterPeriod());
+            }
+            if (getGattConfiguration().getKeysNotificationEnabled())
+                configureSensorNotification(GattDeviceSensorTag.KEY_SERVICE, GattDeviceSensorTag.KEY_DATA_CHARACTERISTIC, true);
+        }
+    }
+
+    /**
+     * @param configuration The sensors to be disabled.
+     */
+    private void disableSensorsNotifications(Remotte.Configuration configuration) {
+        LogsHelper.log(LogsHelper.DEBUG, "Disabling Remotte sensors to on change notifications.");
+        if (configuration.getDevice() == Remotte.Devices.REMOTTE) {
+            if (configuration.getTemperatureNotificationEnabled())
+                configureSensorNotification(GattDeviceRemotte.TEMPERATURE_SERVICE, GattDeviceRemotte.TEMPERATURE_DATA_CHARACTERISTIC, false);
+            if (configuration.getAccelerometerNotificationEnabled())
+                configureSensorNotification(GattDeviceRemotte.ACCELEROMETER_SERVICE, GattDeviceRemotte.ACCELEROMETER_DATA_CHARACTERISTIC, false);
+            if (configuration.getGyroscopeNotificationEnabled())
+                configureSensorNotification(GattDeviceRemotte.GYROSCOPE_SERVICE, GattDeviceRemotte.GYROSCOPE_DATA_CHARACTERISTIC, false);
+            if (configuration.getAltimeterNotificationEnabled())
+                configureSensorNotification(GattDeviceRemotte.ALTIMETER_SERVICE, GattDeviceRemotte.ALTIMETER_DATA_CHARACTERISTIC, false);
+            if (configuration.getKeysNotificationEnabled())
+                configureSensorNotification(GattDeviceRemotte.KEY_SERVICE, GattDeviceRemotte.KEY_DATA_CHARACTERISTIC, false);
+        } else {
+            if (configuration.getTemperatureNotificationEnabled())
+                configureSensorNotification(GattDeviceSensorTag.TEMPERATURE_SERVICE, GattDeviceSensorTag.TEMPERATURE_DATA_CHARACTERISTIC, false);
+            if (configuration.getAccelerometerNotificationEnabled())
+                configureSensorNotification(GattDeviceSensorTag.ACCELEROMETER_SERVICE, GattDeviceSensorTag.ACCELEROMETER_DATA_CHARACTERISTIC, false);
+            if (configuration.getGyroscopeNotificationEnabled())
+                configureSensorNotification(GattDeviceSensorTag.GYROSCOPE_SERVICE, GattDeviceSensorTag.GYROSCOPE_DATA_CHARACTERISTIC, false);
+            if (configuration.getAltimeterNotificationEnabled())
+                configureSensorNotification(GattDeviceSensorTag.ALTIMETER_SERVICE, GattDeviceSensorTag.ALTIMETER_DATA_CHARACTERISTIC, false);
+            if (configuration.getKeysNotificationEnabled())
+                configureSensorNotification(GattDeviceSensorTag.KEY_SERVICE, GattDeviceSensorTag.KEY_DATA_CHARACTERISTIC, false);
+        }
+    }
+
+    private void configureSensor(UUID gattServiceID, UUID gattConfigurationCharacteristicID, boolean enabled) {
+        if (enabled)
+            configureSensor(gattServiceID, gattConfigurationCharacteristicID, GattDevice.ENABLE_SENSOR);
+        else
+            configureSensor(gattServiceID, gattConfigurationCharacteristicID, GattDevice.DISABLE_SENSOR);
+    }
+
+    private boolean configureSensor(UUID gattServiceID, UUID gattCharacteristicID, byte[] value) {
+        boolean returnedValue = false;
+
+        if (hasCharacteristic(gattServiceID, gattCharacteristicID)) {
+            writeCharacteristic(gattServiceID, gattCharacteristicID, value, RemotteGattCommand.PRIORITY_LOW);
+            returnedValue = true;
+        }
+
+        return returnedValue;
+    }
+
+    private void configureSensorNotification(UUID gattServiceID, UUID gattCharacteristicID, boolean enabled) {
+        if (hasCharacteristic(gattServiceID, gattCharacteristicID)) {
+
+            //Write the Standar Client Configuration Descriptor of the Characteristic, the notification it's enabled
+            //locally when the write goes on air.
+            if (enabled) {
+                writeDescriptor(gattServiceID, gattCharacteristicID, GattDevice.CLIENT_CHARACTERISTIC_CONFIG, GattDevice.ENABLE_NOTIFICATION);
+            } else {
+                writeDescriptor(gattServiceID, gattCharacteristicID, GattDevice.CLIENT_CHARACTERISTIC_CONFIG, GattDevice.DISABLE_NOTIFICATION);
+            }
+        }
+    }
+
+    private RemotteGattCommand writeCharacteristic(UUID gattServiceID, UUID gattCharacteristicID, byte[] value, int priority) {
+        return executeCommand(new RemotteGattCommand(gattServiceID, gattCharacteristicID, null, RemotteGattCommand.TYPE_WRITE, value, priority));
+    }
+
+    private RemotteGattCommand readCharacteristic(UUID gattServiceID, UUID gattCharacteristicID) {
+        return readCharacteristic(gattServiceID, gattCharacteristicID, RemotteGattCommand.PRIORITY_LOW);
+    }
+
+    private RemotteGattCommand readCharacteristic(UUID gattServiceID, UUID gattCharacteristicID, int priority) {
+        return executeCommand(new RemotteGattCommand(gattServiceID, gattCharacteristicID, null, RemotteGattCommand.TYPE_READ, priority));
+    }
+
+    private RemotteGattCommand writeDescriptor(UUID gattServiceID, UUID gattCharacteristicID, UUID gattDescriptorID, byte[] value) {
+        return executeCommand(new RemotteGattCommand(gattServiceID, gattCharacteristicID, gattDescriptorID, RemotteGattCommand.TYPE_WRITE, value, RemotteGattCommand.PRIORITY_LOW));
+    }
+
+    /**
+     * Use this method to send a sensor sample to the client. The sample travels packed into the message arguments,
+     * see {@link com.mobandme.remotte.RemotteSampleCodec}, unless the pipeline of the client smooths it.
+     * @param what The message type of the sensor.
+     * @param value The raw value of the GATT characteristic.
+     */
+    private void notifySample(int what, byte[] value, long timestamp) {
+        if (value == null)
+            return;
+
+        if (mFirstSamplePending) {
+            mFirstSamplePending = false;
+            onFirstSample(timestamp);
+        }
+
+        int  low = RemotteSampleCodec.packLow(value);
+        int  high = RemotteSampleCodec.packHigh(value, timestamp / 1000000);
+        long packed = (mLatencyMetrics ? SystemClock.elapsedRealtimeNanos() : 0);
+
+        boolean converted = false;
+        for (Subscriber subscriber : mSubscribers) {
+            if (!subscriber.isSubscribed(what))
+                continue;
+
+            //The pipeline sees every sample, for its aggregates, and then decides if the sample goes on.
+            double[] values = mSampleValues;
+            RemotteSamplePipeline pipeline = subscriber.getSamplePipeline(what);
+            if (pipeline != null) {
+                if (!converted)
+                    converted = convertSample(what, value, mSampleValues);
+                if (!converted)
+                    continue;
+
+                int outputs = pipeline.add(timestamp / 1000000, mSampleValues[0], mSampleValues[1], mSampleValues[2]);
+                if ((outputs & RemotteSamplePipeline.OUTPUT_AGGREGATE) != 0)
+                    sendAggregate(subscriber, what, pipeline);
+                if ((outputs & RemotteSamplePipeline.OUTPUT_SAMPLE) == 0)
+                    continue;
+                if (pipeline.isTransformed())
+                    values = pipeline.getValues();
+            }
+
+            //The unchanged samples are dropped here, before they cost a message.
+            RemotteSampleFilter filter = subscriber.getSampleFilter(what);
+            if (filter != null) {
+                if (!converted)
+                    converted = convertSample(what, value, mSampleValues);
+                if (converted && !filter.accept(timestamp / 1000000, values[0], values[1], values[2])) {
+                    subscriber.onSampleSuppressed(what);
+                    continue;
+                }
+            }
+
+            //The smoothed samples can't travel as its raw value, so they travel alone with their values packed.
+            if (values != mSampleValues) {
+                sendSampleValues(subscriber, what, timestamp, values, packed);
+                continue;
+            }
+
+            SampleBatch batch = subscriber.getSampleBatch(what);
+            if (batch != null)
+                batch.add(low, high);
+            else
+                sendSamples(subscriber, what, 1, Message.obtain(null, what, low, high), timestamp, packed);
+        }
+
+        RemotteSampleRing ring = mSampleRing;
+        if (ring != null && (converted || convertSample(what, value, mSampleValues)))
+            ring.publish(RemotteMetrics.getSensor(what), timestamp, mSampleValues[0], mSampleValues[1], mSampleValues[2]);
+    }
+
+    /**
+     * Use this method to convert a sample without allocate memory, the sample it's converted once for the filters
+     * and the ring of the device. The Altimeter keeps the height reference, so convert every sample only once.
+     * @param what The message type of the sensor.
+     * @param value The raw value of the GATT characteristic.
+     * @param values The array where the values are written, the unused values are 0.
+     * @return Returns false if the message type it's not a sensor.
+     */
+    private boolean convertSample(int what, byte[] value, double[] values) {
+        int device = getDeviceType();
+        values[RemotteSensor.Z] = 0;
+
+        switch (what) {
+            case Remotte.MSG_TEMPERATURE_CHANGED:
+                values[0] = RemotteSensorTemperature.convert(device, value);
+                values[1] = 0;
+                break;
+            case Remotte.MSG_ACCELEROMETER_CHANGED:
+                RemotteSensorAccelerometer.convert(device, value, values);
+                break;
+            case Remotte.MSG_GYROSCOPE_CHANGED:
+                RemotteSensorGyroscope.convert(device, value, values);
+                break;
+            case Remotte.MSG_BAROMETER_CHANGED:
+                mSampleAltimeter.convert(device, value, values);
+                break;
+            case Remotte.MSG_KEY_PRESSED:
+                RemotteSensorKeys.convert(device, value, mSampleKeys);
+                values[0] = mSampleKeys[RemotteSensorKeys.POWER_KEY];
+                values[1] = mSampleKeys[RemotteSensorKeys.CENTER_KEY];
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Use this method to send samples to a client. If the client measures the latency, the message carries the
+     * timestamps of the service stages and the samples dropped until now.
+     * @param sensor The message type of the sensor.
+     * @param count The number of samples of the message.
+     * @param notified The timestamp of the GATT notification, or 0 for the batches.
+     * @param packed The timestamp of the sample packed, or 0 for the batches.
+     */
+    private void sendSamples(Subscriber subscriber, int sensor, int count, Message message, long notified, long packed) {
+        if (message == null)
+            return;
+
+        if (subscriber.isLatencyMetricsEnabled()) {
+            Bundle data = message.getData();
+            data.putLong(Remotte.EXTRA_DROPPED_SAMPLES, subscriber.getDroppedSamples(sensor));
+            data.putLong(Remotte.EXTRA_SUPPRESSED_SAMPLES, subscriber.getSuppressedSamples(sensor));
+            data.putLongArray(Remotte.EXTRA_SAMPLE_STAGES, new long[] { notified, packed, SystemClock.elapsedRealtimeNanos() });
+        }
+
+        if (!send(subscriber, message))
+            subscriber.onSamplesDropped(sensor, count);
+    }
+
+    /**
+     * Use this method to send a sample transformed by the pipeline of a client, with its converted values packed
+     * into the message arguments, see {@link com.mobandme.remotte.RemotteSampleCodec#packValues}.
+     * @param what The message type of the sensor.
+     * @param timestamp The timestamp of the GATT notification.
+     */
+    private void sendSampleValues(Subscriber subscriber, int what, long timestamp, double[] values, long packed) {
+        long sample = RemotteSampleCodec.packValues(RemotteSampleCodec.getValuesCount(what), timestamp / 1000000, values[0], values[1], values[2]);
+        sendSamples(subscriber, what, 1, Message.obtain(null, what | Remotte.MSG_SAMPLE_VALUES, (int)sample, (int)(sample >>> 32)), timestamp, packed);
+    }
+
+    /**
+     * Use this method to send the statistics of the window that the pipeline of a client just ended.
+     * @param what The message type of the sensor.
+     */
+    private void sendAggregate(Subscriber subscriber, int what, RemotteSamplePipeline pipeline) {
+        Message message = Message.obtain(null, Remotte.MSG_SAMPLE_AGGREGATE, what, pipeline.getInput());
+        if (message == null)
+            return;
+
+        message.getData().putDoubleArray(Remotte.EXTRA_SAMPLE_AGGREGATE, pipeline.getStatistics().clone());
+        send(subscriber, message);
+    }
+
+    private void notifyAltimeterCalibration(byte[] value) {
+        //The altimeter values are converted by the client, so it needs the calibration. The ring has its own copy.
+        mSampleAltimeter.setCalibration(value);
+        Bundle data = new Bundle();
+        data.putByteArray(Remotte.EXTRA_ALTIMETER_CALIBRATION, value);
+
+        Message message = Message.obtain(null, Remotte.MSG_ALTIMETER_CALIBRATION);
+        if (message != null) {
+            message.setData(data);
+            notify(message);
+        }
+
+        if (getDeviceType() == Remotte.Devices.REMOTTE)
+            configureSensor(GattDeviceRemotte.ALTIMETER_SERVICE, GattDeviceRemotte.ALTIMETER_CONFIG_CHARACTERISTIC, GattDevice.ENABLE_SENSOR);
+        else
+            configureSensor(GattDeviceSensorTag.ALTIMETER_SERVICE, GattDeviceSensorTag.ALTIMETER_CONFIG_CHARACTERISTIC, GattDevice.ENABLE_SENSOR);
+    }
+
+    private void notifyDesciptorRead(UUID characteristic, UUID descriptor, byte[] value) { }
+
+    private void notifyCharacteristicRead(UUID characteristic, byte[] value) {
+        Bundle data = new Bundle();
+        data.putInt(Remotte.EXTRA_CHARACTERISTIC, getCharactericticType(characteristic));
+        data.putByteArray(Remotte.EXTRA_CHARACTERISTIC_VALUE, value);
+
+        Message message = Message.obtain(null, Remotte.MSG_CHARACTERISTIC_READED);
+        if (message != null) {
+            message.setData(data);
+            notify(message);
+        }
+    }
+
+    private int getCharactericticType(UUID characteristic) {
+        return Remotte.Characteristics.getCharacteristicTypeFromGattCharacteristicUUID(getDeviceType(), characteristic);
+    }
+
+    private void notifyConnectionChange(int state) {
+        notifyConnectionChange(state, new Bundle());
+    }
+
+    private void notifyConnectionChange(int state, Bundle data) {
+        mNotifiedState = state;
+        if (!mSubscribers.isEmpty())
+            notify(obtainConnectionMessage(state, data));
+    }
+
+    private Message obtainConnectionMessage(int state, Bundle data) {
+        data.putInt(Remotte.EXTRA_CONNECTION_STATE, state);
+
+        Message message = Message.obtain(null, Remotte.MSG_STATE_CHANGED);
+        if (message != null)
+            message.setData(data);
+        return message;
+    }
+
+    /**
+     * Use this method to send a message to all the clients of the device. A message can't be sent twice, so every
+     * client but the last one receives a copy.
+     */
+    private void notify(Message message) {
+        if (message == null)
+            return;
+
+        Iterator<Subscriber> subscribers = mSubscribers.iterator();
+        while (subscribers.hasNext()) {
+            Subscriber subscriber = subscribers.next();
+            send(subscriber, (subscribers.hasNext() ? Message.obtain(message) : message));
+        }
+    }
+
+    private boolean send(Subscriber subscriber, Message message) {
+        if (message == null || subscriber.isDead())
+            return false;
+
+        try {
+            subscriber.getMessenger().send(message);
+            return true;
+        } catch (DeadObjectException e) {
+            subscriber.binderDied();
+        } catch (Exception e) {
+            LogsHelper.log(LogsHelper.ERROR, "Error sending message to the client.", e);
+        }
+        return false;
+    }
+
+    private RemotteGattCommand executeCommand(RemotteGattCommand gattCommand) {
+        if (mTransport.isConnected())
+            mGattScheduler.submit(gattCommand);
+        else
+            gattCommand.cancel(false);
+
+        return gattCommand;
+    }
+
+    /**
+     * This executor put on air the commands dispatched by the GATT scheduler.
+     */
+    private RemotteGattScheduler.CommandExecutor mGattCommandExecutor = new RemotteGattScheduler.CommandExecutor() {
+        @Override
+        public boolean execute(RemotteGattCommand gattCommand) {
+            if (gattCommand.type == RemotteGattCommand.TYPE_WRITE) {
+                if (gattCommand.descriptor == null)
+                    return mTransport.writeCharacteristic(gattCommand.service, gattCommand.characteristic, gattCommand.value);
+
+                if (GattDevice.CLIENT_CHARACTERISTIC_CONFIG.equals(gattCommand.descriptor)) {
+                    boolean enabled = Arrays.equals(gattCommand.value, GattDevice.ENABLE_NOTIFICATION);
+                    if (!mTransport.setCharacteristicNotification(gattCommand.service, gattCommand.characteristic, enabled))
+                        return false;
+                }
+                return mTransport.writeDescriptor(gattCommand.service, gattCommand.characteristic, gattCommand.descriptor, gattCommand.value);
+            } else if (gattCommand.type == RemotteGattCommand.TYPE_READ) {
+                if (gattCommand.descriptor == null)
+                    return mTransport.readCharacteristic(gattCommand.service, gattCommand.characteristic);
+                else
+                    return mTransport.readDescriptor(gattCommand.service, gattCommand.characteristic, gattCommand.descriptor);
+            }
+
+            LogsHelper.log(LogsHelper.WARN, "Invalid Remotte GATT command.");
+            gattCommand.complete(RemotteGattCommand.STATUS_FAILURE);
+            return false;
+        }
+    };
+
+    /**
+     * This handler pack the notifications of a sensor and send them to the client.
+     */
+    private final class SampleHandler implements RemotteCharacteristicDispatcher.CharacteristicHandler {
+        private final int mSensor;
+
+        public SampleHandler(int sensor) { mSensor = sensor; }
+
+        @Override
+        public void onCharacteristicChanged(byte[] value, long timestamp) { notifySample(mSensor, value, timestamp); }
+    }
+
+    /**
+     * This class keep a client of the device, with its configuration, the mask of the sensors that it's subscribed
+     * to, its sample pipelines and filters and its batches of samples.
+     */
+    private final class Subscriber implements IBinder.DeathRecipient {
+        private final    Messenger             mMessenger;
+        private volatile Remotte.Configuration mConfiguration;
+        private volatile int                   mMask = 0;
+        private volatile SampleBatch[]         mSampleBatches;
+        private volatile RemotteSampleFilter[] mSampleFilters;
+        private volatile RemotteSamplePipeline[] mSamplePipelines;
+        private volatile boolean               mDead = false;
+        private volatile boolean               mLatencyMetrics = false;
+        private final    long[]                mDroppedSamples = new long[Remotte.MSG_KEY_PRESSED + 1];
+        private final    long[]                mSuppressedSamples = new long[Remotte.MSG_KEY_PRESSED + 1];
+
+        public Subscriber(Messenger messenger) { mMessenger = messenger; }
+
+        public Messenger             getMessenger() { return mMessenger; }
+        public Remotte.Configuration getConfiguration() { return mConfiguration; }
+        public boolean               isDead() { return mDead; }
+        public boolean               isLatencyMetricsEnabled() { return mLatencyMetrics; }
+
+        public synchronized long getDroppedSamples(int what) { return mDroppedSamples[what]; }
+        public synchronized void onSamplesDropped(int what, int count) { mDroppedSamples[what] += count; }
+        public synchronized long getSuppressedSamples(int what) { return mSuppressedSamples[what]; }
+        public synchronized void onSampleSuppressed(int what) { mSuppressedSamples[what]++; }
+
+        /**
+         * @param what The message type of the sensor.
+         * @return Returns true if the subscriber wants the samples of the sensor.
+         */
+        public boolean isSubscribed(int what) { return !mDead && (mMask & (1 << what)) != 0; }
+
+        public void configure(Remotte.Configuration configuration) {
+            flushSampleBatches();
+
+            mConfiguration = configuration;
+            mLatencyMetrics = configuration.getLatencyMetricsEnabled();
+            mMask = getSubscriptionMask(configuration);
+            mSampleBatches = buildSampleBatches(configuration);
+            mSampleFilters = buildSampleFilters(configuration);
+            mSamplePipelines = buildSamplePipelines(configuration);
+        }
+
+        /**
+         * Use this method to build the sample filters requested by the configuration, indexed like the batches.
+         */
+        private RemotteSampleFilter[] buildSampleFilters(Remotte.Configuration configuration) {
+            RemotteSampleFilter[] filters = null;
+            for (int what = Remotte.MSG_TEMPERATURE_CHANGED; what <= Remotte.MSG_BAROMETER_CHANGED; what++) {
+                RemotteSampleFilter filter = configuration.buildSampleFilter(RemotteMetrics.getSensor(what));
+                if (filter != null) {
+                    if (filters == null)
+                        filters = new RemotteSampleFilter[Remotte.MSG_BAROMETER_CHANGED - Remotte.MSG_TEMPERATURE_CHANGED + 1];
+                    filters[what - Remotte.MSG_TEMPERATURE_CHANGED] = filter;
+                }
+            }
+            return filters;
+        }
+
+        public RemotteSampleFilter getSampleFilter(int what) {
+            RemotteSampleFilter[] filters = mSampleFilters;
+            if (filters == null || what < Remotte.MSG_TEMPERATURE_CHANGED || what > Remotte.MSG_BAROMETER_CHANGED)
+                return null;
+            return filters[what - Remotte.MSG_TEMPERATURE_CHANGED];
+        }
+
+        /**
+         * Use this method to build the sample pipelines requested by the configuration, indexed like the batches.
+         */
+        private RemotteSamplePipeline[] buildSamplePipelines(Remotte.Configuration configuration) {
+            RemotteSamplePipeline[] pipelines = null;
+            for (int what = Remotte.MSG_TEMPERATURE_CHANGED; what <= Remotte.MSG_BAROMETER_CHANGED; what++) {
+                RemotteSamplePipeline pipeline = configuration.buildSamplePipeline(RemotteMetrics.getSensor(what));
+                if (pipeline != null) {
+                    if (pipelines == null)
+                        pipelines = new RemotteSamplePipeline[Remotte.MSG_BAROMETER_CHANGED - Remotte.MSG_TEMPERATURE_CHANGED + 1];
+                    pipelines[what - Remotte.MSG_TEMPERATURE_CHANGED] = pipeline;
+                }
+            }
+            return pipelines;
+        }
+
+        public RemotteSamplePipeline getSamplePipeline(int what) {
+            RemotteSamplePipeline[] pipelines = mSamplePipelines;
+            if (pipelines == null || what < Remotte.MSG_TEMPERATURE_CHANGED || what > Remotte.MSG_BAROMETER_CHANGED)
+                return null;
+            return pipelines[what - Remotte.MSG_TEMPERATURE_CHANGED];
+        }
+
+        /**
+         * Use this method to build the batches of samples requested by the configuration. The sensors that can be
+         * batched have consecutive message types, from MSG_TEMPERATURE_CHANGED to MSG_BAROMETER_CHANGED.
+         */
+        private SampleBatch[] buildSampleBatches(Remotte.Configuration configuration) {
+            if (configuration.getBatchSize() <= 1)
+                return null;
+
+            SampleBatch[] batches = new SampleBatch[Remotte.MSG_BAROMETER_CHANGED - Remotte.MSG_TEMPERATURE_CHANGED + 1];
+            for (int index = 0; index < batches.length; index++)
+                batches[index] = new SampleBatch(this, Remotte.MSG_TEMPERATURE_CHANGED + index, configuration.getBatchSize(), configuration.getBatchLatency());
+            return batches;
+        }
+
+        public SampleBatch getSampleBatch(int what) {
+            SampleBatch[] batches = mSampleBatches;
+            if (batches == null || what < Remotte.MSG_TEMPERATURE_CHANGED || what > Remotte.MSG_BAROMETER_CHANGED)
+                return null;
+            return batches[what - Remotte.MSG_TEMPERATURE_CHANGED];
+        }
+
+        public void flushSampleBatches() {
+            SampleBatch[] batches = mSampleBatches;
+            if (batches != null)
+                for (SampleBatch batch : batches)
+                    batch.flush();
+        }
+
+        public void release() {
+            flushSampleBatches();
+            mMessenger.getBinder().unlinkToDeath(this, 0);
+        }
+
+        @Override
+        public void binderDied() {
+            if (mDead)
+                return;
+
+            mDead = true;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() { onSubscriberDied(Subscriber.this); }
+            });
+        }
+    }
+
+    /**
+     * Use this method to build the mask of the sensors enabled by a configuration, every sensor it's the bit of its
+     * message type.
+     */
+    private static int getSubscriptionMask(Remotte.Configuration configuration) {
+        int mask = 0;
+        if (configuration.getTemperatureCallbackEnabled())
+            mask |= (1 << Remotte.MSG_TEMPERATURE_CHANGED);
+        if (configuration.getAccelerometerCallbackEnabled())
+            mask |= (1 << Remotte.MSG_ACCELEROMETER_CHANGED);
+        if (configuration.getGyroscopeCallbackEnabled())
+            mask |= (1 << Remotte.MSG_GYROSCOPE_CHANGED);
+        if (configuration.getAltimeterCallbackEnabled())
+            mask |= (1 << Remotte.MSG_BAROMETER_CHANGED);
+        if (configuration.getKeysPressedCallbackEnabled())
+            mask |= (1 << Remotte.MSG_KEY_PRESSED);
+        return mask;
+    }
+
+    /**
+     * This class send the samples of one sensor to the client in batches, when the batch it's full or when the
+     * maximum latency of its first sample expires.
+     */
+    private final class SampleBatch implements Runnable {
+        private final Subscriber           mSubscriber;
+        private final int                  mSensor;
+        private final long                 mMaxLatency;
+        private final RemotteSampleBatcher mBatcher;
+
+        public SampleBatch(Subscriber subscriber, int sensor, int maxSamples, long maxLatency) {
+            mSubscriber = subscriber;
+            mSensor = sensor;
+            mMaxLatency = maxLatency;
+            mBatcher = new RemotteSampleBatcher(maxSamples);
+        }
+
+        public void add(int low, int high) {
+            int count = mBatcher.add(low, high);
+            if (count >= mBatcher.getCapacity()) {
+                mHandler.removeCallbacks(this);
+                flush();
+            } else if (count == 1) {
+                mHandler.postDelayed(this, mMaxLatency);
+            }
+        }
+
+        @Override
+        public void run() { flush(); }
+
+        public void flush() {
+            mHandler.removeCallbacks(this);
+
+            int[] samples = mBatcher.drain();
+            if (samples != null) {
+                Bundle data = new Bundle();
+                data.putIntArray(Remotte.EXTRA_SAMPLES, samples);
+
+                Message message = Message.obtain(null, Remotte.MSG_SAMPLES_BATCH, mSensor, samples.length / 2);
+                if (message != null) {
+                    message.setData(data);
+                    sendSamples(mSubscriber, mSensor, samples.length / 2, message, 0, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Use this method to process a connection state change of the transport, on the service thread.
+     */
+    private void onGattConnectionStateChange(int status, int newState, long timestamp) {
+        if (status == RemotteGattTransport.STATE_CONNECTED)
+            LogsHelper.log(LogsHelper.DEBUG, "GATT Connection State Change, CONNECTED.");
+        else if (status == RemotteGattTransport.STATE_CONNECTING)
+            LogsHelper.log(LogsHelper.DEBUG, "GATT Connection State Change, CONNECTING.");
+        else if (status == RemotteGattTransport.STATE_DISCONNECTING)
+            LogsHelper.log(LogsHelper.DEBUG, "GATT Connection State Change, DISCONNECTING.");
+        else if (status == RemotteGattTransport.STATE_DISCONNECTED)
+            LogsHelper.log(LogsHelper.DEBUG, "GATT Connection State Change, DISCONNECTED.");
+
+        if (newState == RemotteGattTransport.STATE_CONNECTED) {
+            LogsHelper.log(LogsHelper.DEBUG, "Discovering supported GATT Services from Remotte Device.");
+            mGattConnectedAt = timestamp;
+            mServicesDiscovered = false;
+            queueConfiguration();
+            mTransport.discoverServices();
+            notifyConnectionChange(RemotteGattTransport.STATE_CONNECTING);
+        } else if (newState == RemotteGattTransport.STATE_DISCONNECTED) {
+            mServicesDiscovered = false;
+            mConfigurationQueued = false;
+            mFirmwareRequested = false;
+            mGattScheduler.clear();
+            if (!scheduleReconnect())
+                notifyConnectionChange(newState);
+        } else {
+            notifyConnectionChange(newState);
+        }
+    }
+
+    /**
+     * Use this method to process the end of the services discovery, on the service thread.
+     */
+    private void onGattServicesDiscovered(boolean success, long timestamp) {
+        LogsHelper.log(LogsHelper.DEBUG, "Discovered supported GATT Services from Remotte Device.");
+        if (success) {
+            mServicesDiscoveredAt = timestamp;
+            mServicesDiscovered = true;
+            onLayoutDiscovered();
+            if (mReconnectAttempt > 0)
+                onConnectionRecovered();
+            else
+                onConnectionEstablished();
+        } else {
+            LogsHelper.log(LogsHelper.ERROR, "Problem discovering GATT Services from Remotte Device.");
+            mConfigurationQueued = false;
+            mGattScheduler.clear();
+        }
+    }
+
+    /**
+     * Use this method to process a characteristic read, on the service thread.
+     */
+    private void onGattCharacteristicRead(UUID characteristic, byte[] value, int status) {
+        boolean firmwareRequested = mFirmwareRequested && characteristic.equals(GattDeviceSensorTag.DEVICE_INFO_FIRMWARE_REVISION_CHARACTERISTIC);
+        if (firmwareRequested)
+            mFirmwareRequested = false;
+
+        if (status == RemotteGattTransport.GATT_SUCCESS)
+            if (characteristic.equals(GattDeviceSensorTag.ALTIMETER_CALIBRATION_CHARACTERITIC)) {
+                notifyAltimeterCalibration(value);
+            } else {
+                if (characteristic.equals(GattDeviceSensorTag.DEVICE_INFO_FIRMWARE_REVISION_CHARACTERISTIC))
+                    onFirmwareRead(value);
+
+                //The firmware read by the service it's not sent to the clients.
+                if (!firmwareRequested)
+                    notifyCharacteristicRead(characteristic, value);
+            }
+
+
+        mGattScheduler.onCommandCompleted(characteristic, null, status);
+    }
+
+    /**
+     * This callback manage all messages from Remotte device. The samples are dispatched on the thread of the GATT
+     * callbacks, every other event it's posted to the service thread, which owns the state of the connection.
+     */
+    private RemotteGattTransport.Callback mTransportCallback = new RemotteGattTransport.Callback() {
+        @Override
+        public void onConnectionStateChange(final int status, final int newState) {
+            final long timestamp = SystemClock.elapsedRealtimeNanos();
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() { onGattConnectionStateChange(status, newState, timestamp); }
+            });
+        }
+
+        @Override
+        public void onServicesDiscovered(final boolean success) {
+            final long timestamp = SystemClock.elapsedRealtimeNanos();
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() { onGattServicesDiscovered(success, timestamp); }
+            });
+        }
+
+        @Override
+        public void onCharacteristicChanged(UUID characteristic, byte[] value) {
+            long timestamp = SystemClock.elapsedRealtimeNanos();
+            RemotteCharacteristicDispatcher dispatcher = mDispatcher;
+            if (dispatcher == null || !dispatcher.dispatch(characteristic, value, timestamp))
+                LogsHelper.log(LogsHelper.WARN, mUnexpectedNotificationLog, "Unexpected GATT notification {%s}, it will be ignored.", characteristic);
+        }
+
+        @Override
+        public void onCharacteristicRead(final UUID characteristic, final byte[] value, final int status) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() { onGattCharacteristicRead(characteristic, value, status); }
+            });
+        }
+
+        @Override
+        public void onDescriptorRead(final UUID characteristic, final UUID descriptor, final byte[] value, final int status) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (status == RemotteGattTransport.GATT_SUCCESS)
+                        notifyDesciptorRead(characteristic, descriptor, value);
+
+                    mGattScheduler.onCommandCompleted(characteristic, descriptor, status);
+                }
+            });
+        }
+
+        @Override
+        public void onCharacteristicWrite(final UUID characteristic, final int status) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() { mGattScheduler.onCommandCompleted(characteristic, null, status); }
+            });
+        }
+
+        @Override
+        public void onDescriptorWrite(final UUID characteristic, final UUID descriptor, final int status) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() { mGattScheduler.onCommandCompleted(characteristic, descriptor, status); }
+            });
+        }
+    };
+}
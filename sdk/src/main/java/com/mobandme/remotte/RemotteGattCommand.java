@@ -0,0 +1,178 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class define the Objects to the GATT Stack commands. Every command is also its own completion future, the
+ * result of the future is the GATT status reported by the device.
+ */
+final class RemotteGattCommand implements Future<Integer> {
+
+    public final static int TYPE_READ  = 1;
+    public final static int TYPE_WRITE = 2;
+
+    /**
+     * Use this priority for commands requested by the user, like haptic or characteristic reads.
+     */
+    public final static int PRIORITY_HIGH   = 0;
+    public final static int PRIORITY_NORMAL = 1;
+
+    /**
+     * Use this priority for bulk configuration writes.
+     */
+    public final static int PRIORITY_LOW    = 2;
+
+    public final static int STATUS_SUCCESS    = 0; //Same value as BluetoothGatt.GATT_SUCCESS.
+    public final static int STATUS_TIMEOUT    = -1;
+    public final static int STATUS_FAILURE    = -2;
+    public final static int STATUS_CANCELLED  = -3;
+    public final static int STATUS_SUPERSEDED = -4;
+
+    public static final long DEFAULT_TIMEOUT     = 2000; //Milliseconds.
+    public static final int  DEFAULT_MAX_RETRIES = 2;
+
+    public final int    type;
+    public final UUID   service;
+    public final UUID   characteristic;
+    public final UUID   descriptor; //Null for the characteristic commands.
+    public final String target;
+    public final byte[] value;
+    public final int    priority;
+    public final boolean coalescable; //False for the trigger targets, like haptic, whose every write acts.
+
+    public long timeout    = DEFAULT_TIMEOUT;
+    public int  maxRetries = DEFAULT_MAX_RETRIES;
+
+    //This fields are managed by the scheduler owner thread.
+    long sequence;
+    int  attempts;
+    long enqueuedAt;
+    long startedAt;
+
+    private final    CountDownLatch mCompletion = new CountDownLatch(1);
+    private volatile int            mStatus;
+    private volatile boolean        mDone = false;
+
+    public RemotteGattCommand(UUID service, UUID characteristic, UUID descriptor, int type, int priority) {
+        this(service, characteristic, descriptor, type, null, priority);
+    }
+
+    /**
+     * @param service The GATT service of the target.
+     * @param characteristic The GATT characteristic target, or the characteristic of the descriptor target.
+     * @param descriptor The GATT descriptor target, pass null if the target it's the characteristic.
+     * @param type Use {@link #TYPE_READ} or {@link #TYPE_WRITE}.
+     * @param value The value to write, it will be set on the target just before the command goes on air.
+     * @param priority Use anyone of the PRIORITY constants.
+     */
+    public RemotteGattCommand(UUID service, UUID characteristic, UUID descriptor, int type, byte[] value, int priority) {
+        this(service, characteristic, descriptor, type, value, priority, true);
+    }
+
+    /**
+     * @param coalescable Pass true if the target it's a state, like a configuration, a period or a notification
+     *                    descriptor, so a write with the current value can be dropped and a newer write can replace a
+     *                    pending one. Pass false for the triggers, every one of its writes goes on air.
+     */
+    public RemotteGattCommand(UUID service, UUID characteristic, UUID descriptor, int type, byte[] value, int priority, boolean coalescable) {
+        this.type = type;
+        this.service = service;
+        this.characteristic = characteristic;
+        this.descriptor = descriptor;
+        this.target = getTarget(characteristic, descriptor);
+        this.value = value;
+        this.priority = priority;
+        this.coalescable = coalescable;
+    }
+
+    /**
+     * Use this method to build the key that identify a characteristic or descriptor, the writes to the same key
+     * can be coalesced.
+     */
+    static String getTarget(UUID characteristic, UUID descriptor) {
+        if (descriptor == null)
+            return characteristic.toString();
+        return characteristic.toString() + "/" + descriptor.toString();
+    }
+
+    /**
+     * @return Returns true if the command it's addressed to the characteristic or descriptor.
+     */
+    boolean isAddressedTo(UUID characteristic, UUID descriptor) {
+        if (!this.characteristic.equals(characteristic))
+            return false;
+        return (this.descriptor == null ? descriptor == null : this.descriptor.equals(descriptor));
+    }
+
+    boolean isWrite() { return (type == TYPE_WRITE && value != null); }
+
+    /**
+     * @return Returns true if the command writes a state target, so the scheduler can diff and merge it.
+     */
+    boolean isStateWrite() { return (isWrite() && coalescable); }
+
+    boolean complete(int status) {
+        if (mDone)
+            return false;
+
+        mStatus = status;
+        mDone = true;
+        mCompletion.countDown();
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(STATUS_CANCELLED);
+    }
+
+    @Override
+    public boolean isCancelled() { return mDone && mStatus == STATUS_CANCELLED; }
+
+    @Override
+    public boolean isDone() { return mDone; }
+
+    @Override
+    public Integer get() throws InterruptedException, ExecutionException {
+        mCompletion.await();
+        return getResult();
+    }
+
+    @Override
+    public Integer get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!mCompletion.await(timeout, unit))
+            throw new TimeoutException("The GATT command has not been completed.");
+        return getResult();
+    }
+
+    private Integer getResult() {
+        if (mStatus == STATUS_CANCELLED)
+            throw new CancellationException("The GATT command has been cancelled.");
+        return mStatus;
+    }
+}
@@ -0,0 +1,182 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import android.content.SharedPreferences;
+
+import com.mobandme.remotte.helper.LogsHelper;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class remember the GATT layout of every device, the characteristics discovered and its firmware revision,
+ * across connections and across the restarts of the service. With the layout known, the configuration of a
+ * repeat connection can be queued while the services are discovered, instead of waiting for them.
+ *
+ * A layout it's only a hint, it's validated against the discovered services on every connection and forgotten
+ * when the device reports another firmware revision.
+ */
+final class RemotteGattLayoutCache {
+
+    static final String PREFERENCES = "RemotteGattLayout";
+
+    private static final String FIELDS_SEPARATOR = "|";
+    private static final String UUIDS_SEPARATOR  = ",";
+
+    private final SharedPreferences   mPreferences;
+    private final Map<String, Layout> mLayouts = new ConcurrentHashMap<String, Layout>();
+
+    /**
+     * @param preferences The preferences where the layouts are persisted, or null to keep them only on memory.
+     */
+    public RemotteGattLayoutCache(SharedPreferences preferences) {
+        mPreferences = preferences;
+    }
+
+    /**
+     * @param address The Bluetooth device address.
+     * @return Returns the last layout discovered on the device, or null if it's unknown.
+     */
+    public Layout get(String address) {
+        Layout layout = mLayouts.get(address);
+        if (layout == null && mPreferences != null) {
+            layout = Layout.parse(mPreferences.getString(address, null));
+            if (layout != null)
+                mLayouts.put(address, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * Use this method to register the characteristics discovered on the device. The firmware revision it's kept
+     * only if the layout has not changed.
+     * @param address The Bluetooth device address.
+     * @param characteristics The characteristics discovered.
+     */
+    public void put(String address, Set<UUID> characteristics) {
+        Layout previous = get(address);
+        String firmware = (previous != null && previous.matches(characteristics) ? previous.getFirmware() : null);
+        store(address, new Layout(firmware, characteristics));
+    }
+
+    /**
+     * Use this method to register the firmware revision read from the device. If the device had another
+     * firmware, its layout it's forgotten.
+     * @param address The Bluetooth device address.
+     * @param firmware The firmware revision.
+     * @return Returns false if the layout has been forgotten.
+     */
+    public boolean setFirmware(String address, String firmware) {
+        Layout layout = get(address);
+        if (layout == null)
+            return false;
+
+        if (layout.getFirmware() != null && !layout.getFirmware().equals(firmware)) {
+            LogsHelper.log(LogsHelper.DEBUG, "The firmware of the Remotte {%s} has changed, its GATT layout will be discovered again.", address);
+            invalidate(address);
+            return false;
+        }
+
+        if (layout.getFirmware() == null)
+            store(address, new Layout(firmware, layout.mCharacteristics));
+        return true;
+    }
+
+    public void invalidate(String address) {
+        mLayouts.remove(address);
+        if (mPreferences != null)
+            mPreferences.edit().remove(address).apply();
+    }
+
+    private void store(String address, Layout layout) {
+        mLayouts.put(address, layout);
+        if (mPreferences != null)
+            mPreferences.edit().putString(address, layout.format()).apply();
+    }
+
+    /**
+     * This class contains the GATT layout of a device.
+     */
+    static final class Layout {
+        private final String    mFirmware;
+        private final Set<UUID> mCharacteristics;
+
+        Layout(String firmware, Set<UUID> characteristics) {
+            mFirmware = firmware;
+            mCharacteristics = Collections.unmodifiableSet(new HashSet<UUID>(characteristics));
+        }
+
+        /**
+         * @return Returns the firmware revision, or null if it has not been read yet.
+         */
+        public String getFirmware() { return mFirmware; }
+
+        public boolean hasCharacteristic(UUID characteristic) { return mCharacteristics.contains(characteristic); }
+
+        /**
+         * @return Returns true if the device exposes the same characteristics.
+         */
+        public boolean matches(Set<UUID> characteristics) { return mCharacteristics.equals(characteristics); }
+
+        private String format() {
+            String[] uuids = new String[mCharacteristics.size()];
+            int index = 0;
+            for (UUID characteristic : mCharacteristics)
+                uuids[index++] = characteristic.toString();
+            Arrays.sort(uuids);
+
+            StringBuilder builder = new StringBuilder(mFirmware != null ? mFirmware.replace(FIELDS_SEPARATOR, "") : "");
+            builder.append(FIELDS_SEPARATOR);
+            for (int position = 0; position < uuids.length; position++) {
+                if (position > 0)
+                    builder.append(UUIDS_SEPARATOR);
+                builder.append(uuids[position]);
+            }
+            return builder.toString();
+        }
+
+        private static Layout parse(String value) {
+            if (value == null)
+                return null;
+
+            int separator = value.indexOf(FIELDS_SEPARATOR);
+            if (separator < 0)
+                return null;
+
+            try {
+                Set<UUID> characteristics = new HashSet<UUID>();
+                for (String uuid : value.substring(separator + 1).split(UUIDS_SEPARATOR))
+                    if (uuid.length() > 0)
+                        characteristics.add(UUID.fromString(uuid));
+
+                String firmware = value.substring(0, separator);
+                return new Layout(firmware.length() > 0 ? firmware : null, characteristics);
+            } catch (IllegalArgumentException e) {
+                LogsHelper.log(LogsHelper.WARN, "Invalid GATT layout on the preferences, it will be ignored.", e);
+                return null;
+            }
+        }
+    }
+}
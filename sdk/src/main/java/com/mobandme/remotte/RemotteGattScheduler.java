@@ -0,0 +1,434 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import com.mobandme.remotte.helper.LogsHelper;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class serialize all the GATT commands sent to the Remotte device. Android only supports one GATT operation
+ * on air at a time, so the scheduler keep the pending commands sorted by priority and send the next one when the
+ * device confirm the previous, or when its timeout expires. All the state of the scheduler it's owned by a single thread.
+ *
+ * The writes to state targets are diffed against the last state acknowledged by the device: a write that would not
+ * change the device state is dropped, and a new write to a target that still has a write waiting on the queue replace
+ * it. The writes to trigger targets, like haptic, are never dropped nor merged, see {@link RemotteGattCommand#coalescable}.
+ *
+ * A command that fails it's queued again after a backoff with its original order, unless the scheduler has been
+ * cleared while it waits: the retries never cross from a connection to the next one.
+ */
+final class RemotteGattScheduler {
+
+    /**
+     * Implement this interface to put the commands on air.
+     */
+    interface CommandExecutor {
+
+        /**
+         * @param command The command to be sent to the device.
+         * @return Returns true if the command has been accepted by the Bluetooth stack.
+         */
+        boolean execute(RemotteGattCommand command);
+    }
+
+    private static final long RETRY_BACKOFF = 100; //Milliseconds, doubled on every attempt.
+
+    private final CommandExecutor                    mExecutor;
+    private final ScheduledThreadPoolExecutor        mOwner;
+    private final PriorityQueue<RemotteGattCommand>  mQueue;
+    private final Map<String, RemotteGattCommand>    mPendingWrites = new HashMap<String, RemotteGattCommand>();
+    private final Map<RemotteGattCommand, ScheduledFuture<?>> mPendingRetries = new HashMap<RemotteGattCommand, ScheduledFuture<?>>();
+    private final RemotteGattStateCache              mStateCache = new RemotteGattStateCache();
+    private final Statistics                         mStatistics = new Statistics();
+    private       RemotteGattCommand                 mInFlight;
+    private       ScheduledFuture<?>                 mTimeout;
+    private       long                               mSequence = 0;
+    private       boolean                            mPaused = false;
+
+    public RemotteGattScheduler(CommandExecutor executor) {
+        this("RemotteGattScheduler", executor);
+    }
+
+    /**
+     * @param name The name of the owner thread.
+     * @param executor The executor that put the commands on air.
+     */
+    public RemotteGattScheduler(final String name, CommandExecutor executor) {
+        mExecutor = executor;
+        mQueue = new PriorityQueue<RemotteGattCommand>(16, new Comparator<RemotteGattCommand>() {
+            @Override
+            public int compare(RemotteGattCommand lhs, RemotteGattCommand rhs) {
+                if (lhs.priority != rhs.priority)
+                    return (lhs.priority < rhs.priority ? -1 : 1);
+                return (lhs.sequence < rhs.sequence ? -1 : (lhs.sequence == rhs.sequence ? 0 : 1));
+            }
+        });
+        mOwner = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        //The timeouts and the retries waiting on the owner thread must not run after the shutdown.
+        mOwner.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Use this method to queue a new command.
+     * @param command The command to be queued.
+     * @return Returns the same command, use it as the completion future.
+     */
+    public RemotteGattCommand submit(final RemotteGattCommand command) {
+        command.enqueuedAt = System.nanoTime();
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                enqueue(command);
+                dispatchNext();
+            }
+        });
+        return command;
+    }
+
+    /**
+     * Use this method to notify the end of the command that is on air.
+     * @param characteristic The characteristic reported by the GATT callback.
+     * @param descriptor The descriptor reported by the GATT callback, or null for the characteristic callbacks.
+     * @param status The GATT status reported by the GATT callback.
+     */
+    public void onCommandCompleted(final UUID characteristic, final UUID descriptor, final int status) {
+        final long completedAt = System.nanoTime();
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mInFlight == null || !mInFlight.isAddressedTo(characteristic, descriptor)) {
+                    LogsHelper.log(LogsHelper.WARN, "Unexpected GATT command completion, it will be ignored.");
+                    return;
+                }
+
+                RemotteGattCommand command = mInFlight;
+                releaseInFlight();
+                synchronized (mStatistics) {
+                    mStatistics.completed++;
+                    mStatistics.totalExecutionTime += (completedAt - command.startedAt);
+                }
+
+                if (command.isStateWrite()) {
+                    if (status == RemotteGattCommand.STATUS_SUCCESS)
+                        mStateCache.update(command.target, command.value);
+                    else
+                        mStateCache.invalidate(command.target);
+                }
+                command.complete(status);
+                dispatchNext();
+            }
+        });
+    }
+
+    /**
+     * Use this method to hold the commands on the queue without send them, for example while the services of the
+     * device are discovered. The commands keep its order and its merges.
+     */
+    public void pause() {
+        execute(new Runnable() {
+            @Override
+            public void run() { mPaused = true; }
+        });
+    }
+
+    /**
+     * Use this method to send the commands held by {@link #pause()}.
+     */
+    public void resume() {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                mPaused = false;
+                dispatchNext();
+            }
+        });
+    }
+
+    /**
+     * Use this method to cancel all the pending commands, for example when the connection has been lost. The known
+     * state of the device it's forgotten too, and a paused scheduler it's resumed.
+     */
+    public void clear() {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mInFlight != null) {
+                    mInFlight.cancel(false);
+                    releaseInFlight();
+                }
+
+                RemotteGattCommand command;
+                while ((command = mQueue.poll()) != null)
+                    command.cancel(false);
+
+                for (Map.Entry<RemotteGattCommand, ScheduledFuture<?>> retry : mPendingRetries.entrySet()) {
+                    retry.getValue().cancel(false);
+                    retry.getKey().cancel(false);
+                }
+                mPendingRetries.clear();
+
+                mPendingWrites.clear();
+                mStateCache.clear();
+                mPaused = false;
+                synchronized (mStatistics) {
+                    mStatistics.queueDepth = 0;
+                }
+            }
+        });
+    }
+
+    /**
+     * Use this method to release the owner thread. The scheduler can't be used after that.
+     */
+    public void shutdown() {
+        clear();
+        mOwner.shutdown();
+    }
+
+    /**
+     * Use this method to retrieve a snapshot of the scheduler statistics.
+     * @return Returns a copy of the current statistics.
+     */
+    public Statistics getStatistics() {
+        synchronized (mStatistics) {
+            return mStatistics.copy();
+        }
+    }
+
+    private void execute(Runnable task) {
+        if (!mOwner.isShutdown())
+            mOwner.execute(task);
+    }
+
+    private ScheduledFuture<?> schedule(Runnable task, long delay) {
+        if (mOwner.isShutdown())
+            return null;
+        return mOwner.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void enqueue(RemotteGattCommand command) {
+        if (command.isDone())
+            return;
+
+        if (command.isStateWrite()) {
+            RemotteGattCommand pending = mPendingWrites.get(command.target);
+            if (pending != null && pending != command) {
+                //A retried write can't replace a newer one.
+                RemotteGattCommand superseded = (pending.enqueuedAt <= command.enqueuedAt ? pending : command);
+                mQueue.remove(superseded);
+                superseded.complete(RemotteGattCommand.STATUS_SUPERSEDED);
+                synchronized (mStatistics) {
+                    mStatistics.savedWrites++;
+                }
+
+                if (superseded == command)
+                    return;
+            }
+            mPendingWrites.put(command.target, command);
+        }
+
+        //A retried command keeps its original order.
+        if (command.attempts == 0)
+            command.sequence = mSequence++;
+        mQueue.add(command);
+
+        synchronized (mStatistics) {
+            mStatistics.queueDepth = mQueue.size();
+            if (mStatistics.queueDepth > mStatistics.maxQueueDepth)
+                mStatistics.maxQueueDepth = mStatistics.queueDepth;
+        }
+    }
+
+    private void dispatchNext() {
+        while (!mPaused && mInFlight == null && !mQueue.isEmpty()) {
+            RemotteGattCommand command = mQueue.poll();
+            if (command.isStateWrite() && mPendingWrites.get(command.target) == command)
+                mPendingWrites.remove(command.target);
+
+            if (command.isDone())
+                continue;
+
+            if (command.isStateWrite() && mStateCache.isCurrent(command.target, command.value)) {
+                synchronized (mStatistics) {
+                    mStatistics.queueDepth = mQueue.size();
+                    mStatistics.savedWrites++;
+                }
+                command.complete(RemotteGattCommand.STATUS_SUCCESS);
+                continue;
+            }
+
+            command.attempts++;
+            command.startedAt = System.nanoTime();
+            synchronized (mStatistics) {
+                mStatistics.queueDepth = mQueue.size();
+                if (command.attempts == 1) {
+                    long waitTime = command.startedAt - command.enqueuedAt;
+                    mStatistics.dispatched++;
+                    mStatistics.totalWaitTime += waitTime;
+                    if (waitTime > mStatistics.maxWaitTime)
+                        mStatistics.maxWaitTime = waitTime;
+                }
+            }
+
+            boolean accepted;
+            try {
+                accepted = mExecutor.execute(command);
+            } catch (Exception e) {
+                LogsHelper.log(LogsHelper.ERROR, "Error executing GATT command.", e);
+                accepted = false;
+            }
+
+            if (accepted) {
+                mInFlight = command;
+                mTimeout = schedule(new Runnable() {
+                    @Override
+                    public void run() { onTimeout(); }
+                }, command.timeout);
+            } else {
+                retry(command, RemotteGattCommand.STATUS_FAILURE);
+            }
+        }
+    }
+
+    private void onTimeout() {
+        if (mInFlight == null)
+            return;
+
+        RemotteGattCommand command = mInFlight;
+        releaseInFlight();
+        synchronized (mStatistics) {
+            mStatistics.timeouts++;
+        }
+
+        LogsHelper.log(LogsHelper.WARN, "GATT command timeout, the device did not answer.");
+        retry(command, RemotteGattCommand.STATUS_TIMEOUT);
+        dispatchNext();
+    }
+
+    private void retry(final RemotteGattCommand command, int status) {
+        if (command.attempts > command.maxRetries) {
+            synchronized (mStatistics) {
+                mStatistics.failed++;
+            }
+            if (command.isStateWrite())
+                mStateCache.invalidate(command.target);
+            command.complete(status);
+            return;
+        }
+
+        synchronized (mStatistics) {
+            mStatistics.retries++;
+        }
+
+        long backoff = RETRY_BACKOFF << (command.attempts - 1);
+        ScheduledFuture<?> pending = schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (mPendingRetries.remove(command) == null)
+                    return; //Cleared while it was waiting.
+
+                enqueue(command);
+                dispatchNext();
+            }
+        }, backoff);
+
+        if (pending != null)
+            mPendingRetries.put(command, pending);
+        else
+            command.cancel(false);
+    }
+
+    private void releaseInFlight() {
+        if (mTimeout != null)
+            mTimeout.cancel(false);
+
+        mTimeout = null;
+        mInFlight = null;
+    }
+
+    /**
+     * This class contains the queue-depth and latency statistics of the scheduler.
+     */
+    static final class Statistics {
+        public int  queueDepth;
+        public int  maxQueueDepth;
+        public long dispatched;
+        public long completed;
+        public long failed;
+        public long timeouts;
+        public long retries;
+        public long savedWrites;        //Writes dropped or merged because they would not change the device state.
+        public long maxWaitTime;        //Nanoseconds.
+        public long totalWaitTime;      //Nanoseconds.
+        public long totalExecutionTime; //Nanoseconds.
+
+        /**
+         * @return Returns the average time in milliseconds that the commands wait before go on air.
+         */
+        public double getAverageWaitTime() {
+            return (dispatched == 0 ? 0 : (totalWaitTime / (double)dispatched) / 1000000.0);
+        }
+
+        /**
+         * @return Returns the average time in milliseconds between the command goes on air and the device answer.
+         */
+        public double getAverageExecutionTime() {
+            return (completed == 0 ? 0 : (totalExecutionTime / (double)completed) / 1000000.0);
+        }
+
+        private Statistics copy() {
+            Statistics statistics = new Statistics();
+            statistics.queueDepth = queueDepth;
+            statistics.maxQueueDepth = maxQueueDepth;
+            statistics.dispatched = dispatched;
+            statistics.completed = completed;
+            statistics.failed = failed;
+            statistics.timeouts = timeouts;
+            statistics.retries = retries;
+            statistics.savedWrites = savedWrites;
+            statistics.maxWaitTime = maxWaitTime;
+            statistics.totalWaitTime = totalWaitTime;
+            statistics.totalExecutionTime = totalExecutionTime;
+            return statistics;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("GATT queue depth %d (max %d), dispatched %d, completed %d, failed %d, timeouts %d, retries %d, saved writes %d, wait avg %.2f ms (max %.2f ms), on air avg %.2f ms.",
+                    queueDepth, maxQueueDepth, dispatched, completed, failed, timeouts, retries, savedWrites,
+                    getAverageWaitTime(), maxWaitTime / 1000000.0, getAverageExecutionTime());
+        }
+    }
+}
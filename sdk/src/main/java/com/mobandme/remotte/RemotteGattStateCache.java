@@ -0,0 +1,70 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class remember the last value acknowledged by the device for every characteristic and descriptor, so the
+ * GATT scheduler can drop the writes that would not change the device state. It's owned by the scheduler thread.
+ */
+final class RemotteGattStateCache {
+
+    private final Map<String, byte[]> mValues = new HashMap<String, byte[]>();
+
+    /**
+     * Use this method to know if the device already holds a value.
+     * @param target The key of the characteristic or descriptor.
+     * @param value The value that will be written.
+     * @return Returns true if the last acknowledged value it's the same.
+     */
+    public boolean isCurrent(String target, byte[] value) {
+        if (target == null || value == null)
+            return false;
+
+        byte[] current = mValues.get(target);
+        return (current != null && Arrays.equals(current, value));
+    }
+
+    /**
+     * Use this method to register a value acknowledged by the device.
+     */
+    public void update(String target, byte[] value) {
+        if (target != null && value != null)
+            mValues.put(target, value.clone());
+    }
+
+    /**
+     * Use this method when the state of a target is unknown, for example after a failed write.
+     */
+    public void invalidate(String target) {
+        if (target != null)
+            mValues.remove(target);
+    }
+
+    /**
+     * Use this method when the connection has been lost, the device state can't be trusted anymore.
+     */
+    public void clear() {
+        mValues.clear();
+    }
+}
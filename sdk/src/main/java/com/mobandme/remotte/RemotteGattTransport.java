@@ -0,0 +1,90 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * This interface abstract the GATT connection with a device, so the service can work with a real Bluetooth LE
+ * device or with a simulated one. All the GATT targets are addressed by its UUIDs. Like the Android GATT stack,
+ * the transport only accepts one operation on air at a time, its completion it's reported through the callback.
+ */
+interface RemotteGattTransport {
+
+    //Same values as android.bluetooth.BluetoothProfile.
+    int STATE_DISCONNECTED  = 0;
+    int STATE_CONNECTING    = 1;
+    int STATE_CONNECTED     = 2;
+    int STATE_DISCONNECTING = 3;
+
+    //Same value as android.bluetooth.BluetoothGatt.GATT_SUCCESS.
+    int GATT_SUCCESS = 0;
+
+    /**
+     * Implement this interface to receive the events of the device.
+     */
+    interface Callback {
+        void onConnectionStateChange(int status, int newState);
+        void onServicesDiscovered(boolean success);
+        void onCharacteristicChanged(UUID characteristic, byte[] value);
+        void onCharacteristicRead(UUID characteristic, byte[] value, int status);
+        void onCharacteristicWrite(UUID characteristic, int status);
+        void onDescriptorRead(UUID characteristic, UUID descriptor, byte[] value, int status);
+        void onDescriptorWrite(UUID characteristic, UUID descriptor, int status);
+    }
+
+    /**
+     * Use this method to start the connection process, the result will be reported through the callback.
+     * @param callback The callback of the device events.
+     * @throws {@link java.lang.RuntimeException} when the device can't be accessed.
+     */
+    void connect(Callback callback);
+
+    void disconnect();
+
+    boolean isConnected();
+
+    boolean discoverServices();
+
+    /**
+     * @return Returns the characteristics discovered on the device, or an empty set before the services discovery.
+     */
+    Set<UUID> getCharacteristics();
+
+    /**
+     * @return Returns true if the device exposes the characteristic. It's always false before the services discovery.
+     */
+    boolean hasCharacteristic(UUID service, UUID characteristic);
+
+    /**
+     * Use this method to enable or disable locally the notifications of a characteristic, the device it's not
+     * notified until its client configuration descriptor it's written.
+     */
+    boolean setCharacteristicNotification(UUID service, UUID characteristic, boolean enabled);
+
+    boolean readCharacteristic(UUID service, UUID characteristic);
+
+    boolean writeCharacteristic(UUID service, UUID characteristic, byte[] value);
+
+    boolean readDescriptor(UUID service, UUID characteristic, UUID descriptor);
+
+    boolean writeDescriptor(UUID service, UUID characteristic, UUID descriptor, byte[] value);
+}
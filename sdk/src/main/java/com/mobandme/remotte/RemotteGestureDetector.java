@@ -0,0 +1,482 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class it's the base of the gesture detectors. The detectors run on the delivery thread of the samples, they
+ * receive every Accelerometer and Gyroscope sample already converted and report only the recognized gestures to the
+ * {@link com.mobandme.remotte.listener.GestureCallback} of the configuration, so the app doesn't see the raw samples.
+ *
+ * Register the detectors with {@link com.mobandme.remotte.Remotte.Configuration#addGestureDetector(RemotteGestureDetector)}.
+ * Extend this class to write your own detectors, keep their state in fields and their windows bounded, see
+ * {@link com.mobandme.remotte.RemotteSlidingWindow}, because they run for every sample. A detector keeps the state of
+ * one device, don't share an instance between configurations.
+ *
+ * The Accelerometer values are in G and the Gyroscope values in degrees per second. The directions follow the roll and
+ * pitch of {@link com.mobandme.remotte.RemotteSensorFusion}, with the device lying face up.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+public abstract class RemotteGestureDetector {
+
+    public static final int GESTURE_SHAKE      = 1;
+    public static final int GESTURE_TILT       = 2;
+    public static final int GESTURE_FLICK      = 3;
+    public static final int GESTURE_DOUBLE_TAP = 4;
+
+    public static final int DIRECTION_NONE     = 0;
+    public static final int DIRECTION_LEFT     = 1;
+    public static final int DIRECTION_RIGHT    = 2;
+    public static final int DIRECTION_FORWARD  = 3;
+    public static final int DIRECTION_BACKWARD = 4;
+
+    /**
+     * Flags of the sensors that feed a detector.
+     */
+    public static final int SENSOR_ACCELEROMETER = 1;
+    public static final int SENSOR_GYROSCOPE     = 2;
+
+    private static final double RADIANS_TO_DEGREES = 180 / Math.PI;
+
+    /**
+     * The receiver of the gestures, it's the gesture engine of the device.
+     */
+    interface Listener {
+        void onGesture(int gesture, int direction, double magnitude);
+    }
+
+    private final int mSensors;
+    private Listener  mListener;
+
+    /**
+     * @param sensors The sensors that feed the detector, combine the SENSOR flags.
+     * @throws {@link java.lang.RuntimeException} when the sensors are not valid.
+     */
+    protected RemotteGestureDetector(int sensors) {
+        if (sensors == 0 || (sensors & ~(SENSOR_ACCELEROMETER | SENSOR_GYROSCOPE)) != 0)
+            throw new RuntimeException("Invalid gesture detector sensors, please use the RemotteGestureDetector SENSOR flags.");
+
+        mSensors = sensors;
+    }
+
+    public final int getSensors() { return mSensors; }
+
+    final void setListener(Listener listener) { mListener = listener; }
+
+    /**
+     * This method it's called with every Accelerometer sample when the detector uses the sensor.
+     * @param timestamp The elapsed realtime in milliseconds when the sample was notified.
+     */
+    protected void onAccelerometerSample(long timestamp, double x, double y, double z) { }
+
+    /**
+     * This method it's called with every Gyroscope sample when the detector uses the sensor.
+     * @param timestamp The elapsed realtime in milliseconds when the sample was notified.
+     */
+    protected void onGyroscopeSample(long timestamp, double x, double y, double z) { }
+
+    /**
+     * This method it's called when the samples have a gap, the detector must forget its state.
+     */
+    protected abstract void reset();
+
+    /**
+     * Use this method to report a recognized gesture to the app.
+     * @param gesture Use anyone of the GESTURE constants, or your own values.
+     * @param direction Use anyone of the DIRECTION constants.
+     * @param magnitude The strength of the gesture.
+     */
+    protected final void notifyGesture(int gesture, int direction, double magnitude) {
+        Listener listener = mListener;
+        if (listener != null)
+            listener.onGesture(gesture, direction, magnitude);
+    }
+
+    private static boolean isElapsed(long since, long timestamp, long time) {
+        return (since < 0 || timestamp < since || timestamp - since >= time);
+    }
+
+    /**
+     * This detector recognizes the shakes, when the Accelerometer samples of the window deviate from their average
+     * more than the threshold. The deviation it's the root of the sum of the variances of the three axes, so the
+     * gravity and the orientation of the device don't count. The magnitude of the gesture it's the deviation in G.
+     */
+    public static final class Shake extends RemotteGestureDetector {
+
+        public static final double DEFAULT_THRESHOLD = 1.0; //G.
+        public static final long   DEFAULT_WINDOW    = 500; //Milliseconds.
+        public static final long   DEFAULT_COOLDOWN  = 1000; //Milliseconds.
+
+        private static final int MIN_SAMPLES = 4;
+
+        private final double               mThreshold;
+        private final long                 mCooldown;
+        private final RemotteSlidingWindow mX;
+        private final RemotteSlidingWindow mY;
+        private final RemotteSlidingWindow mZ;
+        private       long                 mLastShake = -1;
+
+        public Shake() {
+            this(DEFAULT_THRESHOLD, DEFAULT_WINDOW, DEFAULT_COOLDOWN);
+        }
+
+        /**
+         * @param threshold The deviation of the samples in G.
+         * @param window The duration of the window in milliseconds.
+         * @param cooldown The minimum time between two shakes in milliseconds.
+         * @throws {@link java.lang.RuntimeException} when the parameters are not valid.
+         */
+        public Shake(double threshold, long window, long cooldown) {
+            super(SENSOR_ACCELEROMETER);
+            if (threshold <= 0 || cooldown < 0)
+                throw new RuntimeException("Invalid shake parameters, the threshold must be positive and the cooldown can't be negative.");
+
+            mThreshold = threshold;
+            mCooldown = cooldown;
+            mX = new RemotteSlidingWindow(window, 64);
+            mY = new RemotteSlidingWindow(window, 64);
+            mZ = new RemotteSlidingWindow(window, 64);
+        }
+
+        @Override
+        protected void onAccelerometerSample(long timestamp, double x, double y, double z) {
+            mX.add(timestamp, x);
+            mY.add(timestamp, y);
+            mZ.add(timestamp, z);
+            if (mX.getCount() < MIN_SAMPLES || !isElapsed(mLastShake, timestamp, mCooldown))
+                return;
+
+            double deviation = Math.sqrt(mX.getVariance() + mY.getVariance() + mZ.getVariance());
+            if (deviation >= mThreshold) {
+                reset();
+                mLastShake = timestamp;
+                notifyGesture(GESTURE_SHAKE, DIRECTION_NONE, deviation);
+            }
+        }
+
+        @Override
+        protected void reset() {
+            mX.clear();
+            mY.clear();
+            mZ.clear();
+            mLastShake = -1;
+        }
+    }
+
+    /**
+     * This detector recognizes the tilts, when the device keeps its roll or its pitch over the angle for the hold
+     * time. It reports the new direction, and {@link #DIRECTION_NONE} when the device comes back to level. The
+     * magnitude of the gesture it's the angle in degrees.
+     */
+    public static final class Tilt extends RemotteGestureDetector {
+
+        public static final double DEFAULT_ANGLE     = 30; //Degrees.
+        public static final long   DEFAULT_HOLD_TIME = 200; //Milliseconds.
+
+        private static final double SMOOTHING  = 0.3; //Weight of the new sample in the gravity.
+        private static final double HYSTERESIS = 10; //Degrees.
+
+        private final double  mAngle;
+        private final double  mHysteresis;
+        private final long    mHoldTime;
+
+        //The gravity, the Accelerometer samples smoothed.
+        private double  mGx;
+        private double  mGy;
+        private double  mGz;
+        private boolean mGravity = false;
+
+        private int     mDirection = DIRECTION_NONE; //The last reported direction.
+        private int     mCandidate = DIRECTION_NONE;
+        private long    mCandidateSince = -1;
+
+        public Tilt() {
+            this(DEFAULT_ANGLE, DEFAULT_HOLD_TIME);
+        }
+
+        /**
+         * @param angle The minimum angle of the tilt in degrees.
+         * @param holdTime The time that the angle must be kept in milliseconds.
+         * @throws {@link java.lang.RuntimeException} when the parameters are not valid.
+         */
+        public Tilt(double angle, long holdTime) {
+            super(SENSOR_ACCELEROMETER);
+            if (angle <= 0 || angle >= 90 || holdTime < 0)
+                throw new RuntimeException("Invalid tilt parameters, the angle must be between 0 and 90 degrees and the hold time can't be negative.");
+
+            mAngle = angle;
+            mHysteresis = Math.min(HYSTERESIS, angle / 2);
+            mHoldTime = holdTime;
+        }
+
+        @Override
+        protected void onAccelerometerSample(long timestamp, double x, double y, double z) {
+            if (!mGravity) {
+                mGx = x;
+                mGy = y;
+                mGz = z;
+                mGravity = true;
+            } else {
+                mGx += SMOOTHING * (x - mGx);
+                mGy += SMOOTHING * (y - mGy);
+                mGz += SMOOTHING * (z - mGz);
+            }
+
+            double roll = Math.atan2(mGy, mGz) * RADIANS_TO_DEGREES;
+            double pitch = Math.atan2(-mGx, Math.sqrt(mGy * mGy + mGz * mGz)) * RADIANS_TO_DEGREES;
+
+            int direction;
+            double angle;
+            if (Math.abs(roll) >= Math.abs(pitch)) {
+                direction = (roll > 0 ? DIRECTION_RIGHT : DIRECTION_LEFT);
+                angle = Math.abs(roll);
+            } else {
+                direction = (pitch > 0 ? DIRECTION_FORWARD : DIRECTION_BACKWARD);
+                angle = Math.abs(pitch);
+            }
+
+            //The current direction it's kept until the angle goes below the hysteresis, so the noise doesn't bounce it.
+            if (angle < (direction == mDirection ? mAngle - mHysteresis : mAngle))
+                direction = DIRECTION_NONE;
+
+            if (direction != mCandidate || timestamp < mCandidateSince) {
+                mCandidate = direction;
+                mCandidateSince = timestamp;
+            }
+
+            if (mCandidate != mDirection && timestamp - mCandidateSince >= mHoldTime) {
+                mDirection = mCandidate;
+                notifyGesture(GESTURE_TILT, mDirection, angle);
+            }
+        }
+
+        /**
+         * @return Returns the last reported direction.
+         */
+        public int getDirection() { return mDirection; }
+
+        @Override
+        protected void reset() {
+            mGravity = false;
+            mCandidate = mDirection;
+            mCandidateSince = -1;
+        }
+    }
+
+    /**
+     * This detector recognizes the flicks, fast and short rotations of the wrist. A flick starts when the rotation
+     * speed of an axis exceeds the threshold and ends when it falls below its half, if it lasts more than the
+     * maximum duration it's a normal rotation and it's ignored. The magnitude of the gesture it's the peak speed in
+     * degrees per second, the X axis flicks to the right or left, the Y axis forward or backward and the Z axis,
+     * around the vertical, to the left or right.
+     */
+    public static final class Flick extends RemotteGestureDetector {
+
+        public static final double DEFAULT_THRESHOLD    = 200; //Degrees per second.
+        public static final long   DEFAULT_MAX_DURATION = 300; //Milliseconds.
+        public static final long   DEFAULT_COOLDOWN     = 300; //Milliseconds.
+
+        private static final int AXIS_NONE    = -1;
+        private static final int AXIS_WAITING = -2; //A rotation was too long, waiting for the device to stop.
+
+        private final double mThreshold;
+        private final long   mMaxDuration;
+        private final long   mCooldown;
+
+        private int    mAxis = AXIS_NONE;
+        private double mSign;
+        private double mPeak;
+        private long   mStart;
+        private long   mLastFlick = -1;
+
+        public Flick() {
+            this(DEFAULT_THRESHOLD, DEFAULT_MAX_DURATION, DEFAULT_COOLDOWN);
+        }
+
+        /**
+         * @param threshold The minimum rotation speed in degrees per second.
+         * @param maxDuration The maximum duration of the flick in milliseconds.
+         * @param cooldown The minimum time between two flicks in milliseconds.
+         * @throws {@link java.lang.RuntimeException} when the parameters are not valid.
+         */
+        public Flick(double threshold, long maxDuration, long cooldown) {
+            super(SENSOR_GYROSCOPE);
+            if (threshold <= 0 || maxDuration <= 0 || cooldown < 0)
+                throw new RuntimeException("Invalid flick parameters, the threshold and the duration must be positive and the cooldown can't be negative.");
+
+            mThreshold = threshold;
+            mMaxDuration = maxDuration;
+            mCooldown = cooldown;
+        }
+
+        @Override
+        protected void onGyroscopeSample(long timestamp, double x, double y, double z) {
+            double ax = Math.abs(x), ay = Math.abs(y), az = Math.abs(z);
+            int axis = (ax >= ay && ax >= az ? 0 : (ay >= az ? 1 : 2));
+            double speed = (axis == 0 ? x : (axis == 1 ? y : z));
+
+            switch (mAxis) {
+                case AXIS_WAITING:
+                    if (Math.max(ax, Math.max(ay, az)) < mThreshold / 2)
+                        mAxis = AXIS_NONE;
+                    break;
+                case AXIS_NONE:
+                    if (Math.abs(speed) >= mThreshold && isElapsed(mLastFlick, timestamp, mCooldown)) {
+                        mAxis = axis;
+                        mSign = Math.signum(speed);
+                        mPeak = Math.abs(speed);
+                        mStart = timestamp;
+                    }
+                    break;
+                default:
+                    if (timestamp < mStart || timestamp - mStart > mMaxDuration) {
+                        mAxis = AXIS_WAITING;
+                        break;
+                    }
+
+                    speed = (mAxis == 0 ? x : (mAxis == 1 ? y : z)) * mSign;
+                    if (speed >= mThreshold / 2) {
+                        mPeak = Math.max(mPeak, speed);
+                        break;
+                    }
+
+                    mLastFlick = timestamp;
+                    notifyGesture(GESTURE_FLICK, getDirection(mAxis, mSign), mPeak);
+                    mAxis = AXIS_NONE;
+                    break;
+            }
+        }
+
+        private static int getDirection(int axis, double sign) {
+            switch (axis) {
+                case 0:  return (sign > 0 ? DIRECTION_RIGHT : DIRECTION_LEFT);
+                case 1:  return (sign > 0 ? DIRECTION_FORWARD : DIRECTION_BACKWARD);
+                default: return (sign > 0 ? DIRECTION_LEFT : DIRECTION_RIGHT);
+            }
+        }
+
+        @Override
+        protected void reset() {
+            mAxis = AXIS_NONE;
+            mLastFlick = -1;
+        }
+    }
+
+    /**
+     * This detector recognizes the double taps, two short peaks of the Accelerometer magnitude over its average of
+     * the last half second. The taps must come after a quiet period and no other peak can follow them for a while, so
+     * the peaks of a shake are not taken as taps, and the gesture it's reported once that time has passed. The
+     * magnitude of the gesture it's the greatest peak in G.
+     */
+    public static final class DoubleTap extends RemotteGestureDetector {
+
+        public static final double DEFAULT_THRESHOLD    = 0.8; //G over the average.
+        public static final long   DEFAULT_MIN_INTERVAL = 80; //Milliseconds, a shorter interval it's the bounce of the first tap.
+        public static final long   DEFAULT_MAX_INTERVAL = 500; //Milliseconds.
+
+        private static final long BASELINE_WINDOW = 500; //Milliseconds.
+        private static final long QUIET_TIME      = 200; //Milliseconds without peaks after the second tap.
+
+        private final double               mThreshold;
+        private final long                 mMinInterval;
+        private final long                 mMaxInterval;
+        private final RemotteSlidingWindow mBaseline = new RemotteSlidingWindow(BASELINE_WINDOW, 64);
+
+        private boolean mPeak = false;
+        private long    mLastPeak = -1;
+        private long    mFirstTap = -1;
+        private long    mSecondTap = -1;
+        private double  mMagnitude;
+
+        public DoubleTap() {
+            this(DEFAULT_THRESHOLD, DEFAULT_MIN_INTERVAL, DEFAULT_MAX_INTERVAL);
+        }
+
+        /**
+         * @param threshold The minimum height of the peaks in G over the average.
+         * @param minInterval The minimum time between the taps in milliseconds.
+         * @param maxInterval The maximum time between the taps in milliseconds, it's the quiet period before the first tap too.
+         * @throws {@link java.lang.RuntimeException} when the parameters are not valid.
+         */
+        public DoubleTap(double threshold, long minInterval, long maxInterval) {
+            super(SENSOR_ACCELEROMETER);
+            if (threshold <= 0 || minInterval < 0 || maxInterval <= minInterval)
+                throw new RuntimeException("Invalid double tap parameters, the threshold must be positive and the maximum interval greater than the minimum.");
+
+            mThreshold = threshold;
+            mMinInterval = minInterval;
+            mMaxInterval = maxInterval;
+        }
+
+        @Override
+        protected void onAccelerometerSample(long timestamp, double x, double y, double z) {
+            double magnitude = Math.sqrt(x * x + y * y + z * z);
+            double height = (mBaseline.getCount() > 0 ? Math.abs(magnitude - mBaseline.getMean()) : 0);
+
+            if (!mPeak && height >= mThreshold) {
+                mPeak = true;
+                onPeak(timestamp, height);
+            } else if (mPeak && height < mThreshold / 2) {
+                mPeak = false;
+            }
+
+            //The peaks don't move the average.
+            if (!mPeak)
+                mBaseline.add(timestamp, magnitude);
+
+            if (mSecondTap >= 0 && !mPeak && timestamp - mSecondTap >= QUIET_TIME) {
+                mFirstTap = -1;
+                mSecondTap = -1;
+                notifyGesture(GESTURE_DOUBLE_TAP, DIRECTION_NONE, mMagnitude);
+            }
+        }
+
+        private void onPeak(long timestamp, double height) {
+            long interval = (mFirstTap >= 0 ? timestamp - mFirstTap : -1);
+            if (interval >= 0 && interval < mMinInterval)
+                return;
+
+            if (mSecondTap >= 0) {
+                //A third peak, it's not a double tap.
+                mFirstTap = -1;
+                mSecondTap = -1;
+            } else if (interval >= 0 && interval <= mMaxInterval) {
+                mSecondTap = timestamp;
+                mMagnitude = Math.max(mMagnitude, height);
+            } else if (mLastPeak < 0 || timestamp - mLastPeak > mMaxInterval) {
+                mFirstTap = timestamp;
+                mMagnitude = height;
+            } else {
+                mFirstTap = -1;
+            }
+            mLastPeak = timestamp;
+        }
+
+        @Override
+        protected void reset() {
+            mBaseline.clear();
+            mPeak = false;
+            mLastPeak = -1;
+            mFirstTap = -1;
+            mSecondTap = -1;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import com.mobandme.remotte.listener.GestureCallback;
+import java.util.List;
+
+/**
+ * This class feed the gesture detectors of a configuration with the samples of the delivery thread, and deliver the
+ * recognized gestures to the {@link com.mobandme.remotte.listener.GestureCallback}. When the samples of a sensor have
+ * a gap, after a reconnection or a replay that starts again, its detectors are reset.
+ */
+final class RemotteGestureEngine implements RemotteGestureDetector.Listener {
+
+    private static final long MAX_INTERVAL = 1000; //Milliseconds, a longer gap between samples resets the detectors.
+
+    private final RemotteGestureDetector[] mAccelerometerDetectors;
+    private final RemotteGestureDetector[] mGyroscopeDetectors;
+    private final GestureCallback          mCallback;
+    private final RemotteCallbackDelivery  mDelivery;
+    private       long                     mAccelerometerTimestamp = -1;
+    private       long                     mGyroscopeTimestamp = -1;
+    private       Remotte                  mRemotte; //The device of the sample that it's being processed.
+
+    RemotteGestureEngine(List<RemotteGestureDetector> detectors, GestureCallback callback, RemotteCallbackDelivery delivery) {
+        mAccelerometerDetectors = filter(detectors, RemotteGestureDetector.SENSOR_ACCELEROMETER);
+        mGyroscopeDetectors = filter(detectors, RemotteGestureDetector.SENSOR_GYROSCOPE);
+        mCallback = callback;
+        mDelivery = delivery;
+
+        for (RemotteGestureDetector detector : detectors)
+            detector.setListener(this);
+    }
+
+    private static RemotteGestureDetector[] filter(List<RemotteGestureDetector> detectors, int sensor) {
+        int count = 0;
+        for (RemotteGestureDetector detector : detectors) {
+            if ((detector.getSensors() & sensor) != 0)
+                count++;
+        }
+
+        RemotteGestureDetector[] filtered = new RemotteGestureDetector[count];
+        count = 0;
+        for (RemotteGestureDetector detector : detectors) {
+            if ((detector.getSensors() & sensor) != 0)
+                filtered[count++] = detector;
+        }
+        return filtered;
+    }
+
+    boolean hasAccelerometerDetectors() { return mAccelerometerDetectors.length > 0; }
+    boolean hasGyroscopeDetectors() { return mGyroscopeDetectors.length > 0; }
+
+    void onAccelerometerSample(Remotte remotte, long timestamp, double x, double y, double z) {
+        if (isGap(mAccelerometerTimestamp, timestamp))
+            reset(mAccelerometerDetectors);
+        mAccelerometerTimestamp = timestamp;
+
+        mRemotte = remotte;
+        try {
+            for (RemotteGestureDetector detector : mAccelerometerDetectors)
+                detector.onAccelerometerSample(timestamp, x, y, z);
+        } finally {
+            mRemotte = null;
+        }
+    }
+
+    void onGyroscopeSample(Remotte remotte, long timestamp, double x, double y, double z) {
+        if (isGap(mGyroscopeTimestamp, timestamp))
+            reset(mGyroscopeDetectors);
+        mGyroscopeTimestamp = timestamp;
+
+        mRemotte = remotte;
+        try {
+            for (RemotteGestureDetector detector : mGyroscopeDetectors)
+                detector.onGyroscopeSample(timestamp, x, y, z);
+        } finally {
+            mRemotte = null;
+        }
+    }
+
+    private static boolean isGap(long last, long timestamp) {
+        return (last >= 0 && (timestamp < last || timestamp - last > MAX_INTERVAL));
+    }
+
+    private static void reset(RemotteGestureDetector[] detectors) {
+        for (RemotteGestureDetector detector : detectors)
+            detector.reset();
+    }
+
+    @Override
+    public void onGesture(int gesture, int direction, double magnitude) {
+        if (mRemotte != null)
+            mDelivery.onGesture(mRemotte, mCallback, gesture, direction, magnitude);
+    }
+}
@@ -0,0 +1,151 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import java.util.Arrays;
+
+/**
+ * This class it's a latency histogram with log-linear buckets, like the HDR histograms: every power of two it's
+ * split in 16 buckets, so every value it's recorded with a precision better than 6.25% from 1 nanosecond to about
+ * 18 minutes. The buckets are allocated once, recording a value does not allocate memory.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+public final class RemotteLatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE   = 40; //2^40 nanoseconds, bigger values are recorded on the last bucket.
+    private static final int BUCKETS         = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final long[] mCounts;
+    private       long   mCount = 0;
+    private       long   mTotal = 0;
+    private       long   mMin = Long.MAX_VALUE;
+    private       long   mMax = 0;
+
+    RemotteLatencyHistogram() { mCounts = new long[BUCKETS]; }
+
+    private RemotteLatencyHistogram(RemotteLatencyHistogram histogram) {
+        mCounts = histogram.mCounts.clone();
+        mCount = histogram.mCount;
+        mTotal = histogram.mTotal;
+        mMin = histogram.mMin;
+        mMax = histogram.mMax;
+    }
+
+    /**
+     * Use this method to record a latency.
+     * @param value The latency in nanoseconds, the negative values are recorded as 0.
+     */
+    void record(long value) {
+        if (value < 0)
+            value = 0;
+
+        mCounts[indexOf(value)]++;
+        mCount++;
+        mTotal += value;
+        if (value < mMin)
+            mMin = value;
+        if (value > mMax)
+            mMax = value;
+    }
+
+    void reset() {
+        Arrays.fill(mCounts, 0);
+        mCount = 0;
+        mTotal = 0;
+        mMin = Long.MAX_VALUE;
+        mMax = 0;
+    }
+
+    RemotteLatencyHistogram copy() { return new RemotteLatencyHistogram(this); }
+
+    /**
+     * @return Returns the number of recorded values.
+     */
+    public long getCount() { return mCount; }
+
+    /**
+     * @return Returns the minimum recorded value in nanoseconds, or 0 if the histogram it's empty.
+     */
+    public long getMin() { return (mCount == 0 ? 0 : mMin); }
+
+    /**
+     * @return Returns the maximum recorded value in nanoseconds.
+     */
+    public long getMax() { return mMax; }
+
+    /**
+     * @return Returns the mean of the recorded values in nanoseconds.
+     */
+    public double getMean() { return (mCount == 0 ? 0 : mTotal / (double)mCount); }
+
+    /**
+     * Use this method to retrieve a percentile of the recorded values, for example 50 for the median or 99.9.
+     * @param percentile The percentile, from 0 to 100.
+     * @return Returns the highest value in nanoseconds equivalent to the percentile, or 0 if the histogram it's empty.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new RuntimeException("Invalid percentile, it must be between 0 and 100.");
+        if (mCount == 0)
+            return 0;
+
+        long threshold = Math.max(1, (long)Math.ceil((percentile / 100.0) * mCount));
+        long accumulated = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            accumulated += mCounts[index];
+            if (accumulated >= threshold)
+                return Math.min(highestValueOf(index), mMax);
+        }
+        return mMax;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int)value;
+
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if (magnitude > MAX_MAGNITUDE)
+            return BUCKETS - 1;
+
+        int subBucket = (int)(value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int bucket = index / SUB_BUCKETS;
+        int subBucket = index % SUB_BUCKETS;
+        long lowest = (long)(SUB_BUCKETS + subBucket) << (bucket - 1);
+        return lowest + (1L << (bucket - 1)) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count %d, mean %.3f ms, p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms",
+                getCount(), getMean() / 1000000.0, getValueAtPercentile(50) / 1000000.0, getValueAtPercentile(90) / 1000000.0,
+                getValueAtPercentile(99) / 1000000.0, getMax() / 1000000.0);
+    }
+}
@@ -0,0 +1,191 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class contains the latency of the sensor samples from the GATT notification to your callback, split by
+ * stages, the samples that the service could not deliver and the ones dropped by the sample filters. Use {@link com.mobandme.remotte.Remotte#getMetrics()}
+ * to retrieve a snapshot, the latency metrics must be enabled on your {@link com.mobandme.remotte.Remotte.Configuration}.
+ *
+ * All the stages are measured with SystemClock.elapsedRealtimeNanos(), that it's monotonic and shared by the
+ * service and the client processes. The batched samples wait in the service by design, so their service stages
+ * are not measured and their callback stage includes the decoding.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+public final class RemotteMetrics {
+
+    public static final int SENSOR_TEMPERATURE   = 0;
+    public static final int SENSOR_ACCELEROMETER = 1;
+    public static final int SENSOR_GYROSCOPE     = 2;
+    public static final int SENSOR_ALTIMETER     = 3;
+    public static final int SENSOR_KEYS          = 4;
+
+    /**
+     * From the GATT notification in the service to the sample packed for the clients.
+     */
+    public static final int STAGE_DISPATCH = 0;
+
+    /**
+     * From the sample packed to the send of the message to this client.
+     */
+    public static final int STAGE_FAN_OUT  = 1;
+
+    /**
+     * From the send of the message by the service to its reception by the client.
+     */
+    public static final int STAGE_IPC      = 2;
+
+    /**
+     * From the reception of the message to the sample converted.
+     */
+    public static final int STAGE_DECODE   = 3;
+
+    /**
+     * From the sample converted to the return of your callback.
+     */
+    public static final int STAGE_CALLBACK = 4;
+
+    /**
+     * From the GATT notification in the service to the return of your callback.
+     */
+    public static final int STAGE_TOTAL    = 5;
+
+    private static final int SENSORS = 5;
+    private static final int STAGES  = 6;
+
+    private final RemotteLatencyHistogram[][] mLatencies = new RemotteLatencyHistogram[SENSORS][STAGES];
+    private final long[]                      mDroppedSamples = new long[SENSORS];
+    private final long[]                      mSuppressedSamples = new long[SENSORS];
+
+    RemotteMetrics() {
+        for (int sensor = 0; sensor < SENSORS; sensor++)
+            for (int stage = 0; stage < STAGES; stage++)
+                mLatencies[sensor][stage] = new RemotteLatencyHistogram();
+    }
+
+    private RemotteMetrics(RemotteMetrics metrics) {
+        for (int sensor = 0; sensor < SENSORS; sensor++) {
+            for (int stage = 0; stage < STAGES; stage++)
+                mLatencies[sensor][stage] = metrics.mLatencies[sensor][stage].copy();
+            mDroppedSamples[sensor] = metrics.mDroppedSamples[sensor];
+            mSuppressedSamples[sensor] = metrics.mSuppressedSamples[sensor];
+        }
+    }
+
+    /**
+     * Use this method to retrieve the latency of a stage.
+     * @param sensor Use anyone of the SENSOR constants.
+     * @param stage Use anyone of the STAGE constants.
+     * @return Returns the latency histogram of the stage.
+     */
+    public RemotteLatencyHistogram getLatency(int sensor, int stage) {
+        if (sensor < 0 || sensor >= SENSORS || stage < 0 || stage >= STAGES)
+            throw new RuntimeException("Invalid sensor or stage, please use the RemotteMetrics constants.");
+        return mLatencies[sensor][stage];
+    }
+
+    /**
+     * Use this method to retrieve the samples of a sensor that the service could not send to this client.
+     * @param sensor Use anyone of the SENSOR constants.
+     * @return Returns the number of dropped samples since the client was configured.
+     */
+    public long getDroppedSamples(int sensor) {
+        if (sensor < 0 || sensor >= SENSORS)
+            throw new RuntimeException("Invalid sensor, please use the RemotteMetrics constants.");
+        return mDroppedSamples[sensor];
+    }
+
+    /**
+     * Use this method to retrieve the samples of a sensor that the service didn't send to this client because they
+     * didn't change, see {@link com.mobandme.remotte.Remotte.Configuration#enableSampleFilter(int, int, double, int, int)}.
+     * The number it's updated with every sent sample.
+     * @param sensor Use anyone of the SENSOR constants.
+     * @return Returns the number of suppressed samples since the client was configured.
+     */
+    public long getSuppressedSamples(int sensor) {
+        if (sensor < 0 || sensor >= SENSORS)
+            throw new RuntimeException("Invalid sensor, please use the RemotteMetrics constants.");
+        return mSuppressedSamples[sensor];
+    }
+
+    /**
+     * Use this method to translate a sample message type to a sensor.
+     * @return Returns the sensor, or -1 if the message it's not a sample.
+     */
+    static int getSensor(int what) {
+        switch (what) {
+            case Remotte.MSG_TEMPERATURE_CHANGED:   return SENSOR_TEMPERATURE;
+            case Remotte.MSG_ACCELEROMETER_CHANGED: return SENSOR_ACCELEROMETER;
+            case Remotte.MSG_GYROSCOPE_CHANGED:     return SENSOR_GYROSCOPE;
+            case Remotte.MSG_BAROMETER_CHANGED:     return SENSOR_ALTIMETER;
+            case Remotte.MSG_KEY_PRESSED:           return SENSOR_KEYS;
+            default:                                return -1;
+        }
+    }
+
+    /**
+     * Use this method to record the timestamps of a delivered sample, the unknown timestamps are 0.
+     */
+    synchronized void record(int sensor, long notified, long packed, long sent, long received, long decoded, long returned) {
+        RemotteLatencyHistogram[] latencies = mLatencies[sensor];
+
+        if (notified != 0 && packed != 0)
+            latencies[STAGE_DISPATCH].record(packed - notified);
+        if (packed != 0 && sent != 0)
+            latencies[STAGE_FAN_OUT].record(sent - packed);
+        if (sent != 0)
+            latencies[STAGE_IPC].record(received - sent);
+        if (decoded != 0)
+            latencies[STAGE_DECODE].record(decoded - received);
+        latencies[STAGE_CALLBACK].record(returned - (decoded != 0 ? decoded : received));
+        if (notified != 0)
+            latencies[STAGE_TOTAL].record(returned - notified);
+    }
+
+    synchronized void setDroppedSamples(int sensor, long droppedSamples) { mDroppedSamples[sensor] = droppedSamples; }
+    synchronized void setSuppressedSamples(int sensor, long suppressedSamples) { mSuppressedSamples[sensor] = suppressedSamples; }
+
+    synchronized void reset() {
+        for (RemotteLatencyHistogram[] latencies : mLatencies)
+            for (RemotteLatencyHistogram latency : latencies)
+                latency.reset();
+    }
+
+    synchronized RemotteMetrics copy() { return new RemotteMetrics(this); }
+
+    @Override
+    public String toString() {
+        String[] sensors = { "Temperature", "Accelerometer", "Gyroscope", "Altimeter", "Keys" };
+        StringBuilder builder = new StringBuilder();
+        for (int sensor = 0; sensor < SENSORS; sensor++) {
+            if (mLatencies[sensor][STAGE_CALLBACK].getCount() == 0)
+                continue;
+
+            builder.append(sensors[sensor]).append(": total {").append(mLatencies[sensor][STAGE_TOTAL])
+                   .append("}, ipc {").append(mLatencies[sensor][STAGE_IPC])
+                   .append("}, callback {").append(mLatencies[sensor][STAGE_CALLBACK])
+                   .append("}, dropped ").append(mDroppedSamples[sensor])
+                   .append(", suppressed ").append(mSuppressedSamples[sensor]).append(". ");
+        }
+        return builder.toString().trim();
+    }
+}
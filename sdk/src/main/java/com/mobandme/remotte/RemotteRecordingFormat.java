@@ -0,0 +1,125 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class define the binary format of the files written by {@link com.mobandme.remotte.RemotteSampleRecorder}.
+ *
+ * The file starts with a header: the magic number, the version, the wall clock and the elapsed realtime in
+ * milliseconds when the recording started, and the number of axes and the scale of every sensor. It's followed by
+ * blocks of samples of one sensor, stored by columns: the sensor, the number of samples, the size in bytes of the
+ * columns, the timestamps and then the values of every axis. The size lets the readers skip the blocks of the
+ * sensors they don't need. The timestamps are milliseconds since the start of the recording and the values are
+ * multiplied by the scale of its sensor and rounded. Every column it's written as the zigzag varint of the
+ * difference with the previous value, so the slow signals take one or two bytes per value.
+ */
+final class RemotteRecordingFormat {
+
+    static final int MAGIC   = 0x524D5452; //RMTR
+    static final int VERSION = 1;
+
+    static final int SENSORS  = 5; //The sensors of RemotteMetrics.
+    static final int MAX_AXES = 3;
+
+    /**
+     * The axes of every sensor: temperature, accelerometer x, y and z, gyroscope x, y and z, altimeter pressure and
+     * altitude, and the power and center keys.
+     */
+    static final int[] AXES = { 1, 3, 3, 2, 2 };
+
+    /**
+     * The resolution of every sensor: 0.01 degrees, 0.0001 g, 0.001 degrees per second, 0.01 hPa and meters, and the keys as they are.
+     */
+    static final int[] SCALES = { 100, 10000, 1000, 100, 1 };
+
+    static final int HEADER_SIZE = 4 + 1 + 8 + 8 + 1 + SENSORS * 5;
+
+    private static final int MAX_VARINT = 10;
+
+    private RemotteRecordingFormat() { }
+
+    /**
+     * @return Returns the maximum size in bytes of a block of the sensor.
+     */
+    static int getMaxBlockSize(int sensor, int count) { return 1 + MAX_VARINT + 4 + count * (1 + AXES[sensor]) * MAX_VARINT; }
+
+    static void writeHeader(ByteBuffer buffer, long wallClock, long elapsedRealtime) {
+        buffer.putInt(MAGIC);
+        buffer.put((byte)VERSION);
+        buffer.putLong(wallClock);
+        buffer.putLong(elapsedRealtime);
+        buffer.put((byte)SENSORS);
+        for (int sensor = 0; sensor < SENSORS; sensor++) {
+            buffer.put((byte)AXES[sensor]);
+            buffer.putInt(SCALES[sensor]);
+        }
+    }
+
+    static long quantize(int sensor, double value) { return Math.round(value * SCALES[sensor]); }
+
+    static double restore(int sensor, long value) { return (double)value / SCALES[sensor]; }
+
+    /**
+     * Use this method to write a column as the differences between its consecutive values.
+     */
+    static void writeColumn(ByteBuffer buffer, long[] column, int count) {
+        long previous = 0;
+        for (int index = 0; index < count; index++) {
+            writeVarLong(buffer, zigzag(column[index] - previous));
+            previous = column[index];
+        }
+    }
+
+    /**
+     * Use this method to read a column written by {@link #writeColumn(java.nio.ByteBuffer, long[], int)}.
+     */
+    static void readColumn(ByteBuffer buffer, long[] column, int count) {
+        long previous = 0;
+        for (int index = 0; index < count; index++) {
+            previous += unzigzag(readVarLong(buffer));
+            column[index] = previous;
+        }
+    }
+
+    static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte)value);
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new RuntimeException("Invalid recording, malformed varint.");
+    }
+
+    private static long zigzag(long value) { return (value << 1) ^ (value >> 63); }
+
+    private static long unzigzag(long value) { return (value >>> 1) ^ -(value & 1); }
+}
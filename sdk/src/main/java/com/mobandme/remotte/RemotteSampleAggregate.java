@@ -0,0 +1,136 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class contains the statistics of the samples of a sensor during a window of time, computed by the service.
+ * Use {@link com.mobandme.remotte.Remotte.Configuration#enableSampleAggregate(int, int, int, int)} to receive
+ * one of them every step instead of every sample, see {@link com.mobandme.remotte.listener.SampleAggregateCallback}.
+ *
+ * The statistics are by axis, like the values of the sample callbacks. With {@link #INPUT_MAGNITUDE} there is only
+ * the axis 0, the magnitude of the three values of every sample.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+public final class RemotteSampleAggregate {
+
+    /**
+     * The statistics of every value of the samples.
+     */
+    public static final int INPUT_VALUES    = 1;
+
+    /**
+     * The statistics of the magnitude of the samples, the RMS of the Accelerometer magnitude measures the activity.
+     */
+    public static final int INPUT_MAGNITUDE = 2;
+
+    //The layout of the statistics, as they travel from the service.
+    static final int START     = 0;
+    static final int END       = 1;
+    static final int COUNT     = 2;
+    static final int MIN       = 3;
+    static final int MAX       = 6;
+    static final int MEAN      = 9;
+    static final int DEVIATION = 12;
+    static final int RMS       = 15;
+    static final int SIZE      = 18;
+
+    private final int      mSensor;
+    private       int      mInput = INPUT_VALUES;
+    private final double[] mStatistics = new double[SIZE];
+
+    /**
+     * @param sensor Anyone of the RemotteMetrics.SENSOR constants.
+     */
+    RemotteSampleAggregate(int sensor) {
+        mSensor = sensor;
+    }
+
+    /**
+     * Use this method to reuse the instance for a new window.
+     * @param input Use {@link #INPUT_VALUES} or {@link #INPUT_MAGNITUDE}.
+     * @param statistics The statistics sent by the service, with the layout of the SIZE constant.
+     */
+    void set(int input, double[] statistics) {
+        if (statistics == null || statistics.length < SIZE)
+            throw new RuntimeException("Invalid aggregate statistics.");
+
+        mInput = input;
+        System.arraycopy(statistics, 0, mStatistics, 0, SIZE);
+    }
+
+    /**
+     * @return Returns a copy of the aggregate, to keep it after the callback.
+     */
+    public RemotteSampleAggregate copy() {
+        RemotteSampleAggregate aggregate = new RemotteSampleAggregate(mSensor);
+        aggregate.set(mInput, mStatistics);
+        return aggregate;
+    }
+
+    /**
+     * @return Returns the sensor of the samples, anyone of the RemotteMetrics.SENSOR constants.
+     */
+    public int getSensor() { return mSensor; }
+
+    /**
+     * @return Returns {@link #INPUT_VALUES} or {@link #INPUT_MAGNITUDE}.
+     */
+    public int getInput() { return mInput; }
+
+    /**
+     * @return Returns the elapsed realtime in milliseconds when the window starts, the window includes it.
+     */
+    public long getStartTimestamp() { return (long)mStatistics[START]; }
+
+    /**
+     * @return Returns the elapsed realtime in milliseconds when the window ends, the window excludes it.
+     */
+    public long getEndTimestamp() { return (long)mStatistics[END]; }
+
+    /**
+     * @return Returns the number of samples of the window.
+     */
+    public int getCount() { return (int)mStatistics[COUNT]; }
+
+    public double getMin(int axis) { return mStatistics[MIN + checkAxis(axis)]; }
+    public double getMax(int axis) { return mStatistics[MAX + checkAxis(axis)]; }
+    public double getMean(int axis) { return mStatistics[MEAN + checkAxis(axis)]; }
+    public double getStandardDeviation(int axis) { return mStatistics[DEVIATION + checkAxis(axis)]; }
+    public double getRms(int axis) { return mStatistics[RMS + checkAxis(axis)]; }
+
+    private int checkAxis(int axis) {
+        if (axis < 0 || axis > 2)
+            throw new RuntimeException("Invalid axis, please use 0, 1 or 2.");
+        return axis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("Sensor %d, %d samples from %d to %d ms", mSensor, getCount(), getStartTimestamp(), getEndTimestamp()));
+        int axes = (mInput == INPUT_MAGNITUDE ? 1 : 3);
+        for (int axis = 0; axis < axes; axis++)
+            builder.append(String.format(", axis %d: min %.4f, max %.4f, mean %.4f, stddev %.4f, rms %.4f",
+                    axis, getMin(axis), getMax(axis), getMean(axis), getStandardDeviation(axis), getRms(axis)));
+        return builder.toString();
+    }
+}
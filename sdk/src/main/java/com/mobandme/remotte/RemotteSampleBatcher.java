@@ -0,0 +1,69 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import java.util.Arrays;
+
+/**
+ * This class buffer the packed samples of one sensor until they are sent to the client in a single message. Every
+ * sample is stored as the pair of message arguments built by {@link com.mobandme.remotte.RemotteSampleCodec}.
+ */
+final class RemotteSampleBatcher {
+
+    private final int[] mSamples;
+    private final int   mCapacity;
+    private       int   mCount = 0;
+
+    /**
+     * @param capacity The maximum number of samples of the batch.
+     */
+    RemotteSampleBatcher(int capacity) {
+        mCapacity = capacity;
+        mSamples = new int[capacity * 2];
+    }
+
+    /**
+     * Use this method to add a sample to the batch.
+     * @return Returns the number of samples on the batch after add it.
+     */
+    synchronized int add(int low, int high) {
+        if (mCount == mCapacity)
+            return mCount;
+
+        mSamples[mCount * 2] = low;
+        mSamples[mCount * 2 + 1] = high;
+        return ++mCount;
+    }
+
+    /**
+     * Use this method to take all the samples of the batch.
+     * @return Returns the packed samples or null if the batch it's empty.
+     */
+    synchronized int[] drain() {
+        if (mCount == 0)
+            return null;
+
+        int[] samples = Arrays.copyOf(mSamples, mCount * 2);
+        mCount = 0;
+        return samples;
+    }
+
+    int getCapacity() { return mCapacity; }
+}
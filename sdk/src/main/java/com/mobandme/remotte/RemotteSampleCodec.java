@@ -0,0 +1,167 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class pack the sensor samples into the two int arguments of a {@link android.os.Message}, so the samples
+ * can travel between the service and the client without any Bundle.
+ *
+ * The message what identify the sensor. The arg1 contains the bytes 0 to 3 of the raw GATT value and the arg2
+ * contains the bytes 4 and 5 on the lower half and the sample timestamp on the upper half. The timestamp is the
+ * SystemClock.elapsedRealtime() of the GATT notification truncated to 16 bits, the client rebuild it from its
+ * own clock. All the sensor values of Remotte and Sensor Tag devices fit in 6 bytes.
+ *
+ * The samples transformed by the service, like the smoothed ones, can't travel as a raw GATT value, so their converted
+ * values take the place of the raw value: the values share a binary exponent of 6 bits and every value keeps a
+ * mantissa of 14 bits for the 3 axis sensors, or of 21 bits for the others. The error it's less than 1/8192 of the
+ * largest value of the sample for the 3 axis sensors, and less than 1/2^20 for the others, and never more than 2^-49.
+ */
+final class RemotteSampleCodec {
+
+    static final int MAX_PAYLOAD = 6;
+
+    private static final int TIMESTAMP_MASK = 0xFFFF;
+    private static final int EXPONENT_SHIFT = 42;
+    private static final int EXPONENT_MASK  = 0x3F;
+    private static final int EXPONENT_BIAS  = 48; //The values are below 2^27, the small ones keep more bits.
+
+    /**
+     * The timestamp wraps every 65536 milliseconds, a sample must reach the client before it's so old.
+     */
+    static final int MAX_SAMPLE_AGE = TIMESTAMP_MASK;
+
+    private RemotteSampleCodec() { }
+
+    /**
+     * @param payload The raw value of the GATT characteristic.
+     * @return Returns the value to send as arg1.
+     */
+    static int packLow(byte[] payload) {
+        int packed = 0;
+        int length = Math.min(payload.length, 4);
+        for (int i = 0; i < length; i++)
+            packed |= (payload[i] & 0xFF) << (i * 8);
+        return packed;
+    }
+
+    /**
+     * @param payload The raw value of the GATT characteristic.
+     * @param timestamp The elapsed realtime in milliseconds when the sample was notified.
+     * @return Returns the value to send as arg2.
+     */
+    static int packHigh(byte[] payload, long timestamp) {
+        int packed = ((int)timestamp & TIMESTAMP_MASK) << 16;
+        if (payload.length > 4)
+            packed |= (payload[4] & 0xFF);
+        if (payload.length > 5)
+            packed |= (payload[5] & 0xFF) << 8;
+        return packed;
+    }
+
+    /**
+     * Use this method to restore the raw GATT value.
+     * @param low The arg1 of the message.
+     * @param high The arg2 of the message.
+     * @param payload Array of at least {@link #MAX_PAYLOAD} bytes where the value will be written.
+     */
+    static void unpack(int low, int high, byte[] payload) {
+        payload[0] = (byte)low;
+        payload[1] = (byte)(low >> 8);
+        payload[2] = (byte)(low >> 16);
+        payload[3] = (byte)(low >> 24);
+        payload[4] = (byte)high;
+        payload[5] = (byte)(high >> 8);
+    }
+
+    /**
+     * Use this method to restore the sample timestamp.
+     * @param high The arg2 of the message.
+     * @param now The current elapsed realtime in milliseconds, it must be later than the sample and less than
+     *            {@link #MAX_SAMPLE_AGE} milliseconds after it.
+     * @return Returns the elapsed realtime in milliseconds when the sample was notified.
+     */
+    static long unpackTimestamp(int high, long now) {
+        int timestamp = (high >>> 16) & TIMESTAMP_MASK;
+        return now - (((int)now - timestamp) & TIMESTAMP_MASK);
+    }
+
+    /**
+     * @param what The message type of the sensor.
+     * @return Returns the number of values of the samples of the sensor, 3 or 2.
+     */
+    static int getValuesCount(int what) {
+        return (what == Remotte.MSG_ACCELEROMETER_CHANGED || what == Remotte.MSG_GYROSCOPE_CHANGED ? 3 : 2);
+    }
+
+    /**
+     * Use this method to pack the converted values of a sample, the third value it's ignored if the count is 2.
+     * @param count The number of values, see {@link #getValuesCount(int)}.
+     * @param timestamp The elapsed realtime in milliseconds when the sample was notified.
+     * @return Returns the arg1 on the lower 32 bits and the arg2 on the upper 32 bits.
+     */
+    static long packValues(int count, long timestamp, double value0, double value1, double value2) {
+        int    bits = getMantissaBits(count);
+        double max = Math.max(Math.abs(value0), Math.abs(value1));
+        if (count == 3)
+            max = Math.max(max, Math.abs(value2));
+
+        //The largest value keeps all the bits of its mantissa.
+        int exponent = (max > 0 ? Math.getExponent(max) - (bits - 2) : -EXPONENT_BIAS);
+        exponent = Math.max(-EXPONENT_BIAS, Math.min(EXPONENT_MASK - EXPONENT_BIAS, exponent));
+
+        long packed = ((long)timestamp & TIMESTAMP_MASK) << 48;
+        packed |= (long)(exponent + EXPONENT_BIAS) << EXPONENT_SHIFT;
+        packed |= packMantissa(value0, exponent, bits);
+        packed |= packMantissa(value1, exponent, bits) << bits;
+        if (count == 3)
+            packed |= packMantissa(value2, exponent, bits) << (bits * 2);
+        return packed;
+    }
+
+    /**
+     * Use this method to restore the converted values of a sample.
+     * @param count The number of values, see {@link #getValuesCount(int)}.
+     * @param low The arg1 of the message.
+     * @param high The arg2 of the message, use {@link #unpackTimestamp(int, long)} to restore its timestamp.
+     * @param values Array of at least 3 values, the unused values are 0.
+     */
+    static void unpackValues(int count, int low, int high, double[] values) {
+        long packed = ((long)high << 32) | (low & 0xFFFFFFFFL);
+        int  bits = getMantissaBits(count);
+        int  exponent = (int)(packed >>> EXPONENT_SHIFT) & EXPONENT_MASK;
+        exponent -= EXPONENT_BIAS;
+
+        values[0] = Math.scalb((double)unpackMantissa(packed, 0, bits), exponent);
+        values[1] = Math.scalb((double)unpackMantissa(packed, bits, bits), exponent);
+        values[2] = (count == 3 ? Math.scalb((double)unpackMantissa(packed, bits * 2, bits), exponent) : 0);
+    }
+
+    private static int getMantissaBits(int count) { return (count == 3 ? 14 : 21); }
+
+    private static long packMantissa(double value, int exponent, int bits) {
+        long limit = (1L << (bits - 1)) - 1;
+        long mantissa = Math.max(-limit, Math.min(limit, Math.round(Math.scalb(value, -exponent))));
+        return mantissa & ((1L << bits) - 1);
+    }
+
+    private static long unpackMantissa(long packed, int shift, int bits) {
+        return (packed << (64 - shift - bits)) >> (64 - bits);
+    }
+}
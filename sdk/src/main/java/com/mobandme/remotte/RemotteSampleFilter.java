@@ -0,0 +1,104 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class drop in the service the samples of a sensor that don't change, before they cost a message and a wake up
+ * of the client. A sample it's sent when any of its values moves more than the deadband from the last sent sample,
+ * and when the sensor has been silent for the heartbeat time even if it doesn't change. The samples that arrive
+ * before the minimum interval since the last sent sample are always dropped.
+ *
+ * Use {@link com.mobandme.remotte.Remotte.Configuration#enableSampleFilter(int, int, double, int, int)} to filter
+ * the samples of your app, the dropped samples are counted by {@link com.mobandme.remotte.RemotteMetrics#getSuppressedSamples(int)}.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+public final class RemotteSampleFilter {
+
+    /**
+     * The deadband it's in the units of the sensor.
+     */
+    public static final int DEADBAND_ABSOLUTE = 1;
+
+    /**
+     * The deadband it's a fraction of the last sent value, 0.01 drops the changes under the 1%.
+     */
+    public static final int DEADBAND_RELATIVE = 2;
+
+    private final int     mDeadbandMode;
+    private final double  mDeadband;
+    private final long    mMinInterval;
+    private final long    mHeartbeat;
+
+    private boolean mSent = false;
+    private long    mLastSent;
+    private double  mLast0;
+    private double  mLast1;
+    private double  mLast2;
+
+    /**
+     * @param deadbandMode Use {@link #DEADBAND_ABSOLUTE} or {@link #DEADBAND_RELATIVE}.
+     * @param deadband The minimum change of a value, 0 drops only the samples that repeat the last one.
+     * @param minInterval The minimum time between two sent samples in milliseconds, 0 to not limit it.
+     * @param heartbeat The maximum time without sent samples in milliseconds, 0 to disable it.
+     */
+    RemotteSampleFilter(int deadbandMode, double deadband, long minInterval, long heartbeat) {
+        mDeadbandMode = deadbandMode;
+        mDeadband = deadband;
+        mMinInterval = minInterval;
+        mHeartbeat = heartbeat;
+    }
+
+    public int getDeadbandMode() { return mDeadbandMode; }
+    public double getDeadband() { return mDeadband; }
+    public long getMinInterval() { return mMinInterval; }
+    public long getHeartbeat() { return mHeartbeat; }
+
+    /**
+     * Use this method to filter a sample, the unused values of the sensor must be 0.
+     * @param timestamp The timestamp of the GATT notification in milliseconds.
+     * @return Returns true if the sample must be sent.
+     */
+    boolean accept(long timestamp, double value0, double value1, double value2) {
+        //A timestamp older than the last sent one can only come after a reconnection, so it's sent.
+        if (mSent && timestamp >= mLastSent) {
+            long elapsed = timestamp - mLastSent;
+            if (elapsed < mMinInterval)
+                return false;
+
+            boolean heartbeat = (mHeartbeat > 0 && elapsed >= mHeartbeat);
+            if (!heartbeat && !isChanged(value0, mLast0) && !isChanged(value1, mLast1) && !isChanged(value2, mLast2))
+                return false;
+        }
+
+        mSent = true;
+        mLastSent = timestamp;
+        mLast0 = value0;
+        mLast1 = value1;
+        mLast2 = value2;
+        return true;
+    }
+
+    private boolean isChanged(double value, double last) {
+        double deadband = (mDeadbandMode == DEADBAND_RELATIVE ? mDeadband * Math.abs(last) : mDeadband);
+        return Math.abs(value - last) > deadband;
+    }
+}
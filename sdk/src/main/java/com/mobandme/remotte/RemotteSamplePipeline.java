@@ -0,0 +1,180 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class transform the samples of a sensor for a client inside the service, so the client receives the data it
+ * needs instead of every sample. The stages run in a fixed order on every sample:
+ *
+ * 1. The window statistics see every sample, see {@link com.mobandme.remotte.RemotteSampleAggregate}. A window it's
+ *    emitted when the first sample after its end arrives, the windows end every step and tumble when the step and the
+ *    window are equal.
+ * 2. The moving average smooths the samples over the last N of them.
+ * 3. The decimation keeps one of every N samples, after the moving average so it doesn't alias.
+ *
+ * The stages run over {@link com.mobandme.remotte.RemotteSlidingWindow} instances, so they are incremental and the
+ * pipeline doesn't allocate memory once it's created. The pipeline it's not thread safe, the samples of a sensor
+ * arrive in order from its characteristic.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+final class RemotteSamplePipeline {
+
+    static final int OUTPUT_SAMPLE    = 1;
+    static final int OUTPUT_AGGREGATE = 2;
+
+    //The fastest sample period of the sensors, it sizes the windows.
+    private static final int MIN_SAMPLE_PERIOD = 10;
+    private static final int MAX_WINDOW_CAPACITY = 4096;
+
+    private final int                    mDecimation;
+    private       int                    mSkipped = 0;
+    private final RemotteSlidingWindow[] mAverages; //Null without moving average.
+    private final RemotteSlidingWindow[] mWindows;  //Null without aggregation, one by axis or one for the magnitude.
+    private final int                    mInput;
+    private final long                   mWindow;
+    private final long                   mStep;
+    private       long                   mWindowEnd = -1;
+    private final double[]               mValues = new double[3];
+    private final double[]               mStatistics = new double[RemotteSampleAggregate.SIZE];
+
+    /**
+     * @param decimation Keep one of every N samples, 0 to keep none of them.
+     * @param movingAverage The samples of the moving average, 1 to disable it.
+     * @param input Use {@link com.mobandme.remotte.RemotteSampleAggregate#INPUT_VALUES} or INPUT_MAGNITUDE.
+     * @param window The duration of the aggregation windows in milliseconds, 0 to disable them.
+     * @param step The time between two windows in milliseconds.
+     */
+    RemotteSamplePipeline(int decimation, int movingAverage, int input, int window, int step) {
+        mDecimation = decimation;
+        mInput = input;
+        mWindow = window;
+        mStep = step;
+
+        if (movingAverage > 1) {
+            mAverages = new RemotteSlidingWindow[3];
+            for (int axis = 0; axis < mAverages.length; axis++)
+                mAverages[axis] = new RemotteSlidingWindow(Long.MAX_VALUE, movingAverage);
+        } else {
+            mAverages = null;
+        }
+
+        if (window > 0) {
+            int capacity = Math.min(MAX_WINDOW_CAPACITY, window / MIN_SAMPLE_PERIOD + 1);
+            mWindows = new RemotteSlidingWindow[input == RemotteSampleAggregate.INPUT_MAGNITUDE ? 1 : 3];
+            for (int axis = 0; axis < mWindows.length; axis++)
+                mWindows[axis] = new RemotteSlidingWindow(window, capacity);
+        } else {
+            mWindows = null;
+        }
+    }
+
+    /**
+     * @return Returns true if the sent samples are not the original ones, so they can't travel packed.
+     */
+    boolean isTransformed() { return mAverages != null; }
+
+    int getInput() { return mInput; }
+
+    /**
+     * Use this method to process a sample, the unused values of the sensor must be 0.
+     * @param timestamp The timestamp of the GATT notification in milliseconds.
+     * @return Returns the outputs of the sample, OUTPUT_SAMPLE if it must be sent and OUTPUT_AGGREGATE if a window ended.
+     */
+    int add(long timestamp, double value0, double value1, double value2) {
+        int outputs = 0;
+        if (mWindows != null && aggregate(timestamp, value0, value1, value2))
+            outputs |= OUTPUT_AGGREGATE;
+
+        if (mAverages != null) {
+            mAverages[0].add(timestamp, value0);
+            mAverages[1].add(timestamp, value1);
+            mAverages[2].add(timestamp, value2);
+            mValues[0] = mAverages[0].getMean();
+            mValues[1] = mAverages[1].getMean();
+            mValues[2] = mAverages[2].getMean();
+        } else {
+            mValues[0] = value0;
+            mValues[1] = value1;
+            mValues[2] = value2;
+        }
+
+        if (mDecimation > 0 && ++mSkipped >= mDecimation) {
+            mSkipped = 0;
+            outputs |= OUTPUT_SAMPLE;
+        }
+        return outputs;
+    }
+
+    private boolean aggregate(long timestamp, double value0, double value1, double value2) {
+        boolean emitted = false;
+        if (mWindowEnd < 0 || timestamp < mWindowEnd - mStep) {
+            //The first sample, or a timestamp older than the current window after a reconnection, starts again.
+            for (RemotteSlidingWindow window : mWindows)
+                window.clear();
+            mWindowEnd = timestamp - (timestamp % mStep) + mStep;
+        } else if (timestamp >= mWindowEnd) {
+            emitted = computeStatistics(mWindowEnd);
+            //The windows without samples are skipped, the next one it's the first that ends after this sample.
+            mWindowEnd += mStep * ((timestamp - mWindowEnd) / mStep + 1);
+        }
+
+        if (mInput == RemotteSampleAggregate.INPUT_MAGNITUDE)
+            mWindows[0].add(timestamp, Math.sqrt(value0 * value0 + value1 * value1 + value2 * value2));
+        else {
+            mWindows[0].add(timestamp, value0);
+            mWindows[1].add(timestamp, value1);
+            mWindows[2].add(timestamp, value2);
+        }
+        return emitted;
+    }
+
+    private boolean computeStatistics(long end) {
+        //The window includes its start and excludes its end, the sliding windows evict up to the time given.
+        for (RemotteSlidingWindow window : mWindows)
+            window.evict(end - 1);
+        if (mWindows[0].getCount() == 0)
+            return false;
+
+        mStatistics[RemotteSampleAggregate.START] = end - mWindow;
+        mStatistics[RemotteSampleAggregate.END] = end;
+        mStatistics[RemotteSampleAggregate.COUNT] = mWindows[0].getCount();
+        for (int axis = 0; axis < mWindows.length; axis++) {
+            RemotteSlidingWindow window = mWindows[axis];
+            mStatistics[RemotteSampleAggregate.MIN + axis] = window.getMin();
+            mStatistics[RemotteSampleAggregate.MAX + axis] = window.getMax();
+            mStatistics[RemotteSampleAggregate.MEAN + axis] = window.getMean();
+            mStatistics[RemotteSampleAggregate.DEVIATION + axis] = window.getStandardDeviation();
+            mStatistics[RemotteSampleAggregate.RMS + axis] = window.getRms();
+        }
+        return true;
+    }
+
+    /**
+     * @return Returns the values of the last sample to send, smoothed if there is a moving average.
+     */
+    double[] getValues() { return mValues; }
+
+    /**
+     * @return Returns the statistics of the last ended window, the array it's reused by the next window.
+     */
+    double[] getStatistics() { return mStatistics; }
+}
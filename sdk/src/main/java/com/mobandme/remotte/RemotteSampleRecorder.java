@@ -0,0 +1,275 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import android.os.SystemClock;
+
+import com.mobandme.remotte.helper.LogsHelper;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class record the samples delivered to your callbacks into a compact binary file, to analyze them offline.
+ * Use {@link com.mobandme.remotte.Remotte#startRecording(java.io.File)} to create it.
+ *
+ * The samples are stored by columns, one per sensor axis, in blocks of up to 256 samples. Every column it's
+ * written as varints of the differences between its values, see {@link com.mobandme.remotte.RemotteRecordingFormat}.
+ * The blocks are encoded and written by a thread of the recorder through a {@link java.nio.channels.FileChannel}
+ * and the file it's synced every 5 seconds, so the recording never blocks the delivery of the samples. On every sync
+ * the blocks in progress are written too, so the samples of a sensor that goes idle don't wait until the end of the
+ * recording. If the writer falls behind and there are no free blocks, the new samples are dropped and counted.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+public final class RemotteSampleRecorder {
+
+    private static final int  BLOCK_SIZE     = 256;
+    private static final int  BLOCKS         = 32;
+    private static final int  BUFFER_SIZE    = 64 * 1024;
+    private static final long SYNC_INTERVAL  = 5000; //Milliseconds.
+    private static final long FLUSH_INTERVAL = SYNC_INTERVAL; //Milliseconds, the maximum age of a block before it's written.
+
+    private final File                 mFile;
+    private final FileOutputStream     mStream;
+    private final FileChannel          mChannel;
+    private final ByteBuffer           mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final long                 mStartedAt;
+    private final Block[]              mBlocks = new Block[RemotteRecordingFormat.SENSORS]; //The block in progress of every sensor.
+    private final BlockingQueue<Block> mFreeBlocks = new ArrayBlockingQueue<Block>(BLOCKS);
+    private final BlockingQueue<Block> mPendingBlocks = new ArrayBlockingQueue<Block>(BLOCKS + 1);
+    private final Block                mEndOfRecording = new Block();
+    private final Thread               mWriter;
+    private volatile boolean           mClosed = false;
+    private volatile boolean           mFailed = false;
+    private volatile long              mRecordedSamples = 0;
+    private volatile long              mDroppedSamples = 0;
+    private volatile long              mBytesWritten = 0;
+
+    RemotteSampleRecorder(File file) throws IOException {
+        mFile = file;
+        mStream = new FileOutputStream(file);
+        mChannel = mStream.getChannel();
+        mStartedAt = SystemClock.elapsedRealtime();
+
+        for (int index = 0; index < BLOCKS; index++)
+            mFreeBlocks.add(new Block());
+
+        RemotteRecordingFormat.writeHeader(mBuffer, System.currentTimeMillis(), mStartedAt);
+
+        mWriter = new Thread(mWriterTask, "RemotteSampleRecorder");
+        mWriter.setPriority(Thread.MIN_PRIORITY);
+        mWriter.start();
+    }
+
+    public File getFile() { return mFile; }
+
+    /**
+     * @return Returns the number of samples recorded.
+     */
+    public long getRecordedSamples() { return mRecordedSamples; }
+
+    /**
+     * @return Returns the number of samples lost because the writer was behind or the file could not be written.
+     */
+    public long getDroppedSamples() { return mDroppedSamples; }
+
+    /**
+     * @return Returns the size of the file written until now, the recent samples wait in memory up to 5 seconds.
+     */
+    public long getBytesWritten() { return mBytesWritten; }
+
+    public boolean isClosed() { return mClosed; }
+
+    /**
+     * Use this method to record a sample, it only copies the sample into the block of its sensor.
+     * @param sensor Use anyone of the SENSOR constants of {@link com.mobandme.remotte.RemotteMetrics}.
+     * @param timestamp The elapsed realtime in milliseconds when the sample was notified.
+     */
+    synchronized void record(int sensor, long timestamp, double v0, double v1, double v2) {
+        if (mClosed || mFailed) {
+            mDroppedSamples++;
+            return;
+        }
+
+        Block block = mBlocks[sensor];
+        if (block == null) {
+            block = mFreeBlocks.poll();
+            if (block == null) {
+                mDroppedSamples++;
+                return;
+            }
+            block.reset(sensor);
+            mBlocks[sensor] = block;
+        }
+
+        block.add(timestamp - mStartedAt,
+                RemotteRecordingFormat.quantize(sensor, v0),
+                RemotteRecordingFormat.quantize(sensor, v1),
+                RemotteRecordingFormat.quantize(sensor, v2));
+        mRecordedSamples++;
+
+        if (block.count == BLOCK_SIZE || block.timestamps[block.count - 1] - block.timestamps[0] >= FLUSH_INTERVAL) {
+            mBlocks[sensor] = null;
+            mPendingBlocks.offer(block);
+        }
+    }
+
+    /**
+     * Use this method to finish the recording, the samples in memory are written and the file it's closed. The
+     * method waits for the writer thread.
+     */
+    public void close() {
+        synchronized (this) {
+            if (mClosed)
+                return;
+            mClosed = true;
+
+            for (int sensor = 0; sensor < mBlocks.length; sensor++) {
+                if (mBlocks[sensor] != null)
+                    mPendingBlocks.offer(mBlocks[sensor]);
+                mBlocks[sensor] = null;
+            }
+            mPendingBlocks.offer(mEndOfRecording);
+        }
+
+        try {
+            mWriter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final Runnable mWriterTask = new Runnable() {
+        @Override
+        public void run() {
+            long syncedAt = SystemClock.elapsedRealtime();
+            try {
+                while (true) {
+                    long timeout = Math.max(1, syncedAt + SYNC_INTERVAL - SystemClock.elapsedRealtime());
+                    Block block = mPendingBlocks.poll(timeout, TimeUnit.MILLISECONDS);
+                    if (block == mEndOfRecording)
+                        break;
+
+                    if (block != null) {
+                        write(block);
+                        mFreeBlocks.offer(block);
+                    }
+
+                    long now = SystemClock.elapsedRealtime();
+                    if (now - syncedAt >= SYNC_INTERVAL) {
+                        for (int sensor = 0; sensor < mBlocks.length; sensor++) {
+                            Block open = takeBlock(sensor);
+                            if (open != null) {
+                                write(open);
+                                mFreeBlocks.offer(open);
+                            }
+                        }
+                        flush();
+                        mChannel.force(false);
+                        syncedAt = now;
+                    }
+                }
+
+                flush();
+                mChannel.force(false);
+            } catch (IOException e) {
+                mFailed = true;
+                LogsHelper.log(LogsHelper.ERROR, "Error writing the recording file.", e);
+            } catch (InterruptedException e) {
+                mFailed = true;
+            } finally {
+                try {
+                    mStream.close();
+                } catch (IOException e) {
+                    LogsHelper.log(LogsHelper.WARN, "Error closing the recording file.", e);
+                }
+            }
+        }
+    };
+
+    /**
+     * This method detach the block in progress of a sensor, the next sample of the sensor starts a new one.
+     * @return Returns the block, or null if the sensor has not samples waiting.
+     */
+    private synchronized Block takeBlock(int sensor) {
+        Block block = mBlocks[sensor];
+        if (block == null || block.count == 0)
+            return null;
+
+        mBlocks[sensor] = null;
+        return block;
+    }
+
+    /**
+     * This method encode a block into the buffer, the buffer it's written to the file before it's full.
+     */
+    private void write(Block block) throws IOException {
+        if (mBuffer.remaining() < RemotteRecordingFormat.getMaxBlockSize(block.sensor, block.count))
+            flush();
+
+        mBuffer.put((byte)block.sensor);
+        RemotteRecordingFormat.writeVarLong(mBuffer, block.count);
+
+        //The size of the columns it's written once they are encoded.
+        int size = mBuffer.position();
+        mBuffer.putInt(0);
+        RemotteRecordingFormat.writeColumn(mBuffer, block.timestamps, block.count);
+        for (int axis = 0; axis < RemotteRecordingFormat.AXES[block.sensor]; axis++)
+            RemotteRecordingFormat.writeColumn(mBuffer, block.values[axis], block.count);
+        mBuffer.putInt(size, mBuffer.position() - size - 4);
+    }
+
+    private void flush() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining())
+            mBytesWritten += mChannel.write(mBuffer);
+        mBuffer.clear();
+    }
+
+    /**
+     * This class contains the samples of a sensor by columns.
+     */
+    private static final class Block {
+        int            sensor;
+        int            count;
+        final long[]   timestamps = new long[BLOCK_SIZE];
+        final long[][] values = new long[RemotteRecordingFormat.MAX_AXES][BLOCK_SIZE];
+
+        void reset(int sensor) {
+            this.sensor = sensor;
+            this.count = 0;
+        }
+
+        void add(long timestamp, long v0, long v1, long v2) {
+            timestamps[count] = timestamp;
+            values[0][count] = v0;
+            values[1][count] = v1;
+            values[2][count] = v2;
+            count++;
+        }
+    }
+}
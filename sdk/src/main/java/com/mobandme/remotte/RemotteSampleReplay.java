@@ -0,0 +1,327 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import android.os.Handler;
+import android.os.Message;
+
+import com.mobandme.remotte.helper.LogsHelper;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class replay a file written by {@link com.mobandme.remotte.RemotteSampleRecorder} through the handler of a
+ * {@link com.mobandme.remotte.Remotte}, so your sample callbacks are called on the same thread and in the same way
+ * as with a device. Use {@link com.mobandme.remotte.Remotte#startReplay(java.io.File, double)} to start it.
+ *
+ * The file it's memory mapped and read by a thread of the replay, one block per sensor at a time, and the samples
+ * of all the sensors are merged in timestamp order. Every sample it's sent as the packed message of a notification
+ * of its sensor, so it's unpacked and converted by the same code as the live samples: the recorded values are
+ * written back as the raw GATT value of the device type of the client, at the resolution of the recording. The
+ * altimeter conversion depends on the calibration of the device, so its samples travel with their values, as the
+ * samples smoothed by the service. The samples are replayed at the recorded pace multiplied by the speed, or as fast
+ * as your callbacks can consume them with {@link #SPEED_UNLIMITED}. Up to 1024 samples wait in the handler, when
+ * they are exhausted the replay waits for your callbacks.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+public final class RemotteSampleReplay {
+
+    /**
+     * Use this speed to replay the samples at the recorded pace.
+     */
+    public static final double SPEED_REALTIME  = 1;
+
+    /**
+     * Use this speed to replay the samples as fast as your callbacks can consume them.
+     */
+    public static final double SPEED_UNLIMITED = 0;
+
+    private static final int SAMPLES = 1024; //A power of two, the timestamps are indexed with a mask.
+
+    private final File           mFile;
+    private final ByteBuffer     mRecording;
+    private final int[]          mScales;
+    private final long           mRecordingStartedAt;
+    private final double         mSpeed;
+    private final Handler        mHandler;
+    private final int            mDevice;
+    private final Semaphore      mPendingSamples = new Semaphore(SAMPLES);
+    private final long[]         mTimestamps = new long[SAMPLES]; //The timestamps of the pending samples.
+    private final double[]       mValues = new double[RemotteRecordingFormat.MAX_AXES];
+    private final byte[]         mPayload = new byte[RemotteSampleCodec.MAX_PAYLOAD];
+    private final CountDownLatch mFinished = new CountDownLatch(1);
+    private final Thread         mReader;
+    private volatile boolean     mStopped = false;
+    private volatile long        mReplayedSamples = 0;
+    private volatile long        mCallbacks = 0;
+    private volatile long        mStartedAt = 0;
+    private volatile long        mDeliveredAt = 0;
+    private          long        mDeliveredSamples = 0; //Only used by the handler.
+
+    /**
+     * @param handler The handler that calls the callbacks, the obj of its messages it's the replay.
+     * @param device The device type of the client, anyone of the Remotte.Devices constants.
+     */
+    RemotteSampleReplay(File file, double speed, Handler handler, int device) throws IOException {
+        if (speed < 0)
+            throw new RuntimeException("Invalid replay speed, please use a positive speed or RemotteSampleReplay.SPEED_UNLIMITED.");
+
+        mFile = file;
+        mSpeed = speed;
+        mHandler = handler;
+        mDevice = device;
+
+        RandomAccessFile recording = new RandomAccessFile(file, "r");
+        try {
+            mRecording = recording.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, recording.length());
+        } finally {
+            recording.close();
+        }
+
+        if (mRecording.remaining() < RemotteRecordingFormat.HEADER_SIZE || mRecording.getInt() != RemotteRecordingFormat.MAGIC)
+            throw new RuntimeException("Invalid recording, the file was not written by RemotteSampleRecorder.");
+        if (mRecording.get() > RemotteRecordingFormat.VERSION)
+            throw new RuntimeException("Invalid recording, the file was written by a newer version.");
+
+        mRecording.getLong(); //The wall clock.
+        mRecordingStartedAt = mRecording.getLong();
+        mScales = new int[mRecording.get()];
+        if (mScales.length != RemotteRecordingFormat.SENSORS)
+            throw new RuntimeException("Invalid recording, the file contains " + mScales.length + " sensors instead of " + RemotteRecordingFormat.SENSORS + ".");
+        for (int sensor = 0; sensor < mScales.length; sensor++) {
+            int axes = mRecording.get();
+            if (axes != RemotteRecordingFormat.AXES[sensor])
+                throw new RuntimeException("Invalid recording, the sensor " + sensor + " has " + axes + " axes instead of " + RemotteRecordingFormat.AXES[sensor] + ".");
+            mScales[sensor] = mRecording.getInt();
+            if (mScales[sensor] <= 0)
+                throw new RuntimeException("Invalid recording, the sensor " + sensor + " has an invalid scale.");
+        }
+
+        mReader = new Thread(mReaderTask, "RemotteSampleReplay");
+    }
+
+    void start() {
+        mStartedAt = System.nanoTime();
+        mReader.start();
+    }
+
+    public File getFile() { return mFile; }
+
+    public double getSpeed() { return mSpeed; }
+
+    /**
+     * @return Returns the number of samples sent to the handler.
+     */
+    public long getReplayedSamples() { return mReplayedSamples; }
+
+    /**
+     * @return Returns the number of callbacks called.
+     */
+    public long getCallbacks() { return mCallbacks; }
+
+    /**
+     * @return Returns the callbacks called per second, from the start of the replay to the last sample delivered.
+     */
+    public double getCallbacksPerSecond() {
+        long elapsed = mDeliveredAt - mStartedAt;
+        return (elapsed > 0 ? mCallbacks * 1000000000.0 / elapsed : 0);
+    }
+
+    public boolean isFinished() { return mFinished.getCount() == 0; }
+
+    /**
+     * Use this method to wait until all the samples of the recording have been delivered, or the replay stopped.
+     * @return Returns true if the replay has finished.
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return mFinished.await(timeout, unit);
+    }
+
+    /**
+     * Use this method to stop the replay, the samples that already wait in the handler are delivered.
+     */
+    public void stop() {
+        mStopped = true;
+        mReader.interrupt();
+    }
+
+    /**
+     * Use this method on the handler to retrieve the timestamp of the sample of the current message, the messages
+     * are handled in the order they were sent.
+     * @return Returns the elapsed realtime in milliseconds when the sample was recorded.
+     */
+    long getSampleTimestamp() { return mTimestamps[(int)mDeliveredSamples & (SAMPLES - 1)]; }
+
+    /**
+     * Use this method on the handler once the sample of the current message has been handled.
+     * @param called Pass true if the sample has reached a callback.
+     */
+    void onDelivered(boolean called) {
+        mDeliveredSamples++;
+        mDeliveredAt = System.nanoTime();
+        if (called)
+            mCallbacks++;
+        mPendingSamples.release();
+    }
+
+    private final Runnable mReaderTask = new Runnable() {
+        @Override
+        public void run() {
+            Cursor[] cursors = new Cursor[mScales.length];
+            for (int sensor = 0; sensor < cursors.length; sensor++)
+                cursors[sensor] = new Cursor(sensor, mRecording);
+
+            long firstTimestamp = -1;
+            try {
+                while (!mStopped) {
+                    Cursor next = null;
+                    for (Cursor cursor : cursors)
+                        if (cursor.hasNext() && (next == null || cursor.getTimestamp() < next.getTimestamp()))
+                            next = cursor;
+                    if (next == null)
+                        break;
+
+                    if (firstTimestamp < 0)
+                        firstTimestamp = next.getTimestamp();
+                    if (mSpeed > 0)
+                        waitUntil(mStartedAt + (long)((next.getTimestamp() - firstTimestamp) * 1000000 / mSpeed));
+
+                    mPendingSamples.acquire();
+                    long timestamp = mRecordingStartedAt + next.read(mValues, mScales[next.sensor]);
+                    mTimestamps[(int)mReplayedSamples & (SAMPLES - 1)] = timestamp;
+                    mReplayedSamples++;
+                    mHandler.sendMessage(obtainMessage(next.sensor, timestamp));
+                }
+            } catch (InterruptedException e) {
+                LogsHelper.log(LogsHelper.DEBUG, "The replay of {%s} has been stopped.", mFile);
+            } catch (RuntimeException e) {
+                LogsHelper.log(LogsHelper.ERROR, "Error reading the recording, the replay has been stopped.", e);
+            }
+
+            //The handler delivers the samples in order, this runs after the last one.
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() { mFinished.countDown(); }
+            });
+        }
+    };
+
+    /**
+     * This method pack a read sample into the message of its sensor, as the service does with the notifications.
+     */
+    private Message obtainMessage(int sensor, long timestamp) {
+        int what;
+        Arrays.fill(mPayload, (byte)0);
+        switch (sensor) {
+            case RemotteMetrics.SENSOR_TEMPERATURE:
+                RemotteSensorTemperature.encode(mDevice, mValues[0], mPayload);
+                what = Remotte.MSG_TEMPERATURE_CHANGED;
+                break;
+            case RemotteMetrics.SENSOR_ACCELEROMETER:
+                RemotteSensorAccelerometer.encode(mDevice, mValues[0], mValues[1], mValues[2], mPayload);
+                what = Remotte.MSG_ACCELEROMETER_CHANGED;
+                break;
+            case RemotteMetrics.SENSOR_GYROSCOPE:
+                RemotteSensorGyroscope.encode(mDevice, mValues[0], mValues[1], mValues[2], mPayload);
+                what = Remotte.MSG_GYROSCOPE_CHANGED;
+                break;
+            case RemotteMetrics.SENSOR_KEYS:
+                RemotteSensorKeys.encode(mDevice, (int)mValues[0], (int)mValues[1], mPayload);
+                what = Remotte.MSG_KEY_PRESSED;
+                break;
+            default:
+                long packed = RemotteSampleCodec.packValues(2, timestamp, mValues[0], mValues[1], 0);
+                return Message.obtain(mHandler, Remotte.MSG_BAROMETER_CHANGED | Remotte.MSG_SAMPLE_VALUES, (int)packed, (int)(packed >>> 32), this);
+        }
+        return Message.obtain(mHandler, what, RemotteSampleCodec.packLow(mPayload), RemotteSampleCodec.packHigh(mPayload, timestamp), this);
+    }
+
+    private void waitUntil(long time) throws InterruptedException {
+        long delay;
+        while ((delay = time - System.nanoTime()) > 0 && !mStopped)
+            LockSupport.parkNanos(delay);
+        if (mStopped)
+            throw new InterruptedException();
+    }
+
+    /**
+     * This class read the blocks of a sensor, it skips the blocks of the other sensors.
+     */
+    private static final class Cursor {
+        final int                sensor;
+        private final ByteBuffer mRecording;
+        private final long[]     mTimestamps = new long[256];
+        private final long[][]   mValues = new long[RemotteRecordingFormat.MAX_AXES][256];
+        private       int        mCount = 0;
+        private       int        mIndex = 0;
+
+        Cursor(int sensor, ByteBuffer recording) {
+            this.sensor = sensor;
+            this.mRecording = recording.duplicate();
+        }
+
+        boolean hasNext() {
+            while (mIndex >= mCount) {
+                if (!mRecording.hasRemaining())
+                    return false;
+
+                int blockSensor = mRecording.get();
+                int count = (int)RemotteRecordingFormat.readVarLong(mRecording);
+                int size = mRecording.getInt();
+                if (blockSensor != sensor || count == 0) {
+                    mRecording.position(mRecording.position() + size);
+                    continue;
+                }
+
+                if (count > mTimestamps.length)
+                    throw new RuntimeException("Invalid recording, the block of the sensor " + sensor + " is too large.");
+
+                RemotteRecordingFormat.readColumn(mRecording, mTimestamps, count);
+                for (int axis = 0; axis < RemotteRecordingFormat.AXES[sensor]; axis++)
+                    RemotteRecordingFormat.readColumn(mRecording, mValues[axis], count);
+                mCount = count;
+                mIndex = 0;
+            }
+            return true;
+        }
+
+        long getTimestamp() { return mTimestamps[mIndex]; }
+
+        /**
+         * @param values Array of at least {@link RemotteRecordingFormat#MAX_AXES} values, the unused values are 0.
+         * @return Returns the timestamp of the sample, in milliseconds since the start of the recording.
+         */
+        long read(double[] values, int scale) {
+            for (int axis = 0; axis < RemotteRecordingFormat.MAX_AXES; axis++)
+                values[axis] = (axis < RemotteRecordingFormat.AXES[sensor] ? (double)mValues[axis][mIndex] / scale : 0);
+            return mTimestamps[mIndex++];
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class it's a lock-free ring buffer of decoded samples, it's the fast path for the apps that run the
+ * {@link com.mobandme.remotte.RemotteService} on their own process. The service writes the samples from the GATT
+ * callback and every consumer reads all of them at its own pace, without messages nor allocations.
+ *
+ * There is one producer, the GATT notifications of a device are delivered one at a time, and any number of consumers.
+ * Every slot keeps its sequence number, the consumers validate it before and after read the slot, so a sample
+ * overwritten while it's read is detected and counted as an overrun instead of being delivered torn.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+public final class RemotteSampleRing {
+
+    /**
+     * With this policy the producer never waits, the consumers that fall behind lose the oldest samples.
+     */
+    public static final int POLICY_OVERWRITE_OLDEST = 0;
+
+    /**
+     * With this policy the producer waits for the slowest consumer. The producer it's the GATT callback, so it
+     * waits at most {@link #MAX_BLOCK_TIME} milliseconds, after that the sample it's dropped.
+     */
+    public static final int POLICY_BLOCK = 1;
+
+    public static final long MAX_BLOCK_TIME = 50; //Milliseconds.
+
+    private static final int SEQUENCE  = 0;
+    private static final int TIMESTAMP = 1;
+    private static final int SENSOR    = 2;
+    private static final int VALUES    = 3;
+    private static final int STRIDE    = VALUES + 3;
+
+    private static final Map<String, RemotteSampleRing> sRings = new ConcurrentHashMap<String, RemotteSampleRing>();
+
+    private final AtomicLongArray mSlots;
+    private final int             mCapacity;
+    private final int             mMask;
+    private final int             mPolicy;
+    private final AtomicLong      mPublished = new AtomicLong(0);
+    private final AtomicLong      mDroppedSamples = new AtomicLong(0);
+    private final List<Consumer>  mConsumers = new CopyOnWriteArrayList<Consumer>();
+    private volatile Thread       mBlockedProducer;
+
+    /**
+     * @param capacity The number of samples, it's rounded up to the next power of two.
+     * @param policy Use {@link #POLICY_OVERWRITE_OLDEST} or {@link #POLICY_BLOCK}.
+     */
+    RemotteSampleRing(int capacity, int policy) {
+        if (capacity < 2 || capacity > (1 << 24))
+            throw new RuntimeException("Invalid sample ring capacity, it must be between 2 and 2^24 samples.");
+        if (policy != POLICY_OVERWRITE_OLDEST && policy != POLICY_BLOCK)
+            throw new RuntimeException("Invalid sample ring policy, please use the RemotteSampleRing constants.");
+
+        mCapacity = Integer.highestOneBit(capacity - 1) << 1;
+        mMask = mCapacity - 1;
+        mPolicy = policy;
+        mSlots = new AtomicLongArray(mCapacity * STRIDE);
+        for (int index = 0; index < mCapacity; index++)
+            mSlots.set(index * STRIDE + SEQUENCE, -1);
+    }
+
+    /**
+     * Use this method to retrieve the ring of a device, it's created the first time. The ring it's shared by all the
+     * clients of the device on this process, so a later client can't change its policy nor grow it.
+     * @throws {@link java.lang.RuntimeException} when the ring of the device has other policy or less capacity.
+     */
+    static RemotteSampleRing obtain(String deviceAddress, int capacity, int policy) {
+        synchronized (sRings) {
+            RemotteSampleRing ring = sRings.get(deviceAddress);
+            if (ring == null) {
+                ring = new RemotteSampleRing(capacity, policy);
+                sRings.put(deviceAddress, ring);
+            } else if (ring.mPolicy != policy || ring.mCapacity < capacity) {
+                throw new RuntimeException(String.format("The sample ring of the device {%s} already exists with %d samples and policy %d, please use the same sample ring configuration on all its clients.",
+                        deviceAddress, ring.mCapacity, ring.mPolicy));
+            }
+            return ring;
+        }
+    }
+
+    /**
+     * Use this method when a client connects with the device, its ring it's registered again if the last connection
+     * of the device released it.
+     * @return Returns false if other ring has been created for the device meanwhile.
+     */
+    static boolean attach(String deviceAddress, RemotteSampleRing ring) {
+        synchronized (sRings) {
+            RemotteSampleRing current = sRings.get(deviceAddress);
+            if (current == null)
+                sRings.put(deviceAddress, ring);
+            return (current == null || current == ring);
+        }
+    }
+
+    /**
+     * Use this method when the last connection of a device has been released, after that the ring it's only kept
+     * by its clients.
+     */
+    static void release(String deviceAddress) { sRings.remove(deviceAddress); }
+
+    /**
+     * @return Returns the ring of a device, or null if nobody has created it on this process.
+     */
+    static RemotteSampleRing peek(String deviceAddress) { return sRings.get(deviceAddress); }
+
+    public int getCapacity() { return mCapacity; }
+    public int getPolicy() { return mPolicy; }
+
+    /**
+     * @return Returns the number of samples written since the ring was created.
+     */
+    public long getPublishedSamples() { return mPublished.get(); }
+
+    /**
+     * @return Returns the number of samples dropped by the {@link #POLICY_BLOCK} policy because a consumer did
+     * not free a slot on time.
+     */
+    public long getDroppedSamples() { return mDroppedSamples.get(); }
+
+    /**
+     * Use this method to start to read the samples, the consumer receives the samples written from now on.
+     * @return Returns a new consumer, close it when you don't need it anymore.
+     */
+    public Consumer addConsumer() {
+        Consumer consumer = new Consumer(mPublished.get());
+        mConsumers.add(consumer);
+        return consumer;
+    }
+
+    /**
+     * Use this method to write a sample, only one thread can write at a time.
+     * @param sensor Use anyone of the RemotteMetrics.SENSOR constants.
+     * @param timestamp The SystemClock.elapsedRealtimeNanos() of the GATT notification.
+     */
+    void publish(int sensor, long timestamp, double value0, double value1, double value2) {
+        long sequence = mPublished.get();
+        if (mPolicy == POLICY_BLOCK && !awaitFreeSlot(sequence)) {
+            mDroppedSamples.incrementAndGet();
+            return;
+        }
+
+        int base = (int)(sequence & mMask) * STRIDE;
+        mSlots.set(base + SEQUENCE, -1);
+        mSlots.lazySet(base + TIMESTAMP, timestamp);
+        mSlots.lazySet(base + SENSOR, sensor);
+        mSlots.lazySet(base + VALUES, Double.doubleToRawLongBits(value0));
+        mSlots.lazySet(base + VALUES + 1, Double.doubleToRawLongBits(value1));
+        mSlots.lazySet(base + VALUES + 2, Double.doubleToRawLongBits(value2));
+        mSlots.set(base + SEQUENCE, sequence);
+        mPublished.set(sequence + 1);
+
+        for (Consumer consumer : mConsumers) {
+            Thread waiter = consumer.mWaiter;
+            if (waiter != null)
+                LockSupport.unpark(waiter);
+        }
+    }
+
+    private boolean awaitFreeSlot(long sequence) {
+        long deadline = 0;
+        while (sequence - getSlowestCursor(sequence) >= mCapacity) {
+            long now = System.nanoTime();
+            if (deadline == 0)
+                deadline = now + TimeUnit.MILLISECONDS.toNanos(MAX_BLOCK_TIME);
+            else if (now >= deadline)
+                return false;
+
+            mBlockedProducer = Thread.currentThread();
+            if (sequence - getSlowestCursor(sequence) >= mCapacity)
+                LockSupport.parkNanos(this, deadline - now);
+            mBlockedProducer = null;
+        }
+        return true;
+    }
+
+    private long getSlowestCursor(long sequence) {
+        long slowest = sequence;
+        for (Consumer consumer : mConsumers)
+            slowest = Math.min(slowest, consumer.mCursor.get());
+        return slowest;
+    }
+
+    /**
+     * This class it's the holder where the consumers read the samples, reuse it to not allocate memory.
+     */
+    public static final class Sample {
+
+        /**
+         * The sensor of the sample, see the RemotteMetrics.SENSOR constants.
+         */
+        public int sensor;
+
+        /**
+         * The SystemClock.elapsedRealtimeNanos() of the GATT notification.
+         */
+        public long timestamp;
+
+        /**
+         * The values of the sample: X, Y and Z for the accelerometer and the gyroscope, pressure and altitude for
+         * the altimeter, the ambient temperature, or the power and center keys status.
+         */
+        public final double[] values = new double[3];
+    }
+
+    /**
+     * This class read the samples of the ring, a consumer must be used by one thread at a time.
+     */
+    public final class Consumer {
+        private final    AtomicLong mCursor;
+        private volatile Thread     mWaiter;
+        private          long       mOverruns = 0;
+
+        private Consumer(long cursor) { mCursor = new AtomicLong(cursor); }
+
+        /**
+         * @return Returns the number of samples that this consumer has lost because they were overwritten.
+         */
+        public long getOverruns() { return mOverruns; }
+
+        /**
+         * @return Returns the number of samples ready to read.
+         */
+        public int available() { return (int)Math.min(mCapacity, mPublished.get() - mCursor.get()); }
+
+        /**
+         * Use this method to read the next sample without wait.
+         * @param sample The holder where the sample will be written.
+         * @return Returns false if there are not samples to read.
+         */
+        public boolean poll(Sample sample) {
+            long cursor = mCursor.get();
+            while (true) {
+                long published = mPublished.get();
+                if (cursor >= published)
+                    return false;
+
+                if (published - cursor > mCapacity) {
+                    mOverruns += (published - mCapacity) - cursor;
+                    cursor = published - mCapacity;
+                }
+
+                int base = (int)(cursor & mMask) * STRIDE;
+                if (mSlots.get(base + SEQUENCE) == cursor) {
+                    long timestamp = mSlots.get(base + TIMESTAMP);
+                    int  sensor = (int)mSlots.get(base + SENSOR);
+                    long value0 = mSlots.get(base + VALUES);
+                    long value1 = mSlots.get(base + VALUES + 1);
+                    long value2 = mSlots.get(base + VALUES + 2);
+
+                    //The slot was not overwritten while it was read.
+                    if (mSlots.get(base + SEQUENCE) == cursor) {
+                        sample.sensor = sensor;
+                        sample.timestamp = timestamp;
+                        sample.values[0] = Double.longBitsToDouble(value0);
+                        sample.values[1] = Double.longBitsToDouble(value1);
+                        sample.values[2] = Double.longBitsToDouble(value2);
+                        mCursor.lazySet(cursor + 1);
+
+                        Thread producer = mBlockedProducer;
+                        if (producer != null)
+                            LockSupport.unpark(producer);
+                        return true;
+                    }
+                }
+
+                //The producer has lapped this consumer, skip to the oldest sample that it's still valid.
+                mOverruns++;
+                cursor++;
+                mCursor.lazySet(cursor);
+            }
+        }
+
+        /**
+         * Use this method to read the next sample, waiting until it's written.
+         * @param sample The holder where the sample will be written.
+         * @param timeout The maximum time to wait.
+         * @param unit The unit of the timeout.
+         * @return Returns false if the timeout has expired or the thread has been interrupted.
+         */
+        public boolean await(Sample sample, long timeout, TimeUnit unit) {
+            if (poll(sample))
+                return true;
+
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            mWaiter = Thread.currentThread();
+            try {
+                while (!poll(sample)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || Thread.currentThread().isInterrupted())
+                        return false;
+                    LockSupport.parkNanos(this, remaining);
+                }
+                return true;
+            } finally {
+                mWaiter = null;
+            }
+        }
+
+        /**
+         * Use this method to stop to read the samples, the producer does not wait for this consumer anymore.
+         */
+        public void close() {
+            mConsumers.remove(this);
+            Thread producer = mBlockedProducer;
+            if (producer != null)
+                LockSupport.unpark(producer);
+        }
+    }
+}
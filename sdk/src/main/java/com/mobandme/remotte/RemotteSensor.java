@@ -26,18 +26,51 @@ package com.mobandme.remotte;
  * @since 1
  */
 abstract class RemotteSensor {
-    protected static Integer shortSignedAtOffset(byte[] c, int offset) {
-        Integer lowerByte = (int) c[offset] & 0xFF;
-        Integer upperByte = (int) c[offset+1]; // // Interpret MSB as signed
+
+    /**
+     * Indexes of the axis values on the arrays filled by the three axis sensor adapters.
+     */
+    static final int X = 0;
+    static final int Y = 1;
+    static final int Z = 2;
+
+    protected static int shortSignedAtOffset(byte[] c, int offset) {
+        int lowerByte = (int) c[offset] & 0xFF;
+        int upperByte = (int) c[offset+1]; // // Interpret MSB as signed
         return (upperByte << 8) + lowerByte;
     }
 
-    protected static Integer shortUnsignedAtOffset(byte[] c, int offset) {
-        Integer lowerByte = (int) c[offset] & 0xFF;
-        Integer upperByte = (int) c[offset+1] & 0xFF; // // Interpret MSB as signed
+    protected static int shortUnsignedAtOffset(byte[] c, int offset) {
+        int lowerByte = (int) c[offset] & 0xFF;
+        int upperByte = (int) c[offset+1] & 0xFF; // // Interpret MSB as signed
         return (upperByte << 8) + lowerByte;
     }
 
+    /**
+     * Use this method to write a value as the signed byte nearest to it.
+     */
+    protected static byte signedByteOf(double value) {
+        return (byte)Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, Math.round(value)));
+    }
+
+    /**
+     * Use this method to write a value as the signed short nearest to it, the inverse of {@link #shortSignedAtOffset(byte[], int)}.
+     */
+    protected static void putShortSignedAtOffset(byte[] c, int offset, double value) {
+        int shortValue = (int)Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+        c[offset] = (byte)shortValue;
+        c[offset+1] = (byte)(shortValue >> 8);
+    }
+
+    /**
+     * Use this method to write a value as the unsigned short nearest to it, the inverse of {@link #shortUnsignedAtOffset(byte[], int)}.
+     */
+    protected static void putShortUnsignedAtOffset(byte[] c, int offset, double value) {
+        int shortValue = (int)Math.max(0, Math.min(0xFFFF, Math.round(value)));
+        c[offset] = (byte)shortValue;
+        c[offset+1] = (byte)(shortValue >> 8);
+    }
+
 
     public static String bytesToHex(byte[] bytes) {
         char[] hexArray = "0123456789ABCDEF".toCharArray();
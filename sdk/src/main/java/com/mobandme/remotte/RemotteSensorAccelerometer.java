@@ -26,32 +26,40 @@ package com.mobandme.remotte;
  * @since 1
  */
 final class RemotteSensorAccelerometer extends RemotteSensor {
-    public static class AccelerometerValue {
-        public double x;
-        public double y;
-        public double z;
 
-        public AccelerometerValue(double x, double y, double z) {
-            this.x = x;
-            this.y = y;
-            this.z = z;
+    private static final double SENSOR_TAG_SCALE = 64.0;
+
+    /**
+     * Use this method to convert the GATT value without allocate memory.
+     * @param deviceType The device type.
+     * @param value The raw value of the GATT characteristic.
+     * @param values Array of at least three positions where the X, Y and Z values will be written.
+     */
+    public static void convert(int deviceType, final byte[] value, final double[] values) {
+        if (deviceType == Remotte.Devices.REMOTTE) {
+            values[X] = value[0];
+            values[Y] = value[1];
+            values[Z] = value[2];
+        } else {
+            values[X] = value[0] / SENSOR_TAG_SCALE;
+            values[Y] = value[1] / SENSOR_TAG_SCALE;
+            values[Z] = -value[2] / SENSOR_TAG_SCALE;
         }
     }
 
-    public static AccelerometerValue convert(int deviceType, final byte[] value) {
+    /**
+     * Use this method to restore the GATT value of a converted sample, it's the inverse of convert.
+     * @param value Array of at least three bytes where the raw value will be written.
+     */
+    static void encode(int deviceType, double x, double y, double z, final byte[] value) {
         if (deviceType == Remotte.Devices.REMOTTE) {
-            Integer x = (int)value[0];
-            Integer y = (int)value[1];
-            Integer z = (int)value[2];
-
-            return new AccelerometerValue(x, y, z);
+            value[0] = signedByteOf(x);
+            value[1] = signedByteOf(y);
+            value[2] = signedByteOf(z);
         } else {
-            Integer x = (int)value[0];
-            Integer y = (int)value[1];
-            Integer z = (int)value[2] * -1;
-
-            final float SCALE = (float) 64.0;
-            return new AccelerometerValue(x / SCALE, y / SCALE, z / SCALE);
+            value[0] = signedByteOf(x * SENSOR_TAG_SCALE);
+            value[1] = signedByteOf(y * SENSOR_TAG_SCALE);
+            value[2] = signedByteOf(-z * SENSOR_TAG_SCALE);
         }
     }
 }
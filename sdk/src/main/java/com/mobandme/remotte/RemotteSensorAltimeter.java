@@ -19,62 +19,89 @@ package com.mobandme.remotte;
  * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
  */
 
-import java.util.List;
-import java.util.ArrayList;
-import static java.lang.Math.pow;
-
 /**
  * This class is the Altimeter sensor adapter for Remotte, use it to convert the GATT values to callback values.
+ * Every connected device has its own instance, the calibration of one device never touch the others.
+ *
+ * The calibration coefficients are scaled by its powers of two once, when the calibration is received, so every
+ * sample only needs a few multiplies. All the scale factors are powers of two, so the results are the same,
+ * bit by bit, than the original formula of the sensor datasheet.
  * @author Txus Ballesteros
  * @version 1
  * @since 1
  */
 final class RemotteSensorAltimeter extends RemotteSensor {
 
-    private static final double  PA_PER_METER = 12.0;
-
-    private static Double        mHeightCalibration = null;
-    private static List<Integer> mCalibration;
-
-    private static List<Integer> getCalibration() { return mCalibration; }
+    /**
+     * Indexes of the values on the arrays filled by this adapter.
+     */
+    static final int PRESSURE = 0;
+    static final int ALTITUDE = 1;
 
-    public static class AltimeterValue {
-        public double pressure;
-        public double altitude;
+    private static final double  PA_PER_METER = 12.0;
+    private static final double  P_A_SCALE = scale(1, 14);
+
+    private boolean              mCalibrated = false;
+    private boolean              mHeightCalibrated = false;
+    private double               mHeightCalibration;
+
+    //Sensitivity and offset coefficients, already scaled.
+    private double               mS0;
+    private double               mS1;
+    private double               mS2;
+    private double               mO0;
+    private double               mO1;
+    private double               mO2;
+
+    /**
+     * Use this method to set the calibration read from the device. The height reference it's reset, the next
+     * sample will be used as the new reference.
+     * @param value The raw value of the calibration characteristic.
+     */
+    public void setCalibration(byte[] value) {
+        if (value == null || value.length != 16)
+            return;
 
-        public AltimeterValue(double pressure, double altitude) {
-            this.pressure = pressure;
-            this.altitude = altitude;
-        }
-    }
+        int[] coefficients = new int[8];
+        for (int offset = 0; offset < 8; offset += 2)
+            coefficients[offset / 2] = shortUnsignedAtOffset(value, offset);
 
-    public static void setCalibration(byte[] value) {
-        if (value.length != 16)
-            return;
+        for (int offset = 8; offset < 16; offset += 2)
+            coefficients[offset / 2] = shortSignedAtOffset(value, offset);
 
-        List<Integer> calibrationValues = new ArrayList<Integer>();
-        for (int offset = 0; offset < 8; offset += 2) {
-            Integer lowerByte = (int)value[offset] & 0xFF;
-            Integer upperByte = (int)value[offset + 1] & 0xFF;
-            calibrationValues.add((upperByte << 8) + lowerByte);
-        }
+        // S = c2 + c3 * t / 2^17 + ((c4 * t / 2^15) * t) / 2^19
+        mS0 = coefficients[2];
+        mS1 = scale(coefficients[3], 17);
+        mS2 = scale(coefficients[4], 15 + 19);
 
-        for (int offset = 8; offset < 16; offset += 2) {
-            Integer lowerByte = (int)value[offset] & 0xFF;
-            Integer upperByte = (int)value[offset + 1];
-            calibrationValues.add((upperByte << 8) + lowerByte);
-        }
+        // O = c5 * 2^14 + c6 * t / 2^3 + ((c7 * t / 2^15) * t) / 2^4
+        mO0 = (double)((long)coefficients[5] << 14);
+        mO1 = scale(coefficients[6], 3);
+        mO2 = scale(coefficients[7], 15 + 4);
 
-        mCalibration = calibrationValues;
+        mHeightCalibrated = false;
+        mCalibrated = true;
     }
 
-    public static AltimeterValue convert(int deviceType, final byte[] value) {
-        Double pressure = 0.0d;
-        Double altitude = 0.0d;
-
-        if (getCalibration() != null && getCalibration().size() > 0)
-            if (mHeightCalibration == null) {
+    /**
+     * @return Returns true when the calibration of the device has been received.
+     */
+    public boolean isCalibrated() { return mCalibrated; }
+
+    /**
+     * Use this method to convert the GATT value without allocate memory.
+     * @param deviceType The device type.
+     * @param value The raw value of the GATT characteristic.
+     * @param values Array of at least two positions where the pressure and altitude values will be written.
+     */
+    public void convert(int deviceType, final byte[] value, final double[] values) {
+        double pressure = 0.0d;
+        double altitude = 0.0d;
+
+        if (mCalibrated)
+            if (!mHeightCalibrated) {
                 mHeightCalibration = calculatePressure(value);
+                mHeightCalibrated = true;
             } else {
                 double p_a = calculatePressure(value);
 
@@ -82,29 +109,25 @@ final class RemotteSensorAltimeter extends RemotteSensor {
                 pressure = (p_a / 100.0);
             }
 
-        return new AltimeterValue(pressure, altitude);
+        values[PRESSURE] = pressure;
+        values[ALTITUDE] = altitude;
     }
 
-    private static Double calculatePressure(final byte[] value) {
-        final int[] coefficients; // Calibration coefficients
-        final Integer t_r; // Temperature raw value from sensor
-        final Integer p_r; // Pressure raw value from sensor
-        final Double S; // Interim value in calculation
-        final Double O; // Interim value in calculation
-        final Double p_a; // Pressure actual value in unit Pascal.
-
-        coefficients = new int[getCalibration().size()];
-        for (int i = 0; i < getCalibration().size(); i++) {
-            coefficients[i] = getCalibration().get(i);
-        }
+    /**
+     * @param value The raw value of the GATT characteristic.
+     * @return Returns the pressure actual value in unit Pascal.
+     */
+    double calculatePressure(final byte[] value) {
+        final int t_r = shortSignedAtOffset(value, 0);   // Temperature raw value from sensor
+        final int p_r = shortUnsignedAtOffset(value, 2); // Pressure raw value from sensor
 
-        t_r = shortSignedAtOffset(value, 0);
-        p_r = shortUnsignedAtOffset(value, 2);
+        final double S = mS0 + mS1 * t_r + mS2 * t_r * t_r;
+        final double O = mO0 + mO1 * t_r + mO2 * t_r * t_r;
 
-        S = coefficients[2] + coefficients[3] * t_r / pow(2, 17) + ((coefficients[4] * t_r / pow(2, 15)) * t_r) / pow(2, 19);
-        O = coefficients[5] * pow(2, 14) + coefficients[6] * t_r / pow(2, 3) + ((coefficients[7] * t_r / pow(2, 15)) * t_r) / pow(2, 4);
-        p_a = (S * p_r + O) / pow(2, 14);
+        return (S * p_r + O) * P_A_SCALE;
+    }
 
-        return p_a;
+    private static double scale(int coefficient, int shift) {
+        return coefficient / (double)(1L << shift);
     }
 }
@@ -0,0 +1,256 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class fuse the Accelerometer and Gyroscope samples into the orientation of the device, with the filters of
+ * Madgwick or Mahony for sensors without magnetometer. The Gyroscope it's integrated on every sample and its drift
+ * it's corrected with the gravity measured by the last Accelerometer sample, so the roll and the pitch are stable
+ * and the yaw drifts slowly. Use {@link com.mobandme.remotte.Remotte.Configuration#enableOrientationCallback(com.mobandme.remotte.listener.OrientationCallback)}
+ * to receive the orientation in your callbacks, or feed an instance with your own samples.
+ *
+ * The Gyroscope values are degrees per second and the Accelerometer values can have any unit. The filter doesn't
+ * allocate memory, its state it's kept in fields and the orientation it's read with the getters.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+public final class RemotteSensorFusion {
+
+    /**
+     * The gradient descent filter of Sebastian Madgwick, its gain it's the beta.
+     */
+    public static final int ALGORITHM_MADGWICK = 1;
+
+    /**
+     * The complementary filter of Robert Mahony, its gain it's the proportional gain.
+     */
+    public static final int ALGORITHM_MAHONY   = 2;
+
+    public static final double DEFAULT_MADGWICK_GAIN = 0.1;
+    public static final double DEFAULT_MAHONY_GAIN   = 0.5;
+
+    private static final double DEGREES_TO_RADIANS = Math.PI / 180;
+    private static final double RADIANS_TO_DEGREES = 180 / Math.PI;
+    private static final long   MAX_INTERVAL = 1000; //Milliseconds, a longer gap between samples it's not integrated.
+
+    private final int    mAlgorithm;
+    private final double mGain;
+
+    //The orientation quaternion.
+    private double  mQ0 = 1;
+    private double  mQ1 = 0;
+    private double  mQ2 = 0;
+    private double  mQ3 = 0;
+
+    //The last normalized gravity.
+    private double  mAx;
+    private double  mAy;
+    private double  mAz;
+    private boolean mGravity = false;
+
+    private boolean mInitialized = false;
+    private long    mTimestamp = -1;
+
+    private double  mRoll;
+    private double  mPitch;
+    private double  mYaw;
+
+    /**
+     * @param algorithm Use {@link #ALGORITHM_MADGWICK} or {@link #ALGORITHM_MAHONY}.
+     * @param gain The gain of the correction, the greater the faster it converges and the more noise it lets pass.
+     * @throws {@link java.lang.RuntimeException} when the parameters are not valid.
+     */
+    public RemotteSensorFusion(int algorithm, double gain) {
+        if (algorithm != ALGORITHM_MADGWICK && algorithm != ALGORITHM_MAHONY)
+            throw new RuntimeException("Invalid fusion algorithm, please use the RemotteSensorFusion constants.");
+        if (gain < 0)
+            throw new RuntimeException("Invalid fusion gain, the minimum value is 0.");
+
+        mAlgorithm = algorithm;
+        mGain = gain;
+    }
+
+    public int    getAlgorithm() { return mAlgorithm; }
+    public double getGain() { return mGain; }
+
+    public double getQuaternionW() { return mQ0; }
+    public double getQuaternionX() { return mQ1; }
+    public double getQuaternionY() { return mQ2; }
+    public double getQuaternionZ() { return mQ3; }
+
+    /**
+     * @return Returns the rotation around the X axis in degrees.
+     */
+    public double getRoll() { return mRoll; }
+
+    /**
+     * @return Returns the rotation around the Y axis in degrees.
+     */
+    public double getPitch() { return mPitch; }
+
+    /**
+     * @return Returns the rotation around the Z axis in degrees.
+     */
+    public double getYaw() { return mYaw; }
+
+    /**
+     * Use this method to forget the orientation, the next Accelerometer sample sets the initial one.
+     */
+    public void reset() {
+        mQ0 = 1;
+        mQ1 = mQ2 = mQ3 = 0;
+        mGravity = false;
+        mInitialized = false;
+        mTimestamp = -1;
+        updateAngles();
+    }
+
+    /**
+     * Use this method to update the gravity, it's used by the next Gyroscope samples. The first sample sets the
+     * initial roll and pitch, so the filter doesn't need to converge from the flat orientation.
+     */
+    public void updateAccelerometer(double x, double y, double z) {
+        double norm = Math.sqrt(x * x + y * y + z * z);
+        if (norm == 0)
+            return;
+
+        mAx = x / norm;
+        mAy = y / norm;
+        mAz = z / norm;
+        mGravity = true;
+
+        if (!mInitialized) {
+            double halfRoll  = Math.atan2(mAy, mAz) / 2;
+            double halfPitch = Math.atan2(-mAx, Math.sqrt(mAy * mAy + mAz * mAz)) / 2;
+            double cr = Math.cos(halfRoll),  sr = Math.sin(halfRoll);
+            double cp = Math.cos(halfPitch), sp = Math.sin(halfPitch);
+            mQ0 = cr * cp;
+            mQ1 = sr * cp;
+            mQ2 = cr * sp;
+            mQ3 = -sr * sp;
+            mInitialized = true;
+            updateAngles();
+        }
+    }
+
+    /**
+     * Use this method to integrate a Gyroscope sample.
+     * @param timestamp The time of the sample in milliseconds, the first sample and the samples after a gap of
+     * more than one second only set the time of the next one.
+     * @return Returns true if the orientation has been updated.
+     */
+    public boolean updateGyroscope(double x, double y, double z, long timestamp) {
+        long interval = timestamp - mTimestamp;
+        boolean integrated = (mTimestamp >= 0 && interval > 0 && interval <= MAX_INTERVAL);
+        if (mTimestamp < 0 || interval > 0)
+            mTimestamp = timestamp;
+        if (!integrated)
+            return false;
+
+        double dt = interval / 1000.0;
+        double gx = x * DEGREES_TO_RADIANS;
+        double gy = y * DEGREES_TO_RADIANS;
+        double gz = z * DEGREES_TO_RADIANS;
+
+        if (mAlgorithm == ALGORITHM_MADGWICK)
+            updateMadgwick(gx, gy, gz, dt);
+        else
+            updateMahony(gx, gy, gz, dt);
+
+        normalize();
+        updateAngles();
+        return true;
+    }
+
+    private void updateMadgwick(double gx, double gy, double gz, double dt) {
+        double q0 = mQ0, q1 = mQ1, q2 = mQ2, q3 = mQ3;
+
+        //The rate of change of the quaternion from the gyroscope.
+        double qDot0 = 0.5 * (-q1 * gx - q2 * gy - q3 * gz);
+        double qDot1 = 0.5 * (q0 * gx + q2 * gz - q3 * gy);
+        double qDot2 = 0.5 * (q0 * gy - q1 * gz + q3 * gx);
+        double qDot3 = 0.5 * (q0 * gz + q1 * gy - q2 * gx);
+
+        if (mGravity) {
+            double ax = mAx, ay = mAy, az = mAz;
+            double q0q0 = q0 * q0, q1q1 = q1 * q1, q2q2 = q2 * q2, q3q3 = q3 * q3;
+
+            //The gradient of the error between the measured gravity and the gravity of the orientation.
+            double s0 = 4 * q0 * q2q2 + 2 * q2 * ax + 4 * q0 * q1q1 - 2 * q1 * ay;
+            double s1 = 4 * q1 * q3q3 - 2 * q3 * ax + 4 * q0q0 * q1 - 2 * q0 * ay - 4 * q1 + 8 * q1 * q1q1 + 8 * q1 * q2q2 + 4 * q1 * az;
+            double s2 = 4 * q0q0 * q2 + 2 * q0 * ax + 4 * q2 * q3q3 - 2 * q3 * ay - 4 * q2 + 8 * q2 * q1q1 + 8 * q2 * q2q2 + 4 * q2 * az;
+            double s3 = 4 * q1q1 * q3 - 2 * q1 * ax + 4 * q2q2 * q3 - 2 * q2 * ay;
+
+            double norm = Math.sqrt(s0 * s0 + s1 * s1 + s2 * s2 + s3 * s3);
+            if (norm > 0) {
+                double step = mGain / norm;
+                qDot0 -= step * s0;
+                qDot1 -= step * s1;
+                qDot2 -= step * s2;
+                qDot3 -= step * s3;
+            }
+        }
+
+        mQ0 = q0 + qDot0 * dt;
+        mQ1 = q1 + qDot1 * dt;
+        mQ2 = q2 + qDot2 * dt;
+        mQ3 = q3 + qDot3 * dt;
+    }
+
+    private void updateMahony(double gx, double gy, double gz, double dt) {
+        double q0 = mQ0, q1 = mQ1, q2 = mQ2, q3 = mQ3;
+
+        if (mGravity) {
+            //The gravity of the orientation, halved.
+            double vx = q1 * q3 - q0 * q2;
+            double vy = q0 * q1 + q2 * q3;
+            double vz = q0 * q0 - 0.5 + q3 * q3;
+
+            //The error it's the cross product between the measured gravity and the gravity of the orientation.
+            gx += 2 * mGain * (mAy * vz - mAz * vy);
+            gy += 2 * mGain * (mAz * vx - mAx * vz);
+            gz += 2 * mGain * (mAx * vy - mAy * vx);
+        }
+
+        gx *= 0.5 * dt;
+        gy *= 0.5 * dt;
+        gz *= 0.5 * dt;
+        mQ0 = q0 + (-q1 * gx - q2 * gy - q3 * gz);
+        mQ1 = q1 + (q0 * gx + q2 * gz - q3 * gy);
+        mQ2 = q2 + (q0 * gy - q1 * gz + q3 * gx);
+        mQ3 = q3 + (q0 * gz + q1 * gy - q2 * gx);
+    }
+
+    private void normalize() {
+        double norm = Math.sqrt(mQ0 * mQ0 + mQ1 * mQ1 + mQ2 * mQ2 + mQ3 * mQ3);
+        mQ0 /= norm;
+        mQ1 /= norm;
+        mQ2 /= norm;
+        mQ3 /= norm;
+    }
+
+    private void updateAngles() {
+        double sinPitch = 2 * (mQ0 * mQ2 - mQ3 * mQ1);
+        mRoll  = Math.atan2(2 * (mQ0 * mQ1 + mQ2 * mQ3), 1 - 2 * (mQ1 * mQ1 + mQ2 * mQ2)) * RADIANS_TO_DEGREES;
+        mPitch = Math.asin(Math.max(-1, Math.min(1, sinPitch))) * RADIANS_TO_DEGREES;
+        mYaw   = Math.atan2(2 * (mQ0 * mQ3 + mQ1 * mQ2), 1 - 2 * (mQ2 * mQ2 + mQ3 * mQ3)) * RADIANS_TO_DEGREES;
+    }
+}
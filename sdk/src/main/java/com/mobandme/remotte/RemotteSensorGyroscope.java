@@ -27,31 +27,50 @@ package com.mobandme.remotte;
  */
 final class RemotteSensorGyroscope extends RemotteSensor {
 
-    public static class GyroscopeValue {
-        public double x;
-        public double y;
-        public double z;
+    private static final float SENSOR_TAG_SCALE = 500f / 65536f;
 
-        public GyroscopeValue(double x, double y, double z) {
-            this.x = x;
-            this.y = y;
-            this.z = z;
+    /**
+     * Use this method to convert the GATT value without allocate memory.
+     * @param deviceType The device type.
+     * @param value The raw value of the GATT characteristic.
+     * @param values Array of at least three positions where the X, Y and Z values will be written.
+     */
+    public static void convert(int deviceType, final byte[] value, final double[] values) {
+        if (deviceType == Remotte.Devices.REMOTTE) {
+            values[X] = ((value[0] << 8) + value[1]);
+            values[Y] = ((value[2] << 8) + value[3]);
+            values[Z] = ((value[4] << 8) + value[4]);
+        } else {
+            values[Y] = shortSignedAtOffset(value, 0) * SENSOR_TAG_SCALE * -1;
+            values[X] = shortSignedAtOffset(value, 2) * SENSOR_TAG_SCALE;
+            values[Z] = shortSignedAtOffset(value, 4) * SENSOR_TAG_SCALE;
         }
     }
 
-    public static GyroscopeValue convert(int deviceType, final byte[] value) {
+    /**
+     * Use this method to restore the GATT value of a converted sample, it's the inverse of convert. The Z axis of
+     * the Remotte devices only takes multiples of 257, the value written it's the nearest one.
+     * @param value Array of at least six bytes where the raw value will be written.
+     */
+    static void encode(int deviceType, double x, double y, double z, final byte[] value) {
         if (deviceType == Remotte.Devices.REMOTTE) {
-            int x = ((value[0] << 8) + value[1]);
-            int y = ((value[2] << 8) + value[3]);
-            int z = ((value[4] << 8) + value[4]);
-
-            return new GyroscopeValue(x, y, z);
+            encodeRemotteAxis(x, value, 0);
+            encodeRemotteAxis(y, value, 2);
+            value[4] = signedByteOf(z / 257);
+            value[5] = 0;
         } else {
-            float y = shortSignedAtOffset(value, 0) * (500f / 65536f) * -1;
-            float x = shortSignedAtOffset(value, 2) * (500f / 65536f);
-            float z = shortSignedAtOffset(value, 4) * (500f / 65536f);
-
-            return new GyroscopeValue(x, y, z);
+            putShortSignedAtOffset(value, 0, -y / SENSOR_TAG_SCALE);
+            putShortSignedAtOffset(value, 2, x / SENSOR_TAG_SCALE);
+            putShortSignedAtOffset(value, 4, z / SENSOR_TAG_SCALE);
         }
     }
+
+    /**
+     * This method write an axis of the Remotte devices, the high byte it's followed by a signed low byte.
+     */
+    private static void encodeRemotteAxis(double axis, final byte[] value, int offset) {
+        int axisValue = (int)Math.max(Byte.MIN_VALUE * 257, Math.min(Byte.MAX_VALUE * 257, Math.round(axis)));
+        value[offset + 1] = (byte)axisValue;
+        value[offset] = (byte)((axisValue - value[offset + 1]) >> 8);
+    }
 }
@@ -27,26 +27,47 @@ package com.mobandme.remotte;
  */
 final class RemotteSensorKeys extends RemotteSensor {
 
-    public static class KeysStatus {
-        public int powerKeyStatus;
-        public int centerKeyStatus;
+    /**
+     * Indexes of the keys status on the arrays filled by this adapter.
+     */
+    static final int POWER_KEY  = 0;
+    static final int CENTER_KEY = 1;
 
-        public KeysStatus(int powerKeyStatus, int centerKeyStatus) {
-            this.powerKeyStatus = powerKeyStatus;
-            this.centerKeyStatus = centerKeyStatus;
-        }
-    }
-
-    public static KeysStatus convert(int deviceType, byte[] value) {
+    /**
+     * Use this method to convert the GATT value without allocate memory.
+     * @param deviceType The device type.
+     * @param value The raw value of the GATT characteristic.
+     * @param status Array of at least two positions where the power and center keys status will be written.
+     */
+    public static void convert(int deviceType, byte[] value, int[] status) {
         int keyValue = (int)value[0];
 
         switch (keyValue) {
             case 1:
-                return new KeysStatus(0, 1);
+                status[POWER_KEY] = 0;
+                status[CENTER_KEY] = 1;
+                break;
             case 2:
-                return new KeysStatus(1, 0);
+                status[POWER_KEY] = 1;
+                status[CENTER_KEY] = 0;
+                break;
             default:
-                return new KeysStatus(0, 0);
+                status[POWER_KEY] = 0;
+                status[CENTER_KEY] = 0;
+                break;
         }
     }
+
+    /**
+     * Use this method to restore the GATT value of a keys status, it's the inverse of convert.
+     * @param value Array of at least one byte where the raw value will be written.
+     */
+    static void encode(int deviceType, int powerKey, int centerKey, byte[] value) {
+        if (powerKey != 0 && centerKey == 0)
+            value[0] = 2;
+        else if (centerKey != 0 && powerKey == 0)
+            value[0] = 1;
+        else
+            value[0] = 0;
+    }
 }
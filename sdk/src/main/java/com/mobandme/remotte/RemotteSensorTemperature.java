@@ -31,4 +31,12 @@ final class RemotteSensorTemperature extends RemotteSensor {
         int offset = 2;
         return shortUnsignedAtOffset(data, offset) / 128.0;
     }
+
+    /**
+     * Use this method to restore the GATT value of a converted temperature, it's the inverse of convert.
+     * @param value Array of at least four bytes where the raw value will be written.
+     */
+    static void encode(int deviceType, double temperature, final byte[] value) {
+        putShortUnsignedAtOffset(value, 2, temperature * 128.0);
+    }
 }
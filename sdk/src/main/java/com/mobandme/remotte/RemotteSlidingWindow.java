@@ -0,0 +1,189 @@
+package com.mobandme.remotte;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * This class it's a window of the samples of the last milliseconds, for the gesture detectors and the sample
+ * pipelines of the service. It keeps the running sum and sum of squares of its values, and two monotonic queues
+ * with the candidates to minimum and maximum, so adding a sample and reading the mean, the variance, the RMS, the
+ * minimum or the maximum are O(1), amortized for the queues, and the window doesn't allocate memory once it's created.
+ *
+ * The samples older than the duration of the window are evicted when a new one it's added. When the capacity it's
+ * reached the oldest sample it's evicted too, so size the capacity for the fastest sample period.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+public final class RemotteSlidingWindow {
+
+    private final long     mDuration;
+    private final long[]   mTimestamps;
+    private final double[] mValues;
+    private       long     mFirst = 0; //Sequence of the oldest sample, the slot of a sequence it's its remainder.
+    private       int      mCount = 0;
+    private       double   mSum = 0;
+    private       double   mSumOfSquares = 0;
+
+    //The sequences of the candidates, the values of the minimum queue grow and the ones of the maximum decrease.
+    private final long[]   mMinimums;
+    private       int      mMinimumsHead = 0;
+    private       int      mMinimumsCount = 0;
+    private final long[]   mMaximums;
+    private       int      mMaximumsHead = 0;
+    private       int      mMaximumsCount = 0;
+
+    /**
+     * @param duration The duration of the window in milliseconds, Long.MAX_VALUE to bound it only by its capacity.
+     * @param capacity The maximum number of samples of the window.
+     * @throws {@link java.lang.RuntimeException} when the parameters are not valid.
+     */
+    public RemotteSlidingWindow(long duration, int capacity) {
+        if (duration <= 0)
+            throw new RuntimeException("Invalid window duration, the minimum value is 1 millisecond.");
+        if (capacity < 1)
+            throw new RuntimeException("Invalid window capacity, the minimum value is 1 sample.");
+
+        mDuration = duration;
+        mTimestamps = new long[capacity];
+        mValues = new double[capacity];
+        mMinimums = new long[capacity];
+        mMaximums = new long[capacity];
+    }
+
+    private int getSlot(long sequence) { return (int)(sequence % mValues.length); }
+
+    /**
+     * Use this method to add a sample, the samples out of the window are evicted.
+     * @param timestamp The timestamp of the sample in milliseconds. A timestamp older than the last one clears the window.
+     */
+    public void add(long timestamp, double value) {
+        if (mCount > 0 && timestamp < mTimestamps[getSlot(mFirst + mCount - 1)])
+            clear();
+
+        evict(timestamp);
+        if (mCount == mValues.length)
+            removeOldest();
+
+        long sequence = mFirst + mCount;
+        int slot = getSlot(sequence);
+        mTimestamps[slot] = timestamp;
+        mValues[slot] = value;
+        mCount++;
+        mSum += value;
+        mSumOfSquares += value * value;
+
+        //The candidates that are not better than the new value will never be the minimum or the maximum.
+        while (mMinimumsCount > 0 && mValues[getSlot(mMinimums[(mMinimumsHead + mMinimumsCount - 1) % mMinimums.length])] >= value)
+            mMinimumsCount--;
+        mMinimums[(mMinimumsHead + mMinimumsCount++) % mMinimums.length] = sequence;
+
+        while (mMaximumsCount > 0 && mValues[getSlot(mMaximums[(mMaximumsHead + mMaximumsCount - 1) % mMaximums.length])] <= value)
+            mMaximumsCount--;
+        mMaximums[(mMaximumsHead + mMaximumsCount++) % mMaximums.length] = sequence;
+    }
+
+    /**
+     * Use this method to evict the samples that are out of the window at the given time.
+     */
+    public void evict(long timestamp) {
+        while (mCount > 0 && mTimestamps[getSlot(mFirst)] <= timestamp - mDuration)
+            removeOldest();
+    }
+
+    private void removeOldest() {
+        double value = mValues[getSlot(mFirst)];
+        if (mMinimumsCount > 0 && mMinimums[mMinimumsHead] == mFirst) {
+            mMinimumsHead = (mMinimumsHead + 1) % mMinimums.length;
+            mMinimumsCount--;
+        }
+        if (mMaximumsCount > 0 && mMaximums[mMaximumsHead] == mFirst) {
+            mMaximumsHead = (mMaximumsHead + 1) % mMaximums.length;
+            mMaximumsCount--;
+        }
+
+        mFirst++;
+        mCount--;
+        if (mCount == 0) {
+            //Start again from zero, the rounding errors of the running sums don't accumulate forever.
+            mSum = 0;
+            mSumOfSquares = 0;
+        } else {
+            mSum -= value;
+            mSumOfSquares -= value * value;
+        }
+    }
+
+    public void clear() {
+        mFirst = 0;
+        mCount = 0;
+        mSum = 0;
+        mSumOfSquares = 0;
+        mMinimumsHead = 0;
+        mMinimumsCount = 0;
+        mMaximumsHead = 0;
+        mMaximumsCount = 0;
+    }
+
+    public long getDuration() { return mDuration; }
+    public int getCapacity() { return mValues.length; }
+    public int getCount() { return mCount; }
+    public double getSum() { return mSum; }
+
+    /**
+     * @return Returns the time between the oldest and the newest sample in milliseconds, 0 if the window it's empty.
+     */
+    public long getSpan() {
+        return (mCount == 0 ? 0 : mTimestamps[getSlot(mFirst + mCount - 1)] - mTimestamps[getSlot(mFirst)]);
+    }
+
+    public double getMean() {
+        return (mCount == 0 ? 0 : mSum / mCount);
+    }
+
+    public double getVariance() {
+        if (mCount == 0)
+            return 0;
+
+        double mean = mSum / mCount;
+        return Math.max(0, mSumOfSquares / mCount - mean * mean);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getRms() {
+        return (mCount == 0 ? 0 : Math.sqrt(Math.max(0, mSumOfSquares) / mCount));
+    }
+
+    /**
+     * @return Returns the minimum value of the window, 0 if it's empty.
+     */
+    public double getMin() {
+        return (mMinimumsCount == 0 ? 0 : mValues[getSlot(mMinimums[mMinimumsHead])]);
+    }
+
+    /**
+     * @return Returns the maximum value of the window, 0 if it's empty.
+     */
+    public double getMax() {
+        return (mMaximumsCount == 0 ? 0 : mValues[getSlot(mMaximums[mMaximumsHead])]);
+    }
+}
@@ -21,60 +21,143 @@ package com.mobandme.remotte.helper;
 
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
+import android.os.SystemClock;
 import android.util.Log;
 
+/**
+ * This class write the logs of the SDK. The level it's resolved once, when the context it's known, so the disabled
+ * log sites only compare two ints: the debuggable apps log from VERBOSE and the other ones from INFO.
+ *
+ * The messages with parameters are formatted with String.format only when they are going to be written, so pass
+ * the format and its arguments instead of build the message. Set ENABLED to false to remove all the logs, every
+ * log method becomes empty and the log sites guarded by {@link #isLoggable(int)} are dropped by the compiler.
+ */
 public final class LogsHelper {
 
     private static final String LOG_TAG = "Remotte";
 
+    /**
+     * The kill switch of the logs, when it's false no message it's formatted or written.
+     */
+    public static final boolean ENABLED = true;
+
     public static final int VERBOSE = 0;
     public static final int DEBUG = 1;
     public static final int INFO = 2;
     public static final int WARN = 3;
     public static final int ERROR = 4;
     public static final int WTF = 5;
+    public static final int NONE = 6;
+
+    private static volatile int mLevel = NONE; //Nothing it's written until the context it's known.
 
     private static Context mContext;
-    public static void    setContext(Context context) { mContext = context.getApplicationContext(); }
+    public static void    setContext(Context context) {
+        mContext = context.getApplicationContext();
+        mLevel = (isDebuggable(mContext) ? VERBOSE : INFO);
+    }
     public static Context getContext() { return mContext; }
 
+    /**
+     * Use this method to change the minimum level written, for example to debug a release build.
+     * @param level Use anyone of the level constants, NONE disables the logs.
+     */
+    public static void setLevel(int level) { mLevel = level; }
+    public static int  getLevel() { return mLevel; }
+
+    /**
+     * Use this method to guard the log sites whose arguments are expensive to compute.
+     */
+    public static boolean isLoggable(int level) { return ENABLED && level >= mLevel; }
+
     public static void log(int level, String msg) {
-        if (isLoggable(level)) {
-            String tag = LOG_TAG;
-            switch (level) {
-                case VERBOSE: Log.v(tag, msg); break;
-                case DEBUG: Log.d(tag, msg); break;
-                case INFO: Log.i(tag, msg); break;
-                case WARN: Log.w(tag, msg); break;
-                case ERROR: Log.e(tag, msg); break;
-                case WTF: Log.w(tag, msg); break;
-            }
-        }
+        if (isLoggable(level))
+            write(level, msg, null);
     }
 
     public static void log(int level, String msg, Throwable tr) {
-        if (isLoggable(level)) {
-            String tag = LOG_TAG;
-            switch (level) {
-                case VERBOSE: Log.v(tag, msg, tr); break;
-                case DEBUG: Log.d(tag, msg, tr); break;
-                case INFO: Log.i(tag, msg, tr); break;
-                case WARN: Log.w(tag, msg, tr); break;
-                case ERROR: Log.e(tag, msg, tr); break;
-                case WTF: Log.w(tag, msg, tr); break;
-            }
+        if (isLoggable(level))
+            write(level, msg, tr);
+    }
+
+    public static void log(int level, String format, Object arg) {
+        if (isLoggable(level))
+            write(level, String.format(format, arg), null);
+    }
+
+    public static void log(int level, String format, Object arg1, Object arg2) {
+        if (isLoggable(level))
+            write(level, String.format(format, arg1, arg2), null);
+    }
+
+    public static void log(int level, String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(level))
+            write(level, String.format(format, arg1, arg2, arg3), null);
+    }
+
+    public static void log(int level, String format, Object... args) {
+        if (isLoggable(level))
+            write(level, String.format(format, args), null);
+    }
+
+    /**
+     * Use this method on the log sites that can be reached on every sample, the message it's written once per
+     * interval of its rate limit with the number of messages suppressed since the last one.
+     */
+    public static void log(int level, RateLimit rateLimit, String format, Object arg) {
+        if (!isLoggable(level))
+            return;
+
+        int suppressed = rateLimit.acquire();
+        if (suppressed == 0)
+            write(level, String.format(format, arg), null);
+        else if (suppressed > 0)
+            write(level, String.format(format, arg) + String.format(" (%d similar messages suppressed)", suppressed), null);
+    }
+
+    private static void write(int level, String msg, Throwable tr) {
+        String tag = LOG_TAG;
+        switch (level) {
+            case VERBOSE: Log.v(tag, msg, tr); break;
+            case DEBUG: Log.d(tag, msg, tr); break;
+            case INFO: Log.i(tag, msg, tr); break;
+            case WARN: Log.w(tag, msg, tr); break;
+            case ERROR: Log.e(tag, msg, tr); break;
+            case WTF: Log.w(tag, msg, tr); break;
         }
     }
 
-    private static boolean isLoggable(int level) {
-        if (getContext() != null)
-            return (isDebuggable() || level > DEBUG);
-        else
-            return false;
+    private static boolean isDebuggable(Context context) {
+        return (0 != (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE));
     }
 
-    private static boolean isDebuggable() {
-        boolean isDebuggable = (0 != (getContext().getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE));
-        return isDebuggable;
+    /**
+     * This class limit a log site to one message per interval.
+     */
+    public static final class RateLimit {
+        private final long mInterval;
+        private       long mNextMessage = 0;
+        private       int  mSuppressed = 0;
+
+        /**
+         * @param interval The minimum time in milliseconds between two messages.
+         */
+        public RateLimit(long interval) { mInterval = interval; }
+
+        /**
+         * @return Returns -1 if the message must be suppressed, or the number of suppressed messages since the last one.
+         */
+        synchronized int acquire() {
+            long now = SystemClock.elapsedRealtime();
+            if (now < mNextMessage) {
+                mSuppressed++;
+                return -1;
+            }
+
+            int suppressed = mSuppressed;
+            mSuppressed = 0;
+            mNextMessage = now + mInterval;
+            return suppressed;
+        }
     }
 }
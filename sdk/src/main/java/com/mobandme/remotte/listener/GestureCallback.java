@@ -0,0 +1,40 @@
+package com.mobandme.remotte.listener;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import com.mobandme.remotte.Remotte;
+
+/**
+ * Use this callback to retrieve the gestures recognized by the gesture detectors, instead of the raw sensor samples.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+public interface GestureCallback {
+
+    /**
+     * This event will be thrown every time that one of the gesture detectors of the configuration recognizes its gesture.
+     * @param remotte The Remotte device that is the origin of the event.
+     * @param gesture The recognized gesture, see the GESTURE constants of {@link com.mobandme.remotte.RemotteGestureDetector}.
+     * @param direction The direction of the gesture, see the DIRECTION constants of {@link com.mobandme.remotte.RemotteGestureDetector}.
+     * @param magnitude The strength of the gesture, its unit depends on the detector.
+     */
+    void onGesture(Remotte remotte, int gesture, int direction, double magnitude);
+}
@@ -0,0 +1,30 @@
+package com.mobandme.remotte.listener;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+/**
+ * Implement this interface on any of your callbacks to receive its events on the main thread, when the samples are
+ * delivered on a delivery thread (see {@link com.mobandme.remotte.Remotte.Builder#enableDeliveryThread()}). Use it
+ * only for the callbacks that update your views, every posted event has a little cost.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+public interface MainThreadCallback { }
@@ -0,0 +1,44 @@
+package com.mobandme.remotte.listener;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import com.mobandme.remotte.Remotte;
+
+/**
+ * Use this callback to retrieve the orientation of the device, fused from the Accelerometer and Gyroscope sensors.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+public interface OrientationCallback {
+
+    /**
+     * This event will be thrown on every Gyroscope sample, once the orientation has been updated.
+     * @param remotte The Remotte device that is the origin of the event.
+     * @param w Value of the W component of the orientation quaternion.
+     * @param x Value of the X component of the orientation quaternion.
+     * @param y Value of the Y component of the orientation quaternion.
+     * @param z Value of the Z component of the orientation quaternion.
+     * @param roll Rotation around the X axis in degrees, from -180 to 180.
+     * @param pitch Rotation around the Y axis in degrees, from -90 to 90.
+     * @param yaw Rotation around the Z axis in degrees, from -180 to 180. It drifts slowly, there is not a magnetometer to correct it.
+     */
+    void onOrientationChange(Remotte remotte, double w, double x, double y, double z, double roll, double pitch, double yaw);
+}
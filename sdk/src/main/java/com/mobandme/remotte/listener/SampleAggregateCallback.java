@@ -0,0 +1,41 @@
+package com.mobandme.remotte.listener;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import com.mobandme.remotte.Remotte;
+import com.mobandme.remotte.RemotteSampleAggregate;
+
+/**
+ * Use this callback to retrieve the statistics of the sensor windows computed by the service, instead of every sample.
+ * @author Txus Ballesteros
+ * @version 1
+ * @since 1
+ */
+public interface SampleAggregateCallback {
+
+    /**
+     * This event will be thrown every time that a window of a sensor with aggregation ends.
+     * @param remotte The Remotte device that is the origin of the event.
+     * @param sensor The sensor of the samples, see the SENSOR constants of {@link com.mobandme.remotte.RemotteMetrics}.
+     * @param aggregate The statistics of the window, the instance it's reused for the next window of the sensor,
+     *                  use {@link com.mobandme.remotte.RemotteSampleAggregate#copy()} to keep it.
+     */
+    void onSampleAggregate(Remotte remotte, int sensor, RemotteSampleAggregate aggregate);
+}
@@ -0,0 +1,38 @@
+package com.mobandme.remotte.listener;
+
+/**
+ * Copyright Mob&Me 2014 (@MobAndMe)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Website: http://mobandme.com
+ * Contact: Txus Ballesteros <txus.ballesteros@mobandme.com>
+ */
+
+import com.mobandme.remotte.Remotte;
+
+/**
+ * Use this callback to retrieve the Temperature sensor changes in batches, see {@link com.mobandme.remotte.Remotte.Configuration#setBatching(int, int)}.
+ */
+public interface TemperatureBatchCallback {
+
+    /**
+     * This event will be thrown when the Remotte service deliver a batch of Temperature samples. The arrays are
+     * reused between batches, so copy the values that you need to keep after the call.
+     * @param remotte The Remotte device that is the origin of the event.
+     * @param count Number of valid samples on the arrays.
+     * @param timestamps The SystemClock.elapsedRealtime() in milliseconds of every sample.
+     * @param ambientTemperature Values of the Temperature, represented on Celsius degrees.
+     */
+    void onTemperatureBatch(Remotte remotte, int count, long[] timestamps, double[] ambientTemperature);
+}